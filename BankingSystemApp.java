@@ -1,13 +1,21 @@
 import accounts.*;
 import atm.ATMService;
 import atm.ATMRequest;
+import audit.ConservationAuditor;
+import bulk.AccountImporter;
 import fraud.FraudMonitor;
 import notification.EmailNotifier;
+import reporting.AccountReplica;
 import reporting.ReportGenerator;
+import reporting.TransactionRollups;
 import transactions.TransactionProcessor;
 import transactions.TransactionResult;
 import concurrency.SyncUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
@@ -16,6 +24,8 @@ import java.util.concurrent.Future;
  * Main application class for Multi-Threaded Banking Transaction System
  */
 public class BankingSystemApp {
+    private static final long REPLICA_RESYNC_MS = 5000;
+    private static final long AUDIT_INTERVAL_MS = 1000;
     
     public static void main(String[] args) {
         System.out.println("=".repeat(80));
@@ -23,11 +33,15 @@ public class BankingSystemApp {
         System.out.println("=".repeat(80));
         System.out.println();
         
-        // Initialize repository
-        AccountRepository accountRepository = new AccountRepository();
+        // Initialize repository, sized for a bulk account file if one is given (accounts=<file>)
+        Path accountFile = accountFile(args);
+        AccountRepository accountRepository = new AccountRepository(expectedAccounts(accountFile));
         
         // Create sample accounts
         initializeAccounts(accountRepository);
+        if (accountFile != null) {
+            importAccounts(accountRepository, accountFile);
+        }
         
         // Initialize fraud monitor
         EmailNotifier notifier = new EmailNotifier("alerts@example.com", "no-reply@bank-sim.local");
@@ -36,11 +50,19 @@ public class BankingSystemApp {
         // Initialize transaction processor
         TransactionProcessor processor = new TransactionProcessor(accountRepository, fraudMonitor);
         
+        // Prove money conservation in the background while transactions run
+        ConservationAuditor auditor = new ConservationAuditor(accountRepository, AUDIT_INTERVAL_MS);
+        processor.enableAudit(auditor);
+        
         // Initialize ATM service
         ATMService atmService = new ATMService(processor);
         
-        // Initialize report generator
-        ReportGenerator reportGenerator = new ReportGenerator(accountRepository);
+        // Initialize report generator; rollups and the account replica follow the transaction event bus
+        AccountReplica accountReplica = new AccountReplica(accountRepository, REPLICA_RESYNC_MS);
+        processor.subscribe("replica", accountReplica);
+        ReportGenerator reportGenerator = new ReportGenerator(accountRepository, accountReplica);
+        TransactionRollups rollups = new TransactionRollups(accountRepository);
+        processor.subscribe("rollups", rollups);
         
         System.out.println("System initialized with " + accountRepository.getAccountCount() + " accounts.");
         System.out.println();
@@ -58,6 +80,12 @@ public class BankingSystemApp {
         
         // Shutdown processor
         processor.shutdown();
+        accountReplica.shutdown();
+        System.out.println(auditor.auditNow());
+        auditor.shutdown();
+        
+        // Per-day report from the rollups (after shutdown, so every event has been aggregated)
+        reportGenerator.generateDailyReport(LocalDate.now(), rollups);
         
         System.out.println("\n" + "=".repeat(80));
         System.out.println("SYSTEM SHUTDOWN COMPLETE");
@@ -67,6 +95,7 @@ public class BankingSystemApp {
         System.out.println("- logs/transactions.log");
         System.out.println("- logs/fraud_report.txt");
         System.out.println("- logs/daily_report.txt");
+        System.out.println("- logs/reports/daily_report_" + LocalDate.now() + ".txt");
     }
     
     /**
@@ -88,6 +117,44 @@ public class BankingSystemApp {
         System.out.println();
     }
     
+    /**
+     * Account file named by an accounts=<file.csv|file.bin> argument, or null
+     */
+    private static Path accountFile(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("accounts=")) {
+                return Paths.get(arg.substring("accounts=".length()));
+            }
+        }
+        return null;
+    }
+    
+    private static int expectedAccounts(Path accountFile) {
+        if (accountFile == null) {
+            return 16;
+        }
+        try {
+            return AccountImporter.estimateAccounts(accountFile) + 16;
+        } catch (IOException | IllegalArgumentException e) {
+            return 16; // reported when the import itself fails
+        }
+    }
+    
+    /**
+     * Bulk-load customer accounts on top of the sample accounts
+     */
+    private static void importAccounts(AccountRepository repository, Path accountFile) {
+        AccountImporter importer = new AccountImporter(repository);
+        try {
+            System.out.println(importer.importFile(accountFile));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not import accounts from " + accountFile + ": " + e.getMessage());
+        } finally {
+            importer.shutdown();
+        }
+        System.out.println();
+    }
+    
     /**
      * Simulate concurrent transactions from multiple ATMs
      */
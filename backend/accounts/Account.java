@@ -1,42 +1,79 @@
 package accounts;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
 import util.SecurityUtil;
 
 /**
- * Base Account class with thread-safe operations
+ * Base Account class with thread-safe operations.
+ * Writers serialize on the account monitor and publish balance changes under a
+ * StampedLock write stamp; readers use optimistic stamps and never take the monitor.
+ *
+ * A high-traffic account can be switched to split mode: deposits then go to striped
+ * sub-balances without taking the monitor, and a withdrawal that needs more than the
+ * main balance first drains the sub-balances into it, so overdraft and minimum-balance
+ * rules are always checked against money actually held.
  */
 public abstract class Account {
     protected final int accountId;
     protected final String name;
     protected double balance;
-    protected String pinHash;
+    protected volatile String pinHash; // salted PBKDF2, see SecurityUtil.hashPin
     protected final AtomicInteger failedPinAttempts;
     protected final AtomicInteger transactionCount;
-    protected boolean frozen;
+    protected volatile boolean frozen;
+    protected final StampedLock stateLock;
+    private volatile StripedBalance pendingDeposits; // null unless split mode is on
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
     
     public Account(int accountId, String name, double initialBalance, int pin) {
+        this(accountId, name, initialBalance, SecurityUtil.hashPin(pin));
+    }
+    
+    /**
+     * Create an account whose PIN was hashed elsewhere (bulk import, see SecurityUtil.hashPin)
+     */
+    public Account(int accountId, String name, double initialBalance, String pinHash) {
         this.accountId = accountId;
         this.name = name;
         this.balance = initialBalance;
-        this.pinHash = SecurityUtil.hashPin(pin);
+        this.pinHash = pinHash;
         this.failedPinAttempts = new AtomicInteger(0);
         this.transactionCount = new AtomicInteger(0);
         this.frozen = false;
+        this.stateLock = new StampedLock();
     }
     
     /**
-     * Thread-safe deposit operation
+     * Thread-safe deposit operation. In split mode the amount lands in a sub-balance
+     * kept in cents and the monitor is not taken; an amount that is not a whole number
+     * of cents is refused rather than rounded, so no money is created or lost.
      */
-    public synchronized boolean deposit(double amount) {
+    public boolean deposit(double amount) {
         if (amount <= 0) {
             return false;
         }
-        balance += amount;
-        transactionCount.incrementAndGet();
+        StripedBalance stripes = pendingDeposits;
+        if (stripes != null) {
+            if (!isWholeCents(amount)) {
+                return false;
+            }
+            stripes.add(Math.round(amount * 100));
+            return true;
+        }
+        synchronized (this) {
+            applyBalanceChange(amount);
+        }
         return true;
     }
     
+    /**
+     * True if the amount is a whole number of cents, the unit split balances are kept in
+     */
+    public static boolean isWholeCents(double amount) {
+        return Math.abs(amount * 100 - Math.round(amount * 100)) < 1e-6;
+    }
+    
     /**
      * Thread-safe withdraw operation with overdraft prevention
      */
@@ -44,26 +81,148 @@ public abstract class Account {
         if (amount <= 0) {
             return false;
         }
+        absorbPendingDeposits(amount);
         if (balance < amount) {
             return false; // Overdraft prevention
         }
-        balance -= amount;
-        transactionCount.incrementAndGet();
+        applyBalanceChange(-amount);
         return true;
     }
     
     /**
-     * Thread-safe balance inquiry
+     * Apply a balance change and count the transaction under the write stamp.
+     * Callers must hold the account monitor.
+     */
+    protected void applyBalanceChange(double delta) {
+        long stamp = stateLock.writeLock();
+        try {
+            balance += delta;
+            transactionCount.incrementAndGet();
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Undo a withdrawal that could not be completed, e.g. the debit of a transfer whose
+     * credit was refused: the money goes back and the withdrawal stops counting as a
+     * transaction, so the account looks as if it never happened
+     */
+    public synchronized void reverseWithdrawal(double amount) {
+        long stamp = stateLock.writeLock();
+        try {
+            balance += amount;
+            transactionCount.decrementAndGet();
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Switch to split mode with the given number of deposit stripes (rounded up to a
+     * power of two). One-way: an account stays split for the life of the process.
+     */
+    public synchronized void enableSplitBalance(int stripeCount) {
+        if (pendingDeposits == null) {
+            pendingDeposits = new StripedBalance(stripeCount);
+        }
+    }
+    
+    public boolean isSplitBalance() {
+        return pendingDeposits != null;
+    }
+    
+    /**
+     * Number of deposit stripes, 0 if the account is not split
+     */
+    public int getBalanceStripes() {
+        StripedBalance stripes = pendingDeposits;
+        return stripes == null ? 0 : stripes.getStripeCount();
+    }
+    
+    /**
+     * Move deposits waiting in the sub-balances into the main balance if it holds less
+     * than required. Callers must hold the monitor.
+     */
+    protected void absorbPendingDeposits(double required) {
+        StripedBalance stripes = pendingDeposits;
+        if (stripes == null || balance >= required) {
+            return;
+        }
+        long stamp = stateLock.writeLock();
+        try {
+            // Readers validating a stamp across this never count the money twice
+            balance += stripes.drainCents() / 100.0;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Merge all sub-balances into the main balance now
+     */
+    public synchronized void mergePendingDeposits() {
+        absorbPendingDeposits(Double.POSITIVE_INFINITY);
+    }
+    
+    private double pendingAmount() {
+        StripedBalance stripes = pendingDeposits;
+        return stripes == null ? 0 : stripes.sumCents() / 100.0;
+    }
+    
+    private int pendingCount() {
+        StripedBalance stripes = pendingDeposits;
+        return stripes == null ? 0 : (int) stripes.sumCounts();
+    }
+    
+    /**
+     * Balance inquiry using an optimistic read; does not contend with writers
      */
-    public synchronized double getBalance() {
-        return balance;
+    public double getBalance() {
+        for (int i = 0; i < OPTIMISTIC_READ_ATTEMPTS; i++) {
+            long stamp = stateLock.tryOptimisticRead();
+            double current = balance + pendingAmount();
+            if (stamp != 0 && stateLock.validate(stamp)) {
+                return current;
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = stateLock.readLock();
+        try {
+            return balance + pendingAmount();
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Consistent point-in-time view of balance and state, read optimistically
+     */
+    public AccountSnapshot snapshot() {
+        for (int i = 0; i < OPTIMISTIC_READ_ATTEMPTS; i++) {
+            long stamp = stateLock.tryOptimisticRead();
+            double currentBalance = balance + pendingAmount();
+            int count = transactionCount.get() + pendingCount();
+            boolean currentFrozen = frozen;
+            if (stamp != 0 && stateLock.validate(stamp)) {
+                return new AccountSnapshot(this, currentBalance, count, currentFrozen);
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = stateLock.readLock();
+        try {
+            return new AccountSnapshot(this, balance + pendingAmount(), transactionCount.get() + pendingCount(), frozen);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
     }
     
     /**
-     * Validate PIN
+     * Validate PIN. Runs the full key derivation, so callers on latency-sensitive
+     * paths should go through PinVerifier instead.
      */
     public boolean validatePin(int inputPin) {
-        if (SecurityUtil.hashPin(inputPin).equals(pinHash)) {
+        if (SecurityUtil.verifyPin(inputPin, pinHash)) {
             failedPinAttempts.set(0);
             return true;
         } else {
@@ -84,7 +243,35 @@ public abstract class Account {
     }
 
     /**
-     * Admin-only PIN set (bypasses old PIN).
+     * Overwrite balance, transaction count and frozen flag with a state copied from another
+     * process, e.g. a replication primary. Takes the monitor like any other writer.
+     */
+    public synchronized void restoreState(double balance, int transactionCount, boolean frozen) {
+        long stamp = stateLock.writeLock();
+        try {
+            StripedBalance stripes = pendingDeposits;
+            if (stripes != null) {
+                stripes.reset();
+            }
+            this.balance = balance;
+            this.transactionCount.set(transactionCount);
+            this.frozen = frozen;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Overwrite the PIN hash with one copied from another process, e.g. a replication
+     * primary; the PIN is not hashed again
+     */
+    public synchronized void restorePinHash(String pinHash) {
+        this.pinHash = pinHash;
+    }
+    
+    /**
+     * Admin-only PIN set (bypasses old PIN). Go through AccountRepository.adminSetPin (and
+     * changePin) for the change to reach a replication backup.
      */
     public synchronized void adminSetPin(int newPin) {
         this.pinHash = SecurityUtil.hashPin(newPin);
@@ -100,12 +287,26 @@ public abstract class Account {
         return name;
     }
     
+    /**
+     * Display name of the product, "Savings" or "Salary"
+     */
+    public String getAccountType() {
+        return this instanceof SavingsAccount ? "Savings" : "Salary";
+    }
+    
+    /**
+     * Salted PIN hash, for export only; the PIN itself is never stored
+     */
+    public String getPinHash() {
+        return pinHash;
+    }
+    
     public int getFailedPinAttempts() {
         return failedPinAttempts.get();
     }
     
     public int getTransactionCount() {
-        return transactionCount.get();
+        return transactionCount.get() + pendingCount();
     }
     
     public void resetFailedPinAttempts() {
@@ -117,13 +318,18 @@ public abstract class Account {
     }
 
     public void setFrozen(boolean frozen) {
-        this.frozen = frozen;
+        long stamp = stateLock.writeLock();
+        try {
+            this.frozen = frozen;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
     }
     
     @Override
     public String toString() {
         return String.format("Account[ID=%d, Name=%s, Balance=%.2f, Transactions=%d]", 
-            accountId, name, balance, transactionCount.get());
+            accountId, name, getBalance(), getTransactionCount());
     }
 }
 
@@ -0,0 +1,10 @@
+package accounts;
+
+/**
+ * Callback for observers that need to know when an account's balance or state changed.
+ * Invoked on background threads (e.g. the account replica's), so implementations must be
+ * cheap and thread-safe.
+ */
+public interface AccountChangeListener {
+    void accountChanged(int accountId);
+}
@@ -1,5 +1,6 @@
 package accounts;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -9,17 +10,115 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class AccountRepository {
     private final Map<Integer, Account> accounts;
+    private final Map<Integer, Integer> positions;
+    private volatile int[] order; // account ids in insertion order, for positional lookup
+    private volatile int orderSize;
+    private final NegativeAccountCache unknownAccounts;
+    private volatile RepositoryChangeListener repositoryListener; // null unless someone follows the repository
+    private static final int UNKNOWN_ACCOUNT_CACHE_SIZE = 4096;
+    private static final long UNKNOWN_ACCOUNT_TTL_MS = 5000;
     
     public AccountRepository() {
+        this(16);
+    }
+    
+    /**
+     * Repository sized up front for a known number of accounts (e.g. a bulk import),
+     * so loading it never rehashes or copies the position index
+     */
+    public AccountRepository(int expectedAccounts) {
         // Using ConcurrentHashMap for thread-safe operations
-        this.accounts = new ConcurrentHashMap<>();
+        this.accounts = new ConcurrentHashMap<>(Math.max(16, expectedAccounts));
+        this.positions = new ConcurrentHashMap<>(Math.max(16, expectedAccounts));
+        this.order = new int[Math.max(16, expectedAccounts)];
+        this.orderSize = 0;
+        this.unknownAccounts = new NegativeAccountCache(UNKNOWN_ACCOUNT_CACHE_SIZE, UNKNOWN_ACCOUNT_TTL_MS);
     }
     
     /**
      * Add account to repository
      */
     public void addAccount(Account account) {
-        accounts.put(account.getAccountId(), account);
+        if (accounts.put(account.getAccountId(), account) == null) {
+            appendToOrder(account.getAccountId());
+        }
+        unknownAccounts.forget(account.getAccountId());
+        RepositoryChangeListener listener = repositoryListener;
+        if (listener != null) {
+            listener.accountDefined(account);
+        }
+    }
+    
+    /**
+     * Add a batch of new accounts in order; an id that already exists keeps its current
+     * account. Returns how many were added.
+     */
+    public int addAccounts(Account[] batch, int count) {
+        int[] added = new int[count];
+        int addedCount = 0;
+        for (int i = 0; i < count; i++) {
+            Account account = batch[i];
+            if (accounts.putIfAbsent(account.getAccountId(), account) == null) {
+                added[addedCount++] = account.getAccountId();
+                unknownAccounts.forget(account.getAccountId());
+            }
+        }
+        appendToOrder(added, addedCount);
+        RepositoryChangeListener listener = repositoryListener;
+        if (listener != null) {
+            for (int i = 0; i < addedCount; i++) {
+                listener.accountDefined(accounts.get(added[i]));
+            }
+        }
+        return addedCount;
+    }
+    
+    private synchronized void appendToOrder(int[] accountIds, int count) {
+        int[] current = order;
+        if (orderSize + count > current.length) {
+            current = Arrays.copyOf(current, Math.max(orderSize + count, current.length * 2));
+        }
+        int size = orderSize;
+        for (int i = 0; i < count; i++) {
+            if (positions.putIfAbsent(accountIds[i], size) == null) {
+                current[size++] = accountIds[i];
+            }
+        }
+        order = current;
+        orderSize = size;
+    }
+    
+    private synchronized void appendToOrder(int accountId) {
+        if (positions.containsKey(accountId)) {
+            return;
+        }
+        int[] current = order;
+        if (orderSize == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[orderSize] = accountId;
+        positions.put(accountId, orderSize);
+        order = current;
+        orderSize = orderSize + 1;
+    }
+    
+    /**
+     * Get account by insertion position (0 .. getAccountCount()-1); null if out of range
+     */
+    public Account getAccountAt(int position) {
+        int[] current = order;
+        if (position < 0 || position >= Math.min(orderSize, current.length)) {
+            return null;
+        }
+        return accounts.get(current[position]);
+    }
+    
+    /**
+     * Insertion position of an account, or -1 if unknown
+     */
+    public int positionOf(int accountId) {
+        Integer position = positions.get(accountId);
+        return position == null ? -1 : position;
     }
     
     /**
@@ -29,6 +128,34 @@ public class AccountRepository {
         return accounts.get(accountId);
     }
     
+    /**
+     * Get account by ID for the transaction pipeline; misses are remembered briefly
+     * so repeated probes of the same unknown id can be rejected up front
+     */
+    public Account resolveAccount(int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            unknownAccounts.recordMissing(accountId);
+            // The account may have been added (and forgotten) between the miss and the record
+            account = accounts.get(accountId);
+            if (account != null) {
+                unknownAccounts.forget(accountId);
+            }
+        }
+        return account;
+    }
+    
+    /**
+     * True if the id was looked up recently and did not exist
+     */
+    public boolean isKnownMissing(int accountId) {
+        return unknownAccounts.isKnownMissing(accountId);
+    }
+    
+    public long getUnknownAccountRejections() {
+        return unknownAccounts.getHits();
+    }
+    
     /**
      * Freeze/unfreeze an account.
      */
@@ -36,9 +163,53 @@ public class AccountRepository {
         Account acc = accounts.get(accountId);
         if (acc != null) {
             acc.setFrozen(frozen);
+            RepositoryChangeListener listener = repositoryListener;
+            if (listener != null) {
+                listener.accountsChanged(new int[] {accountId}, 1);
+            }
         }
     }
     
+    /**
+     * Change an account's PIN after checking the old one; false if the account does not
+     * exist or the old PIN is wrong
+     */
+    public boolean changePin(int accountId, int oldPin, int newPin) {
+        Account acc = accounts.get(accountId);
+        if (acc == null || !acc.changePin(oldPin, newPin)) {
+            return false;
+        }
+        RepositoryChangeListener listener = repositoryListener;
+        if (listener != null) {
+            listener.accountDefined(acc);
+        }
+        return true;
+    }
+    
+    /**
+     * Admin-only PIN set (bypasses old PIN); false if the account does not exist
+     */
+    public boolean adminSetPin(int accountId, int newPin) {
+        Account acc = accounts.get(accountId);
+        if (acc == null) {
+            return false;
+        }
+        acc.adminSetPin(newPin);
+        RepositoryChangeListener listener = repositoryListener;
+        if (listener != null) {
+            listener.accountDefined(acc);
+        }
+        return true;
+    }
+    
+    /**
+     * Report accounts added, PINs changed and accounts frozen through this repository to the
+     * listener from now on (e.g. a replication primary); null stops reporting
+     */
+    public void setRepositoryChangeListener(RepositoryChangeListener listener) {
+        this.repositoryListener = listener;
+    }
+    
     /**
      * Check if account exists
      */
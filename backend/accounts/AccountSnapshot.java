@@ -0,0 +1,52 @@
+package accounts;
+
+/**
+ * Immutable, consistent view of an account's balance and state
+ */
+public class AccountSnapshot {
+    private final int accountId;
+    private final String name;
+    private final String accountType;
+    private final double balance;
+    private final int transactionCount;
+    private final int failedPinAttempts;
+    private final boolean frozen;
+    
+    AccountSnapshot(Account account, double balance, int transactionCount, boolean frozen) {
+        this.accountId = account.getAccountId();
+        this.name = account.getName();
+        this.accountType = account.getAccountType();
+        this.balance = balance;
+        this.transactionCount = transactionCount;
+        this.failedPinAttempts = account.getFailedPinAttempts();
+        this.frozen = frozen;
+    }
+    
+    public int getAccountId() {
+        return accountId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getAccountType() {
+        return accountType;
+    }
+    
+    public double getBalance() {
+        return balance;
+    }
+    
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+    
+    public int getFailedPinAttempts() {
+        return failedPinAttempts;
+    }
+    
+    public boolean isFrozen() {
+        return frozen;
+    }
+}
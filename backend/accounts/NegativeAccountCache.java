@@ -0,0 +1,79 @@
+package accounts;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free cache of account ids recently found not to exist.
+ *
+ * Direct-mapped: each slot packs the account id (high 32 bits) and its expiry
+ * (low 32 bits, milliseconds relative to the cache epoch), so memory is fixed and a
+ * lookup is one array read. Colliding ids simply overwrite each other.
+ */
+public class NegativeAccountCache {
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long ttlMillis;
+    private final long epochMillis;
+    private final AtomicLong hits;
+    
+    public NegativeAccountCache(int capacity, long ttlMillis) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.ttlMillis = ttlMillis;
+        this.epochMillis = System.currentTimeMillis();
+        this.hits = new AtomicLong(0);
+    }
+    
+    /**
+     * Remember that an id does not exist, for the next ttl milliseconds
+     */
+    public void recordMissing(int accountId) {
+        int expiry = (int) (System.currentTimeMillis() - epochMillis + ttlMillis);
+        slots.set(indexOf(accountId), pack(accountId, expiry));
+    }
+    
+    /**
+     * True if the id was recently looked up and not found
+     */
+    public boolean isKnownMissing(int accountId) {
+        long slot = slots.get(indexOf(accountId));
+        if (slot == 0 || (int) (slot >>> 32) != accountId) {
+            return false;
+        }
+        int now = (int) (System.currentTimeMillis() - epochMillis);
+        // Wrap-safe comparison of 32-bit relative times
+        if ((int) slot - now > 0) {
+            hits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Drop an id, e.g. because the account has just been created
+     */
+    public void forget(int accountId) {
+        int index = indexOf(accountId);
+        long slot = slots.get(index);
+        if (slot != 0 && (int) (slot >>> 32) == accountId) {
+            slots.compareAndSet(index, slot, 0);
+        }
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    private int indexOf(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+    
+    private static long pack(int accountId, int expiry) {
+        return ((long) accountId << 32) | (expiry & 0xFFFFFFFFL);
+    }
+}
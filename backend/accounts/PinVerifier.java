@@ -0,0 +1,188 @@
+package accounts;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs PIN key derivation on a dedicated bounded pool so transaction threads never pay for it.
+ *
+ * A successful verification opens a short-lived session for that account at that ATM.
+ * Later operations in the same session that present the same PIN are accepted after a
+ * keyed SHA-256 comparison instead of a full key derivation. Sessions live in a fixed-size
+ * direct-mapped table, so memory is bounded and colliding sessions simply overwrite each
+ * other. A session ends on expiry or as soon as the account's PIN hash changes.
+ */
+public class PinVerifier {
+    private final ThreadPoolExecutor pool;
+    private final AtomicReferenceArray<VerifiedSession> sessions;
+    private final int mask;
+    private final long sessionTtlNanos;
+    private final byte[] sessionKey;
+    private final ThreadLocal<MessageDigest> digests;
+    private final AtomicLong verifications;
+    private final AtomicLong sessionHits;
+
+    /**
+     * @param threads        key-derivation threads
+     * @param queueCapacity  waiting verifications before callers run them inline
+     * @param sessionSlots   size of the session table, a power of two
+     * @param sessionTtlMs   how long a verified session is honoured
+     */
+    public PinVerifier(int threads, int queueCapacity, int sessionSlots, long sessionTtlMs) {
+        if (sessionSlots <= 0 || Integer.bitCount(sessionSlots) != 1) {
+            throw new IllegalArgumentException("Session slots must be a power of two");
+        }
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        // A full queue pushes the work back onto the submitting thread, which is natural backpressure
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "pin-verifier-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> task.run());
+        this.sessions = new AtomicReferenceArray<>(sessionSlots);
+        this.mask = sessionSlots - 1;
+        this.sessionTtlNanos = sessionTtlMs * 1_000_000L;
+        this.sessionKey = new byte[32];
+        new SecureRandom().nextBytes(sessionKey);
+        this.digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 not available", e);
+            }
+        });
+        this.verifications = new AtomicLong(0);
+        this.sessionHits = new AtomicLong(0);
+    }
+
+    /**
+     * Verify a PIN for a request from the given ATM. Completes immediately on a session
+     * hit; otherwise the key derivation runs on the verification pool.
+     */
+    public CompletableFuture<Boolean> verify(Account account, int pin, String channelId) {
+        if (isSessionVerified(account, pin, channelId)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        pool.execute(() -> {
+            try {
+                outcome.complete(verifyNow(account, pin, channelId));
+            } catch (RuntimeException e) {
+                outcome.completeExceptionally(e);
+            }
+        });
+        return outcome;
+    }
+
+    /**
+     * Verify on the calling thread, opening a session on success
+     */
+    public boolean verifyNow(Account account, int pin, String channelId) {
+        String pinHash = account.pinHash;
+        verifications.incrementAndGet();
+        if (!account.validatePin(pin)) {
+            return false;
+        }
+        if (channelId != null) {
+            sessions.set(slotOf(account.getAccountId(), channelId), new VerifiedSession(account.getAccountId(),
+                channelId, pinHash, sessionDigest(account.getAccountId(), pin), System.nanoTime() + sessionTtlNanos));
+        }
+        return true;
+    }
+
+    /**
+     * End the session for an account at an ATM, e.g. when the card is returned
+     */
+    public void endSession(int accountId, String channelId) {
+        if (channelId == null) {
+            return;
+        }
+        int slot = slotOf(accountId, channelId);
+        VerifiedSession session = sessions.get(slot);
+        if (session != null && session.matches(accountId, channelId)) {
+            sessions.compareAndSet(slot, session, null);
+        }
+    }
+
+    public long getVerificationCount() {
+        return verifications.get();
+    }
+
+    public long getSessionHitCount() {
+        return sessionHits.get();
+    }
+
+    /**
+     * Stop accepting pool work and wait for queued verifications to finish; later
+     * verifications run on the caller's thread
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isSessionVerified(Account account, int pin, String channelId) {
+        if (channelId == null) {
+            return false;
+        }
+        VerifiedSession session = sessions.get(slotOf(account.getAccountId(), channelId));
+        if (session == null || !session.matches(account.getAccountId(), channelId)
+                || session.pinHash != account.pinHash || session.expiresAtNanos - System.nanoTime() <= 0) {
+            return false;
+        }
+        if (!MessageDigest.isEqual(session.pinDigest, sessionDigest(account.getAccountId(), pin))) {
+            return false;
+        }
+        sessionHits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * SHA-256 over a per-process random key, the account id and the PIN; never stored outside memory
+     */
+    private byte[] sessionDigest(int accountId, int pin) {
+        MessageDigest digest = digests.get();
+        digest.update(sessionKey);
+        digest.update(ByteBuffer.allocate(8).putInt(accountId).putInt(pin).array());
+        return digest.digest();
+    }
+
+    private int slotOf(int accountId, String channelId) {
+        int h = (accountId * 0x9E3779B9) ^ channelId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static class VerifiedSession {
+        final int accountId;
+        final String channelId;
+        final String pinHash;
+        final byte[] pinDigest;
+        final long expiresAtNanos;
+
+        VerifiedSession(int accountId, String channelId, String pinHash, byte[] pinDigest, long expiresAtNanos) {
+            this.accountId = accountId;
+            this.channelId = channelId;
+            this.pinHash = pinHash;
+            this.pinDigest = pinDigest;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean matches(int accountId, String channelId) {
+            return this.accountId == accountId && this.channelId.equals(channelId);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package accounts;
+
+/**
+ * Follows changes made through the repository rather than by processed transactions:
+ * accounts added or replaced, new PINs, and administrative changes to an account's state.
+ * Invoked on the caller's thread.
+ */
+public interface RepositoryChangeListener {
+    /**
+     * A new account, or new credentials for an existing one
+     */
+    void accountDefined(Account account);
+
+    /**
+     * Balance, transaction count or frozen flag of the accounts changed
+     */
+    void accountsChanged(int[] accountIds, int count);
+}
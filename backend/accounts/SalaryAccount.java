@@ -9,17 +9,21 @@ public class SalaryAccount extends Account {
         super(accountId, name, initialBalance, pin);
     }
     
+    public SalaryAccount(int accountId, String name, double initialBalance, String pinHash) {
+        super(accountId, name, initialBalance, pinHash);
+    }
+    
     // Salary accounts can go to zero balance
     @Override
     public synchronized boolean withdraw(double amount) {
         if (amount <= 0) {
             return false;
         }
+        absorbPendingDeposits(amount);
         if (balance < amount) {
             return false; // Overdraft prevention
         }
-        balance -= amount;
-        transactionCount.incrementAndGet();
+        applyBalanceChange(-amount);
         return true;
     }
 }
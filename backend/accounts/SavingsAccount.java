@@ -10,8 +10,13 @@ public class SavingsAccount extends Account {
         super(accountId, name, initialBalance, pin);
     }
     
+    public SavingsAccount(int accountId, String name, double initialBalance, String pinHash) {
+        super(accountId, name, initialBalance, pinHash);
+    }
+    
     @Override
     public synchronized boolean withdraw(double amount) {
+        absorbPendingDeposits(amount + MINIMUM_BALANCE);
         // Check minimum balance requirement for savings account
         if (balance - amount < MINIMUM_BALANCE) {
             return false;
@@ -0,0 +1,73 @@
+package accounts;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Deposits of a split account, spread over independent stripes so concurrent depositors
+ * rarely touch the same cache line. Each stripe holds an amount in whole cents and a
+ * deposit count; the amount is drained into the main balance when a withdrawal needs it.
+ */
+final class StripedBalance {
+    private static final int SLOT_STRIDE = 16; // 128 bytes per stripe, no false sharing
+    private static final int CENTS = 0;
+    private static final int COUNT = 1;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    StripedBalance(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.slots = new AtomicLongArray(size * SLOT_STRIDE);
+        this.mask = size - 1;
+    }
+
+    void add(long cents) {
+        int base = stripeIndex() * SLOT_STRIDE;
+        slots.getAndAdd(base + CENTS, cents);
+        slots.getAndIncrement(base + COUNT);
+    }
+
+    /**
+     * Take every stripe's amount; deposits racing with the drain land in the next one
+     */
+    long drainCents() {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) {
+            total += slots.getAndSet(i * SLOT_STRIDE + CENTS, 0);
+        }
+        return total;
+    }
+
+    long sumCents() {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) {
+            total += slots.get(i * SLOT_STRIDE + CENTS);
+        }
+        return total;
+    }
+
+    long sumCounts() {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) {
+            total += slots.get(i * SLOT_STRIDE + COUNT);
+        }
+        return total;
+    }
+
+    void reset() {
+        for (int i = 0; i <= mask; i++) {
+            slots.set(i * SLOT_STRIDE + CENTS, 0);
+            slots.set(i * SLOT_STRIDE + COUNT, 0);
+        }
+    }
+
+    int getStripeCount() {
+        return mask + 1;
+    }
+
+    private int stripeIndex() {
+        // Fibonacci hash of the thread id: pool threads with consecutive ids spread out
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+}
@@ -10,11 +10,36 @@ public class ATMRequest {
     private final Transaction transaction;
     private final String atmId;
     private final String customerName;
+    private final String sessionToken; // null when the request authenticates with its own PIN
     
     public ATMRequest(Transaction transaction, String atmId, String customerName) {
-        this.transaction = transaction;
+        this(transaction, atmId, customerName, null);
+    }
+    
+    /**
+     * Request made within an ATM session; the token replaces per-request PIN checks
+     */
+    public ATMRequest(Transaction transaction, String atmId, String customerName, String sessionToken) {
+        // Tag the transaction with its terminal so failed PINs can be throttled per ATM
+        this.transaction = transaction.withChannelId(atmId);
         this.atmId = atmId;
         this.customerName = customerName;
+        this.sessionToken = sessionToken;
+    }
+    
+    /**
+     * Copy of this request tagged with an idempotency key; an ATM reuses the key when it retries
+     */
+    public ATMRequest withIdempotencyKey(String idempotencyKey) {
+        return new ATMRequest(transaction.withIdempotencyKey(idempotencyKey), atmId, customerName, sessionToken);
+    }
+    
+    public String getSessionToken() {
+        return sessionToken;
+    }
+    
+    public String getIdempotencyKey() {
+        return transaction.getIdempotencyKey();
     }
     
     public Transaction getTransaction() {
@@ -1,25 +1,51 @@
 package atm;
 
+import transactions.RingResult;
 import transactions.Transaction;
+import transactions.TransactionGateway;
 import transactions.TransactionProcessor;
 import transactions.TransactionResult;
+import transactions.TransactionStatus;
 import transactions.TransactionType;
+import transactions.TransferLeg;
 import util.DateTimeUtil;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
  * ATM Service that simulates ATM operations
  */
 public class ATMService {
-    private final TransactionProcessor transactionProcessor;
+    private final TransactionGateway gateway;
+    private final TransactionProcessor transactionProcessor; // null when requests are routed to remote nodes
+    private final ATMSessionTable sessionTable;
     private static final String ATM_LOG_FILE = "logs/atm.log";
+    private static final long SESSION_IDLE_TIMEOUT_MS = 2 * 60 * 1000L;
+    private static final int MAX_SESSIONS = 100_000;
+    private static final int SESSION_PIN = 0; // placeholder; session requests are never PIN-checked
     
     public ATMService(TransactionProcessor transactionProcessor) {
+        this(transactionProcessor, transactionProcessor);
+    }
+    
+    /**
+     * ATM service in front of a routing gateway, e.g. a cluster router that forwards each
+     * request to the partition owning the account
+     */
+    public ATMService(TransactionGateway gateway) {
+        this(gateway, gateway instanceof TransactionProcessor ? (TransactionProcessor) gateway : null);
+    }
+    
+    private ATMService(TransactionGateway gateway, TransactionProcessor transactionProcessor) {
+        this.gateway = gateway;
         this.transactionProcessor = transactionProcessor;
+        this.sessionTable = new ATMSessionTable(SESSION_IDLE_TIMEOUT_MS, MAX_SESSIONS);
         initializeAtmLog();
     }
     
@@ -44,7 +70,128 @@ public class ATMService {
             request.getAtmId(), request.getCustomerName(), 
             request.getTransaction().getType(), request.getTransaction().getAccountId()));
         
-        return transactionProcessor.submitTransaction(request.getTransaction());
+        Transaction transaction = request.getTransaction();
+        if (request.getSessionToken() == null) {
+            return gateway.submitTransaction(transaction);
+        }
+        // Session requests: authentication is a single table lookup
+        if (sessionTable.validate(request.getSessionToken(), request.getAtmId(), transaction.getAccountId()) == null) {
+            return CompletableFuture.completedFuture(new TransactionResult(
+                TransactionStatus.SESSION_INVALID, transaction, 0));
+        }
+        return gateway.submitAuthenticatedTransaction(transaction);
+    }
+    
+    /**
+     * Run a request within a session through the processor's submission ring, writing the
+     * outcome into a result the caller reuses. The caller allocates nothing per request and
+     * no ATM log line is written; the processor logs the transaction. Pass 0 as the target
+     * for anything but a transfer. Returns result.isSuccess(). Behind a routing gateway there
+     * is no local ring, so the request is submitted through the gateway instead.
+     */
+    public boolean processInSession(ATMSession session, TransactionType type, int targetAccountId,
+                                    double amount, RingResult result) {
+        if (sessionTable.validate(session.getToken(), session.getAtmId(), session.getAccountId()) == null) {
+            result.set(TransactionStatus.SESSION_INVALID, type, session.getAccountId(), targetAccountId, amount, 0);
+            return false;
+        }
+        if (transactionProcessor == null) {
+            return routeInSession(session, type, targetAccountId, amount, result);
+        }
+        return transactionProcessor.getSubmissionRing().execute(type, session.getAccountId(), targetAccountId,
+            amount, session.getAtmId(), result);
+    }
+    
+    private boolean routeInSession(ATMSession session, TransactionType type, int targetAccountId,
+                                   double amount, RingResult result) {
+        Transaction transaction = type == TransactionType.TRANSFER
+            ? new Transaction(type, session.getAccountId(), targetAccountId, amount, SESSION_PIN)
+            : new Transaction(type, session.getAccountId(), amount, SESSION_PIN);
+        try {
+            TransactionResult outcome = gateway.submitAuthenticatedTransaction(
+                transaction.withChannelId(session.getAtmId())).get();
+            result.set(outcome.getStatus(), type, session.getAccountId(), targetAccountId, amount,
+                outcome.getBalanceAfter());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.set(TransactionStatus.FAILED, type, session.getAccountId(), targetAccountId, amount, 0);
+        } catch (ExecutionException e) {
+            result.set(TransactionStatus.FAILED, type, session.getAccountId(), targetAccountId, amount, 0);
+        }
+        return result.isSuccess();
+    }
+
+    /**
+     * Authenticate a customer once and open a session for the rest of the visit.
+     * Returns null if the PIN is wrong, the account is frozen or locked out, or the
+     * session table is full.
+     */
+    public ATMSession login(String atmId, String customerName, int accountId, int pin) {
+        if (!gateway.authenticate(accountId, pin, atmId)) {
+            logAtmEvent(String.format("ATM %s: Login failed for Account %d", atmId, accountId));
+            return null;
+        }
+        ATMSession session = sessionTable.open(accountId, atmId, customerName);
+        logAtmEvent(String.format("ATM %s: Customer %s %s for Account %d", atmId, customerName,
+            session == null ? "could not start a session (table full)" : "logged in", accountId));
+        return session;
+    }
+    
+    /**
+     * End a session, e.g. when the card is returned
+     */
+    public void logout(ATMSession session) {
+        sessionTable.close(session.getToken());
+        logAtmEvent(String.format("ATM %s: Customer %s logged out of Account %d", 
+            session.getAtmId(), session.getCustomerName(), session.getAccountId()));
+    }
+    
+    public int getActiveSessionCount() {
+        return sessionTable.size();
+    }
+    
+    /**
+     * Create withdraw request within a session
+     */
+    public ATMRequest createWithdrawRequest(ATMSession session, double amount) {
+        Transaction transaction = new Transaction(TransactionType.WITHDRAW, session.getAccountId(), amount, SESSION_PIN);
+        return sessionRequest(session, transaction);
+    }
+    
+    /**
+     * Create deposit request within a session
+     */
+    public ATMRequest createDepositRequest(ATMSession session, double amount) {
+        Transaction transaction = new Transaction(TransactionType.DEPOSIT, session.getAccountId(), amount, SESSION_PIN);
+        return sessionRequest(session, transaction);
+    }
+    
+    /**
+     * Create transfer request within a session
+     */
+    public ATMRequest createTransferRequest(ATMSession session, int toAccountId, double amount) {
+        Transaction transaction = new Transaction(TransactionType.TRANSFER, session.getAccountId(), 
+            toAccountId, amount, SESSION_PIN);
+        return sessionRequest(session, transaction);
+    }
+    
+    /**
+     * Create multi-leg transfer request within a session
+     */
+    public ATMRequest createMultiTransferRequest(ATMSession session, List<TransferLeg> legs) {
+        return sessionRequest(session, new Transaction(session.getAccountId(), legs, SESSION_PIN));
+    }
+    
+    /**
+     * Create balance inquiry request within a session
+     */
+    public ATMRequest createBalanceInquiryRequest(ATMSession session) {
+        Transaction transaction = new Transaction(TransactionType.BALANCE_INQUIRY, session.getAccountId(), 0, SESSION_PIN);
+        return sessionRequest(session, transaction);
+    }
+    
+    private ATMRequest sessionRequest(ATMSession session, Transaction transaction) {
+        return new ATMRequest(transaction, session.getAtmId(), session.getCustomerName(), session.getToken());
     }
     
     /**
@@ -75,6 +222,15 @@ public class ATMService {
         return new ATMRequest(transaction, atmId, customerName);
     }
     
+    /**
+     * Create multi-leg transfer request (one debit, many credits)
+     */
+    public ATMRequest createMultiTransferRequest(String atmId, String customerName, 
+                                                int fromAccountId, List<TransferLeg> legs, int pin) {
+        Transaction transaction = new Transaction(fromAccountId, legs, pin);
+        return new ATMRequest(transaction, atmId, customerName);
+    }
+    
     /**
      * Create balance inquiry request
      */
@@ -0,0 +1,59 @@
+package atm;
+
+/**
+ * Authenticated customer session at one ATM, identified by an opaque token
+ */
+public class ATMSession {
+    private final String token;
+    private final int accountId;
+    private final String atmId;
+    private final String customerName;
+    private final long createdMillis;
+    private volatile long expiresAtMillis; // slides forward on every use
+    
+    ATMSession(String token, int accountId, String atmId, String customerName, long expiresAtMillis) {
+        this.token = token;
+        this.accountId = accountId;
+        this.atmId = atmId;
+        this.customerName = customerName;
+        this.createdMillis = System.currentTimeMillis();
+        this.expiresAtMillis = expiresAtMillis;
+    }
+    
+    public String getToken() {
+        return token;
+    }
+    
+    public int getAccountId() {
+        return accountId;
+    }
+    
+    public String getAtmId() {
+        return atmId;
+    }
+    
+    public String getCustomerName() {
+        return customerName;
+    }
+    
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+    
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+    
+    boolean isExpired(long now) {
+        return now >= expiresAtMillis;
+    }
+    
+    void extendTo(long expiresAtMillis) {
+        this.expiresAtMillis = expiresAtMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ATMSession[ATM=%s, Account=%d, Customer=%s]", atmId, accountId, customerName);
+    }
+}
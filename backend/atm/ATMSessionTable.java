@@ -0,0 +1,82 @@
+package atm;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent table of open ATM sessions keyed by token.
+ *
+ * Validating a request is one hash lookup plus a few field comparisons. Sessions expire
+ * after a period of inactivity; expired entries are removed when they are next looked up,
+ * and swept in bulk whenever the table reaches its capacity.
+ */
+public class ATMSessionTable {
+    private static final int TOKEN_BYTES = 16;
+    
+    private final ConcurrentHashMap<String, ATMSession> sessions;
+    private final SecureRandom random;
+    private final long idleTimeoutMs;
+    private final int maxSessions;
+    
+    public ATMSessionTable(long idleTimeoutMs, int maxSessions) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxSessions = maxSessions;
+    }
+    
+    /**
+     * Open a session for an authenticated customer, or return null if the table is full
+     */
+    public ATMSession open(int accountId, String atmId, String customerName) {
+        if (sessions.size() >= maxSessions) {
+            long now = System.currentTimeMillis();
+            sessions.values().removeIf(session -> session.isExpired(now));
+            if (sessions.size() >= maxSessions) {
+                return null;
+            }
+        }
+        while (true) {
+            ATMSession session = new ATMSession(newToken(), accountId, atmId, customerName,
+                System.currentTimeMillis() + idleTimeoutMs);
+            if (sessions.putIfAbsent(session.getToken(), session) == null) {
+                return session;
+            }
+        }
+    }
+    
+    /**
+     * Return the live session for a token if it belongs to this ATM and account, extending it
+     */
+    public ATMSession validate(String token, String atmId, int accountId) {
+        ATMSession session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        if (session.getAccountId() != accountId || !session.getAtmId().equals(atmId)) {
+            return null;
+        }
+        session.extendTo(now + idleTimeoutMs);
+        return session;
+    }
+    
+    public void close(String token) {
+        sessions.remove(token);
+    }
+    
+    public int size() {
+        return sessions.size();
+    }
+    
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,98 @@
+package audit;
+
+/**
+ * Outcome of one audit round
+ */
+public class AuditReport {
+    private final long round;
+    private final long completedAtMillis;
+    private final int accountsChecked;
+    private final int accountsInFlight;
+    private final long expectedTotalCents;
+    private final long actualTotalCents;
+    private final long recordsApplied;
+    private final long droppedRecords;
+    private final int newDiscrepancies;
+    private final long elapsedNanos;
+
+    AuditReport(long round, int accountsChecked, int accountsInFlight, long expectedTotalCents,
+                long actualTotalCents, long recordsApplied, long droppedRecords, int newDiscrepancies,
+                long elapsedNanos) {
+        this.round = round;
+        this.completedAtMillis = System.currentTimeMillis();
+        this.accountsChecked = accountsChecked;
+        this.accountsInFlight = accountsInFlight;
+        this.expectedTotalCents = expectedTotalCents;
+        this.actualTotalCents = actualTotalCents;
+        this.recordsApplied = recordsApplied;
+        this.droppedRecords = droppedRecords;
+        this.newDiscrepancies = newDiscrepancies;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRound() {
+        return round;
+    }
+
+    public long getCompletedAtMillis() {
+        return completedAtMillis;
+    }
+
+    public int getAccountsChecked() {
+        return accountsChecked;
+    }
+
+    /**
+     * Accounts changed by transactions whose journal records had not arrived yet; they are
+     * checked again next round
+     */
+    public int getAccountsInFlight() {
+        return accountsInFlight;
+    }
+
+    /**
+     * True if no account was in flight, so the totals compare one consistent cut
+     */
+    public boolean isConsistent() {
+        return accountsInFlight == 0;
+    }
+
+    public long getExpectedTotalCents() {
+        return expectedTotalCents;
+    }
+
+    public long getActualTotalCents() {
+        return actualTotalCents;
+    }
+
+    /**
+     * Journal records applied since the auditor started
+     */
+    public long getRecordsApplied() {
+        return recordsApplied;
+    }
+
+    /**
+     * Records lost because the journal was full; each loss forces a rebaseline
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public int getNewDiscrepancies() {
+        return newDiscrepancies;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Audit round %d: %d accounts, %d in flight, expected=$%.2f actual=$%.2f%s, "
+                + "records=%d dropped=%d, new discrepancies=%d, %.1f ms",
+            round, accountsChecked, accountsInFlight, expectedTotalCents / 100.0, actualTotalCents / 100.0,
+            isConsistent() ? "" : " (partial cut)", recordsApplied, droppedRecords, newDiscrepancies,
+            elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,403 @@
+package audit;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Continuously proves that money is neither created nor destroyed.
+ *
+ * Writers journal every committed balance change as a delta into a lock-free ring of
+ * primitives: one compare-and-set and a few array stores, no allocation and no lock, and
+ * nothing else happens on the transaction path. A transfer is journaled as one group of
+ * debit and credit deltas, which must net to zero.
+ *
+ * The audit thread drains the ring into a private ledger of expected balance and expected
+ * transaction count per account, then compares each account's snapshot against it. Every
+ * committed change bumps the account's transaction count exactly once, so the count tells
+ * whether the snapshot and the ledger describe the same set of changes: equal counts make
+ * a consistent cut for that account and the balances must agree; differing counts mean a
+ * change is still on its way into the journal, unless the account stays quiet and the
+ * counts stay apart. The expected bank total is the opening total plus all deposits,
+ * withdrawals and adjustments; it is compared with the snapshot total whenever no account
+ * is in flight. Each finding is reported once, after which the ledger adopts the actual
+ * state of the accounts involved.
+ */
+public class ConservationAuditor {
+    private static final int DEFAULT_JOURNAL_CAPACITY = 1 << 16;
+    private static final double DEFAULT_TOLERANCE = 0.01;
+    private static final int QUIET_ROUNDS = 2;
+    private static final int MAX_DISCREPANCIES = 1000;
+
+    private final AccountRepository accountRepository;
+    private final double tolerance;
+    // Delta journal; slots are claimed by writers and freed by the audit thread
+    private final int capacity;
+    private final int mask;
+    private final int[] accountIds;
+    private final double[] amounts;
+    private final int[] groupInfo; // at the first slot of a group: size << 1 | external
+    private final AtomicLongArray published;
+    private final AtomicLong claimCursor;
+    private volatile long drainCursor;
+    private final LongAdder droppedRecords;
+    // Owned by the audit thread, see auditNow
+    private final Map<Integer, Ledger> ledgers;
+    private double baseline;
+    private double external;
+    private long recordsApplied;
+    private long droppedSeen;
+    private long round;
+    private volatile AuditReport lastReport;
+    private final ArrayDeque<Discrepancy> discrepancies;
+    private final AtomicLong discrepancyCount;
+    private final ScheduledExecutorService auditExecutor;
+
+    public ConservationAuditor(AccountRepository accountRepository, long intervalMs) {
+        this(accountRepository, intervalMs, DEFAULT_JOURNAL_CAPACITY, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param journalCapacity deltas that may wait for the audit thread (rounded up to a power of two)
+     * @param tolerance largest balance difference in dollars still taken as rounding
+     */
+    public ConservationAuditor(AccountRepository accountRepository, long intervalMs, int journalCapacity,
+                               double tolerance) {
+        this.accountRepository = accountRepository;
+        this.tolerance = tolerance;
+        this.capacity = Integer.highestOneBit(Math.max(2, journalCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.accountIds = new int[capacity];
+        this.amounts = new double[capacity];
+        this.groupInfo = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.claimCursor = new AtomicLong(0);
+        this.droppedRecords = new LongAdder();
+        this.ledgers = new HashMap<>();
+        this.discrepancies = new ArrayDeque<>();
+        this.discrepancyCount = new AtomicLong(0);
+        synchronized (this) {
+            rebaseAll();
+        }
+        this.auditExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "conservation-auditor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        auditExecutor.scheduleWithFixedDelay(this::auditQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Money paid into an account from outside the bank
+     */
+    public void recordDeposit(int accountId, double amount) {
+        recordExternal(accountId, amount);
+    }
+
+    /**
+     * Money paid out of an account to outside the bank
+     */
+    public void recordWithdrawal(int accountId, double amount) {
+        recordExternal(accountId, -amount);
+    }
+
+    /**
+     * Any other change booked against the bank itself, e.g. interest (positive) or fees
+     * (negative) posted by the end-of-day batch
+     */
+    public void recordAdjustment(int accountId, double amount) {
+        recordExternal(accountId, amount);
+    }
+
+    public void recordTransfer(int fromAccountId, int toAccountId, double amount) {
+        long sequence = claim(2);
+        if (sequence >= 0) {
+            publish(sequence + 1, toAccountId, amount, 0);
+            publish(sequence, fromAccountId, -amount, 2 << 1);
+        }
+    }
+
+    /**
+     * One debit of total fanned out to the given credits
+     */
+    public void recordMultiTransfer(int fromAccountId, double total, int[] targetAccountIds, double[] legAmounts) {
+        int size = targetAccountIds.length + 1;
+        long sequence = claim(size);
+        if (sequence >= 0) {
+            for (int i = 0; i < targetAccountIds.length; i++) {
+                publish(sequence + 1 + i, targetAccountIds[i], legAmounts[i], 0);
+            }
+            publish(sequence, fromAccountId, -total, size << 1);
+        }
+    }
+
+    private void recordExternal(int accountId, double amount) {
+        long sequence = claim(1);
+        if (sequence >= 0) {
+            publish(sequence, accountId, amount, 1 << 1 | 1);
+        }
+    }
+
+    /**
+     * Claim size consecutive slots; -1 if the journal is full, which costs the auditor a
+     * rebaseline but never blocks the writer
+     */
+    private long claim(int size) {
+        while (true) {
+            long start = claimCursor.get();
+            if (start + size - drainCursor > capacity) {
+                droppedRecords.increment();
+                return -1;
+            }
+            if (claimCursor.compareAndSet(start, start + size)) {
+                return start;
+            }
+        }
+    }
+
+    private void publish(long sequence, int accountId, double amount, int info) {
+        int index = (int) sequence & mask;
+        accountIds[index] = accountId;
+        amounts[index] = amount;
+        groupInfo[index] = info;
+        published.set(index, sequence);
+    }
+
+    /**
+     * Run one audit round now on the calling thread
+     */
+    public synchronized AuditReport auditNow() {
+        long start = System.nanoTime();
+        List<Discrepancy> found = new ArrayList<>();
+        drain(found);
+        long dropped = droppedRecords.sum();
+        if (dropped != droppedSeen) {
+            // Lost deltas cannot be reconstructed: start over from the current balances
+            droppedSeen = dropped;
+            rebaseAll();
+        }
+
+        int checked = 0;
+        int inFlight = 0;
+        double actualTotal = 0;
+        int accountCount = accountRepository.getAccountCount();
+        for (int position = 0; position < accountCount; position++) {
+            Account account = accountRepository.getAccountAt(position);
+            if (account == null) {
+                continue;
+            }
+            checked++;
+            Ledger ledger = ledgers.get(account.getAccountId());
+            if (ledger == null) {
+                actualTotal += adopt(account).balance; // opened since the last round
+                continue;
+            }
+            AccountSnapshot snapshot = account.snapshot();
+            long count = snapshot.getTransactionCount();
+            actualTotal += snapshot.getBalance();
+            if (count != ledger.lastSeenCount) {
+                ledger.lastSeenCount = count;
+                ledger.quietRounds = 0;
+            } else {
+                ledger.quietRounds++;
+            }
+            if (count == ledger.count) {
+                if (Math.abs(snapshot.getBalance() - ledger.balance) > tolerance) {
+                    found.add(new Discrepancy(DiscrepancyKind.BALANCE_MISMATCH, new int[]{account.getAccountId()},
+                        toCents(ledger.balance), toCents(snapshot.getBalance()), ledger.count, count));
+                    rebase(ledger, snapshot.getBalance(), count);
+                }
+                ledger.provisional = false;
+            } else if (ledger.quietRounds >= QUIET_ROUNDS) {
+                if (!ledger.provisional) {
+                    found.add(new Discrepancy(DiscrepancyKind.COUNT_MISMATCH, new int[]{account.getAccountId()},
+                        toCents(ledger.balance), toCents(snapshot.getBalance()), ledger.count, count));
+                }
+                rebase(ledger, snapshot.getBalance(), count);
+            } else {
+                inFlight++;
+            }
+        }
+
+        double expectedTotal = baseline + external;
+        if (inFlight == 0 && Math.abs(actualTotal - expectedTotal) > tolerance * Math.max(1, checked)) {
+            found.add(new Discrepancy(DiscrepancyKind.TOTAL_MISMATCH, new int[0], toCents(expectedTotal),
+                toCents(actualTotal), recordsApplied, recordsApplied));
+            baseline += actualTotal - expectedTotal;
+        }
+        for (Discrepancy discrepancy : found) {
+            report(discrepancy);
+        }
+        AuditReport report = new AuditReport(++round, checked, inFlight, toCents(expectedTotal),
+            toCents(actualTotal), recordsApplied, dropped, found.size(), System.nanoTime() - start);
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * Apply every complete group waiting in the journal to the ledger
+     */
+    private void drain(List<Discrepancy> found) {
+        long next = drainCursor;
+        while (true) {
+            int head = (int) next & mask;
+            if (published.get(head) != next) {
+                break;
+            }
+            int size = groupInfo[head] >>> 1;
+            boolean external = (groupInfo[head] & 1) != 0;
+            for (int i = 1; i < size; i++) {
+                if (published.get((int) (next + i) & mask) != next + i) {
+                    return; // the writer is still publishing the rest of the group
+                }
+            }
+            applyGroup(next, size, external, found);
+            next += size;
+            recordsApplied += size;
+            drainCursor = next;
+        }
+    }
+
+    private void applyGroup(long first, int size, boolean external, List<Discrepancy> found) {
+        double net = 0;
+        boolean adopted = false;
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            int index = (int) (first + i) & mask;
+            ids[i] = accountIds[index];
+            double amount = amounts[index];
+            net += amount;
+            Ledger ledger = ledgers.get(ids[i]);
+            if (ledger == null) {
+                // First sight of a new account: its snapshot already contains this change
+                Account account = accountRepository.getAccount(ids[i]);
+                if (account != null) {
+                    adopt(account);
+                }
+                adopted = true;
+                net -= amount;
+                continue;
+            }
+            ledger.balance += amount;
+            ledger.count++;
+        }
+        if (external) {
+            this.external += net;
+        } else if (!adopted && Math.abs(net) > tolerance) {
+            found.add(new Discrepancy(DiscrepancyKind.UNBALANCED_TRANSFER, ids, 0, toCents(net), size, size));
+            baseline += net; // the money now exists; expect it from here on
+        }
+    }
+
+    private Ledger adopt(Account account) {
+        AccountSnapshot snapshot = account.snapshot();
+        Ledger ledger = new Ledger(snapshot.getBalance(), snapshot.getTransactionCount());
+        ledgers.put(account.getAccountId(), ledger);
+        baseline += ledger.balance;
+        return ledger;
+    }
+
+    private void rebase(Ledger ledger, double balance, long count) {
+        baseline += balance - ledger.balance;
+        ledger.balance = balance;
+        ledger.count = count;
+        ledger.provisional = false;
+    }
+
+    /**
+     * Take the current balances as the new truth. Changes in flight while this runs may
+     * leave a ledger one change off, so every ledger starts provisional: its first quiet
+     * count mismatch is corrected silently instead of reported.
+     */
+    private void rebaseAll() {
+        ledgers.clear();
+        baseline = 0;
+        external = 0;
+        int accountCount = accountRepository.getAccountCount();
+        for (int position = 0; position < accountCount; position++) {
+            Account account = accountRepository.getAccountAt(position);
+            if (account != null) {
+                adopt(account);
+            }
+        }
+    }
+
+    private void report(Discrepancy discrepancy) {
+        System.err.println("Conservation audit: " + discrepancy);
+        discrepancyCount.incrementAndGet();
+        synchronized (discrepancies) {
+            if (discrepancies.size() == MAX_DISCREPANCIES) {
+                discrepancies.removeFirst();
+            }
+            discrepancies.addLast(discrepancy);
+        }
+    }
+
+    /**
+     * Result of the latest round, or null before the first
+     */
+    public AuditReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * The most recent findings, oldest first
+     */
+    public List<Discrepancy> getDiscrepancies() {
+        synchronized (discrepancies) {
+            return new ArrayList<>(discrepancies);
+        }
+    }
+
+    public long getDiscrepancyCount() {
+        return discrepancyCount.get();
+    }
+
+    public void shutdown() {
+        auditExecutor.shutdownNow();
+    }
+
+    private void auditQuietly() {
+        try {
+            auditNow();
+        } catch (RuntimeException e) {
+            System.err.println("Conservation audit failed: " + e.getMessage());
+        }
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Expected state of one account as far as the journal has told
+     */
+    private static final class Ledger {
+        double balance;
+        long count;
+        long lastSeenCount;
+        int quietRounds;
+        boolean provisional = true;
+
+        Ledger(double balance, long count) {
+            this.balance = balance;
+            this.count = count;
+            this.lastSeenCount = count;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package audit;
+
+import util.DateTimeUtil;
+
+import java.util.Arrays;
+
+/**
+ * One finding of the conservation auditor, with the accounts involved
+ */
+public class Discrepancy {
+    private final DiscrepancyKind kind;
+    private final int[] accountIds;
+    private final long expectedCents;
+    private final long actualCents;
+    private final long expectedCount;
+    private final long actualCount;
+    private final long detectedAtMillis;
+
+    Discrepancy(DiscrepancyKind kind, int[] accountIds, long expectedCents, long actualCents,
+                long expectedCount, long actualCount) {
+        this.kind = kind;
+        this.accountIds = accountIds;
+        this.expectedCents = expectedCents;
+        this.actualCents = actualCents;
+        this.expectedCount = expectedCount;
+        this.actualCount = actualCount;
+        this.detectedAtMillis = System.currentTimeMillis();
+    }
+
+    public DiscrepancyKind getKind() {
+        return kind;
+    }
+
+    public int[] getAccountIds() {
+        return accountIds.clone();
+    }
+
+    public long getExpectedCents() {
+        return expectedCents;
+    }
+
+    public long getActualCents() {
+        return actualCents;
+    }
+
+    /**
+     * Journaled transaction count, or the number of transfer legs for UNBALANCED_TRANSFER
+     */
+    public long getExpectedCount() {
+        return expectedCount;
+    }
+
+    public long getActualCount() {
+        return actualCount;
+    }
+
+    public long getDifferenceCents() {
+        return actualCents - expectedCents;
+    }
+
+    public long getDetectedAtMillis() {
+        return detectedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s accounts=%s expected=$%.2f/%d actual=$%.2f/%d difference=$%.2f",
+            DateTimeUtil.format(detectedAtMillis), kind, Arrays.toString(accountIds), expectedCents / 100.0,
+            expectedCount, actualCents / 100.0, actualCount, getDifferenceCents() / 100.0);
+    }
+}
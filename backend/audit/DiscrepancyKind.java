@@ -0,0 +1,16 @@
+package audit;
+
+/**
+ * What a conservation audit found wrong
+ */
+public enum DiscrepancyKind {
+    /** The account has seen every journaled change, yet its balance differs from their sum */
+    BALANCE_MISMATCH,
+    /** The account's transaction count stayed apart from the journaled count while it was quiet:
+     *  a change bypassed the journal, was counted twice, or was journaled but never applied */
+    COUNT_MISMATCH,
+    /** The debits and credits of one transfer did not net to zero */
+    UNBALANCED_TRANSFER,
+    /** With no account in flight, the bank total differs from the journaled total */
+    TOTAL_MISMATCH
+}
@@ -0,0 +1,77 @@
+package batch;
+
+/**
+ * Fixed-point interest and fee arithmetic. All amounts are whole cents held in longs;
+ * division rounds half to even so the bank does not drift in either direction.
+ */
+public class AccrualCalculator {
+    public static final int DAYS_PER_YEAR = 365;
+    private static final long BASIS_POINTS = 10_000L;
+    
+    private final int savingsAnnualRateBps;
+    private final long salaryMonthlyFeeCents;
+    private final long salaryFeeWaiverCents;
+    
+    /**
+     * @param savingsAnnualRateBps   savings interest, in basis points per year (350 = 3.50%)
+     * @param salaryMonthlyFeeCents  month-end maintenance fee for salary accounts
+     * @param salaryFeeWaiverCents   balance at or above which the fee is waived
+     */
+    public AccrualCalculator(int savingsAnnualRateBps, long salaryMonthlyFeeCents, long salaryFeeWaiverCents) {
+        if (savingsAnnualRateBps < 0 || salaryMonthlyFeeCents < 0) {
+            throw new IllegalArgumentException("Rates and fees must not be negative");
+        }
+        this.savingsAnnualRateBps = savingsAnnualRateBps;
+        this.salaryMonthlyFeeCents = salaryMonthlyFeeCents;
+        this.salaryFeeWaiverCents = salaryFeeWaiverCents;
+    }
+    
+    /**
+     * Default schedule: 3.50% on savings, $2.00 month-end fee on salary accounts under $1000
+     */
+    public static AccrualCalculator standard() {
+        return new AccrualCalculator(350, 200, 100_000);
+    }
+    
+    /**
+     * Simple interest for the given number of days on a balance in cents
+     */
+    public long interestCents(long balanceCents, int days) {
+        if (balanceCents <= 0 || days <= 0) {
+            return 0;
+        }
+        long numerator = Math.multiplyExact(Math.multiplyExact(balanceCents, (long) savingsAnnualRateBps), days);
+        return divideHalfEven(numerator, BASIS_POINTS * DAYS_PER_YEAR);
+    }
+    
+    /**
+     * Month-end fee for a salary account; never takes the balance below zero
+     */
+    public long monthlyFeeCents(long balanceCents) {
+        if (balanceCents >= salaryFeeWaiverCents || balanceCents <= 0) {
+            return 0;
+        }
+        return Math.min(salaryMonthlyFeeCents, balanceCents);
+    }
+    
+    public int getSavingsAnnualRateBps() {
+        return savingsAnnualRateBps;
+    }
+    
+    public long getSalaryMonthlyFeeCents() {
+        return salaryMonthlyFeeCents;
+    }
+    
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+    
+    static long divideHalfEven(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long twiceRemainder = 2 * (numerator % denominator);
+        if (twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) == 1)) {
+            quotient++;
+        }
+        return quotient;
+    }
+}
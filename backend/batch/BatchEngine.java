@@ -0,0 +1,266 @@
+package batch;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+import audit.ConservationAuditor;
+import replication.ReplicationPrimary;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * End-of-day batch: daily interest on savings accounts and, on the last day of the month,
+ * the maintenance fee on salary accounts.
+ *
+ * The repository is cut into fixed-size partitions by insertion position and the partitions
+ * are processed in parallel with fork/join. Each account is posted under its own monitor
+ * only, so online transactions keep running. Every partition appends one block of compact
+ * journal records ending in a checkpoint marker; running the same business date again skips
+ * finished partitions and already-posted accounts, so an interrupted run resumes where it
+ * stopped and a finished run is never applied twice.
+ */
+public class BatchEngine {
+    public static final String BATCH_JOURNAL_FILE = "logs/batch_journal.bin";
+    public static final int DEFAULT_PARTITION_SIZE = 4096;
+    private static final int PARTITIONS_PER_LEAF = 1;
+
+    private final AccountRepository accountRepository;
+    private final AccrualCalculator calculator;
+    private final BatchJournal journal;
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+    private final AtomicBoolean cancelled;
+    private volatile ConservationAuditor auditor; // null unless postings are audited
+    private volatile PostingListener postingListener; // null unless someone follows the postings
+    private volatile ReplicationPrimary replication; // null unless postings go to a hot standby
+
+    public BatchEngine(AccountRepository accountRepository) {
+        this(accountRepository, AccrualCalculator.standard(), BATCH_JOURNAL_FILE,
+            Runtime.getRuntime().availableProcessors(), DEFAULT_PARTITION_SIZE);
+    }
+
+    public BatchEngine(AccountRepository accountRepository, AccrualCalculator calculator,
+                       String journalFile, int parallelism, int partitionSize) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive");
+        }
+        this.accountRepository = accountRepository;
+        this.calculator = calculator;
+        this.journal = new BatchJournal(journalFile);
+        this.pool = new ForkJoinPool(parallelism);
+        this.partitionSize = partitionSize;
+        this.cancelled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Run (or resume) the end-of-day batch for a business date
+     */
+    public BatchReport runEndOfDay(LocalDate businessDate) {
+        long start = System.nanoTime();
+        int runDate = businessDate.getYear() * 10_000 + businessDate.getMonthValue() * 100 + businessDate.getDayOfMonth();
+        boolean monthEnd = businessDate.getDayOfMonth() == businessDate.lengthOfMonth();
+        BatchJournal.Checkpoint checkpoint = journal.readCheckpoint(runDate);
+        if (!checkpoint.partitionedAs(partitionSize)) {
+            // Partition numbers from a run with another size name other account ranges
+            System.err.println("Batch journal for " + runDate + " was written with a different partition size; "
+                + "resuming by posted accounts only");
+            checkpoint.dropDonePartitions();
+        }
+        cancelled.set(false);
+
+        // Positions never change once assigned, so partitions are stable across resumes
+        int accountCount = accountRepository.getAccountCount();
+        int partitions = (accountCount + partitionSize - 1) / partitionSize;
+        Totals totals = pool.invoke(new PartitionRange(0, partitions, accountCount, runDate, monthEnd, checkpoint));
+
+        return new BatchReport(runDate, totals.failedPartitions == 0 && !cancelled.get(), partitions,
+            totals.skippedPartitions, totals.posted, totals.skipped, totals.interestCents, totals.feeCents,
+            System.nanoTime() - start);
+    }
+
+    /**
+     * Journal every interest and fee posting to a conservation auditor from now on
+     */
+    public void enableAudit(ConservationAuditor auditor) {
+        this.auditor = auditor;
+    }
+
+    /**
+     * Replicate the accounts each partition posted to once it is journaled, from now on
+     */
+    public void enableReplication(ReplicationPrimary replication) {
+        this.replication = replication;
+    }
+
+    /**
+     * Report every partition's postings to the listener once they are journaled, from now on
+     */
+    public void setPostingListener(PostingListener listener) {
+        this.postingListener = listener;
+    }
+
+    /**
+     * Stop the running batch after the accounts in flight; run the same date again to resume
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+        journal.close();
+    }
+
+    /**
+     * Post one account under its monitor; the balance is read and changed atomically.
+     * Returns whether the balance changed.
+     */
+    private boolean postAccount(Account account, boolean monthEnd, BatchJournal.Block block, Totals totals) {
+        boolean changed = false;
+        ConservationAuditor auditor = this.auditor;
+        synchronized (account) {
+            long balanceCents = AccrualCalculator.toCents(account.getBalance());
+            if (account instanceof SavingsAccount) {
+                long interest = calculator.interestCents(balanceCents, 1);
+                if (interest > 0 && account.deposit(interest / 100.0)) {
+                    block.add(BatchJournal.INTEREST, account.getAccountId(), interest);
+                    if (auditor != null) {
+                        auditor.recordAdjustment(account.getAccountId(), interest / 100.0);
+                    }
+                    totals.interestCents += interest;
+                    changed = true;
+                }
+            } else if (monthEnd && account instanceof SalaryAccount) {
+                long fee = calculator.monthlyFeeCents(balanceCents);
+                if (fee > 0 && account.withdraw(fee / 100.0)) {
+                    block.add(BatchJournal.FEE, account.getAccountId(), fee);
+                    if (auditor != null) {
+                        auditor.recordAdjustment(account.getAccountId(), -fee / 100.0);
+                    }
+                    totals.feeCents += fee;
+                    changed = true;
+                }
+            }
+        }
+        totals.posted++;
+        return changed;
+    }
+
+    /**
+     * Sums over a range of partitions; each task owns its own instance
+     */
+    private static class Totals {
+        long posted;
+        long skipped;
+        long interestCents;
+        long feeCents;
+        int skippedPartitions;
+        int failedPartitions;
+
+        Totals add(Totals other) {
+            posted += other.posted;
+            skipped += other.skipped;
+            interestCents += other.interestCents;
+            feeCents += other.feeCents;
+            skippedPartitions += other.skippedPartitions;
+            failedPartitions += other.failedPartitions;
+            return this;
+        }
+    }
+
+    private class PartitionRange extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+        private final int firstPartition;
+        private final int endPartition;
+        private final int accountCount;
+        private final int runDate;
+        private final boolean monthEnd;
+        private final BatchJournal.Checkpoint checkpoint;
+
+        PartitionRange(int firstPartition, int endPartition, int accountCount, int runDate,
+                       boolean monthEnd, BatchJournal.Checkpoint checkpoint) {
+            this.firstPartition = firstPartition;
+            this.endPartition = endPartition;
+            this.accountCount = accountCount;
+            this.runDate = runDate;
+            this.monthEnd = monthEnd;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (endPartition - firstPartition <= PARTITIONS_PER_LEAF) {
+                Totals totals = new Totals();
+                for (int partition = firstPartition; partition < endPartition; partition++) {
+                    runPartition(partition, totals);
+                }
+                return totals;
+            }
+            int middle = (firstPartition + endPartition) >>> 1;
+            PartitionRange left = new PartitionRange(firstPartition, middle, accountCount, runDate, monthEnd, checkpoint);
+            PartitionRange right = new PartitionRange(middle, endPartition, accountCount, runDate, monthEnd, checkpoint);
+            left.fork();
+            return right.compute().add(left.join());
+        }
+
+        private void runPartition(int partition, Totals totals) {
+            if (checkpoint.donePartitions.contains(partition)) {
+                totals.skippedPartitions++;
+                return;
+            }
+            int first = partition * partitionSize;
+            int end = Math.min(accountCount, first + partitionSize);
+            BatchJournal.Block block = new BatchJournal.Block(runDate, end - first + 1);
+            ReplicationPrimary primary = replication;
+            int[] changed = primary == null ? null : new int[end - first];
+            int changedCount = 0;
+            boolean finished = true;
+            try {
+                for (int position = first; position < end; position++) {
+                    if (cancelled.get()) {
+                        finished = false;
+                        break;
+                    }
+                    Account account = accountRepository.getAccountAt(position);
+                    if (account == null) {
+                        continue;
+                    }
+                    if (checkpoint.postedAccounts.contains(account.getAccountId())) {
+                        totals.skipped++;
+                        continue;
+                    }
+                    if (postAccount(account, monthEnd, block, totals) && changed != null) {
+                        changed[changedCount++] = account.getAccountId();
+                    }
+                }
+                if (finished) {
+                    block.add(BatchJournal.PARTITION_DONE, partition, partitionSize);
+                }
+            } finally {
+                // Whatever was posted is journaled, even if the partition stopped early
+                try {
+                    journal.append(block);
+                    PostingListener listener = postingListener;
+                    if (listener != null && (block.interestPostings > 0 || block.feePostings > 0)) {
+                        listener.postingsJournaled(BatchJournal.toDate(runDate), block.interestPostings,
+                            block.interestCents, block.feePostings, block.feeCents);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error writing batch journal for partition " + partition + ": " + e.getMessage());
+                    finished = false;
+                }
+                if (primary != null && changedCount > 0) {
+                    primary.commit(changed, changedCount);
+                }
+            }
+            if (!finished) {
+                totals.failedPartitions++;
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package batch;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Append-only binary journal of batch postings and partition checkpoints.
+ *
+ * Every record is 17 bytes: kind (1), run date as yyyymmdd (4), account id or partition
+ * number (4), amount in cents (8; for a partition marker, the partition size the run
+ * used). Each partition writes its records as one block, so concurrent partitions never
+ * interleave within a block.
+ */
+public class BatchJournal {
+    static final byte INTEREST = 1;
+    static final byte FEE = 2;
+    static final byte PARTITION_DONE = 3;
+    static final int RECORD_BYTES = 17;
+    
+    private final String journalFile;
+    private DataOutputStream out;
+    
+    public BatchJournal(String journalFile) {
+        this.journalFile = journalFile;
+    }
+    
+    /**
+     * Accounts already posted and partitions already finished for a run, read from disk
+     */
+    public Checkpoint readCheckpoint(int runDate) {
+        Checkpoint checkpoint = new Checkpoint();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                byte kind = in.readByte();
+                int date = in.readInt();
+                int id = in.readInt();
+                long amount = in.readLong();
+                if (date != runDate) {
+                    continue;
+                }
+                if (kind == PARTITION_DONE) {
+                    checkpoint.donePartitions.add(id);
+                    checkpoint.partitionSizes.add(amount);
+                } else {
+                    checkpoint.postedAccounts.add(id);
+                }
+            }
+        } catch (EOFException e) {
+            // End of journal; a torn final record is simply ignored
+        } catch (IOException e) {
+            // No journal yet
+        }
+        return checkpoint;
+    }
+    
+    /**
+     * Hand the listener the interest and fee totals of every business date in the journal,
+     * in date order
+     */
+    public void replayPostings(PostingListener listener) {
+        Map<Integer, long[]> totals = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                byte kind = in.readByte();
+                int date = in.readInt();
+                in.readInt();
+                long amount = in.readLong();
+                if (kind == INTEREST || kind == FEE) {
+                    long[] sums = totals.computeIfAbsent(date, k -> new long[4]);
+                    int first = kind == INTEREST ? 0 : 2;
+                    sums[first]++;
+                    sums[first + 1] += amount;
+                }
+            }
+        } catch (EOFException e) {
+            // End of journal; a torn final record is simply ignored
+        } catch (IOException e) {
+            // No journal yet
+        }
+        for (Map.Entry<Integer, long[]> entry : totals.entrySet()) {
+            long[] sums = entry.getValue();
+            listener.postingsJournaled(toDate(entry.getKey()), sums[0], sums[1], sums[2], sums[3]);
+        }
+    }
+    
+    /**
+     * Business date of a yyyymmdd run date
+     */
+    static LocalDate toDate(int runDate) {
+        return LocalDate.of(runDate / 10_000, runDate / 100 % 100, runDate % 100);
+    }
+    
+    /**
+     * Append one partition's block of records
+     */
+    public synchronized void append(Block block) throws IOException {
+        if (block.isEmpty()) {
+            return;
+        }
+        if (out == null) {
+            out = new DataOutputStream(new FileOutputStream(journalFile, true));
+        }
+        block.bytes.writeTo(out);
+        out.flush();
+    }
+    
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing batch journal: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+    
+    /**
+     * Records buffered by one partition before they are appended together
+     */
+    public static class Block {
+        private final ByteArrayOutputStream bytes;
+        private final DataOutputStream data;
+        private final int runDate;
+        long interestPostings;
+        long interestCents;
+        long feePostings;
+        long feeCents;
+        
+        public Block(int runDate, int expectedRecords) {
+            this.bytes = new ByteArrayOutputStream(expectedRecords * RECORD_BYTES);
+            this.data = new DataOutputStream(bytes);
+            this.runDate = runDate;
+        }
+        
+        void add(byte kind, int id, long cents) {
+            try {
+                data.writeByte(kind);
+                data.writeInt(runDate);
+                data.writeInt(id);
+                data.writeLong(cents);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // cannot happen for an in-memory stream
+            }
+            if (kind == INTEREST) {
+                interestPostings++;
+                interestCents += cents;
+            } else if (kind == FEE) {
+                feePostings++;
+                feeCents += cents;
+            }
+        }
+        
+        boolean isEmpty() {
+            return bytes.size() == 0;
+        }
+    }
+    
+    /**
+     * Progress of an interrupted run
+     */
+    public static class Checkpoint {
+        final Set<Integer> donePartitions = new HashSet<>();
+        final Set<Integer> postedAccounts = new HashSet<>();
+        final Set<Long> partitionSizes = new HashSet<>();
+        
+        /**
+         * True if every finished partition was cut with this size, so partition numbers
+         * name the same account ranges (a journal from before sizes were recorded has 0)
+         */
+        boolean partitionedAs(int partitionSize) {
+            return partitionSizes.isEmpty()
+                || (partitionSizes.size() == 1 && partitionSizes.contains((long) partitionSize));
+        }
+        
+        /**
+         * Forget finished partitions; resume then relies on the posted accounts alone
+         */
+        void dropDonePartitions() {
+            donePartitions.clear();
+            partitionSizes.clear();
+        }
+        
+        public int getDonePartitionCount() {
+            return donePartitions.size();
+        }
+        
+        public int getPostedAccountCount() {
+            return postedAccounts.size();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package batch;
+
+/**
+ * Outcome of one batch run
+ */
+public class BatchReport {
+    private final int runDate;
+    private final boolean completed;
+    private final int partitions;
+    private final int partitionsSkipped;
+    private final long accountsPosted;
+    private final long accountsSkipped;
+    private final long interestCents;
+    private final long feeCents;
+    private final long elapsedNanos;
+    
+    public BatchReport(int runDate, boolean completed, int partitions, int partitionsSkipped,
+                       long accountsPosted, long accountsSkipped, long interestCents, long feeCents,
+                       long elapsedNanos) {
+        this.runDate = runDate;
+        this.completed = completed;
+        this.partitions = partitions;
+        this.partitionsSkipped = partitionsSkipped;
+        this.accountsPosted = accountsPosted;
+        this.accountsSkipped = accountsSkipped;
+        this.interestCents = interestCents;
+        this.feeCents = feeCents;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public int getRunDate() {
+        return runDate;
+    }
+    
+    /**
+     * False if the run was cancelled or a partition failed; run again to resume
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+    
+    public long getAccountsPosted() {
+        return accountsPosted;
+    }
+    
+    public long getAccountsSkipped() {
+        return accountsSkipped;
+    }
+    
+    public long getInterestCents() {
+        return interestCents;
+    }
+    
+    public long getFeeCents() {
+        return feeCents;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("BatchReport[date=%d, %s, partitions=%d (skipped %d), posted=%d, skipped=%d, "
+            + "interest=$%.2f, fees=$%.2f, %.1f ms]", runDate, completed ? "COMPLETED" : "INCOMPLETE",
+            partitions, partitionsSkipped, accountsPosted, accountsSkipped, interestCents / 100.0,
+            feeCents / 100.0, elapsedNanos / 1_000_000.0);
+    }
+}
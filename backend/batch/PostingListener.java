@@ -0,0 +1,12 @@
+package batch;
+
+import java.time.LocalDate;
+
+/**
+ * Receives batch postings once they are journaled: from BatchEngine per partition as a run
+ * goes, or from BatchJournal.replayPostings per business date when the journal is read back
+ */
+public interface PostingListener {
+    void postingsJournaled(LocalDate businessDate, long interestPostings, long interestCents,
+                           long feePostings, long feeCents);
+}
@@ -0,0 +1,162 @@
+package bulk;
+
+import accounts.Account;
+import accounts.AccountRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel export of a repository to an account file (see AccountFileFormat).
+ *
+ * Accounts are cut into chunks by insertion position; worker threads render their chunk
+ * into a byte array and the calling thread writes the chunks in position order, so the
+ * file lists accounts the way an import of it will place them. Each account is read from
+ * one snapshot, but accounts change independently while the export runs; export a quiet
+ * repository for a point-in-time copy. The file is written next to the target and moved
+ * over it at the end, so a failed export never leaves a half-written file behind.
+ */
+public class AccountExporter {
+    public static final int DEFAULT_CHUNK_ACCOUNTS = 65_536;
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+    private static final int CSV_BYTES_PER_ACCOUNT = 128;
+
+    private final AccountRepository accountRepository;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final int chunkAccounts;
+
+    public AccountExporter(AccountRepository accountRepository) {
+        this(accountRepository, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_ACCOUNTS);
+    }
+
+    public AccountExporter(AccountRepository accountRepository, int parallelism, int chunkAccounts) {
+        if (parallelism <= 0 || chunkAccounts <= 0) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        this.accountRepository = accountRepository;
+        this.parallelism = parallelism;
+        this.chunkAccounts = chunkAccounts;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "bulk-export-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Export to a file whose format follows from its name
+     */
+    public BulkReport exportFile(Path file) throws IOException {
+        return exportFile(file, AccountFileFormat.forPath(file));
+    }
+
+    public BulkReport exportFile(Path file, AccountFileFormat format) throws IOException {
+        long start = System.nanoTime();
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        int accountCount = accountRepository.getAccountCount();
+        int chunkCount = (accountCount + chunkAccounts - 1) / chunkAccounts;
+        long written = 0;
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            bytes += write(channel, format == AccountFileFormat.CSV
+                ? (CsvAccountFormat.HEADER + "\n").getBytes(StandardCharsets.US_ASCII)
+                : BinaryAccountFormat.fileHeader());
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            try {
+                while (next < chunkCount || !inFlight.isEmpty()) {
+                    while (next < chunkCount && inFlight.size() < parallelism * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                        int first = next++ * chunkAccounts;
+                        int end = Math.min(accountCount, first + chunkAccounts);
+                        inFlight.add(workers.submit(() -> render(format, first, end)));
+                    }
+                    Chunk chunk = inFlight.poll().get();
+                    written += chunk.accounts;
+                    if (chunk.accounts > 0) {
+                        bytes += write(channel, chunk.bytes);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export to " + file + " interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Export to " + file + " failed", e.getCause());
+            } finally {
+                for (Future<Chunk> pending : inFlight) {
+                    pending.cancel(true);
+                }
+            }
+            if (format == AccountFileFormat.BINARY) {
+                bytes += write(channel, BinaryAccountFormat.terminator());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new BulkReport("export", format, file.toString(), written, written, 0, 0, 0, bytes, chunkCount,
+            System.nanoTime() - start, Collections.emptyList());
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * One rendered chunk; the binary format writes it as one block
+     */
+    private static final class Chunk {
+        final int accounts;
+        final byte[] bytes;
+
+        Chunk(int accounts, byte[] bytes) {
+            this.accounts = accounts;
+            this.bytes = bytes;
+        }
+    }
+
+    private Chunk render(AccountFileFormat format, int first, int end) {
+        Account[] accounts = new Account[end - first];
+        int count = 0;
+        for (int position = first; position < end; position++) {
+            Account account = accountRepository.getAccountAt(position);
+            if (account != null) {
+                accounts[count++] = account;
+            }
+        }
+        if (format == AccountFileFormat.BINARY) {
+            return new Chunk(count, BinaryAccountFormat.encodeBlock(accounts, count));
+        }
+        ChunkWriter out = new ChunkWriter(count * CSV_BYTES_PER_ACCOUNT);
+        for (int i = 0; i < count; i++) {
+            CsvAccountFormat.write(accounts[i], out);
+        }
+        return new Chunk(count, out.toByteArray());
+    }
+
+    private static int write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return bytes.length;
+    }
+}
@@ -0,0 +1,28 @@
+package bulk;
+
+import java.nio.file.Path;
+
+/**
+ * File formats understood by the bulk importer and exporter
+ */
+public enum AccountFileFormat {
+    /** One account per line under a header row, see CsvAccountFormat */
+    CSV,
+    /** Blocks of column arrays, see BinaryAccountFormat */
+    BINARY;
+
+    /**
+     * Format implied by a file name: ".csv" is CSV, ".bin" and ".acct" are BINARY
+     */
+    public static AccountFileFormat forPath(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".bin") || name.endsWith(".acct")) {
+            return BINARY;
+        }
+        throw new IllegalArgumentException("Cannot tell the account file format of " + file
+            + " (expected .csv, .bin or .acct)");
+    }
+}
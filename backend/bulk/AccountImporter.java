@@ -0,0 +1,279 @@
+package bulk;
+
+import accounts.AccountRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel bulk loader for account files (see AccountFileFormat).
+ *
+ * The calling thread cuts the file into chunks (CSV: runs of whole lines of about the
+ * chunk size; binary: the file's own blocks) and hands them to worker threads, which
+ * read, parse and build the accounts of their chunk, hashing plain PINs as they go. The
+ * calling thread adds finished chunks to the repository in file order, so positions
+ * follow the file; a bounded number of chunks is in flight to cap memory. Rows that do
+ * not parse are skipped and counted; ids already in the repository keep their account.
+ *
+ * Size the repository to the input with estimateAccounts before importing into it.
+ */
+public class AccountImporter {
+    public static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+    private static final int CSV_SAMPLE_BYTES = 1024 * 1024;
+
+    private final AccountRepository accountRepository;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final int chunkBytes;
+
+    public AccountImporter(AccountRepository accountRepository) {
+        this(accountRepository, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    public AccountImporter(AccountRepository accountRepository, int parallelism, int chunkBytes) {
+        if (parallelism <= 0 || chunkBytes < CsvAccountFormat.MAX_LINE_BYTES) {
+            throw new IllegalArgumentException("Parallelism must be positive and chunks at least "
+                + CsvAccountFormat.MAX_LINE_BYTES + " bytes");
+        }
+        this.accountRepository = accountRepository;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "bulk-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Import a file whose format follows from its name
+     */
+    public BulkReport importFile(Path file) throws IOException {
+        return importFile(file, AccountFileFormat.forPath(file));
+    }
+
+    public BulkReport importFile(Path file, AccountFileFormat format) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Callable<ImportChunk>> chunks = format == AccountFileFormat.CSV
+                ? planCsv(channel) : planBinary(channel);
+            Deque<Future<ImportChunk>> inFlight = new ArrayDeque<>();
+            long records = 0;
+            long added = 0;
+            long rejected = 0;
+            long pinsHashed = 0;
+            List<String> errors = new ArrayList<>();
+            int next = 0;
+            try {
+                while (next < chunks.size() || !inFlight.isEmpty()) {
+                    while (next < chunks.size() && inFlight.size() < parallelism * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                        inFlight.add(workers.submit(chunks.get(next++)));
+                    }
+                    ImportChunk chunk = inFlight.poll().get();
+                    records += chunk.count + chunk.rejected;
+                    added += accountRepository.addAccounts(chunk.accounts, chunk.count);
+                    rejected += chunk.rejected;
+                    pinsHashed += chunk.pinsHashed;
+                    for (String error : chunk.errors) {
+                        if (errors.size() < ImportChunk.MAX_ERRORS_KEPT) {
+                            errors.add(error);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import of " + file + " interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause
+                    : new IOException("Import of " + file + " failed", cause);
+            } finally {
+                for (Future<ImportChunk> pending : inFlight) {
+                    pending.cancel(true);
+                }
+            }
+            if (rejected > 0) {
+                System.err.println("Bulk import of " + file + " skipped " + rejected + " malformed rows, e.g. "
+                    + errors);
+            }
+            return new BulkReport("import", format, file.toString(), records, added, records - rejected - added,
+                rejected, pinsHashed, channel.size(), chunks.size(), System.nanoTime() - start, errors);
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Number of accounts in a file, to size a repository before importing it: exact for
+     * binary files, estimated from the first megabyte for CSV
+     */
+    public static int estimateAccounts(Path file) throws IOException {
+        AccountFileFormat format = AccountFileFormat.forPath(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (format == AccountFileFormat.BINARY) {
+                long rows = 0;
+                long position = checkBinaryHeader(channel);
+                while (true) {
+                    ByteBuffer header = readFully(channel, position, BinaryAccountFormat.BLOCK_HEADER_BYTES);
+                    int blockRows = header.getInt();
+                    int payloadBytes = header.getInt();
+                    if (blockRows == 0) {
+                        return (int) Math.min(Integer.MAX_VALUE, rows);
+                    }
+                    rows += blockRows;
+                    position += BinaryAccountFormat.BLOCK_HEADER_BYTES + payloadBytes;
+                }
+            }
+            long dataStart = csvHeaderEnd(channel);
+            int sampleBytes = (int) Math.min(CSV_SAMPLE_BYTES, channel.size() - dataStart);
+            ByteBuffer sample = readFully(channel, dataStart, sampleBytes);
+            long lines = 0;
+            for (int i = 0; i < sampleBytes; i++) {
+                if (sample.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            if (lines == 0) {
+                return sampleBytes > 0 ? 1 : 0;
+            }
+            double estimate = (double) (channel.size() - dataStart) * lines / sampleBytes;
+            return (int) Math.min(Integer.MAX_VALUE, Math.ceil(estimate * 1.02));
+        }
+    }
+
+    /**
+     * Cut the data lines into chunks that end at a line break
+     */
+    private List<Callable<ImportChunk>> planCsv(FileChannel channel) throws IOException {
+        long dataStart = csvHeaderEnd(channel);
+        ByteBuffer headerBytes = readFully(channel, 0, (int) dataStart);
+        CsvAccountFormat.Columns columns = CsvAccountFormat.parseHeader(
+            StandardCharsets.UTF_8.decode(headerBytes).toString());
+        long size = channel.size();
+        List<Callable<ImportChunk>> chunks = new ArrayList<>();
+        long start = dataStart;
+        while (start < size) {
+            long end = start + chunkBytes >= size ? size : nextLineStart(channel, start + chunkBytes);
+            long chunkStart = start;
+            int length = (int) (end - start);
+            chunks.add(() -> {
+                byte[] bytes = new byte[length];
+                readFully(channel, chunkStart, ByteBuffer.wrap(bytes));
+                ImportChunk chunk = new ImportChunk(length / 64);
+                CsvAccountFormat.parse(bytes, length, chunkStart, columns, chunk);
+                return chunk;
+            });
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * One chunk per block, found by hopping from block header to block header
+     */
+    private List<Callable<ImportChunk>> planBinary(FileChannel channel) throws IOException {
+        List<Callable<ImportChunk>> chunks = new ArrayList<>();
+        long position = checkBinaryHeader(channel);
+        long size = channel.size();
+        while (true) {
+            if (position + BinaryAccountFormat.BLOCK_HEADER_BYTES > size) {
+                throw new IOException("Account file is truncated at byte " + position + " (no end marker)");
+            }
+            ByteBuffer header = readFully(channel, position, BinaryAccountFormat.BLOCK_HEADER_BYTES);
+            int rows = header.getInt();
+            int payloadBytes = header.getInt();
+            if (rows == 0 && payloadBytes == 0) {
+                return chunks;
+            }
+            long payloadStart = position + BinaryAccountFormat.BLOCK_HEADER_BYTES;
+            if (rows < 0 || payloadBytes < 0 || payloadStart + payloadBytes > size) {
+                throw new IOException("Corrupt block header at byte " + position);
+            }
+            chunks.add(() -> {
+                byte[] payload = new byte[payloadBytes];
+                readFully(channel, payloadStart, ByteBuffer.wrap(payload));
+                ImportChunk chunk = new ImportChunk(rows);
+                BinaryAccountFormat.decodeBlock(payload, rows, payloadStart, chunk);
+                return chunk;
+            });
+            position = payloadStart + payloadBytes;
+        }
+    }
+
+    private static long checkBinaryHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 0, BinaryAccountFormat.FILE_HEADER_BYTES);
+        if (header.getInt() != BinaryAccountFormat.MAGIC) {
+            throw new IOException("Not a binary account file");
+        }
+        int version = header.getInt();
+        if (version != BinaryAccountFormat.VERSION) {
+            throw new IOException("Unsupported binary account file version " + version);
+        }
+        return BinaryAccountFormat.FILE_HEADER_BYTES;
+    }
+
+    /**
+     * Offset just past the header row
+     */
+    private static long csvHeaderEnd(FileChannel channel) throws IOException {
+        long end = nextLineStart(channel, 0);
+        if (end == 0) {
+            throw new IOException("Empty account file");
+        }
+        return end;
+    }
+
+    /**
+     * Offset just past the next line break at or after position; the file size if there is none
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        int length = (int) Math.min(CsvAccountFormat.MAX_LINE_BYTES, size - position);
+        if (length <= 0) {
+            return size;
+        }
+        ByteBuffer window = readFully(channel, position, length);
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) == '\n') {
+                return position + i + 1;
+            }
+        }
+        if (position + length == size) {
+            return size;
+        }
+        throw new IOException("Line longer than " + CsvAccountFormat.MAX_LINE_BYTES + " bytes at byte " + position);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at byte " + (position + buffer.position()));
+            }
+        }
+    }
+}
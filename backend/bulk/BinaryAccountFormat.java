@@ -0,0 +1,145 @@
+package bulk;
+
+import accounts.Account;
+import accounts.AccountSnapshot;
+import accounts.SavingsAccount;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact columnar account files.
+ *
+ * The file starts with the magic "BKAC" and a version (4 bytes each), followed by blocks
+ * and an empty block (0 rows, 0 bytes) as terminator. A block header holds its row count
+ * and payload length (4 bytes each); the payload stores each column contiguously: ids (4),
+ * type (1: 0 savings, 1 salary), frozen (1), transaction count (4), balance in cents (8),
+ * name length (2), PIN hash length (2), then the UTF-8 names and ASCII PIN hashes back to
+ * back. Big-endian throughout. Readers skip from block header to block header and decode
+ * blocks in parallel.
+ */
+final class BinaryAccountFormat {
+    static final int MAGIC = 0x424B4143; // "BKAC"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int BLOCK_HEADER_BYTES = 8;
+    static final int FIXED_ROW_BYTES = 22;
+    private static final byte SAVINGS = 0;
+    private static final byte SALARY = 1;
+
+    private BinaryAccountFormat() {
+    }
+
+    static byte[] fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    static byte[] terminator() {
+        return new byte[BLOCK_HEADER_BYTES];
+    }
+
+    /**
+     * Encode accounts[0, count) as one block, header included. Every account is read from
+     * one snapshot.
+     */
+    static byte[] encodeBlock(Account[] accounts, int count) {
+        int[] ids = new int[count];
+        byte[] types = new byte[count];
+        byte[] frozen = new byte[count];
+        int[] transactions = new int[count];
+        long[] cents = new long[count];
+        byte[][] names = new byte[count][];
+        byte[][] pinHashes = new byte[count][];
+        int payloadBytes = FIXED_ROW_BYTES * count;
+        for (int i = 0; i < count; i++) {
+            Account account = accounts[i];
+            AccountSnapshot snapshot = account.snapshot();
+            ids[i] = account.getAccountId();
+            types[i] = account instanceof SavingsAccount ? SAVINGS : SALARY;
+            frozen[i] = (byte) (snapshot.isFrozen() ? 1 : 0);
+            transactions[i] = snapshot.getTransactionCount();
+            cents[i] = Math.round(snapshot.getBalance() * 100);
+            names[i] = truncate(account.getName().getBytes(StandardCharsets.UTF_8));
+            pinHashes[i] = truncate(account.getPinHash().getBytes(StandardCharsets.US_ASCII));
+            payloadBytes += names[i].length + pinHashes[i].length;
+        }
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + payloadBytes);
+        block.putInt(count).putInt(payloadBytes);
+        for (int i = 0; i < count; i++) {
+            block.putInt(ids[i]);
+        }
+        block.put(types).put(frozen);
+        for (int i = 0; i < count; i++) {
+            block.putInt(transactions[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            block.putLong(cents[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            block.putShort((short) names[i].length);
+        }
+        for (int i = 0; i < count; i++) {
+            block.putShort((short) pinHashes[i].length);
+        }
+        for (int i = 0; i < count; i++) {
+            block.put(names[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            block.put(pinHashes[i]);
+        }
+        return block.array();
+    }
+
+    /**
+     * Decode one block payload of the given row count; payloadOffset is its place in the file
+     */
+    static void decodeBlock(byte[] payload, int rows, long payloadOffset, ImportChunk chunk) {
+        ByteBuffer columns = ByteBuffer.wrap(payload);
+        if ((long) rows * FIXED_ROW_BYTES > payload.length) {
+            chunk.reject(payloadOffset, "block of " + rows + " rows is only " + payload.length + " bytes");
+            return;
+        }
+        int typeColumn = rows * 4;
+        int frozenColumn = typeColumn + rows;
+        int transactionColumn = frozenColumn + rows;
+        int balanceColumn = transactionColumn + rows * 4;
+        int nameLengthColumn = balanceColumn + rows * 8;
+        int hashLengthColumn = nameLengthColumn + rows * 2;
+        int nameBytes = hashLengthColumn + rows * 2;
+        int hashBytes = nameBytes;
+        for (int i = 0; i < rows; i++) {
+            hashBytes += Short.toUnsignedInt(columns.getShort(nameLengthColumn + i * 2));
+        }
+        int end = hashBytes;
+        for (int i = 0; i < rows; i++) {
+            end += Short.toUnsignedInt(columns.getShort(hashLengthColumn + i * 2));
+        }
+        if (end != payload.length) {
+            chunk.reject(payloadOffset, "block lengths add up to " + end + " bytes, payload is " + payload.length);
+            return;
+        }
+        for (int i = 0; i < rows; i++) {
+            int nameLength = Short.toUnsignedInt(columns.getShort(nameLengthColumn + i * 2));
+            int hashLength = Short.toUnsignedInt(columns.getShort(hashLengthColumn + i * 2));
+            int accountId = columns.getInt(i * 4);
+            byte type = payload[typeColumn + i];
+            long cents = columns.getLong(balanceColumn + i * 8);
+            int transactions = columns.getInt(transactionColumn + i * 4);
+            String name = new String(payload, nameBytes, nameLength, StandardCharsets.UTF_8);
+            String pinHash = new String(payload, hashBytes, hashLength, StandardCharsets.US_ASCII);
+            nameBytes += nameLength;
+            hashBytes += hashLength;
+            if (accountId <= 0 || (type != SAVINGS && type != SALARY) || cents < 0 || transactions < 0
+                || nameLength == 0 || hashLength == 0) {
+                chunk.reject(payloadOffset, "row " + i + " (account " + accountId + ") is malformed");
+                continue;
+            }
+            chunk.add(accountId, type == SAVINGS, name, cents, pinHash, transactions, payload[frozenColumn + i] != 0);
+        }
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length <= 0xFFFF ? bytes : Arrays.copyOf(bytes, 0xFFFF);
+    }
+}
@@ -0,0 +1,99 @@
+package bulk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one bulk import or export
+ */
+public class BulkReport {
+    private final String operation;
+    private final AccountFileFormat format;
+    private final String file;
+    private final long records;
+    private final long added;
+    private final long duplicates;
+    private final long rejected;
+    private final long pinsHashed;
+    private final long bytes;
+    private final int chunks;
+    private final long elapsedNanos;
+    private final List<String> errors;
+
+    public BulkReport(String operation, AccountFileFormat format, String file, long records, long added,
+                      long duplicates, long rejected, long pinsHashed, long bytes, int chunks, long elapsedNanos,
+                      List<String> errors) {
+        this.operation = operation;
+        this.format = format;
+        this.file = file;
+        this.records = records;
+        this.added = added;
+        this.duplicates = duplicates;
+        this.rejected = rejected;
+        this.pinsHashed = pinsHashed;
+        this.bytes = bytes;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public AccountFileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Rows read (import) or written (export)
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Accounts added to the repository; on export, accounts written
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Rows whose account id was already in the repository; the existing account is kept
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Malformed rows that were skipped
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getPinsHashed() {
+        return pinsHashed;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The first few rejected rows, with their byte offsets
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("BulkReport[%s %s %s: records=%d, added=%d, duplicates=%d, rejected=%d, "
+                + "pins hashed=%d, %.1f MB in %d chunks, %.2f s (%.0f accounts/s, %.0f MB/s)]", operation, format,
+            file, records, added, duplicates, rejected, pinsHashed, bytes / 1e6, chunks, seconds,
+            records / Math.max(seconds, 1e-9), bytes / 1e6 / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,90 @@
+package bulk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer one export worker renders its chunk into
+ */
+final class ChunkWriter {
+    private byte[] bytes;
+    private int size;
+
+    ChunkWriter(int expectedBytes) {
+        this.bytes = new byte[Math.max(64, expectedBytes)];
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Write a string known to be ASCII (ids, hashes, keywords) without encoding it
+     */
+    void writeAscii(String text) {
+        int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    void writeBytes(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, size, data.length);
+        size += data.length;
+    }
+
+    void writeUtf8(String text) {
+        writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void writeDecimal(long value) {
+        ensure(20);
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // digits went in backwards
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte digit = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = digit;
+        }
+    }
+
+    /**
+     * Write whole cents as a decimal amount with two fraction digits, e.g. 150025 as 1500.25
+     */
+    void writeCents(long cents) {
+        if (cents < 0) {
+            writeByte('-');
+            cents = -cents;
+        }
+        writeDecimal(cents / 100);
+        ensure(3);
+        bytes[size++] = '.';
+        bytes[size++] = (byte) ('0' + cents % 100 / 10);
+        bytes[size++] = (byte) ('0' + cents % 10);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return bytes.length == size ? bytes : Arrays.copyOf(bytes, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package bulk;
+
+import accounts.Account;
+import accounts.AccountSnapshot;
+import util.SecurityUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV account files: a header row naming the columns, then one account per line.
+ *
+ * Columns may come in any order: account_id, type (Savings or Salary), name, balance
+ * (decimal, at most two fraction digits), and either pin (plain digits, hashed on import)
+ * or pin_hash (as produced by SecurityUtil.hashPin); transactions and frozen are optional.
+ * A field holding a comma or a quote is quoted, with quotes doubled; fields never span
+ * lines, so a file can be cut into chunks at any line break. Export writes
+ * account_id,type,name,balance,pin_hash,transactions,frozen.
+ */
+final class CsvAccountFormat {
+    static final String HEADER = "account_id,type,name,balance,pin_hash,transactions,frozen";
+    static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int MAX_PIN = 99_999_999;
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private CsvAccountFormat() {
+    }
+
+    /**
+     * Where each known column sits in a row
+     */
+    static final class Columns {
+        int accountId = -1;
+        int type = -1;
+        int name = -1;
+        int balance = -1;
+        int pin = -1;
+        int pinHash = -1;
+        int transactions = -1;
+        int frozen = -1;
+        int count;
+
+        boolean hashesPins() {
+            return pin >= 0;
+        }
+    }
+
+    static Columns parseHeader(String header) throws IOException {
+        Columns columns = new Columns();
+        String[] names = header.trim().split(",", -1);
+        columns.count = names.length;
+        for (int i = 0; i < names.length; i++) {
+            switch (names[i].trim().toLowerCase()) {
+                case "account_id":
+                    columns.accountId = i;
+                    break;
+                case "type":
+                    columns.type = i;
+                    break;
+                case "name":
+                    columns.name = i;
+                    break;
+                case "balance":
+                    columns.balance = i;
+                    break;
+                case "pin":
+                    columns.pin = i;
+                    break;
+                case "pin_hash":
+                    columns.pinHash = i;
+                    break;
+                case "transactions":
+                    columns.transactions = i;
+                    break;
+                case "frozen":
+                    columns.frozen = i;
+                    break;
+                default:
+                    throw new IOException("Unknown CSV column '" + names[i] + "'");
+            }
+        }
+        if (columns.accountId < 0 || columns.type < 0 || columns.name < 0 || columns.balance < 0
+            || (columns.pin < 0) == (columns.pinHash < 0)) {
+            throw new IOException("CSV header needs account_id, type, name, balance and exactly one of pin "
+                + "or pin_hash: " + header);
+        }
+        return columns;
+    }
+
+    /**
+     * Parse whole lines from bytes[0, length), which start at fileOffset in the file
+     */
+    static void parse(byte[] bytes, int length, long fileOffset, Columns columns, ImportChunk chunk) {
+        int[] starts = new int[columns.count];
+        int[] ends = new int[columns.count];
+        boolean[] escaped = new boolean[columns.count];
+        int position = 0;
+        while (position < length) {
+            int lineStart = position;
+            int fields = 0;
+            String error = null;
+            int p = position;
+            while (true) {
+                if (fields == columns.count) {
+                    error = "more than " + columns.count + " fields";
+                    break;
+                }
+                if (p < length && bytes[p] == '"') {
+                    int start = ++p;
+                    boolean doubled = false;
+                    while (p < length && bytes[p] != '\n') {
+                        if (bytes[p] == '"') {
+                            if (p + 1 < length && bytes[p + 1] == '"') {
+                                doubled = true;
+                                p += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        p++;
+                    }
+                    if (p >= length || bytes[p] != '"') {
+                        error = "unterminated quoted field";
+                        break;
+                    }
+                    starts[fields] = start;
+                    ends[fields] = p++;
+                    escaped[fields] = doubled;
+                } else {
+                    int start = p;
+                    while (p < length && bytes[p] != ',' && bytes[p] != '\n') {
+                        p++;
+                    }
+                    int end = p > start && bytes[p - 1] == '\r' ? p - 1 : p;
+                    starts[fields] = start;
+                    ends[fields] = end;
+                    escaped[fields] = false;
+                }
+                fields++;
+                if (p < length && bytes[p] == ',') {
+                    p++;
+                    continue;
+                }
+                if (p < length && bytes[p] == '\r') {
+                    p++;
+                }
+                if (p < length && bytes[p] != '\n') {
+                    error = "text after a quoted field";
+                }
+                break;
+            }
+            int lineEnd = p;
+            while (lineEnd < length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            position = lineEnd + 1;
+            if (lineEnd == lineStart || (lineEnd == lineStart + 1 && bytes[lineStart] == '\r')) {
+                continue; // blank line
+            }
+            if (error == null && fields != columns.count) {
+                error = "expected " + columns.count + " fields, found " + fields;
+            }
+            if (error == null) {
+                error = parseRow(bytes, starts, ends, escaped, columns, chunk);
+            }
+            if (error != null) {
+                chunk.reject(fileOffset + lineStart, error);
+            }
+        }
+    }
+
+    /**
+     * Build the account for one split row; returns why the row was refused, or null
+     */
+    private static String parseRow(byte[] bytes, int[] starts, int[] ends, boolean[] escaped, Columns columns,
+                                   ImportChunk chunk) {
+        long accountId = parseLong(bytes, starts[columns.accountId], ends[columns.accountId]);
+        if (accountId <= 0 || accountId > Integer.MAX_VALUE) {
+            return "bad account_id";
+        }
+        boolean savings;
+        if (equalsIgnoreCase(bytes, starts[columns.type], ends[columns.type], "savings")) {
+            savings = true;
+        } else if (equalsIgnoreCase(bytes, starts[columns.type], ends[columns.type], "salary")) {
+            savings = false;
+        } else {
+            return "type must be Savings or Salary";
+        }
+        String name = text(bytes, starts[columns.name], ends[columns.name], escaped[columns.name]);
+        if (name.isEmpty()) {
+            return "empty name";
+        }
+        long balanceCents = parseCents(bytes, starts[columns.balance], ends[columns.balance]);
+        if (balanceCents == INVALID || balanceCents < 0) {
+            return "bad balance";
+        }
+        int transactions = 0;
+        if (columns.transactions >= 0 && ends[columns.transactions] > starts[columns.transactions]) {
+            long parsed = parseLong(bytes, starts[columns.transactions], ends[columns.transactions]);
+            if (parsed < 0 || parsed > Integer.MAX_VALUE) {
+                return "bad transactions";
+            }
+            transactions = (int) parsed;
+        }
+        boolean frozen = false;
+        if (columns.frozen >= 0) {
+            int start = starts[columns.frozen];
+            int end = ends[columns.frozen];
+            if (equalsIgnoreCase(bytes, start, end, "true") || equalsIgnoreCase(bytes, start, end, "1")) {
+                frozen = true;
+            } else if (end > start && !equalsIgnoreCase(bytes, start, end, "false")
+                && !equalsIgnoreCase(bytes, start, end, "0")) {
+                return "frozen must be true or false";
+            }
+        }
+        String pinHash;
+        if (columns.hashesPins()) {
+            long pin = parseLong(bytes, starts[columns.pin], ends[columns.pin]);
+            if (pin < 0 || pin > MAX_PIN) {
+                return "bad pin";
+            }
+            pinHash = SecurityUtil.hashPin((int) pin);
+            chunk.pinsHashed++;
+        } else {
+            pinHash = text(bytes, starts[columns.pinHash], ends[columns.pinHash], escaped[columns.pinHash]);
+            if (pinHash.isEmpty()) {
+                return "empty pin_hash";
+            }
+        }
+        chunk.add((int) accountId, savings, name, balanceCents, pinHash, transactions, frozen);
+        return null;
+    }
+
+    /**
+     * Render one account as a line; balance, count and frozen flag come from one snapshot
+     */
+    static void write(Account account, ChunkWriter out) {
+        AccountSnapshot snapshot = account.snapshot();
+        out.writeDecimal(account.getAccountId());
+        out.writeByte(',');
+        out.writeAscii(account.getAccountType());
+        out.writeByte(',');
+        String name = account.getName();
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0) {
+            out.writeByte('"');
+            out.writeUtf8(name.replace("\"", "\"\""));
+            out.writeByte('"');
+        } else {
+            out.writeUtf8(name);
+        }
+        out.writeByte(',');
+        out.writeCents(Math.round(snapshot.getBalance() * 100));
+        out.writeByte(',');
+        out.writeAscii(account.getPinHash());
+        out.writeByte(',');
+        out.writeDecimal(snapshot.getTransactionCount());
+        out.writeByte(',');
+        out.writeAscii(snapshot.isFrozen() ? "true" : "false");
+        out.writeByte('\n');
+    }
+
+    private static String text(byte[] bytes, int start, int end, boolean escaped) {
+        String text = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        return escaped ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Non-negative decimal integer, or INVALID
+     */
+    private static long parseLong(byte[] bytes, int start, int end) {
+        if (end <= start || end - start > 18) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Decimal amount with at most two fraction digits as whole cents, or INVALID
+     */
+    private static long parseCents(byte[] bytes, int start, int end) {
+        boolean negative = end > start && bytes[start] == '-';
+        int i = negative ? start + 1 : start;
+        long units = 0;
+        int digits = 0;
+        while (i < end && bytes[i] != '.') {
+            int digit = bytes[i++] - '0';
+            if (digit < 0 || digit > 9 || ++digits > 15) {
+                return INVALID;
+            }
+            units = units * 10 + digit;
+        }
+        long cents = 0;
+        int fraction = 0;
+        if (i < end) {
+            i++; // '.'
+            while (i < end) {
+                int digit = bytes[i++] - '0';
+                if (digit < 0 || digit > 9 || ++fraction > 2) {
+                    return INVALID;
+                }
+                cents = cents * 10 + digit;
+            }
+        }
+        if (digits == 0 && fraction == 0) {
+            return INVALID;
+        }
+        cents = units * 100 + (fraction == 1 ? cents * 10 : cents);
+        return negative ? -cents : cents;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, String lowerCase) {
+        if (end - start != lowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase((char) bytes[start + i]) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package bulk;
+
+import accounts.Account;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accounts built from one chunk of an input file by one worker, in file order
+ */
+final class ImportChunk {
+    static final int MAX_ERRORS_KEPT = 10;
+
+    Account[] accounts;
+    int count;
+    long rejected;
+    long pinsHashed;
+    final List<String> errors = new ArrayList<>();
+
+    ImportChunk(int expectedAccounts) {
+        this.accounts = new Account[Math.max(16, expectedAccounts)];
+    }
+
+    /**
+     * Build and keep one account; restores the transaction count and frozen flag if set
+     */
+    void add(int accountId, boolean savings, String name, long balanceCents, String pinHash,
+             int transactionCount, boolean frozen) {
+        double balance = balanceCents / 100.0;
+        Account account = savings ? new SavingsAccount(accountId, name, balance, pinHash)
+            : new SalaryAccount(accountId, name, balance, pinHash);
+        if (transactionCount != 0 || frozen) {
+            account.restoreState(balance, transactionCount, frozen);
+        }
+        if (count == accounts.length) {
+            accounts = Arrays.copyOf(accounts, count * 2);
+        }
+        accounts[count++] = account;
+    }
+
+    void reject(long byteOffset, String reason) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS_KEPT) {
+            errors.add("byte " + byteOffset + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package cluster;
+
+import transactions.Transaction;
+import transactions.TransactionType;
+import transactions.TransferLeg;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request sent from the router to a partition node. Immutable and serializable, so a
+ * socket transport can carry the same messages the in-process one does.
+ */
+public class ClusterMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /** Run a transaction on the owning node, PIN checked there */
+        EXECUTE,
+        /** Run a transaction whose customer is already authenticated */
+        EXECUTE_AUTHENTICATED,
+        /** Verify a PIN on the owning node */
+        AUTHENTICATE,
+        /** Saga step: take the amount out of the source account */
+        DEBIT,
+        /** Saga step: put the amount into the target account */
+        CREDIT,
+        /** Saga compensation: return a debited amount to the source account */
+        REFUND,
+        /** The saga is settled; the node may forget its step records */
+        FINISH
+    }
+
+    private final Kind kind;
+    private final long sagaId; // 0 unless a saga step
+    private final TransactionType type;
+    private final int accountId;
+    private final int targetAccountId;
+    private final double amount;
+    private final int pin;
+    private final boolean preAuthenticated;
+    private final String channelId;
+    private final String idempotencyKey;
+    private final int[] legTargets;
+    private final double[] legAmounts;
+
+    private ClusterMessage(Kind kind, long sagaId, TransactionType type, int accountId, int targetAccountId,
+                           double amount, int pin, boolean preAuthenticated, String channelId,
+                           String idempotencyKey, int[] legTargets, double[] legAmounts) {
+        this.kind = kind;
+        this.sagaId = sagaId;
+        this.type = type;
+        this.accountId = accountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.pin = pin;
+        this.preAuthenticated = preAuthenticated;
+        this.channelId = channelId;
+        this.idempotencyKey = idempotencyKey;
+        this.legTargets = legTargets;
+        this.legAmounts = legAmounts;
+    }
+
+    /**
+     * Forward a whole transaction; the idempotency key makes resending it safe
+     */
+    public static ClusterMessage execute(Transaction transaction, boolean preAuthenticated, String idempotencyKey) {
+        List<TransferLeg> legs = transaction.getLegs();
+        int[] legTargets = new int[legs.size()];
+        double[] legAmounts = new double[legs.size()];
+        for (int i = 0; i < legs.size(); i++) {
+            legTargets[i] = legs.get(i).getTargetAccountId();
+            legAmounts[i] = legs.get(i).getAmount();
+        }
+        Integer target = transaction.getTargetAccountId();
+        return new ClusterMessage(preAuthenticated ? Kind.EXECUTE_AUTHENTICATED : Kind.EXECUTE, 0,
+            transaction.getType(), transaction.getAccountId(), target == null ? 0 : target,
+            transaction.getAmount(), transaction.getPin(), preAuthenticated, transaction.getChannelId(),
+            idempotencyKey, legTargets, legAmounts);
+    }
+
+    public static ClusterMessage authenticate(int accountId, int pin, String channelId) {
+        return new ClusterMessage(Kind.AUTHENTICATE, 0, null, accountId, 0, 0, pin, false, channelId,
+            null, new int[0], new double[0]);
+    }
+
+    /**
+     * One step of a cross-partition transfer; accountId is the account the step touches
+     */
+    public static ClusterMessage sagaStep(Kind kind, long sagaId, int accountId, double amount, int pin,
+                                          boolean preAuthenticated, String channelId) {
+        return new ClusterMessage(kind, sagaId, TransactionType.TRANSFER, accountId, 0, amount, pin,
+            preAuthenticated, channelId, null, new int[0], new double[0]);
+    }
+
+    /**
+     * Rebuild the transaction carried by an EXECUTE message
+     */
+    public Transaction toTransaction() {
+        Transaction transaction;
+        if (type == TransactionType.MULTI_TRANSFER) {
+            List<TransferLeg> legs = new ArrayList<>(legTargets.length);
+            for (int i = 0; i < legTargets.length; i++) {
+                legs.add(new TransferLeg(legTargets[i], legAmounts[i]));
+            }
+            transaction = new Transaction(accountId, legs, pin);
+        } else if (type == TransactionType.TRANSFER) {
+            transaction = new Transaction(type, accountId, targetAccountId, amount, pin);
+        } else {
+            transaction = new Transaction(type, accountId, amount, pin);
+        }
+        if (idempotencyKey != null) {
+            transaction = transaction.withIdempotencyKey(idempotencyKey);
+        }
+        return transaction.withChannelId(channelId);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getSagaId() {
+        return sagaId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public int getPin() {
+        return pin;
+    }
+
+    public boolean isPreAuthenticated() {
+        return preAuthenticated;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+}
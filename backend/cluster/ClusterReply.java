@@ -0,0 +1,44 @@
+package cluster;
+
+import transactions.TransactionResult;
+import transactions.TransactionStatus;
+
+import java.io.Serializable;
+
+/**
+ * A node's answer to a ClusterMessage: the outcome code plus what is needed to rebuild
+ * the customer's TransactionResult on the router side
+ */
+public class ClusterReply implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final TransactionStatus status;
+    private final double balanceAfter;
+    private final int detail;
+
+    public ClusterReply(TransactionStatus status, double balanceAfter, int detail) {
+        this.status = status;
+        this.balanceAfter = balanceAfter;
+        this.detail = detail;
+    }
+
+    public static ClusterReply of(TransactionResult result) {
+        return new ClusterReply(result.getStatus(), result.getBalanceAfter(), result.getDetail());
+    }
+
+    public boolean isSuccess() {
+        return status.isSuccess();
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public double getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public int getDetail() {
+        return detail;
+    }
+}
@@ -0,0 +1,330 @@
+package cluster;
+
+import transactions.Transaction;
+import transactions.TransactionGateway;
+import transactions.TransactionResult;
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+import transactions.TransferLeg;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes each request to the partition node that owns its account.
+ *
+ * Single-node requests are forwarded whole, with an idempotency key so a resend after a
+ * lost reply cannot apply twice. A transfer between two nodes runs as a saga: debit the
+ * source, credit the target, and refund the source if the target refuses. Every step is
+ * idempotent on the node, so the router simply resends until it gets an answer. A saga
+ * that cannot finish within the caller's retry budget is answered with IN_DOUBT and
+ * settled later by a recovery thread. Multi-leg transfers must stay within one node.
+ */
+public class ClusterRouter implements TransactionGateway {
+    private static final int ROUTER_THREADS = 32;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_MS = 10;
+    private static final long CALL_TIMEOUT_MS = 2000;
+    private static final long RECOVERY_INTERVAL_MS = 100;
+
+    private final PartitionMap partitionMap;
+    private final ClusterTransport transport;
+    private final ExecutorService routerExecutor;
+    private final ScheduledExecutorService recoveryExecutor;
+    private final Map<Long, TransferSaga> inDoubtSagas;
+    private final AtomicLong sagaSequence;
+    private final AtomicInteger activeSagas;
+    private final AtomicLong committedSagas;
+    private final AtomicLong compensatedSagas;
+    private final AtomicLong failedSagas;
+    private final AtomicLong recoveredSagas;
+    private final AtomicLong retries;
+
+    public ClusterRouter(PartitionMap partitionMap, ClusterTransport transport) {
+        this.partitionMap = partitionMap;
+        this.transport = transport;
+        this.routerExecutor = Executors.newFixedThreadPool(ROUTER_THREADS, r -> {
+            Thread thread = new Thread(r, "cluster-router");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.recoveryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-saga-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inDoubtSagas = new ConcurrentHashMap<>();
+        // Saga ids must not repeat across router restarts while nodes still remember steps
+        this.sagaSequence = new AtomicLong(System.currentTimeMillis() << 20);
+        this.activeSagas = new AtomicInteger(0);
+        this.committedSagas = new AtomicLong(0);
+        this.compensatedSagas = new AtomicLong(0);
+        this.failedSagas = new AtomicLong(0);
+        this.recoveredSagas = new AtomicLong(0);
+        this.retries = new AtomicLong(0);
+        recoveryExecutor.scheduleWithFixedDelay(this::recoverInDoubtSagas, RECOVERY_INTERVAL_MS,
+            RECOVERY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Future<TransactionResult> submitTransaction(Transaction transaction) {
+        return route(transaction, false);
+    }
+
+    @Override
+    public Future<TransactionResult> submitAuthenticatedTransaction(Transaction transaction) {
+        return route(transaction, true);
+    }
+
+    @Override
+    public boolean authenticate(int accountId, int pin, String channelId) {
+        ClusterReply reply = callWithRetries(partitionMap.nodeFor(accountId),
+            ClusterMessage.authenticate(accountId, pin, channelId));
+        return reply != null && reply.isSuccess();
+    }
+
+    private Future<TransactionResult> route(Transaction transaction, boolean preAuthenticated) {
+        int sourceNode = partitionMap.nodeFor(transaction.getAccountId());
+        if (transaction.getType() == TransactionType.TRANSFER && transaction.getTargetAccountId() != null) {
+            int targetNode = partitionMap.nodeFor(transaction.getTargetAccountId());
+            if (targetNode != sourceNode) {
+                TransferSaga saga = new TransferSaga(sagaSequence.incrementAndGet(), transaction,
+                    preAuthenticated, sourceNode, targetNode);
+                activeSagas.incrementAndGet();
+                return CompletableFuture.supplyAsync(() -> runSaga(saga), routerExecutor);
+            }
+        }
+        if (transaction.getType() == TransactionType.MULTI_TRANSFER) {
+            for (TransferLeg leg : transaction.getLegs()) {
+                if (partitionMap.nodeFor(leg.getTargetAccountId()) != sourceNode) {
+                    return CompletableFuture.completedFuture(new TransactionResult(
+                        TransactionStatus.UNSUPPORTED, transaction, 0));
+                }
+            }
+        }
+        // The key lets the owning node recognise a resend after a lost reply
+        String idempotencyKey = transaction.getIdempotencyKey() != null ? transaction.getIdempotencyKey()
+            : "route-" + sagaSequence.incrementAndGet();
+        ClusterMessage message = ClusterMessage.execute(transaction, preAuthenticated, idempotencyKey);
+        return CompletableFuture.supplyAsync(() -> {
+            ClusterReply reply = callWithRetries(sourceNode, message);
+            return reply == null
+                ? new TransactionResult(TransactionStatus.IN_DOUBT, transaction, 0)
+                : new TransactionResult(reply.getStatus(), transaction, reply.getBalanceAfter(), reply.getDetail());
+        }, routerExecutor);
+    }
+
+    private TransactionResult runSaga(TransferSaga saga) {
+        synchronized (saga) {
+            while (!saga.isSettled()) {
+                if (!advance(saga)) {
+                    if (++saga.failedAttempts >= MAX_ATTEMPTS) {
+                        inDoubtSagas.put(saga.sagaId, saga); // the recovery thread takes over
+                        return new TransactionResult(TransactionStatus.IN_DOUBT, saga.transaction, 0);
+                    }
+                    retries.incrementAndGet();
+                    pause(RETRY_BACKOFF_MS * saga.failedAttempts);
+                }
+            }
+            return resultOf(saga);
+        }
+    }
+
+    /**
+     * Try the saga's current step once. Returns false if the node could not be reached.
+     */
+    private boolean advance(TransferSaga saga) {
+        Transaction transaction = saga.transaction;
+        ClusterReply reply;
+        switch (saga.state) {
+            case DEBITING:
+                reply = call(saga.sourceNode, ClusterMessage.sagaStep(ClusterMessage.Kind.DEBIT, saga.sagaId,
+                    transaction.getAccountId(), transaction.getAmount(), transaction.getPin(),
+                    saga.preAuthenticated, transaction.getChannelId()));
+                if (reply == null) {
+                    return false;
+                }
+                saga.sourceBalance = reply.getBalanceAfter();
+                if (reply.isSuccess()) {
+                    saga.state = TransferSaga.State.CREDITING;
+                } else {
+                    saga.failure = reply.getStatus();
+                    settle(saga, TransferSaga.State.FAILED);
+                }
+                return true;
+            case CREDITING:
+                reply = call(saga.targetNode, ClusterMessage.sagaStep(ClusterMessage.Kind.CREDIT, saga.sagaId,
+                    transaction.getTargetAccountId(), transaction.getAmount(), 0, true, transaction.getChannelId()));
+                if (reply == null) {
+                    return false;
+                }
+                if (reply.isSuccess()) {
+                    settle(saga, TransferSaga.State.COMMITTED);
+                } else {
+                    saga.failure = reply.getStatus();
+                    saga.state = TransferSaga.State.REFUNDING;
+                }
+                return true;
+            case REFUNDING:
+                reply = call(saga.sourceNode, ClusterMessage.sagaStep(ClusterMessage.Kind.REFUND, saga.sagaId,
+                    transaction.getAccountId(), transaction.getAmount(), 0, true, transaction.getChannelId()));
+                if (reply == null || !reply.isSuccess()) {
+                    return false;
+                }
+                saga.sourceBalance = reply.getBalanceAfter();
+                settle(saga, TransferSaga.State.COMPENSATED);
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void settle(TransferSaga saga, TransferSaga.State outcome) {
+        saga.state = outcome;
+        switch (outcome) {
+            case COMMITTED:
+                committedSagas.incrementAndGet();
+                break;
+            case COMPENSATED:
+                compensatedSagas.incrementAndGet();
+                break;
+            default:
+                failedSagas.incrementAndGet();
+                break;
+        }
+        activeSagas.decrementAndGet();
+        // Best effort: a node that misses this forgets the steps after its idle TTL instead
+        ClusterMessage finish = ClusterMessage.sagaStep(ClusterMessage.Kind.FINISH, saga.sagaId, 0, 0, 0, true, null);
+        transport.send(saga.sourceNode, finish);
+        transport.send(saga.targetNode, finish);
+    }
+
+    private TransactionResult resultOf(TransferSaga saga) {
+        TransactionStatus status = saga.state == TransferSaga.State.COMMITTED ? TransactionStatus.SUCCESS : saga.failure;
+        return new TransactionResult(status, saga.transaction, saga.sourceBalance);
+    }
+
+    private void recoverInDoubtSagas() {
+        for (TransferSaga saga : inDoubtSagas.values()) {
+            synchronized (saga) {
+                while (!saga.isSettled() && advance(saga)) {
+                    // keep going while the nodes answer
+                }
+                if (saga.isSettled()) {
+                    inDoubtSagas.remove(saga.sagaId);
+                    recoveredSagas.incrementAndGet();
+                } else {
+                    retries.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Send and wait for the reply; null if the request or reply was lost
+     */
+    private ClusterReply call(int nodeId, ClusterMessage message) {
+        try {
+            return transport.send(nodeId, message).get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private ClusterReply callWithRetries(int nodeId, ClusterMessage message) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            ClusterReply reply = call(nodeId, message);
+            if (reply != null) {
+                return reply;
+            }
+            if (attempt < MAX_ATTEMPTS) {
+                retries.incrementAndGet();
+                pause(RETRY_BACKOFF_MS * attempt);
+            }
+        }
+        return null;
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until every cross-partition transfer has settled; false on timeout
+     */
+    public boolean awaitQuiescence(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (activeSagas.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            pause(20);
+        }
+        return true;
+    }
+
+    public PartitionMap getPartitionMap() {
+        return partitionMap;
+    }
+
+    /**
+     * Cross-partition transfers started but not yet settled
+     */
+    public int getActiveSagaCount() {
+        return activeSagas.get();
+    }
+
+    public int getInDoubtSagaCount() {
+        return inDoubtSagas.size();
+    }
+
+    public long getCommittedSagaCount() {
+        return committedSagas.get();
+    }
+
+    public long getCompensatedSagaCount() {
+        return compensatedSagas.get();
+    }
+
+    public long getFailedSagaCount() {
+        return failedSagas.get();
+    }
+
+    /**
+     * Sagas settled by the recovery thread after their caller was told IN_DOUBT
+     */
+    public long getRecoveredSagaCount() {
+        return recoveredSagas.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public void shutdown() {
+        recoveryExecutor.shutdownNow();
+        routerExecutor.shutdown();
+        try {
+            routerExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Carries requests from the router to partition nodes.
+ *
+ * A lost request or reply completes the future with a TransportException; the caller
+ * cannot tell which of the two was lost, so every message must be safe to resend.
+ */
+public interface ClusterTransport {
+
+    void register(int nodeId, MessageHandler handler);
+
+    CompletableFuture<ClusterReply> send(int nodeId, ClusterMessage message);
+
+    void shutdown();
+}
@@ -0,0 +1,121 @@
+package cluster;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process transport: every node gets its own worker pool and messages are handed over
+ * directly. Faults can be injected to exercise the retry and saga paths: requests and
+ * replies are dropped at a configurable rate, and a node can be cut off entirely.
+ */
+public class LocalTransport implements ClusterTransport {
+    private final int threadsPerNode;
+    private final Map<Integer, MessageHandler> handlers;
+    private final Map<Integer, ExecutorService> nodeExecutors;
+    private final Set<Integer> unreachableNodes;
+    private final AtomicLong droppedMessages;
+    private volatile double requestDropRate;
+    private volatile double replyDropRate;
+
+    public LocalTransport(int threadsPerNode) {
+        this.threadsPerNode = threadsPerNode;
+        this.handlers = new ConcurrentHashMap<>();
+        this.nodeExecutors = new ConcurrentHashMap<>();
+        this.unreachableNodes = ConcurrentHashMap.newKeySet();
+        this.droppedMessages = new AtomicLong(0);
+    }
+
+    @Override
+    public void register(int nodeId, MessageHandler handler) {
+        handlers.put(nodeId, handler);
+        nodeExecutors.computeIfAbsent(nodeId, id -> Executors.newFixedThreadPool(threadsPerNode, r -> {
+            Thread thread = new Thread(r, "node-" + id + "-worker");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<ClusterReply> send(int nodeId, ClusterMessage message) {
+        CompletableFuture<ClusterReply> reply = new CompletableFuture<>();
+        MessageHandler handler = handlers.get(nodeId);
+        if (handler == null) {
+            reply.completeExceptionally(new TransportException("Unknown node " + nodeId));
+            return reply;
+        }
+        if (isLost(nodeId, requestDropRate)) {
+            reply.completeExceptionally(new TransportException("Request to node " + nodeId + " lost"));
+            return reply;
+        }
+        try {
+            nodeExecutors.get(nodeId).execute(() -> {
+                try {
+                    ClusterReply answer = handler.handle(message);
+                    if (isLost(nodeId, replyDropRate)) {
+                        reply.completeExceptionally(new TransportException("Reply from node " + nodeId + " lost"));
+                    } else {
+                        reply.complete(answer);
+                    }
+                } catch (RuntimeException e) {
+                    reply.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reply.completeExceptionally(new TransportException("Node " + nodeId + " is shut down"));
+        }
+        return reply;
+    }
+
+    private boolean isLost(int nodeId, double dropRate) {
+        if (unreachableNodes.contains(nodeId)
+                || (dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate)) {
+            droppedMessages.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fraction of requests lost before they reach the node
+     */
+    public void setRequestDropRate(double requestDropRate) {
+        this.requestDropRate = requestDropRate;
+    }
+
+    /**
+     * Fraction of replies lost after the node has applied the request
+     */
+    public void setReplyDropRate(double replyDropRate) {
+        this.replyDropRate = replyDropRate;
+    }
+
+    /**
+     * Simulate a partition or crash: while unreachable, nothing reaches the node and no
+     * reply comes back from work it already accepted
+     */
+    public void setReachable(int nodeId, boolean reachable) {
+        if (reachable) {
+            unreachableNodes.remove(nodeId);
+        } else {
+            unreachableNodes.add(nodeId);
+        }
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    @Override
+    public void shutdown() {
+        for (ExecutorService executor : nodeExecutors.values()) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package cluster;
+
+/**
+ * Server side of a cluster transport: turns a request into its reply, on a node thread
+ */
+public interface MessageHandler {
+    ClusterReply handle(ClusterMessage message);
+}
@@ -0,0 +1,56 @@
+package cluster;
+
+import java.util.Arrays;
+
+/**
+ * Assigns account ids to cluster nodes by contiguous id range.
+ *
+ * Node i owns every id from its lower bound up to the next node's lower bound; the first
+ * node also owns everything below its bound and the last node everything above, so every
+ * id has exactly one owner.
+ */
+public class PartitionMap {
+    private final int[] lowerBounds;
+
+    /**
+     * @param lowerBounds first account id owned by each node, strictly increasing
+     */
+    public PartitionMap(int[] lowerBounds) {
+        if (lowerBounds.length == 0) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        for (int i = 1; i < lowerBounds.length; i++) {
+            if (lowerBounds[i] <= lowerBounds[i - 1]) {
+                throw new IllegalArgumentException("Lower bounds must be strictly increasing");
+            }
+        }
+        this.lowerBounds = lowerBounds.clone();
+    }
+
+    /**
+     * nodeCount ranges of accountsPerNode ids each, starting at firstAccountId
+     */
+    public static PartitionMap contiguous(int firstAccountId, int accountsPerNode, int nodeCount) {
+        int[] lowerBounds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            lowerBounds[i] = firstAccountId + i * accountsPerNode;
+        }
+        return new PartitionMap(lowerBounds);
+    }
+
+    public int nodeFor(int accountId) {
+        int index = Arrays.binarySearch(lowerBounds, accountId);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    public int getNodeCount() {
+        return lowerBounds.length;
+    }
+
+    /**
+     * First account id owned by the node
+     */
+    public int getLowerBound(int nodeId) {
+        return lowerBounds[nodeId];
+    }
+}
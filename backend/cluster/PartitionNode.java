@@ -0,0 +1,405 @@
+package cluster;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import fraud.FraudMonitor;
+import transactions.AdmissionPolicy;
+import transactions.Transaction;
+import transactions.TransactionJournal;
+import transactions.TransactionProcessor;
+import transactions.TransactionResult;
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+import util.DateTimeUtil;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * One partition of the cluster: owns a range of accounts with its own repository,
+ * processor, fraud monitor and log directory, and serves requests from the transport.
+ *
+ * Saga steps are applied at most once per saga id: the outcome of each DEBIT, CREDIT and
+ * REFUND is recorded and a resent step just gets the recorded answer back (waiting for it
+ * if the first attempt is still running). Records are dropped a while after the router
+ * reports the saga finished, or after a long idle period if that report never arrives.
+ * Steps and finishes are written to saga.log, which is read back when a node starts, so
+ * a restarted node still answers resends instead of applying them again. Applied steps go
+ * through the processor's transaction log, history index, fraud rules, replication and
+ * auditor like any other balance change (a debit as a withdrawal, a credit or refund as a
+ * deposit).
+ */
+public class PartitionNode implements MessageHandler {
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final long ADMISSION_TIMEOUT_MS = 2000;
+    private static final String SAGA_LOG_FILE = "saga.log";
+    private static final DateTimeFormatter SAGA_LOG_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final long FINISHED_STEP_TTL_MS = 60_000;
+    private static final long UNFINISHED_STEP_TTL_MS = 60 * 60 * 1000L;
+    private static final long SWEEP_INTERVAL_MS = 10_000;
+
+    private final int nodeId;
+    private final AccountRepository accountRepository;
+    private final FraudMonitor fraudMonitor;
+    private final TransactionProcessor transactionProcessor;
+    private final TransactionJournal sagaJournal;
+    private final Map<Long, StepRecord> debits;
+    private final Map<Long, StepRecord> credits;
+    private final Map<Long, StepRecord> refunds;
+    private final AtomicLong lastSweepMillis;
+
+    public PartitionNode(int nodeId, AccountRepository accountRepository, String logDirectory) {
+        try {
+            Files.createDirectories(Paths.get(logDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create log directory " + logDirectory, e);
+        }
+        this.nodeId = nodeId;
+        this.accountRepository = accountRepository;
+        this.fraudMonitor = new FraudMonitor(accountRepository, null);
+        this.transactionProcessor = new TransactionProcessor(accountRepository, fraudMonitor,
+            AdmissionPolicy.BLOCK, QUEUE_CAPACITY, ADMISSION_TIMEOUT_MS, logDirectory);
+        this.debits = new ConcurrentHashMap<>();
+        this.credits = new ConcurrentHashMap<>();
+        this.refunds = new ConcurrentHashMap<>();
+        this.lastSweepMillis = new AtomicLong(System.currentTimeMillis());
+        reloadSteps(logDirectory + "/" + SAGA_LOG_FILE);
+        this.sagaJournal = new TransactionJournal(logDirectory + "/" + SAGA_LOG_FILE);
+    }
+
+    @Override
+    public ClusterReply handle(ClusterMessage message) {
+        switch (message.getKind()) {
+            case EXECUTE:
+                return execute(message, false);
+            case EXECUTE_AUTHENTICATED:
+                return execute(message, true);
+            case AUTHENTICATE:
+                return new ClusterReply(transactionProcessor.authenticate(message.getAccountId(), message.getPin(),
+                    message.getChannelId()) ? TransactionStatus.SUCCESS : TransactionStatus.INVALID_PIN, 0, 0);
+            case DEBIT:
+                return applyOnce(debits, message, this::applyDebit);
+            case CREDIT:
+                return applyOnce(credits, message, this::applyCredit);
+            case REFUND:
+                return applyOnce(refunds, message, this::applyRefund);
+            case FINISH:
+                finish(message.getSagaId());
+                return new ClusterReply(TransactionStatus.SUCCESS, 0, 0);
+            default:
+                return new ClusterReply(TransactionStatus.UNSUPPORTED, 0, 0);
+        }
+    }
+
+    private ClusterReply execute(ClusterMessage message, boolean preAuthenticated) {
+        try {
+            TransactionResult result = preAuthenticated
+                ? transactionProcessor.submitAuthenticatedTransaction(message.toTransaction()).get()
+                : transactionProcessor.submitTransaction(message.toTransaction()).get();
+            return ClusterReply.of(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ClusterReply(TransactionStatus.FAILED, 0, 0);
+        } catch (ExecutionException e) {
+            return new ClusterReply(TransactionStatus.FAILED, 0, 0);
+        }
+    }
+
+    /**
+     * Run a step at most once per saga id: the first attempt claims the id with a pending
+     * record and runs the step outside the map, a concurrent resend waits for its answer.
+     * A step answering null is not recorded, so a resend runs it again.
+     */
+    private ClusterReply applyOnce(Map<Long, StepRecord> steps, ClusterMessage message,
+                                   Function<ClusterMessage, ClusterReply> step) {
+        StepRecord pending = new StepRecord(System.currentTimeMillis());
+        StepRecord existing = steps.putIfAbsent(message.getSagaId(), pending);
+        if (existing != null) {
+            return existing.await();
+        }
+        ClusterReply reply = null;
+        try {
+            reply = step.apply(message);
+        } finally {
+            if (reply == null) {
+                steps.remove(message.getSagaId(), pending);
+                reply = new ClusterReply(TransactionStatus.ACCOUNT_NOT_FOUND, 0, 0);
+            }
+            pending.complete(reply);
+        }
+        return reply;
+    }
+
+    private ClusterReply applyDebit(ClusterMessage message) {
+        Account account = accountRepository.resolveAccount(message.getAccountId());
+        if (account == null) {
+            return record(message, TransactionStatus.ACCOUNT_NOT_FOUND, null, 0);
+        }
+        if (account.isFrozen()) {
+            return record(message, TransactionStatus.ACCOUNT_FROZEN, null, account.getBalance());
+        }
+        if (!message.isPreAuthenticated() && !transactionProcessor.authenticate(message.getAccountId(),
+                message.getPin(), message.getChannelId())) {
+            return record(message, TransactionStatus.INVALID_PIN, account, account.getBalance());
+        }
+        // The credit or refund may land in a split account, which only takes whole cents
+        if (!Account.isWholeCents(message.getAmount())) {
+            return record(message, TransactionStatus.INVALID_AMOUNT, account, account.getBalance());
+        }
+        TransactionStatus status;
+        double balanceAfter;
+        synchronized (account) {
+            status = account.withdraw(message.getAmount()) ? TransactionStatus.SUCCESS
+                : message.getAmount() <= 0 ? TransactionStatus.INVALID_AMOUNT : TransactionStatus.INSUFFICIENT_FUNDS;
+            balanceAfter = account.getBalance();
+        }
+        return record(message, status, account, balanceAfter);
+    }
+
+    /**
+     * The reply leaves out the target's balance; the router only passes on the source's
+     */
+    private ClusterReply applyCredit(ClusterMessage message) {
+        Account account = accountRepository.resolveAccount(message.getAccountId());
+        if (account == null) {
+            return record(message, TransactionStatus.TARGET_NOT_FOUND, null, 0);
+        }
+        if (account.isFrozen()) {
+            return record(message, TransactionStatus.TARGET_FROZEN, null, 0);
+        }
+        TransactionStatus status;
+        double balanceAfter;
+        synchronized (account) {
+            status = account.deposit(message.getAmount()) ? TransactionStatus.SUCCESS
+                : TransactionStatus.INVALID_AMOUNT;
+            balanceAfter = account.getBalance();
+        }
+        return new ClusterReply(record(message, status, account, balanceAfter).getStatus(), 0, 0);
+    }
+
+    /**
+     * Returns debited money even to a frozen account; null (not recorded, so a resend
+     * retries) if the account is unknown
+     */
+    private ClusterReply applyRefund(ClusterMessage message) {
+        Account account = accountRepository.resolveAccount(message.getAccountId());
+        if (account == null) {
+            return null;
+        }
+        double balanceAfter;
+        synchronized (account) {
+            account.deposit(message.getAmount());
+            balanceAfter = account.getBalance();
+        }
+        return record(message, TransactionStatus.SUCCESS, account, balanceAfter);
+    }
+
+    /**
+     * Journal a step's outcome and hand it to the processor's hooks; account is null for
+     * refusals made before the account was touched
+     */
+    private ClusterReply record(ClusterMessage message, TransactionStatus status, Account account,
+                                double balanceAfter) {
+        sagaJournal.append(String.format("%s | SAGA %d %s | Account %d | $%.2f | %s | $%.2f",
+            DateTimeUtil.getCurrentTimestamp(), message.getSagaId(), message.getKind(),
+            message.getAccountId(), message.getAmount(), status, balanceAfter));
+        if (account != null) {
+            TransactionType type = message.getKind() == ClusterMessage.Kind.DEBIT
+                ? TransactionType.WITHDRAW : TransactionType.DEPOSIT;
+            Transaction transaction = new Transaction(type, message.getAccountId(), message.getAmount(), 0)
+                .withChannelId(message.getChannelId());
+            transactionProcessor.recordApplied(transaction, new TransactionResult(status, transaction, balanceAfter),
+                account);
+        }
+        return new ClusterReply(status, balanceAfter, 0);
+    }
+
+    private void finish(long sagaId) {
+        long now = System.currentTimeMillis();
+        boolean known = false;
+        for (Map<Long, StepRecord> steps : stepMaps()) {
+            StepRecord record = steps.get(sagaId);
+            if (record != null) {
+                record.finishedAtMillis = now;
+                known = true;
+            }
+        }
+        if (known) {
+            sagaJournal.append(String.format("%s | SAGA %d FINISH", DateTimeUtil.getCurrentTimestamp(), sagaId));
+        }
+        long lastSweep = lastSweepMillis.get();
+        if (now - lastSweep >= SWEEP_INTERVAL_MS && lastSweepMillis.compareAndSet(lastSweep, now)) {
+            sweep(now);
+        }
+    }
+
+    private void sweep(long now) {
+        for (Map<Long, StepRecord> steps : stepMaps()) {
+            Iterator<StepRecord> records = steps.values().iterator();
+            while (records.hasNext()) {
+                StepRecord record = records.next();
+                long finishedAt = record.finishedAtMillis;
+                if (finishedAt > 0 ? now - finishedAt > FINISHED_STEP_TTL_MS
+                        : now - record.createdAtMillis > UNFINISHED_STEP_TTL_MS) {
+                    records.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read back the steps and finishes of saga.log that are still within their time to
+     * live, so resends after a restart get the recorded answer; a step of an unknown
+     * account's refund was never recorded and is not in the log
+     */
+    private void reloadSteps(String sagaLog) {
+        long now = System.currentTimeMillis();
+        try (BufferedReader reader = new BufferedReader(new FileReader(sagaLog))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                reloadStep(line.split(" \\| "), now);
+            }
+        } catch (FileNotFoundException e) {
+            // First start of this node
+        } catch (IOException e) {
+            System.err.println("Error reading saga log " + sagaLog + ": " + e.getMessage());
+        }
+        sweep(now);
+    }
+
+    /**
+     * One saga.log line: timestamp | SAGA id KIND | Account n | $amount | STATUS | $balance
+     * (older lines lack the balance), or timestamp | SAGA id FINISH
+     */
+    private void reloadStep(String[] fields, long now) {
+        try {
+            long at = LocalDateTime.parse(fields[0], SAGA_LOG_TIMESTAMP)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            String[] saga = fields[1].split(" ");
+            long sagaId = Long.parseLong(saga[1]);
+            if ("FINISH".equals(saga[2])) {
+                for (Map<Long, StepRecord> steps : stepMaps()) {
+                    StepRecord record = steps.get(sagaId);
+                    if (record != null) {
+                        record.finishedAtMillis = at;
+                    }
+                }
+                return;
+            }
+            Map<Long, StepRecord> steps = stepsOf(ClusterMessage.Kind.valueOf(saga[2]));
+            TransactionStatus status = TransactionStatus.valueOf(fields[4]);
+            double balanceAfter = fields.length > 5 ? Double.parseDouble(fields[5].substring(1)) : 0;
+            StepRecord record = new StepRecord(at);
+            record.complete(new ClusterReply(status, balanceAfter, 0));
+            steps.put(sagaId, record);
+        } catch (DateTimeParseException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Skipping unreadable saga log line: " + String.join(" | ", fields));
+        }
+    }
+
+    private Map<Long, StepRecord> stepsOf(ClusterMessage.Kind kind) {
+        switch (kind) {
+            case DEBIT:
+                return debits;
+            case CREDIT:
+                return credits;
+            case REFUND:
+                return refunds;
+            default:
+                throw new IllegalArgumentException("Not a saga step: " + kind);
+        }
+    }
+
+    private List<Map<Long, StepRecord>> stepMaps() {
+        return Arrays.asList(debits, credits, refunds);
+    }
+
+    /**
+     * Sum of all balances on this node
+     */
+    public double getTotalBalance() {
+        double total = 0;
+        for (Account account : accountRepository.getAllAccounts().values()) {
+            total += account.getBalance();
+        }
+        return total;
+    }
+
+    /**
+     * Saga steps whose outcome is still remembered
+     */
+    public int getStepRecordCount() {
+        return debits.size() + credits.size() + refunds.size();
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public AccountRepository getAccountRepository() {
+        return accountRepository;
+    }
+
+    public TransactionProcessor getTransactionProcessor() {
+        return transactionProcessor;
+    }
+
+    public FraudMonitor getFraudMonitor() {
+        return fraudMonitor;
+    }
+
+    public void shutdown() {
+        transactionProcessor.shutdown();
+        sagaJournal.close();
+    }
+
+    /**
+     * Recorded outcome of one saga step; pending until the first attempt completes it
+     */
+    private static class StepRecord {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long createdAtMillis;
+        private volatile ClusterReply reply;
+        private volatile long finishedAtMillis; // 0 until the router reports the saga settled
+
+        StepRecord(long createdAtMillis) {
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        void complete(ClusterReply reply) {
+            this.reply = reply;
+            done.countDown();
+        }
+
+        /**
+         * The recorded answer; FAILED if interrupted while the first attempt still runs
+         */
+        ClusterReply await() {
+            try {
+                done.await();
+                return reply;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new ClusterReply(TransactionStatus.FAILED, 0, 0);
+            }
+        }
+    }
+}
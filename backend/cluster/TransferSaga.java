@@ -0,0 +1,39 @@
+package cluster;
+
+import transactions.Transaction;
+import transactions.TransactionStatus;
+
+/**
+ * State of one cross-partition transfer as the router drives it.
+ *
+ * DEBITING and CREDITING are retried until the node gives a definite answer; a refused
+ * credit moves the saga to REFUNDING. Money is out of the source account from the moment
+ * the debit succeeds until the credit or the refund is applied.
+ */
+class TransferSaga {
+    enum State { DEBITING, CREDITING, REFUNDING, COMMITTED, COMPENSATED, FAILED }
+
+    final long sagaId;
+    final Transaction transaction;
+    final boolean preAuthenticated;
+    final int sourceNode;
+    final int targetNode;
+    volatile State state;
+    TransactionStatus failure; // why the transfer did not go through
+    double sourceBalance;
+    int failedAttempts;
+
+    TransferSaga(long sagaId, Transaction transaction, boolean preAuthenticated, int sourceNode, int targetNode) {
+        this.sagaId = sagaId;
+        this.transaction = transaction;
+        this.preAuthenticated = preAuthenticated;
+        this.sourceNode = sourceNode;
+        this.targetNode = targetNode;
+        this.state = State.DEBITING;
+    }
+
+    boolean isSettled() {
+        State current = state;
+        return current == State.COMMITTED || current == State.COMPENSATED || current == State.FAILED;
+    }
+}
@@ -0,0 +1,12 @@
+package cluster;
+
+/**
+ * A message or its reply was lost; the request may or may not have been applied
+ */
+public class TransportException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public TransportException(String message) {
+        super(message);
+    }
+}
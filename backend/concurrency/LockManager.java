@@ -1,46 +1,163 @@
 package concurrency;
 
-import accounts.Account;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages locks for accounts to prevent deadlocks during transfers
+ * Manages locks for accounts to prevent deadlocks during transfers.
+ *
+ * Every account lock keeps its own contention counters. A thread that finds a lock held
+ * first spins for a while, since transfer critical sections are only a few hundred
+ * nanoseconds, and parks only if that fails. The spin budget adapts per lock: it doubles
+ * when spinning won the lock and halves when it did not, so locks held for long stop
+ * burning CPU. On a single CPU the holder cannot run while we spin, so waiters always park.
+ * The timed variants give up after a deadline and return null (or false) instead of
+ * blocking, letting callers answer "busy, retry" rather than pile up behind a hot account.
  */
 public class LockManager {
-    private final ConcurrentHashMap<Integer, ReentrantLock> accountLocks;
-    
+    private static final int MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 4096 : 0;
+    private static final int MIN_SPINS = Math.min(MAX_SPINS, 16);
+    private static final int INITIAL_SPINS = Math.min(MAX_SPINS, 256);
+
+    private final ConcurrentHashMap<Integer, AccountLock> accountLocks;
+
     public LockManager() {
         this.accountLocks = new ConcurrentHashMap<>();
     }
-    
+
     /**
      * Get or create lock for an account
      */
-    private ReentrantLock getLock(int accountId) {
-        return accountLocks.computeIfAbsent(accountId, k -> new ReentrantLock());
+    private AccountLock getLock(int accountId) {
+        return accountLocks.computeIfAbsent(accountId, AccountLock::new);
     }
-    
+
     /**
      * Lock accounts in sorted order to prevent deadlocks
      * Returns array of locks acquired
      */
     public ReentrantLock[] lockAccounts(int accountId1, int accountId2) {
-        ReentrantLock lock1 = getLock(accountId1);
-        ReentrantLock lock2 = getLock(accountId2);
-        
+        AccountLock lock1 = getLock(accountId1);
+        AccountLock lock2 = getLock(accountId2);
+
         // Lock in ascending order to prevent deadlocks
         if (accountId1 < accountId2) {
-            lock1.lock();
-            lock2.lock();
+            acquire(lock1, -1);
+            acquire(lock2, -1);
             return new ReentrantLock[]{lock1, lock2};
         } else {
-            lock2.lock();
-            lock1.lock();
+            acquire(lock2, -1);
+            acquire(lock1, -1);
             return new ReentrantLock[]{lock2, lock1};
         }
     }
-    
+
+    /**
+     * lockAccounts(int, int) with a deadline for both locks together; returns null, holding
+     * nothing, if they could not be taken within timeoutMs
+     */
+    public ReentrantLock[] tryLockAccounts(int accountId1, int accountId2, long timeoutMs) {
+        return tryLockSorted(new int[]{Math.min(accountId1, accountId2), Math.max(accountId1, accountId2)},
+            accountId1 == accountId2 ? 1 : 2, timeoutMs);
+    }
+
+    /**
+     * Same ordering as lockAccounts(int, int) without returning an array; equal ids are
+     * locked once. Release with unlockPair using the same two ids.
+     */
+    public void lockPair(int accountId1, int accountId2) {
+        acquire(getLock(Math.min(accountId1, accountId2)), -1);
+        if (accountId1 != accountId2) {
+            acquire(getLock(Math.max(accountId1, accountId2)), -1);
+        }
+    }
+
+    /**
+     * lockPair with a deadline for both locks together; false, holding nothing, if the pair
+     * could not be taken in time
+     */
+    public boolean tryLockPair(int accountId1, int accountId2, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        AccountLock first = getLock(Math.min(accountId1, accountId2));
+        if (!acquire(first, TimeUnit.MILLISECONDS.toNanos(timeoutMs))) {
+            return false;
+        }
+        if (accountId1 != accountId2
+                && !acquire(getLock(Math.max(accountId1, accountId2)), Math.max(0, deadline - System.nanoTime()))) {
+            first.unlock();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release a pair taken by lockPair or tryLockPair; equal ids are unlocked once
+     */
+    public void unlockPair(int accountId1, int accountId2) {
+        if (accountId1 != accountId2) {
+            getLock(Math.max(accountId1, accountId2)).unlock();
+        }
+        getLock(Math.min(accountId1, accountId2)).unlock();
+    }
+
+    /**
+     * Lock any number of accounts in ascending id order (duplicates are locked once).
+     * Shares the ordering of lockAccounts(int, int), so mixed callers cannot deadlock.
+     */
+    public ReentrantLock[] lockAccounts(int[] accountIds) {
+        int[] sorted = accountIds.clone();
+        int distinct = sortDistinct(sorted);
+        ReentrantLock[] locks = new ReentrantLock[distinct];
+        for (int i = 0; i < distinct; i++) {
+            AccountLock lock = getLock(sorted[i]);
+            acquire(lock, -1);
+            locks[i] = lock;
+        }
+        return locks;
+    }
+
+    /**
+     * lockAccounts(int[]) with a deadline for the whole set; returns null, holding nothing,
+     * if any lock could not be taken within timeoutMs
+     */
+    public ReentrantLock[] tryLockAccounts(int[] accountIds, long timeoutMs) {
+        int[] sorted = accountIds.clone();
+        return tryLockSorted(sorted, sortDistinct(sorted), timeoutMs);
+    }
+
+    private ReentrantLock[] tryLockSorted(int[] sorted, int distinct, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        ReentrantLock[] locks = new ReentrantLock[distinct];
+        for (int i = 0; i < distinct; i++) {
+            AccountLock lock = getLock(sorted[i]);
+            if (!acquire(lock, Math.max(0, deadline - System.nanoTime()))) {
+                for (int j = i - 1; j >= 0; j--) {
+                    locks[j].unlock();
+                }
+                return null;
+            }
+            locks[i] = lock;
+        }
+        return locks;
+    }
+
+    private static int sortDistinct(int[] ids) {
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return distinct;
+    }
+
     /**
      * Unlock accounts
      */
@@ -51,16 +168,24 @@ public class LockManager {
             }
         }
     }
-    
+
     /**
      * Lock single account
      */
     public ReentrantLock lockAccount(int accountId) {
-        ReentrantLock lock = getLock(accountId);
-        lock.lock();
+        AccountLock lock = getLock(accountId);
+        acquire(lock, -1);
         return lock;
     }
-    
+
+    /**
+     * lockAccount with a deadline; null if the lock could not be taken within timeoutMs
+     */
+    public ReentrantLock tryLockAccount(int accountId, long timeoutMs) {
+        AccountLock lock = getLock(accountId);
+        return acquire(lock, TimeUnit.MILLISECONDS.toNanos(timeoutMs)) ? lock : null;
+    }
+
     /**
      * Unlock single account
      */
@@ -69,5 +194,122 @@ public class LockManager {
             lock.unlock();
         }
     }
-}
 
+    /**
+     * Accounts whose locks cost callers the most waiting, worst first
+     */
+    public List<LockStats> getMostContended(int limit) {
+        List<LockStats> contended = new ArrayList<>();
+        for (AccountLock lock : accountLocks.values()) {
+            if (lock.contended > 0 || lock.timeouts.sum() > 0) {
+                contended.add(lock.stats());
+            }
+        }
+        contended.sort(Comparator.comparingLong(LockStats::getTotalWaitNanos).reversed()
+            .thenComparing(Comparator.comparingLong(LockStats::getContended).reversed()));
+        return contended.size() > limit ? new ArrayList<>(contended.subList(0, limit)) : contended;
+    }
+
+    /**
+     * Counters of one account's lock, or null if it was never locked
+     */
+    public LockStats getStats(int accountId) {
+        AccountLock lock = accountLocks.get(accountId);
+        return lock == null ? null : lock.stats();
+    }
+
+    public long getTotalContended() {
+        long total = 0;
+        for (AccountLock lock : accountLocks.values()) {
+            total += lock.contended;
+        }
+        return total;
+    }
+
+    public long getTotalTimeouts() {
+        long total = 0;
+        for (AccountLock lock : accountLocks.values()) {
+            total += lock.timeouts.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Take the lock, spinning within the lock's budget before parking. A negative timeout
+     * waits forever; otherwise false after timeoutNanos without the lock.
+     */
+    private static boolean acquire(AccountLock lock, long timeoutNanos) {
+        if (lock.tryLock()) {
+            lock.acquisitions++;
+            return true;
+        }
+        long start = System.nanoTime();
+        int budget = lock.spinBudget;
+        for (int i = 0; i < budget; i++) {
+            Thread.onSpinWait();
+            if (!lock.isLocked() && lock.tryLock()) {
+                lock.spinBudget = Math.min(MAX_SPINS, budget << 1);
+                lock.spinAcquisitions++;
+                lock.recordWait(start);
+                return true;
+            }
+        }
+        // The holder outlasted the spin: spin less on this lock next time, then park
+        if (budget > MIN_SPINS) {
+            lock.spinBudget = Math.max(MIN_SPINS, budget >> 1);
+        }
+        if (timeoutNanos < 0) {
+            lock.lock();
+        } else {
+            boolean acquired;
+            try {
+                acquired = lock.tryLock(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                lock.timeouts.increment();
+                return false;
+            }
+        }
+        lock.recordWait(start);
+        return true;
+    }
+
+    /**
+     * Account lock with its contention counters. Everything but the timeout count is
+     * written only by the thread holding the lock, so plain updates suffice; volatile
+     * keeps the readings of getMostContended reasonably fresh.
+     */
+    private static final class AccountLock extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+        private final int accountId;
+        private final LongAdder timeouts = new LongAdder();
+        private volatile long acquisitions;
+        private volatile long contended;
+        private volatile long spinAcquisitions;
+        private volatile long totalWaitNanos;
+        private volatile long maxWaitNanos;
+        private volatile int spinBudget = INITIAL_SPINS; // racy by design, it is only a hint
+
+        AccountLock(int accountId) {
+            this.accountId = accountId;
+        }
+
+        void recordWait(long start) {
+            long waited = System.nanoTime() - start;
+            acquisitions++;
+            contended++;
+            totalWaitNanos += waited;
+            if (waited > maxWaitNanos) {
+                maxWaitNanos = waited;
+            }
+        }
+
+        LockStats stats() {
+            return new LockStats(accountId, acquisitions, contended, spinAcquisitions, timeouts.sum(),
+                totalWaitNanos, maxWaitNanos, spinBudget);
+        }
+    }
+}
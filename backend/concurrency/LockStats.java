@@ -0,0 +1,83 @@
+package concurrency;
+
+/**
+ * Point-in-time contention counters of one account lock, as reported by LockManager
+ */
+public class LockStats {
+    private final int accountId;
+    private final long acquisitions;
+    private final long contended;
+    private final long spinAcquisitions;
+    private final long timeouts;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final int spinBudget;
+
+    LockStats(int accountId, long acquisitions, long contended, long spinAcquisitions, long timeouts,
+              long totalWaitNanos, long maxWaitNanos, int spinBudget) {
+        this.accountId = accountId;
+        this.acquisitions = acquisitions;
+        this.contended = contended;
+        this.spinAcquisitions = spinAcquisitions;
+        this.timeouts = timeouts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.spinBudget = spinBudget;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Acquisitions that found the lock held and had to spin or park
+     */
+    public long getContended() {
+        return contended;
+    }
+
+    /**
+     * Contended acquisitions that succeeded while spinning, without parking
+     */
+    public long getSpinAcquisitions() {
+        return spinAcquisitions;
+    }
+
+    /**
+     * Timed acquisitions that gave up
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * Current adaptive spin budget in iterations; 0 means waiters park straight away
+     */
+    public int getSpinBudget() {
+        return spinBudget;
+    }
+
+    public double getContentionRate() {
+        return acquisitions == 0 ? 0 : (double) contended / acquisitions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Account %d: acquisitions=%d contended=%d (%.1f%%, %d by spinning) timeouts=%d "
+                + "wait total=%.1fms max=%.2fms spin=%d",
+            accountId, acquisitions, contended, getContentionRate() * 100, spinAcquisitions, timeouts,
+            totalWaitNanos / 1e6, maxWaitNanos / 1e6, spinBudget);
+    }
+}
@@ -0,0 +1,10 @@
+package events;
+
+import java.util.List;
+
+/**
+ * Receives events from a RingBufferEventBus in batches, on the subscriber's own thread
+ */
+public interface EventSubscriber<E> {
+    void onEvents(List<E> batch);
+}
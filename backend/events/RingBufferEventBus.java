@@ -0,0 +1,191 @@
+package events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process publish/subscribe bus built on a preallocated ring buffer (disruptor style).
+ *
+ * Producers claim a sequence with one atomic increment and publish into the slot; they
+ * never wait for subscribers. Each subscriber runs on its own thread, follows the ring
+ * with its own cursor and receives events in batches. A subscriber that falls more than
+ * a full ring behind skips the overwritten events and counts them as dropped, so a slow
+ * consumer can never back-pressure the transaction path.
+ */
+public class RingBufferEventBus<E> {
+    private static final int MAX_BATCH = 256;
+    private static final long MAX_IDLE_PARK_NANOS = 1_000_000L;
+    
+    private final String name;
+    private final int mask;
+    private final AtomicReferenceArray<E> entries;
+    private final AtomicLongArray published; // sequence stored in each slot, -1 while being written
+    private final AtomicLong cursor;
+    private final List<Subscription> subscriptions;
+    
+    public RingBufferEventBus(String name, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.name = name;
+        this.mask = capacity - 1;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.cursor = new AtomicLong(0);
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+    
+    /**
+     * Publish an event; wait-free for the producer
+     */
+    public void publish(E event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long sequence = cursor.getAndIncrement();
+        int index = (int) sequence & mask;
+        published.set(index, -1);
+        entries.set(index, event);
+        published.set(index, sequence);
+        for (Subscription subscription : subscriptions) {
+            subscription.wakeIfIdle();
+        }
+    }
+    
+    /**
+     * Whether anyone listens; publishers may skip building events nobody would receive
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+    
+    /**
+     * Start a consumer thread delivering events published from now on
+     */
+    public Subscription subscribe(String subscriberName, EventSubscriber<E> subscriber) {
+        Subscription subscription = new Subscription(subscriberName, subscriber, cursor.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+    
+    /**
+     * Stop all consumers after they drain what has been published
+     */
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+    
+    public long getPublishedCount() {
+        return cursor.get();
+    }
+    
+    public class Subscription {
+        private final EventSubscriber<E> subscriber;
+        private final Thread thread;
+        private final AtomicLong processed;
+        private final AtomicLong dropped;
+        private volatile boolean running;
+        private volatile boolean idle;
+        private long nextSequence;
+        
+        private Subscription(String subscriberName, EventSubscriber<E> subscriber, long startSequence) {
+            this.subscriber = subscriber;
+            this.processed = new AtomicLong(0);
+            this.dropped = new AtomicLong(0);
+            this.running = true;
+            this.nextSequence = startSequence;
+            this.thread = new Thread(this::run, "event-bus-" + name + "-" + subscriberName);
+            this.thread.setDaemon(true);
+        }
+        
+        private void run() {
+            List<E> batch = new ArrayList<>(MAX_BATCH);
+            long parkNanos = 1_000;
+            while (true) {
+                boolean stopping = !running;
+                poll(batch);
+                if (!batch.isEmpty()) {
+                    try {
+                        subscriber.onEvents(batch);
+                    } catch (RuntimeException e) {
+                        System.err.println("Event subscriber " + thread.getName() + " failed: " + e.getMessage());
+                    }
+                    processed.addAndGet(batch.size());
+                    batch.clear();
+                    parkNanos = 1_000;
+                    continue;
+                }
+                if (stopping) {
+                    break;
+                }
+                idle = true;
+                if (nextSequence == cursor.get()) {
+                    LockSupport.parkNanos(this, parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+            subscriptions.remove(this);
+        }
+        
+        /**
+         * Collect up to MAX_BATCH contiguous published events
+         */
+        private void poll(List<E> batch) {
+            long available = cursor.get();
+            if (available - nextSequence > mask + 1) {
+                // Lapped: everything older than one ring has been overwritten
+                long skipTo = available - (mask + 1);
+                dropped.addAndGet(skipTo - nextSequence);
+                nextSequence = skipTo;
+            }
+            while (nextSequence < available && batch.size() < MAX_BATCH) {
+                int index = (int) nextSequence & mask;
+                long slotSequence = published.get(index);
+                if (slotSequence < nextSequence) {
+                    return; // claimed but not yet published
+                }
+                E event = entries.get(index);
+                if (slotSequence != nextSequence || published.get(index) != nextSequence) {
+                    dropped.incrementAndGet(); // overwritten while we were reading
+                } else {
+                    batch.add(event);
+                }
+                nextSequence++;
+            }
+        }
+        
+        private void wakeIfIdle() {
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+        
+        /**
+         * Stop after draining already published events
+         */
+        public void close() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+        
+        public long getProcessedCount() {
+            return processed.get();
+        }
+        
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+    }
+}
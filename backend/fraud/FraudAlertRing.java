@@ -0,0 +1,55 @@
+package fraud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of the most recent fraud alerts.
+ * Every alert gets a sequence number so readers can ask for "everything after N".
+ */
+public class FraudAlertRing {
+    private final FraudAlert[] slots;
+    private long nextSequence;
+    
+    public FraudAlertRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.slots = new FraudAlert[capacity];
+        this.nextSequence = 0;
+    }
+    
+    /**
+     * Add an alert, overwriting the oldest once the ring is full
+     */
+    public synchronized void add(FraudAlert alert) {
+        slots[(int) (nextSequence % slots.length)] = alert;
+        nextSequence++;
+    }
+    
+    /**
+     * Sequence number the next alert will get (equals the number of alerts ever added)
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+    
+    /**
+     * Alerts with sequence >= fromSequence that are still in the ring, oldest first
+     */
+    public synchronized List<FraudAlert> getSince(long fromSequence) {
+        long start = Math.max(fromSequence, Math.max(0, nextSequence - slots.length));
+        List<FraudAlert> result = new ArrayList<>((int) Math.max(0, nextSequence - start));
+        for (long seq = start; seq < nextSequence; seq++) {
+            result.add(slots[(int) (seq % slots.length)]);
+        }
+        return result;
+    }
+    
+    /**
+     * All alerts still in the ring, oldest first
+     */
+    public List<FraudAlert> getAll() {
+        return getSince(0);
+    }
+}
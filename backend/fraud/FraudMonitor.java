@@ -2,6 +2,8 @@ package fraud;
 
 import accounts.Account;
 import accounts.AccountRepository;
+import events.EventSubscriber;
+import events.RingBufferEventBus;
 import notification.EmailNotifier;
 import transactions.Transaction;
 import transactions.TransactionType;
@@ -10,6 +12,7 @@ import util.DateTimeUtil;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -25,11 +28,15 @@ public class FraudMonitor {
     private final AtomicInteger totalFraudAlerts;
     private final ConcurrentHashMap<Integer, AtomicInteger> perAccountAlerts;
     private final EmailNotifier emailNotifier;
+    private final FraudAlertRing recentAlerts;
+    private final RingBufferEventBus<FraudAlert> alertBus;
     private static final String FRAUD_REPORT_FILE = "logs/fraud_report.txt";
     private static final double HIGH_VALUE_THRESHOLD = 5000.0;
     private static final int RAPID_WITHDRAWAL_THRESHOLD = 3; // 3 withdrawals in short time
     private static final long RAPID_WITHDRAWAL_WINDOW_MS = 60000; // 1 minute
     private static final int AUTO_FREEZE_THRESHOLD = 3; // auto-freeze after 3 alerts
+    private static final int RECENT_ALERT_CAPACITY = 1024;
+    private static final int ALERT_BUS_CAPACITY = 1024;
     
     public FraudMonitor(AccountRepository accountRepository, EmailNotifier emailNotifier) {
         this.accountRepository = accountRepository;
@@ -39,6 +46,8 @@ public class FraudMonitor {
         this.totalFraudAlerts = new AtomicInteger(0);
         this.perAccountAlerts = new ConcurrentHashMap<>();
         this.emailNotifier = emailNotifier;
+        this.recentAlerts = new FraudAlertRing(RECENT_ALERT_CAPACITY);
+        this.alertBus = new RingBufferEventBus<>("fraud-alerts", ALERT_BUS_CAPACITY);
         initializeFraudReport();
     }
     
@@ -59,30 +68,40 @@ public class FraudMonitor {
      * Monitor a transaction for fraud
      */
     public void monitorTransaction(Transaction transaction) {
-        Account account = accountRepository.getAccount(transaction.getAccountId());
+        monitorTransaction(transaction, accountRepository.getAccount(transaction.getAccountId()));
+    }
+    
+    /**
+     * Monitor a transaction whose account the caller has already resolved
+     */
+    public void monitorTransaction(Transaction transaction, Account account) {
         if (account == null) {
             return;
         }
         
-        // Check failed PIN attempts
-        if (account.getFailedPinAttempts() >= 3) {
-            generateAlert(new FraudAlert(transaction.getAccountId(), 
-                "Multiple failed PIN attempts (" + account.getFailedPinAttempts() + ")", 
-                "HIGH"));
-        }
+        monitorPinFailures(account);
         
         // Monitor withdrawals
         if (transaction.getType() == TransactionType.WITHDRAW) {
-            monitorWithdrawal(transaction);
+            monitorWithdrawal(transaction.getAccountId(), transaction.getAmount());
+        }
+    }
+    
+    /**
+     * Alert on an account that has collected repeated failed PIN attempts
+     */
+    public void monitorPinFailures(Account account) {
+        if (account.getFailedPinAttempts() >= 3) {
+            generateAlert(new FraudAlert(account.getAccountId(), 
+                "Multiple failed PIN attempts (" + account.getFailedPinAttempts() + ")", 
+                "HIGH"));
         }
     }
     
     /**
-     * Monitor withdrawal for suspicious patterns
+     * Monitor a completed withdrawal for suspicious patterns
      */
-    private void monitorWithdrawal(Transaction transaction) {
-        int accountId = transaction.getAccountId();
-        double amount = transaction.getAmount();
+    public void monitorWithdrawal(int accountId, double amount) {
         long currentTime = System.currentTimeMillis();
         
         // Check for high-value withdrawals
@@ -109,7 +128,7 @@ public class FraudMonitor {
             }
         } else {
             // Reset counter if enough time has passed
-            rapidWithdrawalCount.put(accountId, new AtomicInteger(1));
+            rapidWithdrawalCount.computeIfAbsent(accountId, k -> new AtomicInteger(0)).set(1);
         }
         
         lastTime.set(currentTime);
@@ -121,6 +140,8 @@ public class FraudMonitor {
     private void generateAlert(FraudAlert alert) {
         totalFraudAlerts.incrementAndGet();
         perAccountAlerts.computeIfAbsent(alert.getAccountId(), k -> new AtomicInteger(0)).incrementAndGet();
+        recentAlerts.add(alert);
+        alertBus.publish(alert);
         
         try (PrintWriter writer = new PrintWriter(new FileWriter(FRAUD_REPORT_FILE, true))) {
             writer.println(alert.toLogFormat());
@@ -149,6 +170,14 @@ public class FraudMonitor {
         }
     }
     
+    /**
+     * Raise an alert when an account is locked out after repeated invalid PINs
+     */
+    public void reportPinLockout(int accountId, long lockoutMs) {
+        generateAlert(new FraudAlert(accountId, 
+            "PIN attempts locked out for " + (lockoutMs / 1000) + "s after repeated invalid PINs", "HIGH"));
+    }
+    
     /**
      * Get total fraud alerts count
      */
@@ -156,6 +185,34 @@ public class FraudMonitor {
         return totalFraudAlerts.get();
     }
     
+    /**
+     * Subscribe to fraud alerts; delivered in batches on a dedicated thread
+     */
+    public RingBufferEventBus<FraudAlert>.Subscription subscribe(String name, EventSubscriber<FraudAlert> subscriber) {
+        return alertBus.subscribe(name, subscriber);
+    }
+    
+    /**
+     * Recent alerts kept in memory (bounded), oldest first
+     */
+    public List<FraudAlert> getRecentAlerts() {
+        return recentAlerts.getAll();
+    }
+    
+    /**
+     * Recent alerts published at or after the given sequence number
+     */
+    public List<FraudAlert> getRecentAlertsSince(long sequence) {
+        return recentAlerts.getSince(sequence);
+    }
+    
+    /**
+     * Sequence number of the next alert; pass to getRecentAlertsSince to poll incrementally
+     */
+    public long getAlertSequence() {
+        return recentAlerts.getNextSequence();
+    }
+    
     /**
      * Reset monitoring data for an account
      */
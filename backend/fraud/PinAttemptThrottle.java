@@ -0,0 +1,192 @@
+package fraud;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket of failed PIN attempts per key (an account id or an ATM id).
+ *
+ * Each failure takes one token and tokens trickle back at a fixed rate. When a bucket
+ * runs dry the key is locked out, and every further lockout doubles in length up to a cap,
+ * so a persistent attacker is slowed down progressively. Checking a key is a map lookup
+ * and a volatile read, cheap enough to run before any PIN hashing.
+ */
+public class PinAttemptThrottle<K> {
+    private static final int MAX_ESCALATION_SHIFT = 10;
+    private static final int SWEEP_THRESHOLD = 10_000;
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private final int capacity;
+    private final long refillIntervalNanos;
+    private final long baseLockoutNanos;
+    private final long maxLockoutNanos;
+    private final ConcurrentHashMap<K, Bucket> buckets;
+    private final AtomicLong lastSweepNanos;
+    private final AtomicLong rejectedCount;
+    private final AtomicLong lockoutCount;
+
+    /**
+     * @param capacity           failures allowed in a burst before the first lockout
+     * @param refillIntervalMs   time for one failure to be forgiven
+     * @param baseLockoutMs      length of the first lockout; doubled for each one after
+     * @param maxLockoutMs       upper bound on a single lockout
+     */
+    public PinAttemptThrottle(String name, int capacity, long refillIntervalMs,
+                              long baseLockoutMs, long maxLockoutMs) {
+        if (capacity <= 0 || refillIntervalMs <= 0) {
+            throw new IllegalArgumentException("Capacity and refill interval must be positive");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.refillIntervalNanos = refillIntervalMs * 1_000_000L;
+        this.baseLockoutNanos = baseLockoutMs * 1_000_000L;
+        this.maxLockoutNanos = maxLockoutMs * 1_000_000L;
+        this.buckets = new ConcurrentHashMap<>();
+        this.lastSweepNanos = new AtomicLong(System.nanoTime());
+        this.rejectedCount = new AtomicLong(0);
+        this.lockoutCount = new AtomicLong(0);
+    }
+
+    /**
+     * True if the key is currently locked out; counted as a rejection
+     */
+    public boolean isLockedOut(K key) {
+        if (key == null) {
+            return false;
+        }
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return false;
+        }
+        if (bucket.state.get().lockedUntilNanos - System.nanoTime() > 0) {
+            rejectedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remaining lockout in milliseconds, 0 if the key is not locked out
+     */
+    public long getLockoutRemainingMs(K key) {
+        Bucket bucket = key == null ? null : buckets.get(key);
+        if (bucket == null) {
+            return 0;
+        }
+        long remaining = bucket.state.get().lockedUntilNanos - System.nanoTime();
+        return remaining > 0 ? remaining / 1_000_000L : 0;
+    }
+
+    /**
+     * Record a failed attempt. Returns the lockout length in milliseconds if this
+     * failure emptied the bucket, otherwise 0.
+     */
+    public long recordFailure(K key) {
+        if (key == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        while (true) {
+            State current = bucket.state.get();
+            State next = current.afterFailure(now);
+            if (bucket.state.compareAndSet(current, next)) {
+                sweepIfNeeded(now);
+                if (next.strikes > current.strikes) {
+                    lockoutCount.incrementAndGet();
+                    return (next.lockedUntilNanos - now) / 1_000_000L;
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Forget the failure history of a key, e.g. after a correct PIN
+     */
+    public void recordSuccess(K key) {
+        if (key != null) {
+            Bucket bucket = buckets.get(key);
+            // Keep escalation state while a lockout is still running
+            if (bucket != null && bucket.state.get().lockedUntilNanos - System.nanoTime() <= 0) {
+                buckets.remove(key, bucket);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getLockoutCount() {
+        return lockoutCount.get();
+    }
+
+    public int getTrackedKeyCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Drop buckets that have fully refilled and are not locked out, so a spray over many
+     * keys cannot grow the map without bound. Runs at most once per interval.
+     */
+    private void sweepIfNeeded(long now) {
+        long last = lastSweepNanos.get();
+        if (buckets.size() < SWEEP_THRESHOLD || now - last < SWEEP_INTERVAL_NANOS
+                || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.state.get().isIdle(now));
+    }
+
+    private class Bucket {
+        final AtomicReference<State> state;
+
+        Bucket(long now) {
+            this.state = new AtomicReference<>(new State(capacity, now, now, 0));
+        }
+    }
+
+    /**
+     * Immutable bucket state, swapped atomically
+     */
+    private class State {
+        final double tokens;
+        final long refilledAtNanos;
+        final long lockedUntilNanos;
+        final int strikes;
+
+        State(double tokens, long refilledAtNanos, long lockedUntilNanos, int strikes) {
+            this.tokens = tokens;
+            this.refilledAtNanos = refilledAtNanos;
+            this.lockedUntilNanos = lockedUntilNanos;
+            this.strikes = strikes;
+        }
+
+        double tokensAt(long now) {
+            return Math.min(capacity, tokens + (double) (now - refilledAtNanos) / refillIntervalNanos);
+        }
+
+        State afterFailure(long now) {
+            double available = tokensAt(now) - 1;
+            if (available >= 0) {
+                return new State(available, now, lockedUntilNanos, strikes);
+            }
+            if (lockedUntilNanos - now > 0) {
+                return new State(0, now, lockedUntilNanos, strikes); // already locked out
+            }
+            long lockout = Math.min(maxLockoutNanos, baseLockoutNanos << Math.min(strikes, MAX_ESCALATION_SHIFT));
+            return new State(0, now, now + lockout, strikes + 1);
+        }
+
+        boolean isIdle(long now) {
+            return lockedUntilNanos - now <= 0 && tokensAt(now) >= capacity;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package loadgen;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks target accounts according to a popularity distribution.
+ * Zipf selection uses a precomputed cumulative table and binary search.
+ */
+public class AccountSelector {
+    private final int[] accountIds;
+    private final double[] cumulative; // null for uniform selection
+    private final String description;
+
+    private AccountSelector(int[] accountIds, double[] cumulative, String description) {
+        if (accountIds.length == 0) {
+            throw new IllegalArgumentException("No accounts to select from");
+        }
+        this.accountIds = accountIds;
+        this.cumulative = cumulative;
+        this.description = description;
+    }
+
+    /**
+     * Every account is equally likely
+     */
+    public static AccountSelector uniform(int[] accountIds) {
+        return new AccountSelector(accountIds.clone(), null, "UNIFORM");
+    }
+
+    /**
+     * Account at rank k (in the given order) is chosen with probability proportional to 1 / k^exponent
+     */
+    public static AccountSelector zipf(int[] accountIds, double exponent) {
+        double[] cumulative = new double[accountIds.length];
+        double sum = 0;
+        for (int i = 0; i < accountIds.length; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+        return new AccountSelector(accountIds.clone(), cumulative, String.format("ZIPF(s=%.2f)", exponent));
+    }
+
+    /**
+     * Pick an account id
+     */
+    public int next(Random random) {
+        if (cumulative == null) {
+            return accountIds[random.nextInt(accountIds.length)];
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return accountIds[Math.min(index, accountIds.length - 1)];
+    }
+
+    /**
+     * Pick an account id different from the given one (used for transfer targets)
+     */
+    public int nextOther(Random random, int excludedId) {
+        if (accountIds.length < 2) {
+            return excludedId;
+        }
+        int id;
+        do {
+            id = next(random);
+        } while (id == excludedId);
+        return id;
+    }
+
+    public int size() {
+        return accountIds.length;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
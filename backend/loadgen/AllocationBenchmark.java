@@ -0,0 +1,208 @@
+package loadgen;
+
+import accounts.AccountRepository;
+import atm.ATMService;
+import atm.ATMSession;
+import fraud.FraudMonitor;
+import transactions.RingResult;
+import transactions.TransactionProcessor;
+import transactions.TransactionType;
+import util.SecurityUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures heap bytes allocated per transaction on the regular Future-based session path
+ * and on the submission ring.
+ *
+ * Each ATM thread logs in once and runs the same sequence of inquiries, small deposits and
+ * small transfers on both paths (no withdrawals, so the rapid-withdrawal rule does not
+ * freeze the test accounts). Allocation is read from the per-thread counters of the JVM
+ * for every thread that is alive during the phase (clients, workers, PIN verifier, event
+ * bus subscribers), so work moved off the client thread is still counted.
+ */
+public class AllocationBenchmark {
+
+    private final ATMService atmService;
+    private final Map<Integer, Integer> pins;
+    private final int[] accountIds;
+    private final com.sun.management.ThreadMXBean threads;
+
+    public AllocationBenchmark(ATMService atmService, Map<Integer, Integer> pins) {
+        this.atmService = atmService;
+        this.pins = pins;
+        this.accountIds = pins.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Run one phase and return {transactions, bytes allocated, elapsed nanos}
+     */
+    public long[] runPhase(boolean ring, int atms, int requestsPerAtm, long seed) {
+        CountDownLatch ready = new CountDownLatch(atms);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(atms);
+        CountDownLatch exit = new CountDownLatch(1);
+        AtomicLong transactions = new AtomicLong(0);
+        Thread[] clients = new Thread[atms];
+
+        for (int i = 0; i < atms; i++) {
+            int accountId = accountIds[i % accountIds.length];
+            int targetId = accountIds[(i + 1) % accountIds.length];
+            String atmId = String.format("ATM-%03d", i + 1);
+            Random random = new Random(seed + i);
+            clients[i] = new Thread(() -> {
+                ATMSession session = atmService.login(atmId, "Customer", accountId, pins.get(accountId));
+                RingResult result = new RingResult();
+                ready.countDown();
+                await(start);
+                int done = 0;
+                if (session != null) {
+                    for (int n = 0; n < requestsPerAtm; n++) {
+                        int choice = random.nextInt(3);
+                        TransactionType type = choice == 0 ? TransactionType.BALANCE_INQUIRY
+                            : choice == 1 ? TransactionType.DEPOSIT : TransactionType.TRANSFER;
+                        double amount = type == TransactionType.BALANCE_INQUIRY ? 0 : 1;
+                        int target = type == TransactionType.TRANSFER ? targetId : 0;
+                        if (ring) {
+                            atmService.processInSession(session, type, target, amount, result);
+                        } else {
+                            callRegular(session, type, target, amount);
+                        }
+                        done++;
+                    }
+                }
+                transactions.addAndGet(done);
+                finished.countDown();
+                await(exit); // stay alive so this thread's counter is still readable
+                if (session != null) {
+                    atmService.logout(session);
+                }
+            }, atmId);
+            clients[i].start();
+        }
+
+        await(ready);
+        Map<Long, Long> before = allocatedByThread();
+        long begin = System.nanoTime();
+        start.countDown();
+        await(finished);
+        long elapsed = System.nanoTime() - begin;
+        Map<Long, Long> after = allocatedByThread();
+        exit.countDown();
+        for (Thread client : clients) {
+            try {
+                client.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // Threads that started during the phase count from zero; this thread's own work is excluded
+        long bytes = 0;
+        long self = Thread.currentThread().getId();
+        for (Map.Entry<Long, Long> entry : after.entrySet()) {
+            if (entry.getKey() != self) {
+                bytes += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        return new long[] {transactions.get(), bytes, elapsed};
+    }
+
+    private void callRegular(ATMSession session, TransactionType type, int target, double amount) {
+        try {
+            switch (type) {
+                case DEPOSIT:
+                    atmService.processRequest(atmService.createDepositRequest(session, amount)).get();
+                    break;
+                case TRANSFER:
+                    atmService.processRequest(atmService.createTransferRequest(session, target, amount)).get();
+                    break;
+                default:
+                    atmService.processRequest(atmService.createBalanceInquiryRequest(session)).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // counted like any other completed request
+        }
+    }
+
+    private Map<Long, Long> allocatedByThread() {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> byThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                byThread.put(ids[i], bytes[i]);
+            }
+        }
+        return byThread;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Arguments are key=value pairs: accounts=1000 atms=8 requests=20000 seed=7 pincost=10000
+     * (requests is per ATM and per phase; pincost is the PBKDF2 cost of the generated PINs)
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        int atms = Integer.parseInt(options.getOrDefault("atms", "8"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "20000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "7"));
+        if (options.containsKey("pincost")) {
+            SecurityUtil.setPinHashIterations(Integer.parseInt(options.get("pincost")));
+        }
+
+        AccountRepository repository = new AccountRepository();
+        Map<Integer, Integer> pins = LoadGenerator.createAccounts(repository, accountCount, 100000, 1_000_000.0, seed);
+        TransactionProcessor processor = new TransactionProcessor(repository, new FraudMonitor(repository, null));
+        AllocationBenchmark benchmark = new AllocationBenchmark(new ATMService(processor), pins);
+
+        // Warm up both paths so the JIT has settled and the ring workers exist
+        benchmark.runPhase(false, atms, Math.max(1, requests / 4), seed);
+        benchmark.runPhase(true, atms, Math.max(1, requests / 4), seed);
+        long[] regular = benchmark.runPhase(false, atms, requests, seed);
+        long[] ring = benchmark.runPhase(true, atms, requests, seed);
+        processor.shutdown();
+
+        System.out.println("=".repeat(70));
+        System.out.println(String.format("ALLOCATION BENCHMARK  accounts=%d ATMs=%d requests/ATM=%d",
+            accountCount, atms, requests));
+        System.out.println("=".repeat(70));
+        print("Regular path   ", regular);
+        print("Submission ring", ring);
+        if (regular[0] > 0 && ring[0] > 0 && ring[1] > 0) {
+            System.out.println(String.format("Allocation reduced %.1fx",
+                ((double) regular[1] / regular[0]) / ((double) ring[1] / ring[0])));
+        }
+    }
+
+    private static void print(String label, long[] phase) {
+        double seconds = phase[2] / 1e9;
+        System.out.println(String.format("%s  %,d tx  %.0f tx/s  %,.0f bytes/tx", label, phase[0],
+            seconds > 0 ? phase[0] / seconds : 0, phase[0] > 0 ? (double) phase[1] / phase[0] : 0));
+    }
+}
@@ -0,0 +1,48 @@
+package loadgen;
+
+import accounts.AccountRepository;
+import batch.AccrualCalculator;
+import batch.BatchEngine;
+import util.SecurityUtil;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the end-of-day batch over generated accounts, then runs the same date again,
+ * which must resume or skip rather than post twice.
+ */
+public class BatchHarness {
+
+    /**
+     * Arguments are key=value pairs: accounts=100000 partition=4096 parallelism=4
+     * date=2026-01-31 pincost=1 (pincost is the PBKDF2 cost of the generated PINs)
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "100000"));
+        int partitionSize = Integer.parseInt(options.getOrDefault("partition",
+            String.valueOf(BatchEngine.DEFAULT_PARTITION_SIZE)));
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        LocalDate date = LocalDate.parse(options.getOrDefault("date", LocalDate.now().toString()));
+        SecurityUtil.setPinHashIterations(Integer.parseInt(options.getOrDefault("pincost", "1")));
+
+        AccountRepository repository = new AccountRepository();
+        LoadGenerator.createAccounts(repository, accountCount, 100000, 750.0, 42);
+        BatchEngine engine = new BatchEngine(repository, AccrualCalculator.standard(), BatchEngine.BATCH_JOURNAL_FILE,
+            parallelism, partitionSize);
+
+        System.out.println(engine.runEndOfDay(date));
+        // Running the same date again must be a no-op
+        System.out.println(engine.runEndOfDay(date));
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,186 @@
+package loadgen;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import bulk.AccountExporter;
+import bulk.AccountImporter;
+import util.SecurityUtil;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Round trip of the bulk loader: generate a CSV of new customers with plain PINs, import
+ * it (hashing every PIN), export it as binary and as CSV, import both exports into fresh
+ * repositories and check that every account came back identical, in the same positions,
+ * and that sampled PINs still verify.
+ */
+public class BulkLoadHarness {
+    private static final int FIRST_ACCOUNT_ID = 10_000_000;
+    private static final int PIN_SAMPLES = 100;
+
+    /**
+     * PIN of a generated customer, so sampled accounts can be verified after the round trip
+     */
+    private static int pinOf(int accountId) {
+        return 1000 + (int) ((accountId * 7919L) % 9000);
+    }
+
+    /**
+     * Write a CSV of new customers with plain PINs; every so often a name needs quoting and
+     * every malformedEvery-th line is broken on purpose
+     */
+    private static void generate(Path file, int accounts, int malformedEvery, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("account_id,type,name,balance,pin\n");
+            for (int i = 0; i < accounts; i++) {
+                int accountId = FIRST_ACCOUNT_ID + i;
+                if (malformedEvery > 0 && i % malformedEvery == malformedEvery - 1) {
+                    out.write(accountId + ",Checking,Broken Row,12.345,1234\n");
+                    continue;
+                }
+                out.write(Integer.toString(accountId));
+                out.write(i % 2 == 0 ? ",Savings," : ",Salary,");
+                if (i % 97 == 0) {
+                    out.write("\"Customer, \"\"" + i + "\"\"\"");
+                } else {
+                    out.write("Customer " + i);
+                }
+                out.write(',');
+                int cents = 10_000 + random.nextInt(10_000_000);
+                out.write(cents / 100 + (cents % 100 < 10 ? ".0" : ".") + cents % 100);
+                out.write(',');
+                out.write(Integer.toString(pinOf(accountId)));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Null if both repositories hold the same accounts in the same positions, else the first difference
+     */
+    private static String compare(AccountRepository expected, AccountRepository actual) {
+        if (expected.getAccountCount() != actual.getAccountCount()) {
+            return "account count " + expected.getAccountCount() + " vs " + actual.getAccountCount();
+        }
+        for (int position = 0; position < expected.getAccountCount(); position++) {
+            Account a = expected.getAccountAt(position);
+            Account b = actual.getAccountAt(position);
+            if (b == null || a.getAccountId() != b.getAccountId()) {
+                return "position " + position + " holds " + (b == null ? "nothing" : "account " + b.getAccountId())
+                    + " instead of account " + a.getAccountId();
+            }
+            AccountSnapshot x = a.snapshot();
+            AccountSnapshot y = b.snapshot();
+            if (!a.getAccountType().equals(b.getAccountType()) || !a.getName().equals(b.getName())
+                || Math.round(x.getBalance() * 100) != Math.round(y.getBalance() * 100)
+                || x.getTransactionCount() != y.getTransactionCount() || x.isFrozen() != y.isFrozen()
+                || !a.getPinHash().equals(b.getPinHash())) {
+                return "account " + a.getAccountId() + " differs: " + a + " vs " + b;
+            }
+        }
+        return null;
+    }
+
+    private static String checkPins(AccountRepository repository, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < PIN_SAMPLES; i++) {
+            Account account = repository.getAccountAt(random.nextInt(repository.getAccountCount()));
+            if (!account.validatePin(pinOf(account.getAccountId()))) {
+                return "PIN of account " + account.getAccountId() + " no longer verifies";
+            }
+        }
+        return null;
+    }
+
+    private static AccountRepository importInto(Path file, int parallelism, int chunkBytes) throws IOException {
+        int expected = AccountImporter.estimateAccounts(file);
+        AccountRepository repository = new AccountRepository(expected);
+        AccountImporter importer = new AccountImporter(repository, parallelism, chunkBytes);
+        try {
+            System.out.println(importer.importFile(file) + " (sized for " + expected + ")");
+        } finally {
+            importer.shutdown();
+        }
+        return repository;
+    }
+
+    /**
+     * Arguments are key=value pairs: accounts=1000000 pincost=1 parallelism=4
+     * chunk=8388608 (CSV bytes per import chunk) malformed=100000 (every n-th input row is
+     * broken, 0 for none) dir=logs/bulk seed=42 keep=false (keep the generated files)
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000000"));
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int chunkBytes = Integer.parseInt(options.getOrDefault("chunk", String.valueOf(AccountImporter.DEFAULT_CHUNK_BYTES)));
+        int malformedEvery = Integer.parseInt(options.getOrDefault("malformed", "100000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean keep = Boolean.parseBoolean(options.getOrDefault("keep", "false"));
+        Path dir = Paths.get(options.getOrDefault("dir", "logs/bulk"));
+        SecurityUtil.setPinHashIterations(Integer.parseInt(options.getOrDefault("pincost", "1")));
+        Files.createDirectories(dir);
+        Path input = dir.resolve("customers.csv");
+        Path binary = dir.resolve("accounts.bin");
+        Path csv = dir.resolve("accounts.csv");
+
+        long start = System.nanoTime();
+        generate(input, accounts, malformedEvery, seed);
+        System.out.println(String.format("Generated %d customers (%.1f MB) in %.2f s", accounts,
+            Files.size(input) / 1e6, (System.nanoTime() - start) / 1e9));
+
+        AccountRepository original = importInto(input, parallelism, chunkBytes);
+        // Give some accounts history and freeze a few, so the exports carry more than opening state
+        for (int position = 0; position < original.getAccountCount(); position += 7) {
+            Account account = original.getAccountAt(position);
+            account.deposit(25.50);
+            if (position % 7_000 == 0) {
+                account.setFrozen(true);
+            }
+        }
+
+        AccountExporter exporter = new AccountExporter(original, parallelism, AccountExporter.DEFAULT_CHUNK_ACCOUNTS);
+        String failure;
+        try {
+            System.out.println(exporter.exportFile(binary));
+            System.out.println(exporter.exportFile(csv));
+        } finally {
+            exporter.shutdown();
+        }
+        failure = compare(original, importInto(binary, parallelism, chunkBytes));
+        if (failure == null) {
+            failure = compare(original, importInto(csv, parallelism, chunkBytes));
+        }
+        if (failure == null) {
+            failure = checkPins(original, seed);
+        }
+        if (!keep) {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(csv);
+        }
+        if (failure != null) {
+            System.out.println("ROUND TRIP FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("Round trip OK: " + original.getAccountCount() + " accounts identical after binary and "
+            + "CSV export and re-import");
+    }
+}
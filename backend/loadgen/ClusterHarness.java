@@ -0,0 +1,209 @@
+package loadgen;
+
+import accounts.AccountRepository;
+import atm.ATMService;
+import atm.ATMSession;
+import cluster.ClusterRouter;
+import cluster.LocalTransport;
+import cluster.PartitionMap;
+import cluster.PartitionNode;
+import transactions.RingResult;
+import transactions.TransactionResult;
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+import util.SecurityUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Starts several partition nodes in one JVM behind a ClusterRouter and an ATMService, runs
+ * concurrent transfers while the transport drops messages and nodes drop out, then heals
+ * the cluster, waits for every saga to settle and checks that no money was created or lost.
+ *
+ * A few accounts are frozen and some transfers target ids that do not exist, so refunds
+ * (compensations) happen as well as commits. Only transfers are issued: no money enters or
+ * leaves the cluster, so the total must match the opening total exactly.
+ */
+public class ClusterHarness {
+    private static final int FIRST_ACCOUNT_ID = 100000;
+    private static final int THREADS_PER_NODE = 8;
+    private static final long SETTLE_TIMEOUT_MS = 60_000;
+
+    /**
+     * Command line entry point. Arguments are key=value pairs:
+     * nodes=3 accounts=3000 clients=16 transfers=20000 drop=0.05 outages=true balance=1000 seed=42
+     * pincost=1000 (PBKDF2 iterations for the generated accounts' PINs)
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int nodeCount = Integer.parseInt(options.getOrDefault("nodes", "3"));
+        int accountsPerNode = Integer.parseInt(options.getOrDefault("accounts", "3000")) / nodeCount;
+        int clientCount = Integer.parseInt(options.getOrDefault("clients", "16"));
+        int transfers = Integer.parseInt(options.getOrDefault("transfers", "20000"));
+        double dropRate = Double.parseDouble(options.getOrDefault("drop", "0.05"));
+        boolean outages = Boolean.parseBoolean(options.getOrDefault("outages", "true"));
+        double balance = Double.parseDouble(options.getOrDefault("balance", "1000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        SecurityUtil.setPinHashIterations(Integer.parseInt(options.getOrDefault("pincost", "1000")));
+
+        PartitionMap partitionMap = PartitionMap.contiguous(FIRST_ACCOUNT_ID, accountsPerNode, nodeCount);
+        LocalTransport transport = new LocalTransport(THREADS_PER_NODE);
+        PartitionNode[] nodes = new PartitionNode[nodeCount];
+        Map<Integer, Integer> pins = new HashMap<>();
+        Random setup = new Random(seed);
+        for (int i = 0; i < nodeCount; i++) {
+            AccountRepository repository = new AccountRepository();
+            pins.putAll(LoadGenerator.createAccounts(repository, accountsPerNode,
+                partitionMap.getLowerBound(i), balance, seed + i));
+            for (int frozen = 0; frozen < Math.max(1, accountsPerNode / 100); frozen++) {
+                repository.setAccountFrozen(partitionMap.getLowerBound(i) + setup.nextInt(accountsPerNode), true);
+            }
+            nodes[i] = new PartitionNode(i, repository, "logs/node-" + i);
+            transport.register(i, nodes[i]);
+        }
+        double openingTotal = totalBalance(nodes);
+
+        ClusterRouter router = new ClusterRouter(partitionMap, transport);
+        ATMService atmService = new ATMService(router);
+        transport.setRequestDropRate(dropRate);
+        transport.setReplyDropRate(dropRate);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread chaos = new Thread(() -> injectOutages(transport, nodeCount, running, new Random(seed)), "cluster-chaos");
+        if (outages) {
+            chaos.start();
+        }
+
+        int accountCount = accountsPerNode * nodeCount;
+        AtomicLongArray outcomes = new AtomicLongArray(TransactionStatus.values().length);
+        Thread[] clients = new Thread[clientCount];
+        long started = System.nanoTime();
+        for (int c = 0; c < clientCount; c++) {
+            int clientIndex = c;
+            int requests = transfers / clientCount + (c < transfers % clientCount ? 1 : 0);
+            clients[c] = new Thread(() -> runClient(atmService, pins, accountCount, clientIndex, requests,
+                seed + 1000 + clientIndex, outcomes), "cluster-client-" + c);
+            clients[c].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        running.set(false);
+        if (outages) {
+            chaos.join();
+        }
+        transport.setRequestDropRate(0);
+        transport.setReplyDropRate(0);
+        for (int i = 0; i < nodeCount; i++) {
+            transport.setReachable(i, true);
+        }
+        boolean settled = router.awaitQuiescence(SETTLE_TIMEOUT_MS);
+        double closingTotal = totalBalance(nodes);
+        boolean conserved = settled && Math.abs(closingTotal - openingTotal) < 0.005;
+
+        System.out.println(String.format("Cluster: %d nodes x %d accounts, %d clients, %d transfers in %d ms",
+            nodeCount, accountsPerNode, clientCount, transfers, elapsedMs));
+        System.out.println(String.format("Faults: drop=%.3f outages=%s, %d messages lost",
+            dropRate, outages, transport.getDroppedMessages()));
+        System.out.println("Outcomes seen by clients:");
+        for (TransactionStatus status : TransactionStatus.values()) {
+            long count = outcomes.get(status.getCode());
+            if (count > 0) {
+                System.out.println(String.format("  %-20s %d", status, count));
+            }
+        }
+        System.out.println(String.format("Sagas: committed=%d compensated=%d failed=%d recovered=%d retries=%d",
+            router.getCommittedSagaCount(), router.getCompensatedSagaCount(), router.getFailedSagaCount(),
+            router.getRecoveredSagaCount(), router.getRetryCount()));
+        System.out.println(String.format("Money: opening=%.2f closing=%.2f settled=%s -> %s",
+            openingTotal, closingTotal, settled, conserved ? "CONSERVED" : "NOT CONSERVED"));
+
+        router.shutdown();
+        transport.shutdown();
+        for (PartitionNode node : nodes) {
+            node.shutdown();
+        }
+        if (!conserved) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * One ATM: mostly PIN-checked transfers, every tenth one within a session
+     */
+    private static void runClient(ATMService atmService, Map<Integer, Integer> pins, int accountCount,
+                                  int clientIndex, int requests, long seed, AtomicLongArray outcomes) {
+        Random random = new Random(seed);
+        String atmId = String.format("ATM-%03d", clientIndex + 1);
+        RingResult sessionResult = new RingResult();
+        ATMSession session = null;
+        for (int i = 0; i < requests; i++) {
+            int from = FIRST_ACCOUNT_ID + random.nextInt(accountCount);
+            // A few transfers go to accounts nobody owns, so the credit is refused and refunded
+            int to = random.nextInt(50) == 0 ? FIRST_ACCOUNT_ID + accountCount + random.nextInt(1000)
+                : FIRST_ACCOUNT_ID + random.nextInt(accountCount);
+            if (to == from) {
+                continue;
+            }
+            double amount = 1 + random.nextInt(50);
+            if (i % 10 == 0) {
+                if (session == null) {
+                    session = atmService.login(atmId, "Cluster Client " + clientIndex, from, pins.get(from));
+                }
+                if (session != null) {
+                    atmService.processInSession(session, TransactionType.TRANSFER, to, amount, sessionResult);
+                    outcomes.incrementAndGet(sessionResult.getStatus().getCode());
+                    continue;
+                }
+            }
+            try {
+                TransactionResult result = atmService.processRequest(atmService.createTransferRequest(atmId,
+                    "Cluster Client " + clientIndex, from, to, amount, pins.get(from))).get();
+                outcomes.incrementAndGet(result.getStatus().getCode());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                outcomes.incrementAndGet(TransactionStatus.FAILED.getCode());
+            }
+        }
+    }
+
+    /**
+     * Cut a random node off for 50-250 ms every few hundred milliseconds
+     */
+    private static void injectOutages(LocalTransport transport, int nodeCount, AtomicBoolean running, Random random) {
+        try {
+            while (running.get()) {
+                Thread.sleep(200 + random.nextInt(300));
+                int node = random.nextInt(nodeCount);
+                transport.setReachable(node, false);
+                Thread.sleep(50 + random.nextInt(200));
+                transport.setReachable(node, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double totalBalance(PartitionNode[] nodes) {
+        double total = 0;
+        for (PartitionNode node : nodes) {
+            total += node.getTotalBalance();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,65 @@
+package loadgen;
+
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+
+import java.util.Arrays;
+
+/**
+ * One request as the stress harness issued and observed it. Amounts are in whole cents;
+ * times are System.nanoTime() just before the request was issued and just after its
+ * result arrived.
+ */
+final class HistoryOp {
+    final int thread;
+    final long index;
+    final TransactionType type;
+    final boolean ring;
+    final int accountId;
+    final int targetAccountId;
+    final int[] legTargets;
+    final long[] legCents;
+    final long amountCents;
+    long invokeNanos;
+    long responseNanos;
+    TransactionStatus status;
+    long balanceAfterCents;
+
+    HistoryOp(int thread, long index, TransactionType type, boolean ring, int accountId, int targetAccountId,
+              int[] legTargets, long[] legCents, long amountCents) {
+        this.thread = thread;
+        this.index = index;
+        this.type = type;
+        this.ring = ring;
+        this.accountId = accountId;
+        this.targetAccountId = targetAccountId;
+        this.legTargets = legTargets;
+        this.legCents = legCents;
+        this.amountCents = amountCents;
+    }
+
+    /**
+     * Effect kind on the source account, see SequentialModel
+     */
+    int sourceKind() {
+        switch (type) {
+            case DEPOSIT:
+                return SequentialModel.DEPOSIT;
+            case BALANCE_INQUIRY:
+                return SequentialModel.READ;
+            case TRANSFER:
+                return ring ? SequentialModel.DEBIT : SequentialModel.CHECKED_DEBIT;
+            default:
+                return SequentialModel.DEBIT;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String target = type == TransactionType.TRANSFER ? " -> " + targetAccountId
+            : type == TransactionType.MULTI_TRANSFER ? " -> " + Arrays.toString(legTargets) + " " + Arrays.toString(legCents)
+            : "";
+        return String.format("t%d#%d %s%s %d%s $%.2f: %s $%.2f", thread, index, type, ring ? "(ring)" : "",
+            accountId, target, amountCents / 100.0, status, balanceAfterCents / 100.0);
+    }
+}
@@ -0,0 +1,130 @@
+package loadgen;
+
+import accounts.Account;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deposit throughput on a single hot account, with the account monitor (the regular
+ * path) and in split mode, for increasing numbers of depositing threads.
+ *
+ * Every depositor also makes a withdrawal now and then, so draining the sub-balances is
+ * part of the measurement. After each run the final balance must equal the opening
+ * balance plus deposits minus successful withdrawals, to the cent.
+ */
+public class HotAccountBenchmark {
+    private static final double OPENING_BALANCE = 1000.0;
+    private static final int WITHDRAW_EVERY = 64;
+
+    /**
+     * Run depositors against one account; returns {deposits, withdrawals, elapsed nanos}
+     * and checks the closing balance
+     */
+    static long[] run(Account account, int threads, long durationMs) throws InterruptedException {
+        boolean split = account.isSplitBalance();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong deposits = new AtomicLong(0);
+        AtomicLong withdrawals = new AtomicLong(0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long deposited = 0;
+                long withdrawn = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    for (int i = 1; i < WITHDRAW_EVERY; i++) {
+                        if (split) {
+                            account.deposit(1.0);
+                        } else {
+                            synchronized (account) {
+                                account.deposit(1.0);
+                            }
+                        }
+                        deposited++;
+                    }
+                    if (account.withdraw(2.0)) {
+                        withdrawn++;
+                    }
+                }
+                deposits.addAndGet(deposited);
+                withdrawals.addAndGet(withdrawn);
+            }, "hot-depositor-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        Thread.sleep(durationMs);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        double expected = OPENING_BALANCE + deposits.get() * 1.0 - withdrawals.get() * 2.0;
+        if (Math.abs(account.getBalance() - expected) > 0.005) {
+            throw new IllegalStateException(String.format("Balance %.2f, expected %.2f", account.getBalance(), expected));
+        }
+        return new long[]{deposits.get(), withdrawals.get(), elapsed};
+    }
+
+    /**
+     * Command line entry point. Arguments are key=value pairs:
+     * threads=1,2,4,8 duration=2000 stripes=(2 x cores) type=savings|salary
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        String[] threadCounts = options.getOrDefault("threads", "1,2,4," + Math.max(8, cores)).split(",");
+        long durationMs = Long.parseLong(options.getOrDefault("duration", "2000"));
+        int stripes = Integer.parseInt(options.getOrDefault("stripes", String.valueOf(2 * cores)));
+        boolean savings = !"salary".equalsIgnoreCase(options.getOrDefault("type", "savings"));
+
+        System.out.println("=".repeat(70));
+        System.out.println(String.format("HOT ACCOUNT BENCHMARK  cores=%d stripes=%d account=%s duration=%d ms",
+            cores, stripes, savings ? "savings" : "salary", durationMs));
+        System.out.println("=".repeat(70));
+        System.out.println(String.format("%8s %18s %18s %8s", "threads", "monitor dep/s", "split dep/s", "speedup"));
+        // Warm-up so both paths are compiled before measuring
+        run(newAccount(savings, 0), 2, durationMs / 4);
+        run(newAccount(savings, stripes), 2, durationMs / 4);
+        for (String count : threadCounts) {
+            int threads = Integer.parseInt(count.trim());
+            long[] monitor = run(newAccount(savings, 0), threads, durationMs);
+            long[] split = run(newAccount(savings, stripes), threads, durationMs);
+            double monitorRate = monitor[0] * 1e9 / monitor[2];
+            double splitRate = split[0] * 1e9 / split[2];
+            System.out.println(String.format("%8d %18.0f %18.0f %7.2fx", threads, monitorRate, splitRate,
+                splitRate / monitorRate));
+        }
+        System.out.println("Closing balances matched deposits minus withdrawals in every run.");
+    }
+
+    private static Account newAccount(boolean savings, int stripes) {
+        Account account = savings ? new SavingsAccount(1, "Hot Merchant", OPENING_BALANCE, 1234)
+            : new SalaryAccount(1, "Hot Payroll", OPENING_BALANCE, 1234);
+        if (stripes > 0) {
+            account.enableSplitBalance(stripes);
+        }
+        return account;
+    }
+}
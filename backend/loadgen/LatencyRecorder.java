@@ -0,0 +1,60 @@
+package loadgen;
+
+import java.util.Arrays;
+
+/**
+ * Single-writer latency sample buffer; each simulated ATM owns one
+ * and the buffers are merged once the run is over.
+ */
+public class LatencyRecorder {
+    private long[] samples;
+    private int count;
+
+    public LatencyRecorder(int expectedSamples) {
+        this.samples = new long[Math.max(16, expectedSamples)];
+        this.count = 0;
+    }
+
+    /**
+     * Record one latency sample in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = latencyNanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Merge several recorders into one sorted sample array
+     */
+    public static long[] mergeSorted(LatencyRecorder[] recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.samples, 0, merged, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * Percentile (0-100) of a sorted sample array, nearest-rank method
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,285 @@
+package loadgen;
+
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks one epoch of recorded history against SequentialModel.
+ *
+ * An epoch starts and ends at a quiescent point, where the harness read every balance and
+ * transaction count. For each account the checker searches for an order of the effects
+ * that respects real time (an effect that completed before another was issued comes first)
+ * and in which the model reproduces every reported status and balance and ends at the
+ * balance read afterwards (Wing and Gong's search with Lowe's memoisation). A thread's
+ * effects on one account never overlap, so a search state is just how far each thread has
+ * got, plus the balance. Transaction counts and the money moved across all accounts are
+ * checked from the history directly.
+ */
+final class LinearizabilityChecker {
+    private static final int MAX_STATES_PER_ACCOUNT = 2_000_000;
+
+    private final int[] accountIds;
+    private final long[] minimumCents;
+    private final Map<Integer, Integer> indexOf;
+    private final int threads;
+
+    LinearizabilityChecker(int[] accountIds, long[] minimumCents, int threads) {
+        this.accountIds = accountIds;
+        this.minimumCents = minimumCents;
+        this.threads = threads;
+        this.indexOf = new HashMap<>();
+        for (int i = 0; i < accountIds.length; i++) {
+            indexOf.put(accountIds[i], i);
+        }
+    }
+
+    /**
+     * Outcome of checking one epoch; violation is null if the history is linearizable
+     */
+    static final class Result {
+        final String violation;
+        final int inconclusiveAccounts;
+        final long statesExplored;
+
+        Result(String violation, int inconclusiveAccounts, long statesExplored) {
+            this.violation = violation;
+            this.inconclusiveAccounts = inconclusiveAccounts;
+            this.statesExplored = statesExplored;
+        }
+    }
+
+    Result check(long epoch, long[] startCents, int[] startCounts, long[] endCents, int[] endCounts,
+                 List<List<HistoryOp>> history) {
+        int accounts = accountIds.length;
+        List<List<List<Event>>> events = new ArrayList<>(accounts);
+        for (int a = 0; a < accounts; a++) {
+            List<List<Event>> perThread = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                perThread.add(new ArrayList<>());
+            }
+            events.add(perThread);
+        }
+
+        // Split requests into effects per account, checking what needs no search on the way
+        long[] externalCents = new long[accounts];
+        int[] expectedCounts = new int[accounts];
+        for (int t = 0; t < threads; t++) {
+            for (HistoryOp op : history.get(t)) {
+                if (op.status == TransactionStatus.SYSTEM_BUSY) {
+                    continue; // refused before anything was locked or changed
+                }
+                if (op.status != TransactionStatus.SUCCESS && op.status != TransactionStatus.INSUFFICIENT_FUNDS
+                    && op.status != TransactionStatus.DEBIT_REFUSED) {
+                    return new Result("epoch " + epoch + ": unexpected status " + op, 0, 0);
+                }
+                int source = indexOf.get(op.accountId);
+                Event effect = new Event(op, op.sourceKind(), op.amountCents, op.status, true);
+                events.get(source).get(t).add(effect);
+                if (op.status != TransactionStatus.SUCCESS) {
+                    continue;
+                }
+                expectedCounts[source] += SequentialModel.countDelta(effect.kind);
+                if (op.type == TransactionType.DEPOSIT) {
+                    externalCents[source] += op.amountCents;
+                } else if (op.type == TransactionType.WITHDRAW) {
+                    externalCents[source] -= op.amountCents;
+                } else if (op.type == TransactionType.TRANSFER) {
+                    addCredit(events, expectedCounts, t, op, op.targetAccountId, op.amountCents);
+                } else if (op.type == TransactionType.MULTI_TRANSFER) {
+                    for (int i = 0; i < op.legTargets.length; i++) {
+                        addCredit(events, expectedCounts, t, op, op.legTargets[i], op.legCents[i]);
+                    }
+                }
+            }
+        }
+        long moved = 0;
+        long external = 0;
+        for (int a = 0; a < accounts; a++) {
+            moved += endCents[a] - startCents[a];
+            external += externalCents[a];
+            if (endCounts[a] - startCounts[a] != expectedCounts[a]) {
+                return new Result(String.format("epoch %d: account %d transaction count went %d -> %d, "
+                    + "history explains %d", epoch, accountIds[a], startCounts[a], endCounts[a], expectedCounts[a]),
+                    0, 0);
+            }
+        }
+        if (moved != external) {
+            return new Result(String.format("epoch %d: money not conserved, balances moved $%.2f but deposits "
+                + "minus withdrawals were $%.2f", epoch, moved / 100.0, external / 100.0), 0, 0);
+        }
+
+        int inconclusive = 0;
+        long explored = 0;
+        for (int a = 0; a < accounts; a++) {
+            Search search = new Search(events.get(a), minimumCents[a], endCents[a]);
+            Boolean linearizable = search.run(startCents[a]);
+            explored += search.visited.size();
+            if (linearizable == null) {
+                inconclusive++;
+            } else if (!linearizable) {
+                return new Result(describe(epoch, a, startCents[a], endCents[a], events.get(a)), inconclusive, explored);
+            }
+        }
+        return new Result(null, inconclusive, explored);
+    }
+
+    private void addCredit(List<List<List<Event>>> events, int[] expectedCounts, int thread, HistoryOp op,
+                           int accountId, long amountCents) {
+        int target = indexOf.get(accountId);
+        events.get(target).get(thread).add(new Event(op, SequentialModel.CREDIT, amountCents,
+            TransactionStatus.SUCCESS, false));
+        expectedCounts[target]++;
+    }
+
+    private String describe(long epoch, int account, long startCents, long endCents, List<List<Event>> perThread) {
+        List<Event> all = new ArrayList<>();
+        for (List<Event> thread : perThread) {
+            all.addAll(thread);
+        }
+        all.sort(Comparator.comparingLong(e -> e.op.invokeNanos));
+        long origin = all.isEmpty() ? 0 : all.get(0).op.invokeNanos;
+        StringBuilder text = new StringBuilder(String.format(
+            "epoch %d: account %d is not linearizable (minimum $%.2f), balance $%.2f -> $%.2f, %d effects:%n",
+            epoch, accountIds[account], minimumCents[account] / 100.0, startCents / 100.0, endCents / 100.0,
+            all.size()));
+        for (Event event : all) {
+            text.append(String.format("  [%9.1f, %9.1f] us  %s%s%n", (event.op.invokeNanos - origin) / 1e3,
+                (event.op.responseNanos - origin) / 1e3, event.kind == SequentialModel.CREDIT ? "credit of " : "",
+                event.op));
+        }
+        return text.toString();
+    }
+
+    /**
+     * The effect of one request on one account
+     */
+    private static final class Event {
+        final HistoryOp op;
+        final int kind;
+        final long amountCents;
+        final TransactionStatus status;
+        final boolean observed;
+
+        Event(HistoryOp op, int kind, long amountCents, TransactionStatus status, boolean observed) {
+            this.op = op;
+            this.kind = kind;
+            this.amountCents = amountCents;
+            this.status = status;
+            this.observed = observed;
+        }
+    }
+
+    /**
+     * Depth-first search over (progress per thread, balance), remembering dead ends
+     */
+    private static final class Search {
+        private final Event[][] threads;
+        private final long minimumCents;
+        private final long endCents;
+        private final int[] position;
+        private final Set<State> visited;
+        private int remaining;
+        private boolean exhausted;
+
+        Search(List<List<Event>> perThread, long minimumCents, long endCents) {
+            this.threads = new Event[perThread.size()][];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = perThread.get(t).toArray(new Event[0]);
+                remaining += threads[t].length;
+            }
+            this.minimumCents = minimumCents;
+            this.endCents = endCents;
+            this.position = new int[threads.length];
+            this.visited = new HashSet<>();
+        }
+
+        /**
+         * True if linearizable, false if not, null if the search gave up
+         */
+        Boolean run(long startCents) {
+            boolean found = search(startCents);
+            return found ? Boolean.TRUE : exhausted ? null : Boolean.FALSE;
+        }
+
+        private boolean search(long balance) {
+            if (remaining == 0) {
+                return balance == endCents;
+            }
+            if (visited.size() >= MAX_STATES_PER_ACCOUNT) {
+                exhausted = true;
+                return false;
+            }
+            if (!visited.add(new State(position.clone(), balance))) {
+                return false;
+            }
+            // Only effects issued before every pending effect has completed can go next
+            long earliestResponse = Long.MAX_VALUE;
+            for (int t = 0; t < threads.length; t++) {
+                if (position[t] < threads[t].length) {
+                    earliestResponse = Math.min(earliestResponse, threads[t][position[t]].op.responseNanos);
+                }
+            }
+            for (int t = 0; t < threads.length; t++) {
+                if (position[t] == threads[t].length) {
+                    continue;
+                }
+                Event event = threads[t][position[t]];
+                if (event.op.invokeNanos > earliestResponse) {
+                    continue;
+                }
+                TransactionStatus status = SequentialModel.outcome(event.kind, balance, minimumCents, event.amountCents);
+                if (status != event.status) {
+                    continue;
+                }
+                long after = SequentialModel.apply(event.kind, balance, event.amountCents, status);
+                if (event.observed && SequentialModel.observes(event.kind) && after != event.op.balanceAfterCents) {
+                    continue;
+                }
+                position[t]++;
+                remaining--;
+                boolean found = search(after);
+                position[t]--;
+                remaining++;
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class State {
+        private final int[] position;
+        private final long balance;
+        private final int hash;
+
+        State(int[] position, long balance) {
+            this.position = position;
+            this.balance = balance;
+            this.hash = 31 * Arrays.hashCode(position) + Long.hashCode(balance);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof State)) {
+                return false;
+            }
+            State state = (State) other;
+            return balance == state.balance && Arrays.equals(position, state.position);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
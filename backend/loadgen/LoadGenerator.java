@@ -0,0 +1,336 @@
+package loadgen;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+import atm.ATMRequest;
+import atm.ATMService;
+import audit.AuditReport;
+import audit.ConservationAuditor;
+import concurrency.LockManager;
+import concurrency.LockStats;
+import fraud.FraudMonitor;
+import transactions.AdmissionPolicy;
+import transactions.TransactionProcessor;
+import transactions.TransactionResult;
+import transactions.TransactionType;
+import util.SecurityUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator that drives ATMService from many simulated ATMs.
+ *
+ * Closed loop: each ATM issues its next request as soon as the previous one completes.
+ * Open loop: each ATM follows a Poisson arrival schedule and latency is measured from the
+ * intended start time, so a stalled service is charged for every request it delayed
+ * (no coordinated omission).
+ */
+public class LoadGenerator {
+    private static final int MAX_AMOUNT = 500; // whole dollars keep the conservation check exact
+
+    private final ATMService atmService;
+    private final AccountRepository accountRepository;
+    private final Map<Integer, Integer> pins;
+
+    public LoadGenerator(ATMService atmService, AccountRepository accountRepository, Map<Integer, Integer> pins) {
+        this.atmService = atmService;
+        this.accountRepository = accountRepository;
+        this.pins = pins;
+    }
+
+    /**
+     * Closed-loop run: every ATM sends requestsPerAtm requests back to back
+     */
+    public LoadReport runClosedLoop(int atmCount, int requestsPerAtm, WorkloadMix mix,
+                                    AccountSelector selector, long seed) {
+        SimulatedAtm[] atms = new SimulatedAtm[atmCount];
+        for (int i = 0; i < atmCount; i++) {
+            atms[i] = new SimulatedAtm(i, mix, selector, new Random(seed + i), requestsPerAtm, 0, 0);
+        }
+        return run("CLOSED-LOOP", mix, selector, atms);
+    }
+
+    /**
+     * Open-loop run: requestsPerSecond spread over all ATMs for durationMs
+     */
+    public LoadReport runOpenLoop(int atmCount, double requestsPerSecond, long durationMs,
+                                  WorkloadMix mix, AccountSelector selector, long seed) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Arrival rate must be positive");
+        }
+        double meanIntervalNanos = atmCount * 1_000_000_000.0 / requestsPerSecond;
+        long durationNanos = durationMs * 1_000_000L;
+        int expected = (int) Math.min(Integer.MAX_VALUE, requestsPerSecond * durationMs / 1000 / atmCount + 16);
+        SimulatedAtm[] atms = new SimulatedAtm[atmCount];
+        for (int i = 0; i < atmCount; i++) {
+            atms[i] = new SimulatedAtm(i, mix, selector, new Random(seed + i), expected,
+                meanIntervalNanos, durationNanos);
+        }
+        return run(String.format("OPEN-LOOP (%.0f req/s for %d ms)", requestsPerSecond, durationMs),
+            mix, selector, atms);
+    }
+
+    private LoadReport run(String mode, WorkloadMix mix, AccountSelector selector, SimulatedAtm[] atms) {
+        long initialCents = totalBankCents();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[atms.length];
+        for (int i = 0; i < atms.length; i++) {
+            SimulatedAtm atm = atms[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    atm.runAtm();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, atm.atmId);
+            threads[i].start();
+        }
+
+        long startNanos = System.nanoTime();
+        for (SimulatedAtm atm : atms) {
+            atm.startNanos = startNanos;
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - startNanos;
+
+        long completed = 0, succeeded = 0, failed = 0, errors = 0, netCents = 0;
+        LatencyRecorder[] recorders = new LatencyRecorder[atms.length];
+        for (int i = 0; i < atms.length; i++) {
+            SimulatedAtm atm = atms[i];
+            completed += atm.succeeded + atm.failed;
+            succeeded += atm.succeeded;
+            failed += atm.failed;
+            errors += atm.errors;
+            netCents += atm.netCents;
+            recorders[i] = atm.latencies;
+        }
+
+        return new LoadReport(mode, mix + ", accounts=" + selector.size() + " " + selector, atms.length,
+            completed, succeeded, failed, errors, elapsed, LatencyRecorder.mergeSorted(recorders),
+            initialCents, initialCents + netCents, totalBankCents());
+    }
+
+    /**
+     * Sum of all balances in cents
+     */
+    public long totalBankCents() {
+        long total = 0;
+        for (Account account : accountRepository.getAllAccounts().values()) {
+            total += Math.round(account.getBalance() * 100);
+        }
+        return total;
+    }
+
+    /**
+     * Create count accounts (alternating savings and salary) and return their PINs by id
+     */
+    public static Map<Integer, Integer> createAccounts(AccountRepository repository, int count,
+                                                       int firstId, double initialBalance, long seed) {
+        Random random = new Random(seed);
+        Map<Integer, Integer> pins = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = firstId + i;
+            int pin = 1000 + random.nextInt(9000);
+            Account account = (i % 2 == 0)
+                ? new SavingsAccount(id, "Load Customer " + id, initialBalance, pin)
+                : new SalaryAccount(id, "Load Customer " + id, initialBalance, pin);
+            repository.addAccount(account);
+            pins.put(id, pin);
+        }
+        return pins;
+    }
+
+    /**
+     * One simulated ATM; state is confined to its own thread until the run completes
+     */
+    private class SimulatedAtm {
+        private final String atmId;
+        private final WorkloadMix mix;
+        private final AccountSelector selector;
+        private final Random random;
+        private final int requestLimit;
+        private final double meanIntervalNanos; // 0 for closed loop
+        private final long durationNanos;
+        private final LatencyRecorder latencies;
+        private volatile long startNanos;
+        private long succeeded;
+        private long failed;
+        private long errors;
+        private long netCents;
+
+        SimulatedAtm(int index, WorkloadMix mix, AccountSelector selector, Random random,
+                     int requestLimit, double meanIntervalNanos, long durationNanos) {
+            this.atmId = String.format("ATM-%03d", index + 1);
+            this.mix = mix;
+            this.selector = selector;
+            this.random = random;
+            this.requestLimit = requestLimit;
+            this.meanIntervalNanos = meanIntervalNanos;
+            this.durationNanos = durationNanos;
+            this.latencies = new LatencyRecorder(requestLimit);
+        }
+
+        void runAtm() {
+            if (meanIntervalNanos > 0) {
+                runOpen();
+            } else {
+                for (int i = 0; i < requestLimit; i++) {
+                    issue(System.nanoTime());
+                }
+            }
+        }
+
+        private void runOpen() {
+            long intended = startNanos;
+            long end = startNanos + durationNanos;
+            while (true) {
+                // Poisson arrivals: exponentially distributed gaps
+                intended += (long) (-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos);
+                if (intended >= end) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                issue(intended);
+            }
+        }
+
+        private void issue(long intendedStartNanos) {
+            TransactionType type = mix.next(random);
+            int accountId = selector.next(random);
+            int pin = pins.get(accountId);
+            int amount = 1 + random.nextInt(MAX_AMOUNT);
+            String customer = "Load-" + accountId;
+
+            ATMRequest request;
+            switch (type) {
+                case WITHDRAW:
+                    request = atmService.createWithdrawRequest(atmId, customer, accountId, amount, pin);
+                    break;
+                case DEPOSIT:
+                    request = atmService.createDepositRequest(atmId, customer, accountId, amount, pin);
+                    break;
+                case TRANSFER:
+                    request = atmService.createTransferRequest(atmId, customer, accountId,
+                        selector.nextOther(random, accountId), amount, pin);
+                    break;
+                default:
+                    request = atmService.createBalanceInquiryRequest(atmId, customer, accountId, pin);
+                    break;
+            }
+
+            try {
+                Future<TransactionResult> future = atmService.processRequest(request);
+                TransactionResult result = future.get();
+                latencies.record(System.nanoTime() - intendedStartNanos);
+                if (result.isSuccess()) {
+                    succeeded++;
+                    if (type == TransactionType.DEPOSIT) {
+                        netCents += amount * 100L;
+                    } else if (type == TransactionType.WITHDRAW) {
+                        netCents -= amount * 100L;
+                    }
+                } else {
+                    failed++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors++;
+            } catch (ExecutionException e) {
+                latencies.record(System.nanoTime() - intendedStartNanos);
+                errors++;
+            }
+        }
+    }
+
+    /**
+     * Command line entry point. Arguments are key=value pairs:
+     * mode=open|closed accounts=1000 atms=50 rate=2000 duration=10000 requests=200
+     * mix=30:15:10:45 dist=uniform|zipf zipf=1.1 seed=42 policy=block|reject|priority queue=1000 timeout=2000
+     * pincost=10000 (PBKDF2 iterations for the generated accounts' PINs) audit=1000 (conservation audit interval in ms)
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        String mode = options.getOrDefault("mode", "open");
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        int atmCount = Integer.parseInt(options.getOrDefault("atms", "50"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        WorkloadMix mix = options.containsKey("mix")
+            ? WorkloadMix.parse(options.get("mix")) : WorkloadMix.typicalAtm();
+
+        if (options.containsKey("pincost")) {
+            SecurityUtil.setPinHashIterations(Integer.parseInt(options.get("pincost")));
+        }
+        AccountRepository repository = new AccountRepository();
+        Map<Integer, Integer> pins = createAccounts(repository, accountCount, 100000, 10000.0, seed);
+        int[] ids = pins.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        AccountSelector selector = "zipf".equalsIgnoreCase(options.get("dist"))
+            ? AccountSelector.zipf(ids, Double.parseDouble(options.getOrDefault("zipf", "1.1")))
+            : AccountSelector.uniform(ids);
+
+        FraudMonitor fraudMonitor = new FraudMonitor(repository, null);
+        AdmissionPolicy policy = AdmissionPolicy.valueOf(options.getOrDefault("policy", "block").toUpperCase());
+        TransactionProcessor processor = new TransactionProcessor(repository, fraudMonitor, policy,
+            Integer.parseInt(options.getOrDefault("queue", "1000")),
+            Long.parseLong(options.getOrDefault("timeout", "2000")));
+        ConservationAuditor auditor = null;
+        if (options.containsKey("audit")) {
+            auditor = new ConservationAuditor(repository, Long.parseLong(options.get("audit")));
+            processor.enableAudit(auditor);
+        }
+        ATMService atmService = new ATMService(processor);
+        LoadGenerator generator = new LoadGenerator(atmService, repository, pins);
+
+        LoadReport report;
+        if ("closed".equalsIgnoreCase(mode)) {
+            report = generator.runClosedLoop(atmCount,
+                Integer.parseInt(options.getOrDefault("requests", "200")), mix, selector, seed);
+        } else {
+            report = generator.runOpenLoop(atmCount,
+                Double.parseDouble(options.getOrDefault("rate", "2000")),
+                Long.parseLong(options.getOrDefault("duration", "10000")), mix, selector, seed);
+        }
+        processor.shutdown();
+        report.print();
+        System.out.println(String.format("Intake: policy=%s admitted=%d rejected=%d peak pending=%d/%d",
+            processor.getAdmissionPolicy(), processor.getAdmittedCount(), processor.getRejectedCount(),
+            processor.getPeakPendingCount(), processor.getAdmissionCapacity()));
+        LockManager locks = processor.getLockManager();
+        System.out.println(String.format("Locks: contended=%d timeouts=%d, most contended:",
+            locks.getTotalContended(), locks.getTotalTimeouts()));
+        for (LockStats stats : locks.getMostContended(5)) {
+            System.out.println("  " + stats);
+        }
+        if (auditor != null) {
+            AuditReport during = auditor.getLastReport();
+            System.out.println("During load: " + during);
+            System.out.println("Final:       " + auditor.auditNow());
+            auditor.shutdown();
+        }
+    }
+}
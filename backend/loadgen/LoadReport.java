@@ -0,0 +1,104 @@
+package loadgen;
+
+/**
+ * Summary of a load generator run
+ */
+public class LoadReport {
+    private final String mode;
+    private final String workload;
+    private final int atmCount;
+    private final long completed;
+    private final long succeeded;
+    private final long failed;
+    private final long errors;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+    private final long initialTotalCents;
+    private final long expectedTotalCents;
+    private final long finalTotalCents;
+
+    public LoadReport(String mode, String workload, int atmCount, long completed, long succeeded,
+                      long failed, long errors, long elapsedNanos, long[] sortedLatencies,
+                      long initialTotalCents, long expectedTotalCents, long finalTotalCents) {
+        this.mode = mode;
+        this.workload = workload;
+        this.atmCount = atmCount;
+        this.completed = completed;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = sortedLatencies;
+        this.initialTotalCents = initialTotalCents;
+        this.expectedTotalCents = expectedTotalCents;
+        this.finalTotalCents = finalTotalCents;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Completed requests per second
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? completed * 1_000_000_000.0 / elapsedNanos : 0;
+    }
+
+    /**
+     * Latency percentile in milliseconds
+     */
+    public double getLatencyMillis(double percentile) {
+        return LatencyRecorder.percentile(sortedLatencies, percentile) / 1_000_000.0;
+    }
+
+    /**
+     * True when the bank total moved exactly by the successful deposits and withdrawals
+     */
+    public boolean isMoneyConserved() {
+        return expectedTotalCents == finalTotalCents;
+    }
+
+    public long getExpectedTotalCents() {
+        return expectedTotalCents;
+    }
+
+    public long getFinalTotalCents() {
+        return finalTotalCents;
+    }
+
+    /**
+     * Print report to stdout
+     */
+    public void print() {
+        System.out.println("=".repeat(80));
+        System.out.println("LOAD GENERATOR REPORT");
+        System.out.println("=".repeat(80));
+        System.out.println("Mode: " + mode);
+        System.out.println("Workload: " + workload);
+        System.out.println("Simulated ATMs: " + atmCount);
+        System.out.println("Completed: " + completed + " (success=" + succeeded + ", failed=" + failed
+            + ", errors=" + errors + ")");
+        System.out.println(String.format("Elapsed: %.2f s", elapsedNanos / 1_000_000_000.0));
+        System.out.println(String.format("Throughput: %.1f req/s", getThroughput()));
+        System.out.println(String.format("Latency ms: p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f",
+            getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99),
+            getLatencyMillis(99.9), getLatencyMillis(100)));
+        System.out.println(String.format("Bank total: initial=$%.2f expected=$%.2f final=$%.2f -> %s",
+            initialTotalCents / 100.0, expectedTotalCents / 100.0, finalTotalCents / 100.0,
+            isMoneyConserved() ? "CONSERVED" : "MISMATCH"));
+        System.out.println("=".repeat(80));
+    }
+}
@@ -0,0 +1,191 @@
+package loadgen;
+
+import accounts.AccountRepository;
+import atm.ATMRequest;
+import atm.ATMService;
+import fraud.FraudMonitor;
+import transactions.TransactionProcessor;
+import transactions.TransactionResult;
+import util.SecurityUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures legitimate-customer throughput before and during a PIN-spray attack.
+ *
+ * Legitimate ATMs run a closed loop of inquiries and small deposits with correct PINs
+ * (deposits, so the withdrawal fraud rules do not freeze the test accounts). During the
+ * attack phase, scripted attacker ATMs try wrong PINs against random accounts across the
+ * whole account base at a fixed rate per terminal. The per-ATM throttle should lock the attacking
+ * terminals out quickly, so the legitimate numbers barely move.
+ */
+public class PinSprayBenchmark {
+
+    private final ATMService atmService;
+    private final Map<Integer, Integer> pins;
+    private final int[] accountIds;
+
+    public PinSprayBenchmark(ATMService atmService, Map<Integer, Integer> pins) {
+        this.atmService = atmService;
+        this.pins = pins;
+        this.accountIds = pins.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Run one phase and return {legit completed, legit succeeded, attack requests, p99 micros}
+     */
+    public long[] runPhase(int legitAtms, int attackerAtms, double attackRatePerAtm, long durationMs, long seed) {
+        long attackIntervalNanos = attackRatePerAtm > 0 ? (long) (1_000_000_000.0 / attackRatePerAtm) : 0;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong legitCompleted = new AtomicLong(0);
+        AtomicLong legitSucceeded = new AtomicLong(0);
+        AtomicLong attackRequests = new AtomicLong(0);
+        LatencyRecorder[] recorders = new LatencyRecorder[legitAtms];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[legitAtms + attackerAtms];
+
+        for (int i = 0; i < legitAtms; i++) {
+            // Each legitimate ATM serves its own small set of customers
+            int firstAccount = i % accountIds.length;
+            LatencyRecorder recorder = new LatencyRecorder(1 << 16);
+            recorders[i] = recorder;
+            String atmId = String.format("ATM-%03d", i + 1);
+            Random random = new Random(seed + i);
+            threads[i] = new Thread(() -> {
+                await(start);
+                while (running.get()) {
+                    int accountId = accountIds[(firstAccount + random.nextInt(4)) % accountIds.length];
+                    ATMRequest request = random.nextBoolean()
+                        ? atmService.createBalanceInquiryRequest(atmId, "Customer", accountId, pins.get(accountId))
+                        : atmService.createDepositRequest(atmId, "Customer", accountId, 1, pins.get(accountId));
+                    long begin = System.nanoTime();
+                    TransactionResult result = call(request);
+                    recorder.record(System.nanoTime() - begin);
+                    legitCompleted.incrementAndGet();
+                    if (result != null && result.isSuccess()) {
+                        legitSucceeded.incrementAndGet();
+                    }
+                }
+            }, atmId);
+        }
+        for (int i = 0; i < attackerAtms; i++) {
+            String atmId = String.format("ROGUE-%03d", i + 1);
+            Random random = new Random(seed * 31 + i);
+            threads[legitAtms + i] = new Thread(() -> {
+                await(start);
+                long next = System.nanoTime();
+                while (running.get()) {
+                    next += attackIntervalNanos;
+                    long now;
+                    while ((now = System.nanoTime()) < next) {
+                        LockSupport.parkNanos(next - now);
+                    }
+                    int accountId = accountIds[random.nextInt(accountIds.length)];
+                    int guess = 1000 + random.nextInt(9000);
+                    if (guess == pins.get(accountId)) {
+                        continue;
+                    }
+                    call(atmService.createBalanceInquiryRequest(atmId, "Attacker", accountId, guess));
+                    attackRequests.incrementAndGet();
+                }
+            }, atmId);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        try {
+            Thread.sleep(durationMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long[] latencies = LatencyRecorder.mergeSorted(recorders);
+        return new long[] {legitCompleted.get(), legitSucceeded.get(), attackRequests.get(),
+            LatencyRecorder.percentile(latencies, 99.0) / 1000};
+    }
+
+    private TransactionResult call(ATMRequest request) {
+        try {
+            return atmService.processRequest(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Arguments are key=value pairs: accounts=10000 legit=20 attackers=8 rate=2000 duration=5000 seed=7
+     * pincost=10000 (rate is attempts per second per attacker ATM, 0 for as fast as possible;
+     * pincost is the PBKDF2 iteration count for the generated PINs)
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "10000"));
+        int legitAtms = Integer.parseInt(options.getOrDefault("legit", "20"));
+        int attackerAtms = Integer.parseInt(options.getOrDefault("attackers", "8"));
+        double attackRate = Double.parseDouble(options.getOrDefault("rate", "2000"));
+        long durationMs = Long.parseLong(options.getOrDefault("duration", "5000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "7"));
+
+        if (options.containsKey("pincost")) {
+            SecurityUtil.setPinHashIterations(Integer.parseInt(options.get("pincost")));
+        }
+        AccountRepository repository = new AccountRepository();
+        Map<Integer, Integer> pins = LoadGenerator.createAccounts(repository, accountCount, 100000, 1_000_000.0, seed);
+        TransactionProcessor processor = new TransactionProcessor(repository, new FraudMonitor(repository, null));
+        PinSprayBenchmark benchmark = new PinSprayBenchmark(new ATMService(processor), pins);
+
+        benchmark.runPhase(legitAtms, 0, 0, Math.min(durationMs, 1000), seed); // warm-up
+        long[] baseline = benchmark.runPhase(legitAtms, 0, 0, durationMs, seed);
+        long[] attack = benchmark.runPhase(legitAtms, attackerAtms, attackRate, durationMs, seed);
+        processor.shutdown();
+
+        double seconds = durationMs / 1000.0;
+        System.out.println("=".repeat(70));
+        System.out.println(String.format("PIN SPRAY BENCHMARK  accounts=%d legit ATMs=%d attacker ATMs=%d x %.0f/s, %d ms/phase",
+            accountCount, legitAtms, attackerAtms, attackRate, durationMs));
+        System.out.println("=".repeat(70));
+        System.out.println(String.format("Baseline      legit %.0f req/s (%d ok)  p99 %d us",
+            baseline[0] / seconds, baseline[1], baseline[3]));
+        System.out.println(String.format("Under attack  legit %.0f req/s (%d ok)  p99 %d us  attack attempts %.0f/s",
+            attack[0] / seconds, attack[1], attack[3], attack[2] / seconds));
+        System.out.println(String.format("Legit throughput retained: %.1f%%",
+            baseline[0] == 0 ? 0 : 100.0 * attack[0] / baseline[0]));
+        System.out.println(String.format("Throttle: ATM lockouts=%d rejected=%d | account lockouts=%d rejected=%d",
+            processor.getAtmPinThrottle().getLockoutCount(), processor.getAtmPinThrottle().getRejectedCount(),
+            processor.getAccountPinThrottle().getLockoutCount(), processor.getAccountPinThrottle().getRejectedCount()));
+    }
+}
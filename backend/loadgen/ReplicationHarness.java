@@ -0,0 +1,228 @@
+package loadgen;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.SavingsAccount;
+import batch.AccrualCalculator;
+import batch.BatchEngine;
+import fraud.FraudMonitor;
+import replication.ReplicationBackup;
+import replication.ReplicationChannels;
+import replication.ReplicationMode;
+import replication.ReplicationPrimary;
+import transactions.RingResult;
+import transactions.Transaction;
+import transactions.TransactionProcessor;
+import transactions.TransactionType;
+import util.SecurityUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a primary and a hot-standby backup in one process and walks through the
+ * replication lifecycle: commit latency without and with replication, a short backup
+ * outage (resume from the retained log), an outage longer than the log (snapshot), and
+ * failover by promoting the backup. After each catch-up the two repositories must hold
+ * the same accounts with identical balances, frozen flags and PIN hashes.
+ *
+ * Clients issue deposits and transfers, alternating between the Future-based path and the
+ * submission ring, so both commit paths are replicated. Changes made outside the
+ * transaction path (an end-of-day batch, a freeze, a new PIN, new accounts) are made while
+ * the backup is attached, while it is briefly away and before the snapshot.
+ */
+public class ReplicationHarness {
+    private static final int FIRST_ACCOUNT_ID = 100000;
+    private static final long CATCH_UP_TIMEOUT_MS = 30_000;
+    private static final int MAX_LAG_ROUNDS = 50;
+
+    /**
+     * Command line entry point. Arguments are key=value pairs:
+     * accounts=1000 clients=8 requests=2000 channel=pipe|tcp mode=sync|async capacity=65536
+     * timeout=1000 (SYNC ack timeout, ms) seed=42 pincost=1000
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "8"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+        boolean tcp = "tcp".equalsIgnoreCase(options.getOrDefault("channel", "pipe"));
+        ReplicationMode mode = ReplicationMode.valueOf(options.getOrDefault("mode", "sync").toUpperCase());
+        int capacity = Integer.parseInt(options.getOrDefault("capacity", "65536"));
+        long ackTimeoutMs = Long.parseLong(options.getOrDefault("timeout", "1000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        SecurityUtil.setPinHashIterations(Integer.parseInt(options.getOrDefault("pincost", "1000")));
+
+        AccountRepository primaryRepository = new AccountRepository();
+        LoadGenerator.createAccounts(primaryRepository, accountCount, FIRST_ACCOUNT_ID, 10000.0, seed);
+        AccountRepository backupRepository = new AccountRepository();
+        LoadGenerator.createAccounts(backupRepository, accountCount, FIRST_ACCOUNT_ID, 10000.0, seed);
+        TransactionProcessor processor = new TransactionProcessor(primaryRepository,
+            new FraudMonitor(primaryRepository, null));
+
+        System.out.println(String.format("Replication harness: %d accounts, %d clients x %d requests, %s over %s",
+            accountCount, clients, requests, mode, tcp ? "loopback TCP" : "pipe"));
+        runLoad(null, processor, accountCount, clients, requests, seed - 1); // warm-up
+        runLoad("no replication", processor, accountCount, clients, requests, seed);
+
+        ReplicationPrimary primary = new ReplicationPrimary(primaryRepository, mode, ackTimeoutMs, capacity, 0);
+        ReplicationBackup backup = new ReplicationBackup(backupRepository);
+        connect(primary, backup, tcp);
+        processor.enableReplication(primary);
+        runLoad("replicated", processor, accountCount, clients, requests, seed + 1);
+        report("initial sync", processor, primary, backup, primaryRepository, backupRepository);
+        changeOutsideTransactions(primaryRepository, primary, FIRST_ACCOUNT_ID + accountCount);
+        report("batch and admin", processor, primary, backup, primaryRepository, backupRepository);
+
+        backup.disconnect();
+        runLoad("backup offline", processor, accountCount, clients, requests / 8, seed + 2);
+        addAccount(primaryRepository, FIRST_ACCOUNT_ID + accountCount + 1);
+        connect(primary, backup, tcp);
+        report("short outage", processor, primary, backup, primaryRepository, backupRepository);
+
+        backup.disconnect();
+        for (int round = 0; round < MAX_LAG_ROUNDS
+                && primary.getLastSequence() - backup.getLastAppliedSequence() <= capacity; round++) {
+            runLoad(null, processor, accountCount, clients, requests, seed + 3 + round);
+        }
+        addAccount(primaryRepository, FIRST_ACCOUNT_ID + accountCount + 2);
+        connect(primary, backup, tcp);
+        report("outage beyond log", processor, primary, backup, primaryRepository, backupRepository);
+
+        // Failover: the primary goes away, the backup takes over at its last applied sequence
+        processor.shutdown();
+        primary.shutdown();
+        long promotedAt = backup.promote();
+        TransactionProcessor successor = new TransactionProcessor(backupRepository,
+            new FraudMonitor(backupRepository, null));
+        successor.enableReplication(new ReplicationPrimary(backupRepository, mode, ackTimeoutMs, capacity, promotedAt));
+        System.out.println(String.format("Promoted backup at sequence %d", promotedAt));
+        runLoad("after failover", successor, accountCount, clients, requests / 8, seed + 100);
+        successor.shutdown();
+    }
+
+    private static void connect(ReplicationPrimary primary, ReplicationBackup backup, boolean tcp) throws IOException {
+        ByteChannel[] pair = tcp ? ReplicationChannels.loopbackPair() : ReplicationChannels.pipePair();
+        primary.attach(pair[0]);
+        backup.connect(pair[1]);
+    }
+
+    /**
+     * End-of-day batch postings, a freeze, an admin PIN reset and a new account
+     */
+    private static void changeOutsideTransactions(AccountRepository repository, ReplicationPrimary primary,
+                                                  int newAccountId) throws IOException {
+        File journal = File.createTempFile("replication-batch", ".bin");
+        journal.deleteOnExit();
+        BatchEngine engine = new BatchEngine(repository, AccrualCalculator.standard(), journal.getPath(), 2,
+            BatchEngine.DEFAULT_PARTITION_SIZE);
+        engine.enableReplication(primary);
+        engine.runEndOfDay(LocalDate.of(2024, 1, 31)); // month end: interest and fees
+        engine.shutdown();
+        repository.setAccountFrozen(FIRST_ACCOUNT_ID + 1, true);
+        repository.adminSetPin(FIRST_ACCOUNT_ID + 2, 4321);
+        addAccount(repository, newAccountId);
+    }
+
+    private static void addAccount(AccountRepository repository, int accountId) {
+        repository.addAccount(new SavingsAccount(accountId, "Account " + accountId, 500.0, SecurityUtil.hashPin(1111)));
+    }
+
+    /**
+     * Wait for the backup to reach the primary's last sequence, then compare every account
+     */
+    private static void report(String phase, TransactionProcessor processor, ReplicationPrimary primary,
+                               ReplicationBackup backup, AccountRepository primaryRepository,
+                               AccountRepository backupRepository)
+            throws InterruptedException {
+        long target = primary.getLastSequence();
+        long started = System.nanoTime();
+        long deadline = System.currentTimeMillis() + CATCH_UP_TIMEOUT_MS;
+        while (backup.getLastAppliedSequence() < target && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long catchUpMs = (System.nanoTime() - started) / 1_000_000;
+        int mismatches = 0;
+        for (Account account : primaryRepository.getAllAccounts().values()) {
+            Account copy = backupRepository.getAccount(account.getAccountId());
+            if (copy == null || copy.getBalance() != account.getBalance()
+                    || copy.getTransactionCount() != account.getTransactionCount()
+                    || copy.isFrozen() != account.isFrozen() || !copy.getPinHash().equals(account.getPinHash())) {
+                mismatches++;
+            }
+        }
+        System.out.println(String.format("  %-18s primary seq=%d backup seq=%d caught up in %d ms, snapshots=%d, "
+                + "unreplicated commits=%d, sync timeouts=%d, results released unreplicated=%d, "
+                + "unknown accounts=%d -> %s",
+            phase + ":", target, backup.getLastAppliedSequence(), catchUpMs, backup.getSnapshotsReceived(),
+            primary.getUnreplicatedCommits(), primary.getSyncTimeouts(), processor.getUnreplicatedCommits(),
+            backup.getUnknownAccounts(),
+            mismatches == 0 ? "IDENTICAL" : mismatches + " ACCOUNTS DIFFER"));
+    }
+
+    /**
+     * Deposits and transfers from concurrent clients; prints commit latency if label is set
+     */
+    private static void runLoad(String label, TransactionProcessor processor, int accountCount, int clients,
+                                int requests, long seed) throws InterruptedException {
+        LatencyRecorder[] recorders = new LatencyRecorder[clients];
+        Thread[] threads = new Thread[clients];
+        long started = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            LatencyRecorder recorder = new LatencyRecorder(requests);
+            recorders[c] = recorder;
+            Random random = new Random(seed * 31 + c);
+            String atmId = String.format("ATM-%03d", c + 1);
+            threads[c] = new Thread(() -> {
+                RingResult ringResult = new RingResult();
+                for (int i = 0; i < requests; i++) {
+                    int from = FIRST_ACCOUNT_ID + random.nextInt(accountCount);
+                    int to = FIRST_ACCOUNT_ID + random.nextInt(accountCount);
+                    boolean transfer = random.nextBoolean() && to != from;
+                    TransactionType type = transfer ? TransactionType.TRANSFER : TransactionType.DEPOSIT;
+                    double amount = 1 + random.nextInt(50);
+                    long start = System.nanoTime();
+                    if (i % 2 == 0) {
+                        processor.getSubmissionRing().execute(type, from, transfer ? to : 0, amount, atmId, ringResult);
+                    } else {
+                        Transaction transaction = transfer
+                            ? new Transaction(type, from, to, amount, 0)
+                            : new Transaction(type, from, amount, 0);
+                        try {
+                            processor.submitAuthenticatedTransaction(transaction.withChannelId(atmId)).get();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (ExecutionException e) {
+                            System.err.println("Request failed: " + e.getCause());
+                        }
+                    }
+                    recorder.record(System.nanoTime() - start);
+                }
+            }, "replication-client-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (label != null) {
+            long elapsedNanos = System.nanoTime() - started;
+            long[] sorted = LatencyRecorder.mergeSorted(recorders);
+            System.out.println(String.format("  %-18s %8.0f tx/s  p50=%.3f ms p99=%.3f ms p99.9=%.3f ms",
+                label + ":", sorted.length * 1e9 / elapsedNanos, LatencyRecorder.percentile(sorted, 50) / 1e6,
+                LatencyRecorder.percentile(sorted, 99) / 1e6, LatencyRecorder.percentile(sorted, 99.9) / 1e6));
+        }
+    }
+}
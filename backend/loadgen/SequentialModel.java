@@ -0,0 +1,81 @@
+package loadgen;
+
+import transactions.TransactionStatus;
+
+/**
+ * The specification the stress harness checks against: what one account does when the
+ * effects of requests reach it one at a time, in whole cents.
+ *
+ * Every request is split into its effects on single accounts. A transfer is a debit of
+ * the source and, if that succeeded, a credit of the target; each account is then a
+ * linearizable object on its own. Money moved between accounts is checked separately by
+ * conservation at every quiescent point.
+ */
+final class SequentialModel {
+    /** Deposit; reports the new balance */
+    static final int DEPOSIT = 0;
+    /** Withdrawal, ring transfer or multi-leg debit: INSUFFICIENT_FUNDS if the account rules refuse */
+    static final int DEBIT = 1;
+    /** Transfer debit on the regular path: INSUFFICIENT_FUNDS below the amount, DEBIT_REFUSED
+     *  if the account rules refuse (e.g. the savings minimum balance) */
+    static final int CHECKED_DEBIT = 2;
+    /** Credit of a successful transfer; reports nothing */
+    static final int CREDIT = 3;
+    /** Balance inquiry */
+    static final int READ = 4;
+
+    private SequentialModel() {
+    }
+
+    /**
+     * Status the effect has on an account holding balanceCents with the given minimum balance
+     */
+    static TransactionStatus outcome(int kind, long balanceCents, long minimumCents, long amountCents) {
+        switch (kind) {
+            case DEBIT:
+                return balanceCents - amountCents < minimumCents
+                    ? TransactionStatus.INSUFFICIENT_FUNDS : TransactionStatus.SUCCESS;
+            case CHECKED_DEBIT:
+                if (balanceCents < amountCents) {
+                    return TransactionStatus.INSUFFICIENT_FUNDS;
+                }
+                return balanceCents - amountCents < minimumCents
+                    ? TransactionStatus.DEBIT_REFUSED : TransactionStatus.SUCCESS;
+            default:
+                return TransactionStatus.SUCCESS;
+        }
+    }
+
+    /**
+     * Balance after the effect, given the status outcome returned
+     */
+    static long apply(int kind, long balanceCents, long amountCents, TransactionStatus status) {
+        if (status != TransactionStatus.SUCCESS) {
+            return balanceCents;
+        }
+        switch (kind) {
+            case DEPOSIT:
+            case CREDIT:
+                return balanceCents + amountCents;
+            case DEBIT:
+            case CHECKED_DEBIT:
+                return balanceCents - amountCents;
+            default:
+                return balanceCents;
+        }
+    }
+
+    /**
+     * Whether the effect reports the account's balance back to the caller
+     */
+    static boolean observes(int kind) {
+        return kind != CREDIT;
+    }
+
+    /**
+     * Transaction count the effect adds when it succeeds
+     */
+    static int countDelta(int kind) {
+        return kind == READ ? 0 : 1;
+    }
+}
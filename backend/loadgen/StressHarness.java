@@ -0,0 +1,701 @@
+package loadgen;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+import audit.ConservationAuditor;
+import concurrency.LockManager;
+import concurrency.LockStats;
+import fraud.FraudMonitor;
+import transactions.AdmissionPolicy;
+import transactions.RingResult;
+import transactions.SubmissionRing;
+import transactions.Transaction;
+import transactions.TransactionProcessor;
+import transactions.TransactionResult;
+import transactions.TransactionStatus;
+import transactions.TransactionType;
+import transactions.TransferLeg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency stress and linearizability harness for LockManager and TransactionProcessor.
+ *
+ * The lock phase has threads take random sets of account locks through every LockManager
+ * entry point, in every id order and in rings of neighbouring ids that would deadlock
+ * without the ascending order. While holding them each thread claims an owner slot per
+ * account and bumps unprotected counters, so any breach of mutual exclusion or any lost
+ * update shows up.
+ *
+ * The processor phase has threads send a random mix of deposits, withdrawals, transfers,
+ * multi-leg transfers and inquiries through both the regular path and the submission ring,
+ * over a handful of accounts so that almost everything contends. A share of the transfers
+ * go round in a circle, thread i paying account i+1, to exercise deadlock ordering. A few
+ * extra accounts run in split-balance mode and only ever receive transfers and transfer
+ * legs, so lock-free credits are checked for conservation too; before the load starts,
+ * credits of a fraction of a cent into them must be refused without moving money. Every
+ * request is recorded with its issue and completion time and its result. The threads meet
+ * at a barrier every epoch; there every balance and count is read, and the epoch's history
+ * is handed to LinearizabilityChecker on a pool of checker threads while the load goes on.
+ *
+ * A watchdog fails the run if no operation completes for stall ms and prints any deadlocked
+ * threads. Each thread draws its requests from its own Random seeded from seed, so the same
+ * seed replays the same requests; the interleaving is up to the scheduler. Exit status is 1
+ * on any violation, so the harness can run as a build step.
+ */
+public class StressHarness {
+    private static final long OPENING_BALANCE_CENTS = 1_000_00;
+    private static final int FIRST_ACCOUNT_ID = 100000;
+    private static final int CHECKER_STACK_BYTES = 64 * 1024 * 1024;
+    private static final String LOG_DIRECTORY = "logs/stress";
+    private static final ReentrantLock[] NO_LOCKS = new ReentrantLock[0];
+    private static final int SPLIT_STRIPES = 8;
+    private static final double SUB_CENT_AMOUNT = 10.005;
+
+    /**
+     * Fraud rules would freeze accounts at random points; the harness checks the money paths only
+     */
+    private static class NoFraudMonitor extends FraudMonitor {
+        NoFraudMonitor(AccountRepository accountRepository) {
+            super(accountRepository, null);
+        }
+
+        @Override
+        public void monitorTransaction(Transaction transaction, Account account) {
+        }
+
+        @Override
+        public void monitorPinFailures(Account account) {
+        }
+
+        @Override
+        public void monitorWithdrawal(int accountId, double amount) {
+        }
+    }
+
+    /**
+     * Fails the run if the progress counter stands still for stallMs
+     */
+    private static class Watchdog extends Thread {
+        private final LongAdder progress;
+        private final long stallMs;
+        private final AtomicReference<String> failure;
+        private volatile boolean done;
+
+        Watchdog(String phase, LongAdder progress, long stallMs, AtomicReference<String> failure) {
+            super(phase + "-watchdog");
+            this.progress = progress;
+            this.stallMs = stallMs;
+            this.failure = failure;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long last = -1;
+            long stalledSince = System.currentTimeMillis();
+            while (!done) {
+                try {
+                    Thread.sleep(Math.min(stallMs, 250));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long current = progress.sum();
+                long now = System.currentTimeMillis();
+                if (current != last) {
+                    last = current;
+                    stalledSince = now;
+                } else if (now - stalledSince >= stallMs && failure.get() == null) {
+                    failure.compareAndSet(null, "no progress for " + stallMs + " ms" + deadlockReport());
+                    System.err.println(failure.get());
+                    System.exit(1); // deadlocked threads can never be joined
+                }
+            }
+        }
+
+        void finish() {
+            done = true;
+            interrupt();
+        }
+
+        private static String deadlockReport() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long[] ids = threads.findDeadlockedThreads();
+            if (ids == null) {
+                return ", no lock cycle found";
+            }
+            StringBuilder text = new StringBuilder(", deadlocked threads:");
+            for (ThreadInfo info : threads.getThreadInfo(ids, true, true)) {
+                text.append("\n").append(info);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Lock phase; returns null on success or a description of the failure
+     */
+    static String runLockPhase(int threads, int accounts, long opsPerThread, long seed, long stallMs)
+            throws InterruptedException {
+        LockManager lockManager = new LockManager();
+        AtomicIntegerArray owners = new AtomicIntegerArray(accounts);
+        long[] counters = new long[accounts]; // only ever touched under the account's lock
+        long[][] acquired = new long[threads][accounts];
+        LongAdder progress = new LongAdder();
+        LongAdder timeouts = new LongAdder();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Watchdog watchdog = new Watchdog("locks", progress, stallMs, failure);
+        watchdog.start();
+
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(threadSeed(seed ^ 0x10C5L, thread));
+                int[] ids = new int[4];
+                for (long op = 0; op < opsPerThread && failure.get() == null; op++) {
+                    int pattern = random.nextInt(6);
+                    int count;
+                    if (pattern == 1 || pattern == 2) {
+                        // A ring of neighbours, listed from a thread-specific starting point
+                        count = 3;
+                        int first = random.nextInt(accounts);
+                        for (int i = 0; i < count; i++) {
+                            ids[i] = (first + (thread % 2 == 0 ? i : count - i)) % accounts;
+                        }
+                    } else if (pattern == 5) {
+                        count = 1;
+                        ids[0] = random.nextInt(accounts);
+                    } else {
+                        count = 2 + (pattern == 3 ? random.nextInt(3) : 0);
+                        for (int i = 0; i < count; i++) {
+                            ids[i] = random.nextInt(accounts);
+                        }
+                    }
+                    boolean hold = random.nextInt(64) == 0;
+                    int[] locked = distinct(ids, count);
+                    ReentrantLock[] locks = lockWith(lockManager, pattern, ids, count, random);
+                    if (locks == null) {
+                        timeouts.increment();
+                        progress.increment();
+                        continue;
+                    }
+                    try {
+                        for (int id : locked) {
+                            if (!owners.compareAndSet(id, 0, thread + 1)) {
+                                failure.compareAndSet(null, String.format("thread %d got account %d's lock while "
+                                    + "thread %d held it", thread, id, owners.get(id) - 1));
+                            }
+                        }
+                        for (int id : locked) {
+                            counters[id]++;
+                            acquired[thread][id]++;
+                        }
+                        if (hold) {
+                            for (int i = 0; i < 2000; i++) {
+                                Thread.onSpinWait(); // long enough for waiters to give up spinning
+                            }
+                        }
+                        for (int id : locked) {
+                            owners.set(id, 0);
+                        }
+                    } finally {
+                        unlockWith(lockManager, pattern, ids, locks);
+                    }
+                    progress.increment();
+                }
+            }, "lock-stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        watchdog.finish();
+        long elapsed = System.nanoTime() - start;
+
+        if (failure.get() == null) {
+            for (int id = 0; id < accounts; id++) {
+                long expected = 0;
+                for (int t = 0; t < threads; t++) {
+                    expected += acquired[t][id];
+                }
+                if (counters[id] != expected) {
+                    failure.compareAndSet(null, String.format("account %d counter is %d, threads counted %d: "
+                        + "an update under the lock was lost", id, counters[id], expected));
+                }
+            }
+        }
+        long ops = progress.sum();
+        System.out.println(String.format("Locks: %d threads, %d accounts, %d lock operations in %.2f s (%.0f ops/s), "
+                + "contended=%d timed out=%d", threads, accounts, ops, elapsed / 1e9, ops * 1e9 / elapsed,
+            lockManager.getTotalContended(), timeouts.sum()));
+        for (LockStats stats : lockManager.getMostContended(3)) {
+            System.out.println("  " + stats);
+        }
+        return failure.get();
+    }
+
+    private static int[] distinct(int[] ids, int count) {
+        int[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+
+    /**
+     * Lock through the entry point the pattern picks; null if a timed attempt gave up
+     */
+    private static ReentrantLock[] lockWith(LockManager lockManager, int pattern, int[] ids, int count,
+                                            Random random) {
+        switch (pattern) {
+            case 0:
+                return lockManager.lockAccounts(ids[0], ids[1]);
+            case 2:
+            case 3:
+                return lockManager.tryLockAccounts(Arrays.copyOf(ids, count), 1 + random.nextInt(5));
+            case 4:
+                lockManager.lockPair(ids[0], ids[1]);
+                return NO_LOCKS;
+            case 5:
+                return new ReentrantLock[]{lockManager.lockAccount(ids[0])};
+            default:
+                return lockManager.lockAccounts(Arrays.copyOf(ids, count));
+        }
+    }
+
+    private static void unlockWith(LockManager lockManager, int pattern, int[] ids, ReentrantLock[] locks) {
+        if (pattern == 4) {
+            lockManager.unlockPair(ids[0], ids[1]);
+        } else {
+            lockManager.unlockAccounts(locks);
+        }
+    }
+
+    /**
+     * Processor phase; returns null on success or a description of the first violation
+     */
+    static String runProcessorPhase(int threads, int accountCount, int splitCount, long epochs, int epochOps,
+                                    double ringShare, double circularShare, long seed, long stallMs, int checkers)
+            throws InterruptedException {
+        try {
+            Files.createDirectories(Paths.get(LOG_DIRECTORY));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create log directory " + LOG_DIRECTORY, e);
+        }
+        // Split accounts come after the regular ones and are never the source of a request
+        AccountRepository repository = new AccountRepository();
+        int totalAccounts = accountCount + splitCount;
+        Account[] accounts = new Account[totalAccounts];
+        int[] accountIds = new int[totalAccounts];
+        long[] minimumCents = new long[totalAccounts];
+        for (int i = 0; i < totalAccounts; i++) {
+            accountIds[i] = FIRST_ACCOUNT_ID + i;
+            if (i >= accountCount) {
+                accounts[i] = new SalaryAccount(accountIds[i], "Stress split " + i,
+                    OPENING_BALANCE_CENTS / 100.0, 1111);
+                accounts[i].enableSplitBalance(SPLIT_STRIPES);
+            } else {
+                accounts[i] = i % 2 == 0
+                    ? new SavingsAccount(accountIds[i], "Stress " + i, OPENING_BALANCE_CENTS / 100.0, 1111)
+                    : new SalaryAccount(accountIds[i], "Stress " + i, OPENING_BALANCE_CENTS / 100.0, 1111);
+            }
+            minimumCents[i] = accounts[i] instanceof SavingsAccount
+                ? Math.round(((SavingsAccount) accounts[i]).getMinimumBalance() * 100) : 0;
+            repository.addAccount(accounts[i]);
+        }
+        TransactionProcessor processor = new TransactionProcessor(repository, new NoFraudMonitor(repository),
+            AdmissionPolicy.BLOCK, 1000, 2000, LOG_DIRECTORY);
+        ConservationAuditor auditor = new ConservationAuditor(repository, 100);
+        processor.enableAudit(auditor);
+        SubmissionRing ring = processor.getSubmissionRing();
+        LinearizabilityChecker checker = new LinearizabilityChecker(accountIds, minimumCents, threads);
+        String probeFailure = probeMissingAccounts(processor, accountIds[0],
+            accountIds[accountIds.length - 1] + 1_000_000);
+        if (probeFailure == null && splitCount > 0) {
+            probeFailure = probeSubCentCredits(processor, ring, accounts, accountIds[0], accountIds[accountCount]);
+        }
+        if (probeFailure != null) {
+            auditor.shutdown();
+            processor.shutdown();
+            return probeFailure;
+        }
+
+        LongAdder progress = new LongAdder();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Watchdog watchdog = new Watchdog("processor", progress, stallMs, failure);
+        watchdog.start();
+        ExecutorService checkerPool = Executors.newFixedThreadPool(checkers, r -> {
+            Thread thread = new Thread(null, r, "history-checker", CHECKER_STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore pendingChecks = new Semaphore(2 * checkers);
+        LongAdder statesExplored = new LongAdder();
+        LongAdder inconclusive = new LongAdder();
+        long[] opsByType = new long[TransactionType.values().length];
+        long[] opsByStatus = new long[TransactionStatus.values().length];
+
+        // Everything below is handed over at the barrier, where no worker is running
+        List<List<HistoryOp>> history = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            history.add(new ArrayList<>(epochOps));
+        }
+        long[][] state = {new long[totalAccounts], new long[1]};
+        int[][] counts = {new int[totalAccounts]};
+        readState(accounts, state[0], counts[0]);
+        long[] epoch = {0};
+        boolean[] stop = {epochs == 0};
+        long[] checkNanos = {0};
+        CyclicBarrier barrier = new CyclicBarrier(threads, () -> {
+            long[] endCents = new long[totalAccounts];
+            int[] endCounts = new int[totalAccounts];
+            readState(accounts, endCents, endCounts);
+            long[] startCents = state[0];
+            int[] startCounts = counts[0];
+            List<List<HistoryOp>> epochHistory = new ArrayList<>(history);
+            long number = epoch[0]++;
+            for (int t = 0; t < threads; t++) {
+                List<HistoryOp> ops = epochHistory.get(t);
+                for (HistoryOp op : ops) {
+                    opsByType[op.type.ordinal()]++;
+                    opsByStatus[op.status.ordinal()]++;
+                }
+                history.set(t, new ArrayList<>(epochOps));
+            }
+            state[0] = endCents;
+            counts[0] = endCounts;
+            pendingChecks.acquireUninterruptibly();
+            checkerPool.execute(() -> {
+                try {
+                    long started = System.nanoTime();
+                    LinearizabilityChecker.Result result = checker.check(number, startCents, startCounts, endCents,
+                        endCounts, epochHistory);
+                    synchronized (checkNanos) {
+                        checkNanos[0] += System.nanoTime() - started;
+                    }
+                    statesExplored.add(result.statesExplored);
+                    inconclusive.add(result.inconclusiveAccounts);
+                    if (result.violation != null) {
+                        failure.compareAndSet(null, result.violation);
+                    }
+                } catch (RuntimeException | StackOverflowError e) {
+                    failure.compareAndSet(null, "epoch " + number + ": checker failed: " + e);
+                } finally {
+                    pendingChecks.release();
+                }
+            });
+            stop[0] = epoch[0] >= epochs || failure.get() != null;
+        });
+
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(threadSeed(seed, thread));
+                RingResult ringResult = new RingResult();
+                String channel = "stress-" + thread;
+                long index = 0;
+                try {
+                    while (!stop[0]) {
+                        List<HistoryOp> ops = history.get(thread);
+                        long round = epoch[0];
+                        for (int i = 0; i < epochOps; i++) {
+                            HistoryOp op = nextOp(random, thread, index++, round, accountIds, accountCount, ringShare,
+                                circularShare);
+                            execute(processor, ring, ringResult, channel, op);
+                            ops.add(op);
+                            progress.increment();
+                        }
+                        barrier.await();
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    failure.compareAndSet(null, "worker " + thread + " interrupted");
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, "request failed: " + e.getCause());
+                    barrier.reset();
+                }
+            }, "stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        checkerPool.shutdown();
+        checkerPool.awaitTermination(10, TimeUnit.MINUTES);
+        watchdog.finish();
+        String audit = auditor.auditNow().toString();
+        long discrepancies = auditor.getDiscrepancyCount();
+        auditor.shutdown();
+        processor.shutdown();
+
+        long total = 0;
+        for (long count : opsByType) {
+            total += count;
+        }
+        System.out.println(String.format("Processor: %d threads, %d accounts (+%d split), %d requests in %d epochs, "
+                + "%.2f s (%.0f req/s), ring share %.0f%%, circular share %.0f%%", threads, accountCount, splitCount,
+            total, epoch[0], elapsed / 1e9, total * 1e9 / elapsed, ringShare * 100, circularShare * 100));
+        StringBuilder mix = new StringBuilder("  by type:");
+        for (TransactionType type : TransactionType.values()) {
+            if (opsByType[type.ordinal()] > 0) {
+                mix.append(' ').append(type).append('=').append(opsByType[type.ordinal()]);
+            }
+        }
+        System.out.println(mix);
+        StringBuilder outcomes = new StringBuilder("  by status:");
+        for (TransactionStatus status : TransactionStatus.values()) {
+            if (opsByStatus[status.ordinal()] > 0) {
+                outcomes.append(' ').append(status).append('=').append(opsByStatus[status.ordinal()]);
+            }
+        }
+        System.out.println(outcomes);
+        System.out.println(String.format("  history check: %.2f s of checker time, %d search states, "
+                + "%d account-epochs inconclusive", checkNanos[0] / 1e9, statesExplored.sum(), inconclusive.sum()));
+        System.out.println("  " + audit);
+        if (failure.get() == null && discrepancies > 0) {
+            failure.set(discrepancies + " conservation audit discrepancies");
+        }
+        return failure.get();
+    }
+
+    /**
+     * A transfer without a target and requests naming a missing account must get the same
+     * answer whether or not the id is already cached as missing; null if they do
+     */
+    private static String probeMissingAccounts(TransactionProcessor processor, int sourceId, int missingId)
+            throws InterruptedException {
+        try {
+            TransactionStatus noTarget = processor.submitAuthenticatedTransaction(
+                new Transaction(TransactionType.TRANSFER, sourceId, 10, 0)).get().getStatus();
+            if (noTarget != TransactionStatus.TARGET_NOT_SPECIFIED) {
+                return "transfer without a target answered " + noTarget;
+            }
+            // The first request of each pair meets a cold cache, the second a cached miss
+            for (int attempt = 0; attempt < 2; attempt++) {
+                TransactionStatus transfer = processor.submitAuthenticatedTransaction(new Transaction(
+                    TransactionType.TRANSFER, sourceId, missingId, 10, 0)).get().getStatus();
+                TransactionResult multi = processor.submitAuthenticatedTransaction(new Transaction(sourceId,
+                    Arrays.asList(new TransferLeg(missingId + 1, 10)), 0)).get();
+                if (transfer != TransactionStatus.TARGET_NOT_FOUND
+                    || multi.getStatus() != TransactionStatus.TARGET_NOT_FOUND || multi.getDetail() != 1) {
+                    return String.format("missing target %s: transfer answered %s, multi-transfer %s (leg %d)",
+                        attempt == 0 ? "uncached" : "cached", transfer, multi.getStatus(), multi.getDetail());
+                }
+            }
+        } catch (ExecutionException | RuntimeException e) {
+            return "missing-account probe failed: " + e;
+        }
+        return null;
+    }
+
+    /**
+     * Credits of a fraction of a cent into a split account must be refused on every path
+     * before the source is debited; null if they were
+     */
+    private static String probeSubCentCredits(TransactionProcessor processor, SubmissionRing ring, Account[] accounts,
+                                              int sourceId, int splitId) throws InterruptedException {
+        long[] beforeCents = new long[accounts.length];
+        int[] beforeCounts = new int[accounts.length];
+        readState(accounts, beforeCents, beforeCounts);
+        RingResult ringResult = new RingResult();
+        ring.execute(TransactionType.TRANSFER, sourceId, splitId, SUB_CENT_AMOUNT, "stress-probe", ringResult);
+        TransactionStatus ringStatus = ringResult.getStatus();
+        TransactionStatus transferStatus;
+        TransactionStatus multiStatus;
+        try {
+            transferStatus = processor.submitAuthenticatedTransaction(new Transaction(TransactionType.TRANSFER,
+                sourceId, splitId, SUB_CENT_AMOUNT, 0)).get().getStatus();
+            multiStatus = processor.submitAuthenticatedTransaction(new Transaction(sourceId,
+                Arrays.asList(new TransferLeg(splitId, SUB_CENT_AMOUNT)), 0)).get().getStatus();
+        } catch (ExecutionException e) {
+            return "sub-cent probe failed: " + e.getCause();
+        }
+        long[] afterCents = new long[accounts.length];
+        int[] afterCounts = new int[accounts.length];
+        readState(accounts, afterCents, afterCounts);
+        if (ringStatus != TransactionStatus.INVALID_AMOUNT || transferStatus != TransactionStatus.INVALID_AMOUNT
+            || multiStatus != TransactionStatus.INVALID_LEG_AMOUNT) {
+            return String.format("sub-cent credit of $%s into split account %d answered ring %s, transfer %s, "
+                + "multi-transfer %s", SUB_CENT_AMOUNT, splitId, ringStatus, transferStatus, multiStatus);
+        }
+        if (!Arrays.equals(beforeCents, afterCents) || !Arrays.equals(beforeCounts, afterCounts)) {
+            return "refused sub-cent credits into split account " + splitId + " still moved money";
+        }
+        return null;
+    }
+
+    private static void readState(Account[] accounts, long[] cents, int[] counts) {
+        for (int i = 0; i < accounts.length; i++) {
+            AccountSnapshot snapshot = accounts[i].snapshot();
+            cents[i] = Math.round(snapshot.getBalance() * 100);
+            counts[i] = snapshot.getTransactionCount();
+        }
+    }
+
+    /**
+     * Draw the next request; depends only on the Random, never on earlier outcomes, so a
+     * seed always produces the same requests
+     */
+    private static HistoryOp nextOp(Random random, int thread, long index, long epoch, int[] accountIds,
+                                    int regular, double ringShare, double circularShare) {
+        // Sources are regular accounts; transfer targets may also be the split accounts after them
+        int accounts = accountIds.length;
+        boolean ring = random.nextDouble() < ringShare;
+        if (random.nextDouble() < circularShare) {
+            // Thread i pays account i+1, rotating every epoch, so the transfers form a cycle
+            int from = (int) ((thread + epoch) % regular);
+            return new HistoryOp(thread, index, TransactionType.TRANSFER, ring, accountIds[from],
+                accountIds[(from + 1) % regular], null, null, (1 + random.nextInt(50)) * 100L);
+        }
+        int source = random.nextInt(regular);
+        int roll = random.nextInt(100);
+        if (roll < 15) {
+            return new HistoryOp(thread, index, TransactionType.DEPOSIT, ring, accountIds[source], 0, null, null,
+                (1 + random.nextInt(200)) * 100L);
+        }
+        if (roll < 30) {
+            return new HistoryOp(thread, index, TransactionType.WITHDRAW, ring, accountIds[source], 0, null, null,
+                (1 + random.nextInt(200)) * 100L);
+        }
+        if (roll < 65) {
+            int target = (source + 1 + random.nextInt(accounts - 1)) % accounts;
+            return new HistoryOp(thread, index, TransactionType.TRANSFER, ring, accountIds[source],
+                accountIds[target], null, null, (1 + random.nextInt(300)) * 100L);
+        }
+        if (roll < 75) {
+            int legs = 2 + random.nextInt(3);
+            int[] targets = new int[legs];
+            long[] cents = new long[legs];
+            long total = 0;
+            for (int i = 0; i < legs; i++) {
+                targets[i] = accountIds[(source + 1 + random.nextInt(accounts - 1)) % accounts];
+                cents[i] = (1 + random.nextInt(100)) * 100L;
+                total += cents[i];
+            }
+            return new HistoryOp(thread, index, TransactionType.MULTI_TRANSFER, false, accountIds[source], 0,
+                targets, cents, total);
+        }
+        return new HistoryOp(thread, index, TransactionType.BALANCE_INQUIRY, ring, accountIds[source], 0, null, null, 0);
+    }
+
+    private static void execute(TransactionProcessor processor, SubmissionRing ring, RingResult ringResult,
+                                String channel, HistoryOp op) throws InterruptedException, ExecutionException {
+        double amount = op.amountCents / 100.0;
+        if (op.ring) {
+            op.invokeNanos = System.nanoTime();
+            ring.execute(op.type, op.accountId, op.targetAccountId, amount, channel, ringResult);
+            op.responseNanos = System.nanoTime();
+            op.status = ringResult.getStatus();
+            op.balanceAfterCents = Math.round(ringResult.getBalanceAfter() * 100);
+            return;
+        }
+        Transaction transaction;
+        if (op.type == TransactionType.MULTI_TRANSFER) {
+            List<TransferLeg> legs = new ArrayList<>(op.legTargets.length);
+            for (int i = 0; i < op.legTargets.length; i++) {
+                legs.add(new TransferLeg(op.legTargets[i], op.legCents[i] / 100.0));
+            }
+            transaction = new Transaction(op.accountId, legs, 0);
+        } else if (op.type == TransactionType.TRANSFER) {
+            transaction = new Transaction(op.type, op.accountId, op.targetAccountId, amount, 0);
+        } else {
+            transaction = new Transaction(op.type, op.accountId, amount, 0);
+        }
+        op.invokeNanos = System.nanoTime();
+        TransactionResult result = processor.submitAuthenticatedTransaction(transaction).get();
+        op.responseNanos = System.nanoTime();
+        op.status = result.getStatus();
+        op.balanceAfterCents = Math.round(result.getBalanceAfter() * 100);
+    }
+
+    /**
+     * Command line entry point. Arguments are key=value pairs:
+     * seed=42 phases=locks,processor threads=8 stall=10000
+     * lock phase: lockops=1000000 (total) lockaccounts=16
+     * processor phase: ops=200000 (total) accounts=8 split=1 (extra split-balance transfer targets)
+     * epoch=256 (requests per thread between checks)
+     * ring=0.5 (share sent through the submission ring) circular=0.2 checkers=cores
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        long seed = options.containsKey("seed") ? Long.parseLong(options.get("seed")) : System.nanoTime() % 1_000_000;
+        String phases = options.getOrDefault("phases", "locks,processor");
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        long stallMs = Long.parseLong(options.getOrDefault("stall", "10000"));
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("=".repeat(80));
+        System.out.println(String.format("STRESS HARNESS  seed=%d threads=%d cores=%d", seed, threads, cores));
+        System.out.println("=".repeat(80));
+        String failure = null;
+        if (phases.contains("locks")) {
+            long lockOps = Long.parseLong(options.getOrDefault("lockops", "1000000"));
+            failure = runLockPhase(threads, Integer.parseInt(options.getOrDefault("lockaccounts", "16")),
+                lockOps / threads, seed, stallMs);
+        }
+        if (failure == null && phases.contains("processor")) {
+            long ops = Long.parseLong(options.getOrDefault("ops", "200000"));
+            int epochOps = Integer.parseInt(options.getOrDefault("epoch", "256"));
+            failure = runProcessorPhase(threads, Integer.parseInt(options.getOrDefault("accounts", "8")),
+                Integer.parseInt(options.getOrDefault("split", "1")), Math.max(1, ops / ((long) threads * epochOps)),
+                epochOps,
+                Double.parseDouble(options.getOrDefault("ring", "0.5")),
+                Double.parseDouble(options.getOrDefault("circular", "0.2")), seed, stallMs,
+                Integer.parseInt(options.getOrDefault("checkers", String.valueOf(cores))));
+        }
+        System.out.println("=".repeat(80));
+        if (failure != null) {
+            System.out.println("VIOLATION: " + failure);
+            System.out.println("Replay the same requests with seed=" + seed);
+            System.exit(1);
+        }
+        System.out.println("LINEARIZABLE: every epoch matched the sequential model, no lost updates, no deadlock");
+        System.exit(0);
+    }
+
+    private static long threadSeed(long seed, int thread) {
+        return seed * 0x9E3779B97F4A7C15L + thread;
+    }
+}
@@ -0,0 +1,74 @@
+package loadgen;
+
+import transactions.TransactionType;
+
+import java.util.Random;
+
+/**
+ * Weighted mix of ATM operations used by the load generator
+ */
+public class WorkloadMix {
+    private final int withdrawWeight;
+    private final int depositWeight;
+    private final int transferWeight;
+    private final int inquiryWeight;
+    private final int totalWeight;
+
+    public WorkloadMix(int withdrawWeight, int depositWeight, int transferWeight, int inquiryWeight) {
+        if (withdrawWeight < 0 || depositWeight < 0 || transferWeight < 0 || inquiryWeight < 0) {
+            throw new IllegalArgumentException("Workload weights must not be negative");
+        }
+        this.withdrawWeight = withdrawWeight;
+        this.depositWeight = depositWeight;
+        this.transferWeight = transferWeight;
+        this.inquiryWeight = inquiryWeight;
+        this.totalWeight = withdrawWeight + depositWeight + transferWeight + inquiryWeight;
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("At least one workload weight must be positive");
+        }
+    }
+
+    /**
+     * Typical ATM traffic: mostly inquiries and withdrawals
+     */
+    public static WorkloadMix typicalAtm() {
+        return new WorkloadMix(30, 15, 10, 45);
+    }
+
+    /**
+     * Parse a mix of the form "withdraw:deposit:transfer:inquiry", e.g. "30:15:10:45"
+     */
+    public static WorkloadMix parse(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Expected withdraw:deposit:transfer:inquiry, got " + spec);
+        }
+        return new WorkloadMix(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+            Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+    }
+
+    /**
+     * Pick the next operation according to the configured weights
+     */
+    public TransactionType next(Random random) {
+        int r = random.nextInt(totalWeight);
+        if (r < withdrawWeight) {
+            return TransactionType.WITHDRAW;
+        }
+        r -= withdrawWeight;
+        if (r < depositWeight) {
+            return TransactionType.DEPOSIT;
+        }
+        r -= depositWeight;
+        if (r < transferWeight) {
+            return TransactionType.TRANSFER;
+        }
+        return TransactionType.BALANCE_INQUIRY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WorkloadMix[Withdraw=%d, Deposit=%d, Transfer=%d, Inquiry=%d]",
+            withdrawWeight, depositWeight, transferWeight, inquiryWeight);
+    }
+}
@@ -0,0 +1,201 @@
+package replication;
+
+import accounts.AccountRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot-standby side of replication: applies the primary's account post-images to its own
+ * repository and acknowledges each frame with the highest sequence applied so far.
+ *
+ * Accounts the primary adds, and new PINs, arrive as definitions ahead of their
+ * post-images, so the repository may start out with fewer accounts (balances may differ;
+ * a fresh backup is sent a snapshot, which defines every account). On connect the backup announces its last applied
+ * sequence so the primary can resume from there. promote() stops following, after which
+ * the repository can back a new TransactionProcessor and ReplicationPrimary.
+ */
+public class ReplicationBackup {
+    private final AccountRepository accountRepository;
+    private final AtomicLong recordsApplied;
+    private final AtomicLong unknownAccounts;
+    private final AtomicLong snapshotsReceived;
+    private volatile long lastAppliedSequence;
+    private volatile ByteChannel channel;
+    private volatile Thread receiver;
+    private volatile boolean promoted;
+
+    public ReplicationBackup(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+        this.recordsApplied = new AtomicLong(0);
+        this.unknownAccounts = new AtomicLong(0);
+        this.snapshotsReceived = new AtomicLong(0);
+    }
+
+    /**
+     * Follow a primary over the channel, replacing any current connection
+     */
+    public synchronized void connect(ByteChannel channel) throws IOException {
+        if (promoted) {
+            throw new IllegalStateException("Backup has been promoted");
+        }
+        disconnect();
+        ByteBuffer hello = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES);
+        ReplicationFrames.putHeader(hello, ReplicationFrames.HELLO, lastAppliedSequence, 0);
+        hello.flip();
+        ReplicationFrames.writeFully(channel, hello);
+        this.channel = channel;
+        Thread thread = new Thread(() -> receive(channel), "replication-backup");
+        thread.setDaemon(true);
+        receiver = thread;
+        thread.start();
+    }
+
+    private void receive(ByteChannel source) {
+        ByteBuffer header = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES);
+        ByteBuffer records = ByteBuffer.allocateDirect(ReplicationFrames.MAX_FRAME_RECORDS
+            * ReplicationFrames.RECORD_BYTES);
+        ByteBuffer ack = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES);
+        ByteBuffer definitions = ByteBuffer.allocate(1024);
+        try {
+            while (true) {
+                header.clear();
+                ReplicationFrames.readFully(source, header);
+                header.flip();
+                byte type = header.get();
+                long sequence = header.getLong();
+                int count = header.getInt();
+                if (type == ReplicationFrames.DEFINE) {
+                    // Not acknowledged: the post-images that follow carry the sequences
+                    if (definitions.capacity() < count) {
+                        definitions = ByteBuffer.allocate(Math.max(count, definitions.capacity() * 2));
+                    }
+                    definitions.clear();
+                    definitions.limit(count);
+                    ReplicationFrames.readFully(source, definitions);
+                    definitions.flip();
+                    while (definitions.hasRemaining()) {
+                        ReplicationFrames.applyDefinition(definitions, accountRepository);
+                    }
+                    continue;
+                }
+                records.clear();
+                records.limit(count * ReplicationFrames.RECORD_BYTES);
+                ReplicationFrames.readFully(source, records);
+                records.flip();
+
+                long applied = lastAppliedSequence;
+                switch (type) {
+                    case ReplicationFrames.RECORDS:
+                        for (int i = 0; i < count; i++) {
+                            if (sequence + i > applied) {
+                                apply(records);
+                            } else {
+                                records.position(records.position() + ReplicationFrames.RECORD_BYTES);
+                            }
+                        }
+                        applied = Math.max(applied, sequence + count - 1);
+                        break;
+                    case ReplicationFrames.SNAPSHOT:
+                        for (int i = 0; i < count; i++) {
+                            apply(records);
+                        }
+                        continue; // acknowledged once the snapshot is complete
+                    case ReplicationFrames.SNAPSHOT_END:
+                        snapshotsReceived.incrementAndGet();
+                        applied = sequence;
+                        break;
+                    default:
+                        throw new IOException("Unexpected replication frame type " + type);
+                }
+                lastAppliedSequence = applied;
+                ack.clear();
+                ReplicationFrames.putHeader(ack, ReplicationFrames.ACK, applied, 0);
+                ack.flip();
+                ReplicationFrames.writeFully(source, ack);
+            }
+        } catch (IOException e) {
+            if (channel == source && !promoted) {
+                System.err.println("Replication primary lost: " + e.getMessage());
+            }
+        } finally {
+            closeQuietly(source);
+        }
+    }
+
+    private void apply(ByteBuffer records) {
+        if (ReplicationFrames.applyRecord(records, accountRepository)) {
+            recordsApplied.incrementAndGet();
+        } else {
+            unknownAccounts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stop following the primary; the state applied so far is kept
+     */
+    public synchronized void disconnect() {
+        ByteChannel current = channel;
+        Thread thread = receiver;
+        channel = null;
+        receiver = null;
+        if (current != null) {
+            closeQuietly(current);
+        }
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stop following for good and take over as the source of truth. Returns the last
+     * applied sequence, which the new primary should continue from.
+     */
+    public synchronized long promote() {
+        promoted = true;
+        disconnect();
+        return lastAppliedSequence;
+    }
+
+    public boolean isConnected() {
+        Thread thread = receiver;
+        return thread != null && thread.isAlive();
+    }
+
+    public long getLastAppliedSequence() {
+        return lastAppliedSequence;
+    }
+
+    public long getRecordsApplied() {
+        return recordsApplied.get();
+    }
+
+    /**
+     * Records skipped because the account does not exist on the backup
+     */
+    public long getUnknownAccounts() {
+        return unknownAccounts.get();
+    }
+
+    public long getSnapshotsReceived() {
+        return snapshotsReceived.get();
+    }
+
+    public AccountRepository getAccountRepository() {
+        return accountRepository;
+    }
+
+    private static void closeQuietly(ByteChannel source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            // already broken
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package replication;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Connected channel pairs for running a primary and a backup in one process. Any other
+ * blocking ByteChannel (e.g. a SocketChannel to another host) works the same way.
+ */
+public final class ReplicationChannels {
+
+    private ReplicationChannels() {
+    }
+
+    /**
+     * {primary end, backup end} over two in-memory pipes
+     */
+    public static ByteChannel[] pipePair() throws IOException {
+        Pipe toBackup = Pipe.open();
+        Pipe toPrimary = Pipe.open();
+        return new ByteChannel[]{
+            new PipeEnd(toPrimary.source(), toBackup.sink()),
+            new PipeEnd(toBackup.source(), toPrimary.sink())
+        };
+    }
+
+    /**
+     * {primary end, backup end} over a loopback TCP connection with Nagle disabled
+     */
+    public static ByteChannel[] loopbackPair() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel backupEnd = SocketChannel.open(server.getLocalAddress());
+            SocketChannel primaryEnd = server.accept();
+            primaryEnd.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            backupEnd.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            return new ByteChannel[]{primaryEnd, backupEnd};
+        }
+    }
+
+    /**
+     * One side of a pipe pair: reads from one pipe, writes to the other
+     */
+    private static class PipeEnd implements ByteChannel {
+        private final Pipe.SourceChannel source;
+        private final Pipe.SinkChannel sink;
+
+        PipeEnd(Pipe.SourceChannel source, Pipe.SinkChannel sink) {
+            this.source = source;
+            this.sink = sink;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            return source.read(buffer);
+        }
+
+        @Override
+        public int write(ByteBuffer buffer) throws IOException {
+            return sink.write(buffer);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen() && sink.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing our sink lets the peer's reads see end of stream
+            sink.close();
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package replication;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import accounts.SalaryAccount;
+import accounts.SavingsAccount;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+/**
+ * Wire format shared by primary and backup.
+ *
+ * Every frame starts with a 13-byte header: type (1), sequence (8), record count (4).
+ * Records are account post-images of 17 bytes: account id (4), balance as double bits (8),
+ * transaction count (4), frozen flag (1). Record i of a RECORDS frame has sequence
+ * header sequence + i.
+ *
+ * A DEFINE frame carries account definitions, for accounts the backup may not have or
+ * whose PIN changed; its header count is the body length in bytes. Each definition is
+ * account id (4), kind (1: 0 savings, 1 salary), then name and PIN hash as modified
+ * UTF-8 (DataOutput.writeUTF). The post-image record with the definition's sequence
+ * follows it, so a new account gets its balance from the next RECORDS frame.
+ */
+final class ReplicationFrames {
+    static final byte RECORDS = 1;
+    static final byte ACK = 2;
+    static final byte HELLO = 3;
+    static final byte SNAPSHOT = 4;
+    static final byte SNAPSHOT_END = 5;
+    static final byte DEFINE = 6;
+    static final int HEADER_BYTES = 13;
+    static final int RECORD_BYTES = 17;
+    static final int MAX_FRAME_RECORDS = 512;
+
+    private ReplicationFrames() {
+    }
+
+    static void putHeader(ByteBuffer buffer, byte type, long sequence, int count) {
+        buffer.put(type);
+        buffer.putLong(sequence);
+        buffer.putInt(count);
+    }
+
+    static void putRecord(ByteBuffer buffer, AccountSnapshot snapshot) {
+        buffer.putInt(snapshot.getAccountId());
+        buffer.putLong(Double.doubleToRawLongBits(snapshot.getBalance()));
+        buffer.putInt(snapshot.getTransactionCount());
+        buffer.put((byte) (snapshot.isFrozen() ? 1 : 0));
+    }
+
+    /**
+     * Apply one record to the local copy of the account; false if the account is unknown
+     */
+    static boolean applyRecord(ByteBuffer buffer, AccountRepository repository) {
+        int accountId = buffer.getInt();
+        double balance = Double.longBitsToDouble(buffer.getLong());
+        int transactionCount = buffer.getInt();
+        boolean frozen = buffer.get() != 0;
+        Account account = repository.getAccount(accountId);
+        if (account == null) {
+            return false;
+        }
+        account.restoreState(balance, transactionCount, frozen);
+        return true;
+    }
+
+    /**
+     * Encode an account's definition for a DEFINE frame
+     */
+    static byte[] encodeDefinition(Account account) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(account.getAccountId());
+            data.writeByte(account instanceof SalaryAccount ? 1 : 0);
+            data.writeUTF(account.getName());
+            data.writeUTF(account.getPinHash());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // cannot happen for an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Apply one definition: create the account (balance 0 until its post-image arrives)
+     * if it is missing or of another kind, otherwise take over the PIN hash
+     */
+    static void applyDefinition(ByteBuffer buffer, AccountRepository repository) {
+        int accountId = buffer.getInt();
+        boolean salary = buffer.get() == 1;
+        String name = getUTF(buffer);
+        String pinHash = getUTF(buffer);
+        Account account = repository.getAccount(accountId);
+        if (account != null && (account instanceof SalaryAccount) == salary && account.getName().equals(name)) {
+            account.restorePinHash(pinHash);
+        } else {
+            repository.addAccount(salary ? new SalaryAccount(accountId, name, 0.0, pinHash)
+                : new SavingsAccount(accountId, name, 0.0, pinHash));
+        }
+    }
+
+    private static String getUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = (byte) (length >>> 8);
+        bytes[1] = (byte) length;
+        buffer.get(bytes, 2, length);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed account definition", e);
+        }
+    }
+
+    static void writeFully(ByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void readFully(ByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Replication channel closed");
+            }
+        }
+    }
+}
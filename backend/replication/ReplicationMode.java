@@ -0,0 +1,11 @@
+package replication;
+
+/**
+ * When a commit on the primary is allowed to complete
+ */
+public enum ReplicationMode {
+    /** After the backup has acknowledged the commit's sequence number */
+    SYNC,
+    /** Immediately; the backup follows as fast as the channel allows */
+    ASYNC
+}
@@ -0,0 +1,444 @@
+package replication;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import accounts.RepositoryChangeListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Primary side of hot-standby replication.
+ *
+ * Every commit appends the post-image of each account it touched to an in-memory log and
+ * gets a sequence number. A sender thread streams the log to the attached backup in
+ * frames of up to 512 records without waiting for acknowledgements, so many commits are
+ * in flight at once; a reader thread collects the backup's cumulative acks. In SYNC mode
+ * a commit waits for the ack of its own sequence (bounded by the ack timeout), in ASYNC
+ * mode it does not wait at all.
+ *
+ * Post-images are read and sequenced under one lock, so whatever order the backup
+ * applies them in, the last record for an account carries its latest state. The log
+ * keeps the most recent records for catch-up: a backup that reconnects within that window
+ * resumes from its last applied sequence, anything older (or a fresh backup) is sent a
+ * snapshot of every account first. Commits are never held back for a missing backup.
+ *
+ * As a RepositoryChangeListener of its repository it also ships changes made outside the
+ * transaction path: frozen flags as post-images, and accounts added or given a new PIN as
+ * a definition sent ahead of the post-image with the same sequence (snapshots send the
+ * definitions of all accounts), so a promoted backup has every account and PIN.
+ */
+public class ReplicationPrimary implements RepositoryChangeListener {
+    private final AccountRepository accountRepository;
+    private final ReplicationMode mode;
+    private final long ackTimeoutMs;
+    private final int capacity;
+    private final ByteBuffer log; // record for sequence s lives at slot s % capacity
+    private final Object ackMonitor;
+    private final AtomicLong syncTimeouts;
+    private final AtomicLong unreplicatedCommits;
+    private final AtomicLong snapshotsSent;
+    private final TreeMap<Long, byte[]> definitions; // by sequence, within the retained log; guarded by this
+    private long nextSequence; // guarded by this
+    private volatile long ackedSequence;
+    private volatile Connection connection;
+
+    /**
+     * @param capacity records retained for catch-up
+     * @param lastSequence last sequence already issued, e.g. by the primary this one replaces
+     */
+    public ReplicationPrimary(AccountRepository accountRepository, ReplicationMode mode, long ackTimeoutMs,
+                              int capacity, long lastSequence) {
+        this.accountRepository = accountRepository;
+        this.mode = mode;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.capacity = capacity;
+        this.log = ByteBuffer.allocate(capacity * ReplicationFrames.RECORD_BYTES);
+        this.ackMonitor = new Object();
+        this.syncTimeouts = new AtomicLong(0);
+        this.unreplicatedCommits = new AtomicLong(0);
+        this.snapshotsSent = new AtomicLong(0);
+        this.definitions = new TreeMap<>();
+        this.nextSequence = lastSequence + 1;
+        this.ackedSequence = lastSequence;
+    }
+
+    /**
+     * Record a commit touching the given accounts; in SYNC mode returns once the backup has
+     * it or the ack timeout has expired. Returns false if the commit is not known to be on
+     * a backup (no backup attached, or no ack in time).
+     */
+    public boolean commit(int[] accountIds, int count) {
+        return awaitCommit(append(accountIds, count));
+    }
+
+    /**
+     * Replicate an account added to the repository or given a new PIN, as a commit
+     */
+    @Override
+    public void accountDefined(Account account) {
+        byte[] definition = ReplicationFrames.encodeDefinition(account);
+        long sequence;
+        synchronized (this) {
+            sequence = append(new int[] {account.getAccountId()}, 1);
+            if (sequence >= 0) {
+                definitions.put(sequence, definition);
+                definitions.headMap(nextSequence - capacity).clear(); // older ones go out by snapshot
+            }
+        }
+        awaitCommit(sequence);
+    }
+
+    /**
+     * Replicate an administrative state change (e.g. a freeze), as a commit
+     */
+    @Override
+    public void accountsChanged(int[] accountIds, int count) {
+        commit(accountIds, count);
+    }
+
+    private boolean awaitCommit(long sequence) {
+        if (sequence < 0) {
+            return true;
+        }
+        Connection current = connection;
+        if (current == null) {
+            unreplicatedCommits.incrementAndGet();
+            return false;
+        }
+        return mode == ReplicationMode.ASYNC || awaitAck(sequence, current);
+    }
+
+    /**
+     * Append post-images of the accounts; returns the last sequence used, -1 if none
+     */
+    public synchronized long append(int[] accountIds, int count) {
+        long last = -1;
+        for (int i = 0; i < count; i++) {
+            Account account = accountRepository.getAccount(accountIds[i]);
+            if (account == null) {
+                continue;
+            }
+            last = nextSequence++;
+            log.position((int) (last % capacity) * ReplicationFrames.RECORD_BYTES);
+            ReplicationFrames.putRecord(log, account.snapshot());
+        }
+        if (last >= 0) {
+            notifyAll(); // wake the sender
+        }
+        return last;
+    }
+
+    private boolean awaitAck(long sequence, Connection current) {
+        if (ackedSequence >= sequence) {
+            return true;
+        }
+        long deadline = System.nanoTime() + ackTimeoutMs * 1_000_000;
+        synchronized (ackMonitor) {
+            while (ackedSequence < sequence) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMs <= 0 || !current.open) {
+                    syncTimeouts.incrementAndGet();
+                    return false;
+                }
+                try {
+                    ackMonitor.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start replicating to a backup over the channel, replacing any current backup
+     */
+    public void attach(ByteChannel channel) {
+        Connection previous = connection;
+        if (previous != null) {
+            previous.close();
+        }
+        Connection next = new Connection(channel);
+        connection = next;
+        next.start();
+    }
+
+    /**
+     * Stop replicating; commits complete without waiting from now on
+     */
+    public void detach() {
+        Connection current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public boolean isBackupAttached() {
+        Connection current = connection;
+        return current != null && current.open;
+    }
+
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Highest sequence the backup has confirmed applying
+     */
+    public long getAckedSequence() {
+        return ackedSequence;
+    }
+
+    public ReplicationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * SYNC commits that completed without an ack because the timeout expired
+     */
+    public long getSyncTimeouts() {
+        return syncTimeouts.get();
+    }
+
+    /**
+     * Commits made while no backup was attached
+     */
+    public long getUnreplicatedCommits() {
+        return unreplicatedCommits.get();
+    }
+
+    /**
+     * Full snapshots sent because a backup was new or too far behind the retained log
+     */
+    public long getSnapshotsSent() {
+        return snapshotsSent.get();
+    }
+
+    public void shutdown() {
+        detach();
+    }
+
+    private void onAck(long sequence) {
+        if (sequence > ackedSequence) {
+            synchronized (ackMonitor) {
+                if (sequence > ackedSequence) {
+                    ackedSequence = sequence;
+                }
+                ackMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * One attached backup: a reader for HELLO and acks, a sender for records
+     */
+    private class Connection {
+        private final ByteChannel channel;
+        private final ByteBuffer frame;
+        private final ByteBuffer logView; // the sender's own position over the log
+        private ByteBuffer definitionFrame; // DEFINE frame sent ahead of the records frame, if any
+        private volatile boolean open;
+        private long sendCursor; // next sequence to send; guarded by the primary's lock
+
+        Connection(ByteChannel channel) {
+            this.channel = channel;
+            this.frame = ByteBuffer.allocateDirect(ReplicationFrames.HEADER_BYTES
+                + ReplicationFrames.MAX_FRAME_RECORDS * ReplicationFrames.RECORD_BYTES);
+            this.logView = log.duplicate();
+            this.definitionFrame = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES + 1024);
+            this.open = true;
+        }
+
+        void start() {
+            Thread reader = new Thread(this::receive, "replication-primary-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void receive() {
+            ByteBuffer header = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES);
+            try {
+                ReplicationFrames.readFully(channel, header);
+                header.flip();
+                if (header.get() != ReplicationFrames.HELLO) {
+                    throw new IOException("Backup did not start with HELLO");
+                }
+                long backupSequence = header.getLong();
+                synchronized (ReplicationPrimary.this) {
+                    // A fresh backup, or one whose position we cannot vouch for, gets a snapshot
+                    sendCursor = backupSequence <= 0 || backupSequence >= nextSequence
+                        ? Long.MIN_VALUE : backupSequence + 1;
+                }
+                Thread sender = new Thread(this::send, "replication-primary-sender");
+                sender.setDaemon(true);
+                sender.start();
+                while (open) {
+                    header.clear();
+                    ReplicationFrames.readFully(channel, header);
+                    header.flip();
+                    if (header.get() == ReplicationFrames.ACK) {
+                        onAck(header.getLong());
+                    }
+                }
+            } catch (IOException e) {
+                if (open) {
+                    System.err.println("Replication backup lost: " + e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void send() {
+            try {
+                while (open) {
+                    long snapshotSequence = -1;
+                    boolean defining = false;
+                    frame.clear();
+                    synchronized (ReplicationPrimary.this) {
+                        while (open && sendCursor >= nextSequence) {
+                            ReplicationPrimary.this.wait(100);
+                        }
+                        if (!open) {
+                            break;
+                        }
+                        if (sendCursor < nextSequence - capacity) {
+                            // Behind the retained log: resend everything, then continue live
+                            snapshotSequence = nextSequence - 1;
+                            sendCursor = nextSequence;
+                        } else {
+                            int count = (int) Math.min(ReplicationFrames.MAX_FRAME_RECORDS, nextSequence - sendCursor);
+                            SortedMap<Long, byte[]> pending = definitions.subMap(sendCursor, sendCursor + count);
+                            if (!pending.isEmpty()) {
+                                putDefinitions(pending.values(), sendCursor);
+                                defining = true;
+                            }
+                            ReplicationFrames.putHeader(frame, ReplicationFrames.RECORDS, sendCursor, count);
+                            // At most two bulk copies: up to the end of the log, then from its start
+                            int first = (int) (sendCursor % capacity);
+                            int run = Math.min(count, capacity - first);
+                            copyRecords(first, run);
+                            copyRecords(0, count - run);
+                            sendCursor += count;
+                        }
+                    }
+                    if (snapshotSequence >= 0) {
+                        sendSnapshot(snapshotSequence);
+                    } else {
+                        if (defining) {
+                            ReplicationFrames.writeFully(channel, definitionFrame);
+                        }
+                        frame.flip();
+                        ReplicationFrames.writeFully(channel, frame);
+                    }
+                }
+            } catch (IOException e) {
+                if (open) {
+                    System.err.println("Replication send failed: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Append records [first, first + count) of the log to the frame; caller holds the
+         * primary's lock
+         */
+        private void copyRecords(int first, int count) {
+            if (count == 0) {
+                return;
+            }
+            logView.limit((first + count) * ReplicationFrames.RECORD_BYTES);
+            logView.position(first * ReplicationFrames.RECORD_BYTES);
+            frame.put(logView);
+        }
+
+        /**
+         * Put a DEFINE frame holding the definitions into definitionFrame, ready to write
+         */
+        private void putDefinitions(Iterable<byte[]> pending, long sequence) {
+            int length = 0;
+            for (byte[] definition : pending) {
+                length += definition.length;
+            }
+            if (definitionFrame.capacity() < ReplicationFrames.HEADER_BYTES + length) {
+                definitionFrame = ByteBuffer.allocate(Math.max(ReplicationFrames.HEADER_BYTES + length,
+                    definitionFrame.capacity() * 2));
+            }
+            definitionFrame.clear();
+            ReplicationFrames.putHeader(definitionFrame, ReplicationFrames.DEFINE, sequence, length);
+            for (byte[] definition : pending) {
+                definitionFrame.put(definition);
+            }
+            definitionFrame.flip();
+        }
+
+        /**
+         * Stream the definition and current state of every account. Later changes are also in the log
+         * after snapshotSequence, so the backup converges even if the two overlap.
+         */
+        private void sendSnapshot(long snapshotSequence) throws IOException {
+            snapshotsSent.incrementAndGet();
+            int size = accountRepository.getAccountCount();
+            int position = 0;
+            while (position < size) {
+                frame.clear();
+                frame.position(ReplicationFrames.HEADER_BYTES);
+                int count = 0;
+                List<byte[]> chunkDefinitions = new ArrayList<>(ReplicationFrames.MAX_FRAME_RECORDS);
+                for (; position < size && count < ReplicationFrames.MAX_FRAME_RECORDS; position++) {
+                    Account account = accountRepository.getAccountAt(position);
+                    if (account != null) {
+                        chunkDefinitions.add(ReplicationFrames.encodeDefinition(account));
+                        ReplicationFrames.putRecord(frame, account.snapshot());
+                        count++;
+                    }
+                }
+                putDefinitions(chunkDefinitions, snapshotSequence);
+                ReplicationFrames.writeFully(channel, definitionFrame);
+                int end = frame.position();
+                frame.position(0);
+                ReplicationFrames.putHeader(frame, ReplicationFrames.SNAPSHOT, snapshotSequence, count);
+                frame.position(end);
+                frame.flip();
+                ReplicationFrames.writeFully(channel, frame);
+            }
+            frame.clear();
+            ReplicationFrames.putHeader(frame, ReplicationFrames.SNAPSHOT_END, snapshotSequence, 0);
+            frame.flip();
+            ReplicationFrames.writeFully(channel, frame);
+        }
+
+        void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing replication channel: " + e.getMessage());
+            }
+            synchronized (ReplicationPrimary.this) {
+                ReplicationPrimary.this.notifyAll();
+            }
+            synchronized (ackMonitor) {
+                ackMonitor.notifyAll();
+            }
+            if (connection == this) {
+                connection = null;
+            }
+        }
+    }
+}
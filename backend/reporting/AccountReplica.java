@@ -0,0 +1,252 @@
+package reporting;
+
+import accounts.Account;
+import accounts.AccountChangeListener;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import events.EventSubscriber;
+import transactions.TransactionEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eventually consistent, read-only copy of account balances and counters for reports and
+ * admin screens.
+ *
+ * The replica follows the transaction event bus: every batch of events re-reads only the
+ * accounts it touched (an optimistic snapshot, never the account monitor) and publishes a
+ * new immutable ReplicaView. Readers just take the current view, so queries cost nothing on
+ * the online path no matter how large they are. Changes that bypass the event bus, such as
+ * batch postings and fraud freezes, and events the bus dropped are picked up by a sweep
+ * that compares a bounded slice of accounts with the view every interval, reading the
+ * live fields without allocating and re-reading only accounts that differ, or by calling
+ * refresh for the account. resync rebuilds the whole view on demand.
+ */
+public class AccountReplica implements EventSubscriber<TransactionEvent> {
+    private final AccountRepository accountRepository;
+    private final List<AccountChangeListener> listeners;
+    private static final int SWEEP_ACCOUNTS = 65_536;
+
+    private final ScheduledExecutorService sweepExecutor;
+    private volatile ReplicaView view;
+    private int sweepCursor; // only touched by the sweep thread
+
+    public AccountReplica(AccountRepository accountRepository, long sweepIntervalMs) {
+        this.accountRepository = accountRepository;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.view = ReplicaView.EMPTY;
+        resync();
+        this.sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "account-replica-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalMs, sweepIntervalMs,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onEvents(List<TransactionEvent> batch) {
+        Set<Integer> changed = new HashSet<>();
+        for (TransactionEvent event : batch) {
+            for (int accountId : event.getAffectedAccountIds()) {
+                changed.add(accountId);
+            }
+        }
+        if (!changed.isEmpty()) {
+            refresh(changed);
+        }
+    }
+
+    /**
+     * The current epoch; never null, never changes underneath the caller
+     */
+    public ReplicaView getView() {
+        return view;
+    }
+
+    /**
+     * Replicated snapshot of one account, or null if unknown to the replica
+     */
+    public AccountSnapshot getAccount(int accountId) {
+        return view.get(accountRepository.positionOf(accountId));
+    }
+
+    /**
+     * Called with the id of every account whose replicated state changed, after the
+     * view containing the change is published
+     */
+    public void addListener(AccountChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void refresh(int accountId) {
+        refresh(Collections.singleton(accountId));
+    }
+
+    /**
+     * Re-read the given accounts and publish a view containing them
+     */
+    public void refresh(Collection<Integer> accountIds) {
+        List<Integer> changed = new ArrayList<>();
+        synchronized (this) {
+            ReplicaView current = view;
+            int maxPosition = current.getSize() - 1;
+            for (int accountId : accountIds) {
+                maxPosition = Math.max(maxPosition, accountRepository.positionOf(accountId));
+            }
+            int chunkCount = (maxPosition >>> ReplicaView.CHUNK_SHIFT) + 1;
+            AccountSnapshot[][] chunks = new AccountSnapshot[Math.max(chunkCount, current.chunks().length)][];
+            System.arraycopy(current.chunks(), 0, chunks, 0, current.chunks().length);
+            boolean[] copied = new boolean[chunks.length];
+            int accountCount = current.getAccountCount();
+            double totalBalance = current.getTotalBalance();
+            long totalTransactions = current.getTotalTransactions();
+            int frozenAccounts = current.getFrozenAccounts();
+
+            for (int accountId : accountIds) {
+                int position = accountRepository.positionOf(accountId);
+                Account account = accountRepository.getAccountAt(position);
+                if (account == null) {
+                    continue;
+                }
+                int chunk = position >>> ReplicaView.CHUNK_SHIFT;
+                if (!copied[chunk]) {
+                    chunks[chunk] = chunks[chunk] == null ? new AccountSnapshot[ReplicaView.CHUNK_SIZE] : chunks[chunk].clone();
+                    copied[chunk] = true;
+                }
+                AccountSnapshot previous = chunks[chunk][position & ReplicaView.CHUNK_MASK];
+                AccountSnapshot snapshot = account.snapshot();
+                chunks[chunk][position & ReplicaView.CHUNK_MASK] = snapshot;
+                if (previous == null) {
+                    accountCount++;
+                } else {
+                    totalBalance -= previous.getBalance();
+                    totalTransactions -= previous.getTransactionCount();
+                    frozenAccounts -= previous.isFrozen() ? 1 : 0;
+                }
+                totalBalance += snapshot.getBalance();
+                totalTransactions += snapshot.getTransactionCount();
+                frozenAccounts += snapshot.isFrozen() ? 1 : 0;
+                if (differs(previous, snapshot)) {
+                    changed.add(accountId);
+                }
+            }
+            view = new ReplicaView(current.getEpoch() + 1, System.currentTimeMillis(),
+                Math.max(current.getSize(), maxPosition + 1), chunks, accountCount, totalBalance,
+                totalTransactions, frozenAccounts);
+        }
+        notifyListeners(changed);
+    }
+
+    /**
+     * Rebuild the whole view from the live accounts; also recomputes the totals exactly
+     */
+    public void resync() {
+        List<Integer> changed = new ArrayList<>();
+        synchronized (this) {
+            ReplicaView current = view;
+            int size = accountRepository.getAccountCount();
+            AccountSnapshot[][] chunks = new AccountSnapshot[(size + ReplicaView.CHUNK_SIZE - 1) >>> ReplicaView.CHUNK_SHIFT][];
+            int accountCount = 0;
+            double totalBalance = 0;
+            long totalTransactions = 0;
+            int frozenAccounts = 0;
+            for (int position = 0; position < size; position++) {
+                Account account = accountRepository.getAccountAt(position);
+                if (account == null) {
+                    continue;
+                }
+                int chunk = position >>> ReplicaView.CHUNK_SHIFT;
+                if (chunks[chunk] == null) {
+                    chunks[chunk] = new AccountSnapshot[ReplicaView.CHUNK_SIZE];
+                }
+                AccountSnapshot snapshot = account.snapshot();
+                chunks[chunk][position & ReplicaView.CHUNK_MASK] = snapshot;
+                accountCount++;
+                totalBalance += snapshot.getBalance();
+                totalTransactions += snapshot.getTransactionCount();
+                frozenAccounts += snapshot.isFrozen() ? 1 : 0;
+                if (differs(current.get(position), snapshot)) {
+                    changed.add(snapshot.getAccountId());
+                }
+            }
+            view = new ReplicaView(current.getEpoch() + 1, System.currentTimeMillis(), size, chunks,
+                accountCount, totalBalance, totalTransactions, frozenAccounts);
+        }
+        notifyListeners(changed);
+    }
+
+    /**
+     * Compare the next SWEEP_ACCOUNTS positions with the view and refresh the ones that
+     * differ; wraps around, so every account is visited once per size / SWEEP_ACCOUNTS sweeps
+     */
+    void sweep() {
+        ReplicaView current = view;
+        int size = accountRepository.getAccountCount();
+        if (sweepCursor >= size) {
+            sweepCursor = 0;
+        }
+        int end = Math.min(size, sweepCursor + SWEEP_ACCOUNTS);
+        List<Integer> stale = new ArrayList<>();
+        for (int position = sweepCursor; position < end; position++) {
+            Account account = accountRepository.getAccountAt(position);
+            if (account != null && isStale(current.get(position), account)) {
+                stale.add(account.getAccountId());
+            }
+        }
+        sweepCursor = end;
+        if (!stale.isEmpty()) {
+            refresh(stale);
+        }
+    }
+
+    public void shutdown() {
+        sweepExecutor.shutdownNow();
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            System.err.println("Account replica sweep failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the live account no longer matches its replicated snapshot; reads the fields
+     * one by one, so a change racing the check is caught by its event or the next sweep
+     */
+    private static boolean isStale(AccountSnapshot replicated, Account account) {
+        return replicated == null
+            || replicated.getBalance() != account.getBalance()
+            || replicated.getTransactionCount() != account.getTransactionCount()
+            || replicated.isFrozen() != account.isFrozen()
+            || replicated.getFailedPinAttempts() != account.getFailedPinAttempts();
+    }
+
+    private void notifyListeners(List<Integer> changed) {
+        for (AccountChangeListener listener : listeners) {
+            for (int accountId : changed) {
+                listener.accountChanged(accountId);
+            }
+        }
+    }
+
+    private static boolean differs(AccountSnapshot previous, AccountSnapshot current) {
+        return previous == null
+            || previous.getBalance() != current.getBalance()
+            || previous.getTransactionCount() != current.getTransactionCount()
+            || previous.isFrozen() != current.isFrozen()
+            || previous.getFailedPinAttempts() != current.getFailedPinAttempts();
+    }
+}
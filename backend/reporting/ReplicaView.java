@@ -0,0 +1,104 @@
+package reporting;
+
+import accounts.AccountSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One immutable epoch of the account read replica.
+ *
+ * Snapshots are stored by repository position in fixed-size chunks. A new epoch copies
+ * only the chunks it changes and shares the rest with the previous epoch, so readers can
+ * hold on to a view for as long as they like and always see one consistent state.
+ */
+public class ReplicaView {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final ReplicaView EMPTY = new ReplicaView(0, 0, 0, new AccountSnapshot[0][], 0, 0, 0, 0);
+
+    private final long epoch;
+    private final long asOfMillis;
+    private final int size;
+    private final AccountSnapshot[][] chunks;
+    private final int accountCount;
+    private final double totalBalance;
+    private final long totalTransactions;
+    private final int frozenAccounts;
+
+    ReplicaView(long epoch, long asOfMillis, int size, AccountSnapshot[][] chunks, int accountCount,
+                double totalBalance, long totalTransactions, int frozenAccounts) {
+        this.epoch = epoch;
+        this.asOfMillis = asOfMillis;
+        this.size = size;
+        this.chunks = chunks;
+        this.accountCount = accountCount;
+        this.totalBalance = totalBalance;
+        this.totalTransactions = totalTransactions;
+        this.frozenAccounts = frozenAccounts;
+    }
+
+    /**
+     * Snapshot at a repository position, or null if the replica has not seen it yet
+     */
+    public AccountSnapshot get(int position) {
+        if (position < 0 || position >= size) {
+            return null;
+        }
+        AccountSnapshot[] chunk = chunks[position >>> CHUNK_SHIFT];
+        return chunk == null ? null : chunk[position & CHUNK_MASK];
+    }
+
+    /**
+     * All replicated accounts in repository order
+     */
+    public List<AccountSnapshot> getAccounts() {
+        List<AccountSnapshot> accounts = new ArrayList<>(accountCount);
+        for (int position = 0; position < size; position++) {
+            AccountSnapshot snapshot = get(position);
+            if (snapshot != null) {
+                accounts.add(snapshot);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Increases by one every time the replica publishes a new view
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * When this view was published; how stale it can be
+     */
+    public long getAsOfMillis() {
+        return asOfMillis;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    public double getTotalBalance() {
+        return totalBalance;
+    }
+
+    public long getTotalTransactions() {
+        return totalTransactions;
+    }
+
+    public int getFrozenAccounts() {
+        return frozenAccounts;
+    }
+
+    AccountSnapshot[][] chunks() {
+        return chunks;
+    }
+}
@@ -2,6 +2,8 @@ package reporting;
 
 import accounts.Account;
 import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import transactions.TransactionType;
 import util.DateTimeUtil;
 
 import java.io.BufferedReader;
@@ -9,8 +11,13 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,12 +25,23 @@ import java.util.Map;
  */
 public class ReportGenerator {
     private final AccountRepository accountRepository;
+    private final AccountReplica accountReplica;
     private static final String TRANSACTION_LOG_FILE = "logs/transactions.log";
     private static final String FRAUD_REPORT_FILE = "logs/fraud_report.txt";
     private static final String REPORT_OUTPUT_FILE = "logs/daily_report.txt";
+    private static final String DATED_REPORT_DIR = "logs/reports";
     
     public ReportGenerator(AccountRepository accountRepository) {
+        this(accountRepository, null);
+    }
+    
+    /**
+     * Report generator that reads account figures from a read replica instead of the live
+     * accounts, so large reports never compete with online transactions
+     */
+    public ReportGenerator(AccountRepository accountRepository, AccountReplica accountReplica) {
         this.accountRepository = accountRepository;
+        this.accountReplica = accountReplica;
     }
     
     /**
@@ -56,6 +74,7 @@ public class ReportGenerator {
             writer.println("Withdrawals: " + stats.withdrawals);
             writer.println("Deposits: " + stats.deposits);
             writer.println("Transfers: " + stats.transfers);
+            writer.println("Multi-Leg Transfers: " + stats.multiTransfers);
             writer.println("Balance Inquiries: " + stats.balanceInquiries);
             writer.println();
             
@@ -69,11 +88,10 @@ public class ReportGenerator {
             // Account summary
             writer.println("ACCOUNT SUMMARY:");
             writer.println("-".repeat(80));
-            Map<Integer, Account> accounts = accountRepository.getAllAccounts();
-            for (Account account : accounts.values()) {
+            for (AccountSnapshot snap : accountSnapshots(writer)) {
                 writer.println(String.format("Account %d (%s): Balance = $%.2f, Transactions = %d", 
-                    account.getAccountId(), account.getName(), 
-                    account.getBalance(), account.getTransactionCount()));
+                    snap.getAccountId(), snap.getName(), 
+                    snap.getBalance(), snap.getTransactionCount()));
             }
             writer.println();
             
@@ -94,6 +112,112 @@ public class ReportGenerator {
         }
     }
     
+    /**
+     * Account figures from the replica when there is one, else read from the live accounts
+     */
+    private List<AccountSnapshot> accountSnapshots(PrintWriter writer) {
+        if (accountReplica != null) {
+            ReplicaView view = accountReplica.getView();
+            writer.println(String.format("(read replica epoch %d as of %s)", view.getEpoch(), 
+                DateTimeUtil.format(view.getAsOfMillis())));
+            return view.getAccounts();
+        }
+        List<AccountSnapshot> snapshots = new ArrayList<>();
+        for (Account account : accountRepository.getAllAccounts().values()) {
+            snapshots.add(account.snapshot());
+        }
+        return snapshots;
+    }
+    
+    /**
+     * Generate the report for one calendar day from pre-aggregated rollups; each day
+     * gets its own file under logs/reports. If the rollups have missed events the day is
+     * first reconciled from the transaction log, and the report is marked incomplete when
+     * that fails. Returns the path written, or null on error.
+     */
+    public Path generateDailyReport(LocalDate day, TransactionRollups rollups) {
+        long start = System.nanoTime();
+        long dropped = rollups.getDroppedEvents();
+        boolean reconciled = dropped > 0 && rollups.reconcileDay(day);
+        RollupView view = rollups.queryDay(day);
+        Path output = Paths.get(DATED_REPORT_DIR, "daily_report_" + day + ".txt");
+        try {
+            Files.createDirectories(output.getParent());
+        } catch (IOException e) {
+            System.err.println("Error creating report directory: " + e.getMessage());
+            return null;
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(output.toFile()))) {
+            writer.println("=".repeat(80));
+            writer.println("DAILY TRANSACTION REPORT FOR " + day);
+            writer.println("Generated at: " + DateTimeUtil.getCurrentTimestamp());
+            if (reconciled) {
+                writer.println("Reconciled from the transaction log after " + dropped + " dropped events "
+                    + "(refusals that were never logged are not counted)");
+            } else if (dropped > 0) {
+                writer.println("INCOMPLETE: " + dropped + " events were dropped and the transaction log "
+                    + "could not be read");
+            }
+            writer.println("=".repeat(80));
+            writer.println();
+            
+            writer.println("TRANSACTION STATISTICS:");
+            writer.println("-".repeat(80));
+            writeRollup(writer, view.getTotal());
+            writer.println();
+            
+            writer.println("BY ACCOUNT TYPE:");
+            writer.println("-".repeat(80));
+            writeBreakdown(writer, view.getByAccountType());
+            
+            writer.println("BY ATM:");
+            writer.println("-".repeat(80));
+            writeBreakdown(writer, view.getByAtm());
+            
+            writer.println("=".repeat(80));
+            writer.println(String.format("Built from %d pre-aggregated buckets in %.2f ms", 
+                view.getBucketsRead(), (System.nanoTime() - start) / 1_000_000.0));
+            writer.flush();
+            
+            System.out.println("Daily report generated: " + output);
+            return output;
+        } catch (IOException e) {
+            System.err.println("Error generating report: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void writeRollup(PrintWriter writer, Rollup rollup) {
+        writer.println("Total Transactions: " + rollup.getTotal());
+        writer.println("Successful Transactions: " + rollup.getSucceeded());
+        writer.println("Failed Transactions: " + rollup.getFailed());
+        writer.println("Success Rate: " + String.format("%.2f%%", rollup.getSuccessRate()));
+        writer.println(String.format("Withdrawals: %d ($%.2f)", 
+            rollup.getCount(TransactionType.WITHDRAW), rollup.getWithdrawnCents() / 100.0));
+        writer.println(String.format("Deposits: %d ($%.2f)", 
+            rollup.getCount(TransactionType.DEPOSIT), rollup.getDepositedCents() / 100.0));
+        writer.println(String.format("Transfers: %d + %d multi-leg ($%.2f)", 
+            rollup.getCount(TransactionType.TRANSFER), rollup.getCount(TransactionType.MULTI_TRANSFER), 
+            rollup.getTransferredCents() / 100.0));
+        writer.println("Balance Inquiries: " + rollup.getCount(TransactionType.BALANCE_INQUIRY));
+        writer.println(String.format("Batch postings: interest %d ($%.2f), fees %d ($%.2f)",
+            rollup.getInterestPostings(), rollup.getInterestCents() / 100.0,
+            rollup.getFeePostings(), rollup.getFeeCents() / 100.0));
+    }
+    
+    private void writeBreakdown(PrintWriter writer, Map<String, Rollup> breakdown) {
+        List<Map.Entry<String, Rollup>> entries = new ArrayList<>(breakdown.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().getTotal(), a.getValue().getTotal()));
+        for (Map.Entry<String, Rollup> entry : entries) {
+            Rollup rollup = entry.getValue();
+            writer.println(String.format("%-12s total=%d ok=%d failed=%d withdrawn=$%.2f deposited=$%.2f transferred=$%.2f",
+                entry.getKey(), rollup.getTotal(), rollup.getSucceeded(), rollup.getFailed(),
+                rollup.getWithdrawnCents() / 100.0, rollup.getDepositedCents() / 100.0, 
+                rollup.getTransferredCents() / 100.0));
+        }
+        writer.println();
+    }
+    
     /**
      * Parse transaction log file
      */
@@ -159,6 +283,21 @@ public class ReportGenerator {
                                 // Ignore parsing errors
                             }
                         }
+                    } else if (line.contains("Type=MULTI_TRANSFER")) {
+                        stats.multiTransfers++;
+                        if (line.contains("Amount=")) {
+                            try {
+                                int start = line.indexOf("Amount=") + 7;
+                                int end = line.indexOf(",", start);
+                                if (end == -1) end = line.indexOf("]", start);
+                                if (end > start) {
+                                    String amountStr = line.substring(start, end).trim();
+                                    stats.totalTransferAmount += Double.parseDouble(amountStr);
+                                }
+                            } catch (Exception e) {
+                                // Ignore parsing errors
+                            }
+                        }
                     } else if (line.contains("Type=BALANCE_INQUIRY")) {
                         stats.balanceInquiries++;
                     }
@@ -199,6 +338,7 @@ public class ReportGenerator {
         int withdrawals = 0;
         int deposits = 0;
         int transfers = 0;
+        int multiTransfers = 0;
         int balanceInquiries = 0;
         double totalWithdrawalAmount = 0;
         double totalDepositAmount = 0;
@@ -0,0 +1,66 @@
+package reporting;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes yesterday's daily report every day at a fixed local time.
+ * Each run schedules the next one, so daylight-saving changes do not shift the run time.
+ */
+public class ReportScheduler {
+    private final ReportGenerator reportGenerator;
+    private final TransactionRollups rollups;
+    private final LocalTime runAt;
+    private final ScheduledExecutorService scheduler;
+    
+    public ReportScheduler(ReportGenerator reportGenerator, TransactionRollups rollups, LocalTime runAt) {
+        this.reportGenerator = reportGenerator;
+        this.rollups = rollups;
+        this.runAt = runAt;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "report-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void start() {
+        scheduleNext();
+    }
+    
+    /**
+     * Generate the report for a day immediately, on the calling thread
+     */
+    public Path runNow(LocalDate day) {
+        return reportGenerator.generateDailyReport(day, rollups);
+    }
+    
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+    
+    private void scheduleNext() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(runAt);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        scheduler.schedule(() -> {
+            try {
+                runNow(LocalDate.now().minusDays(1));
+            } catch (RuntimeException e) {
+                System.err.println("Scheduled report failed: " + e.getMessage());
+            } finally {
+                if (!scheduler.isShutdown()) {
+                    scheduleNext();
+                }
+            }
+        }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,118 @@
+package reporting;
+
+import transactions.TransactionType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pre-aggregated transaction counters and amounts for one time bucket and dimension.
+ * Amounts are in cents and cover successful transactions only. Batch interest and fee
+ * postings are counted apart from transactions.
+ */
+public class Rollup {
+    private static final int TOTAL = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FIRST_TYPE = 2; // one counter per TransactionType ordinal
+    private static final int WITHDRAWN_CENTS = FIRST_TYPE + TransactionType.values().length;
+    private static final int DEPOSITED_CENTS = WITHDRAWN_CENTS + 1;
+    private static final int TRANSFERRED_CENTS = WITHDRAWN_CENTS + 2;
+    private static final int INTEREST_POSTINGS = WITHDRAWN_CENTS + 3;
+    private static final int INTEREST_CENTS = WITHDRAWN_CENTS + 4;
+    private static final int FEE_POSTINGS = WITHDRAWN_CENTS + 5;
+    private static final int FEE_CENTS = WITHDRAWN_CENTS + 6;
+    private static final int FIELDS = WITHDRAWN_CENTS + 7;
+    
+    private final AtomicLongArray values;
+    
+    public Rollup() {
+        this.values = new AtomicLongArray(FIELDS);
+    }
+    
+    void record(TransactionType type, boolean success, long amountCents) {
+        values.incrementAndGet(TOTAL);
+        values.incrementAndGet(FIRST_TYPE + type.ordinal());
+        if (!success) {
+            return;
+        }
+        values.incrementAndGet(SUCCEEDED);
+        switch (type) {
+            case WITHDRAW:
+                values.addAndGet(WITHDRAWN_CENTS, amountCents);
+                break;
+            case DEPOSIT:
+                values.addAndGet(DEPOSITED_CENTS, amountCents);
+                break;
+            case TRANSFER:
+            case MULTI_TRANSFER:
+                values.addAndGet(TRANSFERRED_CENTS, amountCents);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    void recordPostings(long interestPostings, long interestCents, long feePostings, long feeCents) {
+        values.addAndGet(INTEREST_POSTINGS, interestPostings);
+        values.addAndGet(INTEREST_CENTS, interestCents);
+        values.addAndGet(FEE_POSTINGS, feePostings);
+        values.addAndGet(FEE_CENTS, feeCents);
+    }
+    
+    void merge(Rollup other) {
+        for (int i = 0; i < FIELDS; i++) {
+            long value = other.values.get(i);
+            if (value != 0) {
+                values.addAndGet(i, value);
+            }
+        }
+    }
+    
+    public long getTotal() {
+        return values.get(TOTAL);
+    }
+    
+    public long getSucceeded() {
+        return values.get(SUCCEEDED);
+    }
+    
+    public long getFailed() {
+        return getTotal() - getSucceeded();
+    }
+    
+    public long getCount(TransactionType type) {
+        return values.get(FIRST_TYPE + type.ordinal());
+    }
+    
+    public long getWithdrawnCents() {
+        return values.get(WITHDRAWN_CENTS);
+    }
+    
+    public long getDepositedCents() {
+        return values.get(DEPOSITED_CENTS);
+    }
+    
+    public long getTransferredCents() {
+        return values.get(TRANSFERRED_CENTS);
+    }
+    
+    public long getInterestPostings() {
+        return values.get(INTEREST_POSTINGS);
+    }
+    
+    public long getInterestCents() {
+        return values.get(INTEREST_CENTS);
+    }
+    
+    public long getFeePostings() {
+        return values.get(FEE_POSTINGS);
+    }
+    
+    public long getFeeCents() {
+        return values.get(FEE_CENTS);
+    }
+    
+    public double getSuccessRate() {
+        long total = getTotal();
+        return total > 0 ? getSucceeded() * 100.0 / total : 0;
+    }
+}
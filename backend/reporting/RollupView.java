@@ -0,0 +1,48 @@
+package reporting;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Result of a rollup query: totals for the range, split by ATM and by account type
+ */
+public class RollupView {
+    private final Rollup total;
+    private final Map<String, Rollup> byAtm;
+    private final Map<String, Rollup> byAccountType;
+    private int bucketsRead;
+    
+    RollupView() {
+        this.total = new Rollup();
+        this.byAtm = new HashMap<>();
+        this.byAccountType = new HashMap<>();
+    }
+    
+    void add(TransactionRollups.Bucket bucket) {
+        bucketsRead++;
+        total.merge(bucket.total);
+        bucket.byAtm.forEach((atm, rollup) -> byAtm.computeIfAbsent(atm, k -> new Rollup()).merge(rollup));
+        bucket.byAccountType.forEach((type, rollup) -> 
+            byAccountType.computeIfAbsent(type, k -> new Rollup()).merge(rollup));
+    }
+    
+    public Rollup getTotal() {
+        return total;
+    }
+    
+    public Map<String, Rollup> getByAtm() {
+        return Collections.unmodifiableMap(byAtm);
+    }
+    
+    public Map<String, Rollup> getByAccountType() {
+        return Collections.unmodifiableMap(byAccountType);
+    }
+    
+    /**
+     * Number of pre-aggregated buckets merged to answer the query
+     */
+    public int getBucketsRead() {
+        return bucketsRead;
+    }
+}
@@ -0,0 +1,339 @@
+package reporting;
+
+import accounts.Account;
+import accounts.AccountRepository;
+import batch.BatchJournal;
+import batch.PostingListener;
+import events.EventSubscriber;
+import events.RingBufferEventBus;
+import transactions.Transaction;
+import transactions.TransactionEvent;
+import transactions.TransactionType;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Per-minute, per-hour and per-day transaction rollups, kept up to date from the
+ * transaction event bus and from batch postings (see PostingListener).
+ *
+ * Buckets are keyed by local wall-clock time, so a day bucket is a calendar day in the
+ * system time zone. A range query is answered from the coarsest buckets that fit (whole
+ * days, then whole hours, then minutes at the edges), so its cost depends on the shape of
+ * the range rather than on how many transactions it covers. Minute buckets are kept for
+ * two days and hour buckets for 90 days; older ranges are answered at hour or day
+ * resolution.
+ *
+ * The buckets live in memory only. rebuild refills them at startup from the transaction
+ * log and the batch journal. The event bus drops events a slow subscriber falls behind
+ * on; once the attached subscription has dropped any, reconcileDay recomputes a closed
+ * day from the log (which holds every balance change, but not every refusal the bus
+ * carries). Batch postings count at the last minute of their business day.
+ */
+public class TransactionRollups implements EventSubscriber<TransactionEvent>, PostingListener {
+    static final long MINUTE_MS = 60_000L;
+    static final long HOUR_MS = 60 * MINUTE_MS;
+    static final long DAY_MS = 24 * HOUR_MS;
+    private static final long MINUTE_RETENTION_MS = 2 * DAY_MS;
+    private static final long HOUR_RETENTION_MS = 90 * DAY_MS;
+    private static final String DIRECT_CHANNEL = "DIRECT"; // requests that did not come through an ATM
+    private static final String UNKNOWN_TYPE = "Unknown";
+    private static final String BATCH_CHANNEL = "BATCH";
+    private static final DateTimeFormatter LOG_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int LOG_TIMESTAMP_LENGTH = 23;
+
+    private final AccountRepository accountRepository;
+    private final ZoneId zone;
+    private final ConcurrentSkipListMap<Long, Bucket> minutes;
+    private final ConcurrentSkipListMap<Long, Bucket> hours;
+    private final ConcurrentSkipListMap<Long, Bucket> days;
+    private final Map<LocalDate, long[]> postingsByDay; // interest and fee totals, to reconcile a day
+    private volatile String transactionLog; // set by rebuild
+    private volatile RingBufferEventBus<TransactionEvent>.Subscription subscription;
+
+    public TransactionRollups(AccountRepository accountRepository) {
+        this(accountRepository, ZoneId.systemDefault());
+    }
+
+    public TransactionRollups(AccountRepository accountRepository, ZoneId zone) {
+        this.accountRepository = accountRepository;
+        this.zone = zone;
+        this.minutes = new ConcurrentSkipListMap<>();
+        this.hours = new ConcurrentSkipListMap<>();
+        this.days = new ConcurrentSkipListMap<>();
+        this.postingsByDay = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The subscription feeding this instance, so dropped events can be noticed
+     */
+    public void attach(RingBufferEventBus<TransactionEvent>.Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    /**
+     * Events the attached subscription has dropped so far
+     */
+    public long getDroppedEvents() {
+        RingBufferEventBus<TransactionEvent>.Subscription current = subscription;
+        return current == null ? 0 : current.getDroppedCount();
+    }
+
+    /**
+     * Replace all buckets with the records of the transaction log and, if given, the
+     * postings of the batch journal; call before subscribing. Remembers the log for
+     * reconcileDay. Returns the number of log records read.
+     */
+    public long rebuild(String transactionLog, BatchJournal batchJournal) {
+        this.transactionLog = transactionLog;
+        minutes.clear();
+        hours.clear();
+        days.clear();
+        postingsByDay.clear();
+        long records = replayLog(transactionLog, null);
+        if (batchJournal != null) {
+            batchJournal.replayPostings(this);
+        }
+        return records;
+    }
+
+    /**
+     * Recompute one closed day from the transaction log and the postings seen for it;
+     * false if there is no log to read (rebuild was never called or reading failed)
+     */
+    public boolean reconcileDay(LocalDate day) {
+        String log = transactionLog;
+        if (log == null) {
+            return false;
+        }
+        TransactionRollups fresh = new TransactionRollups(accountRepository, zone);
+        if (fresh.replayLog(log, day) < 0) {
+            return false;
+        }
+        long[] postings = postingsByDay.get(day);
+        if (postings != null) {
+            fresh.postingsJournaled(day, postings[0], postings[1], postings[2], postings[3]);
+        }
+        long start = day.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long end = start + DAY_MS;
+        for (ConcurrentSkipListMap<Long, Bucket> level : List.of(minutes, hours, days)) {
+            level.subMap(start, end).clear();
+        }
+        minutes.putAll(fresh.minutes.subMap(start, end));
+        hours.putAll(fresh.hours.subMap(start, end));
+        days.putAll(fresh.days.subMap(start, end));
+        return true;
+    }
+
+    @Override
+    public void postingsJournaled(LocalDate businessDate, long interestPostings, long interestCents,
+                                  long feePostings, long feeCents) {
+        postingsByDay.merge(businessDate, new long[]{interestPostings, interestCents, feePostings, feeCents},
+            (a, b) -> new long[]{a[0] + b[0], a[1] + b[1], a[2] + b[2], a[3] + b[3]});
+        long local = businessDate.atTime(LocalTime.of(23, 59)).toInstant(ZoneOffset.UTC).toEpochMilli();
+        bucket(minutes, local, MINUTE_MS).recordPostings(interestPostings, interestCents, feePostings, feeCents);
+        bucket(hours, local, HOUR_MS).recordPostings(interestPostings, interestCents, feePostings, feeCents);
+        bucket(days, local, DAY_MS).recordPostings(interestPostings, interestCents, feePostings, feeCents);
+    }
+
+    @Override
+    public void onEvents(List<TransactionEvent> batch) {
+        for (TransactionEvent event : batch) {
+            record(event);
+        }
+    }
+
+    /**
+     * Add one completed transaction to its minute, hour and day buckets
+     */
+    public void record(TransactionEvent event) {
+        Transaction transaction = event.getTransaction();
+        record(toLocalMillis(event.getCompletedAtMillis()), transaction.getChannelId(), transaction.getAccountId(),
+            transaction.getType(), event.getResult().isSuccess(), Math.round(transaction.getAmount() * 100));
+    }
+
+    private void record(long local, String channelId, int accountId, TransactionType type, boolean success,
+                        long amountCents) {
+        String atm = channelId != null ? channelId : DIRECT_CHANNEL;
+        Account account = accountRepository.getAccount(accountId);
+        String accountType = account != null ? account.getAccountType() : UNKNOWN_TYPE;
+
+        long minuteStart = floor(local, MINUTE_MS);
+        Bucket minute = minutes.get(minuteStart);
+        if (minute == null) {
+            minute = minutes.computeIfAbsent(minuteStart, k -> new Bucket());
+            prune(local); // once per new minute is plenty
+        }
+        minute.record(atm, accountType, type, success, amountCents);
+        hours.computeIfAbsent(floor(local, HOUR_MS), k -> new Bucket())
+            .record(atm, accountType, type, success, amountCents);
+        days.computeIfAbsent(floor(local, DAY_MS), k -> new Bucket())
+            .record(atm, accountType, type, success, amountCents);
+    }
+
+    /**
+     * Aggregates for one calendar day
+     */
+    public RollupView queryDay(LocalDate day) {
+        return query(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Aggregates for [from, to), rounded outwards to whole minutes
+     */
+    public RollupView query(LocalDateTime from, LocalDateTime to) {
+        long start = floor(from.toInstant(ZoneOffset.UTC).toEpochMilli(), MINUTE_MS);
+        long end = floor(to.toInstant(ZoneOffset.UTC).toEpochMilli() + MINUTE_MS - 1, MINUTE_MS);
+        RollupView view = new RollupView();
+        long cursor = start;
+        while (cursor < end) {
+            if (cursor % DAY_MS == 0 && cursor + DAY_MS <= end) {
+                // Whole days: jump straight to the buckets that exist
+                long lastDay = floor(end, DAY_MS);
+                for (Bucket bucket : days.subMap(cursor, lastDay).values()) {
+                    view.add(bucket);
+                }
+                cursor = lastDay;
+            } else if (cursor % HOUR_MS == 0 && cursor + HOUR_MS <= end) {
+                addIfPresent(view, hours, cursor);
+                cursor += HOUR_MS;
+            } else {
+                addIfPresent(view, minutes, cursor);
+                cursor += MINUTE_MS;
+            }
+        }
+        return view;
+    }
+
+    public int getBucketCount() {
+        return minutes.size() + hours.size() + days.size();
+    }
+
+    private static void addIfPresent(RollupView view, ConcurrentSkipListMap<Long, Bucket> level, long start) {
+        Bucket bucket = level.get(start);
+        if (bucket != null) {
+            view.add(bucket);
+        }
+    }
+
+    /**
+     * Feed the records of the transaction log (only those of day, unless null) through
+     * record; returns how many were read, or -1 if the log could not be read
+     */
+    private long replayLog(String log, LocalDate day) {
+        String prefix = day == null ? null : day.toString();
+        long records = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if ((prefix == null || line.startsWith(prefix)) && replayLine(line)) {
+                    records++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading transaction log for rollups: " + e.getMessage());
+            return -1;
+        }
+        return records;
+    }
+
+    /**
+     * Parse one line as written by the processor: timestamp | Transaction[...] | TransactionResult[...]
+     */
+    private boolean replayLine(String line) {
+        int resultStart = line.indexOf("] | TransactionResult[Success=");
+        if (line.length() < LOG_TIMESTAMP_LENGTH || resultStart < 0) {
+            return false; // a banner or a foreign line
+        }
+        try {
+            long local = LocalDateTime.parse(line.substring(0, LOG_TIMESTAMP_LENGTH), LOG_TIMESTAMP)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+            TransactionType type = TransactionType.valueOf(field(line, "Type=", resultStart));
+            String account = line.contains("[Type=" + type + ", From=") ? "From=" : "Account=";
+            int accountId = Integer.parseInt(field(line, account, resultStart));
+            long amountCents = Math.round(Double.parseDouble(field(line, "Amount=", resultStart)) * 100);
+            int channel = line.lastIndexOf(", Channel=", resultStart);
+            String channelId = channel < 0 ? null : line.substring(channel + ", Channel=".length(), resultStart);
+            boolean success = line.startsWith("true", resultStart + "] | TransactionResult[Success=".length());
+            record(local, channelId, accountId, type, success, amountCents);
+            return true;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Text after name up to the next comma, within the transaction part of a log line
+     */
+    private static String field(String line, String name, int end) {
+        int start = line.indexOf(name);
+        if (start < 0 || start >= end) {
+            throw new IllegalArgumentException("No " + name);
+        }
+        start += name.length();
+        int comma = line.indexOf(',', start);
+        return line.substring(start, comma < 0 || comma > end ? end : comma);
+    }
+
+    private static Bucket bucket(ConcurrentSkipListMap<Long, Bucket> level, long local, long size) {
+        return level.computeIfAbsent(floor(local, size), k -> new Bucket());
+    }
+
+    private void prune(long local) {
+        minutes.headMap(local - MINUTE_RETENTION_MS).clear();
+        hours.headMap(local - HOUR_RETENTION_MS).clear();
+    }
+
+    private long toLocalMillis(long epochMillis) {
+        int offsetSeconds = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds();
+        return epochMillis + offsetSeconds * 1000L;
+    }
+
+    private static long floor(long millis, long size) {
+        return Math.floorDiv(millis, size) * size;
+    }
+
+    /**
+     * One time bucket: overall totals plus a split by ATM and by account type
+     */
+    static class Bucket {
+        final Rollup total = new Rollup();
+        final ConcurrentHashMap<String, Rollup> byAtm = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, Rollup> byAccountType = new ConcurrentHashMap<>();
+
+        void record(String atm, String accountType, TransactionType type, boolean success, long amountCents) {
+            total.record(type, success, amountCents);
+            byAtm.computeIfAbsent(atm, k -> new Rollup()).record(type, success, amountCents);
+            byAccountType.computeIfAbsent(accountType, k -> new Rollup()).record(type, success, amountCents);
+        }
+
+        /**
+         * Interest is paid to savings accounts and fees are charged to salary accounts
+         */
+        void recordPostings(long interestPostings, long interestCents, long feePostings, long feeCents) {
+            total.recordPostings(interestPostings, interestCents, feePostings, feeCents);
+            byAtm.computeIfAbsent(BATCH_CHANNEL, k -> new Rollup())
+                .recordPostings(interestPostings, interestCents, feePostings, feeCents);
+            if (interestPostings > 0) {
+                byAccountType.computeIfAbsent("Savings", k -> new Rollup())
+                    .recordPostings(interestPostings, interestCents, 0, 0);
+            }
+            if (feePostings > 0) {
+                byAccountType.computeIfAbsent("Salary", k -> new Rollup()).recordPostings(0, 0, feePostings, feeCents);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package transactions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account index of journal record offsets, ordered by time.
+ *
+ * Each account keeps parallel arrays of record times and journal offsets, so a
+ * time-range page is two binary searches plus one seek per record. Index entries are
+ * also appended to a fixed-width file (accountId, time, offset) and reloaded on startup.
+ */
+public class AccountHistoryIndex {
+    private final ConcurrentHashMap<Integer, History> histories;
+    private final String indexFile;
+    private DataOutputStream out;
+    
+    /**
+     * @param journalLength entries pointing at or past this offset are stale and ignored
+     */
+    public AccountHistoryIndex(String indexFile, long journalLength) {
+        this.histories = new ConcurrentHashMap<>();
+        this.indexFile = indexFile;
+        load(journalLength);
+    }
+    
+    /**
+     * Index one journal record under every account it concerns
+     */
+    public void record(int[] accountIds, long timeMillis, long offset) {
+        for (int accountId : accountIds) {
+            histories.computeIfAbsent(accountId, k -> new History()).add(timeMillis, offset);
+        }
+        persist(accountIds, timeMillis, offset);
+    }
+    
+    /**
+     * Number of records for an account in [fromMillis, toMillis]
+     */
+    public int count(int accountId, long fromMillis, long toMillis) {
+        History history = histories.get(accountId);
+        return history == null ? 0 : history.count(fromMillis, toMillis);
+    }
+    
+    /**
+     * Offsets of one page of records in [fromMillis, toMillis], newest first
+     */
+    public long[] findOffsets(int accountId, long fromMillis, long toMillis, int page, int pageSize) {
+        History history = histories.get(accountId);
+        return history == null ? new long[0] : history.page(fromMillis, toMillis, page, pageSize);
+    }
+    
+    private synchronized void persist(int[] accountIds, long timeMillis, long offset) {
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            if (out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            }
+            for (int accountId : accountIds) {
+                out.writeInt(accountId);
+                out.writeLong(timeMillis);
+                out.writeLong(offset);
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing history index: " + e.getMessage());
+        }
+    }
+    
+    private void load(long journalLength) {
+        if (indexFile == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                int accountId = in.readInt();
+                long time = in.readLong();
+                long offset = in.readLong();
+                if (offset < journalLength) {
+                    histories.computeIfAbsent(accountId, k -> new History()).add(time, offset);
+                }
+            }
+        } catch (EOFException e) {
+            // End of index (a torn final record is ignored)
+        } catch (IOException e) {
+            // No index yet
+        }
+    }
+    
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+    
+    /**
+     * Time-ordered offsets for one account
+     */
+    private static class History {
+        private long[] times = new long[8];
+        private long[] offsets = new long[8];
+        private int size;
+        
+        synchronized void add(long time, long offset) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            // Records almost always arrive in time order; shift only for the rare straggler
+            int i = size;
+            while (i > 0 && times[i - 1] > time) {
+                times[i] = times[i - 1];
+                offsets[i] = offsets[i - 1];
+                i--;
+            }
+            times[i] = time;
+            offsets[i] = offset;
+            size++;
+        }
+        
+        synchronized int count(long fromMillis, long toMillis) {
+            return Math.max(0, upperBound(toMillis) - lowerBound(fromMillis));
+        }
+        
+        synchronized long[] page(long fromMillis, long toMillis, int page, int pageSize) {
+            int lo = lowerBound(fromMillis);
+            int hi = upperBound(toMillis);
+            int end = hi - page * pageSize;
+            int start = Math.max(lo, end - pageSize);
+            if (end <= start) {
+                return new long[0];
+            }
+            long[] result = new long[end - start];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = offsets[end - 1 - i];
+            }
+            return result;
+        }
+        
+        /** First index with time >= value */
+        private int lowerBound(long value) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+        
+        /** First index with time > value */
+        private int upperBound(long value) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package transactions;
+
+/**
+ * How TransactionProcessor handles requests when its bounded intake is full
+ */
+public enum AdmissionPolicy {
+    /** Return a "busy" result immediately */
+    REJECT,
+    /** Wait up to the admission timeout for capacity, then return "busy" */
+    BLOCK,
+    /** Serve inquiries first and shed bulk work before interactive work */
+    PRIORITY
+}
@@ -0,0 +1,362 @@
+package transactions;
+
+import util.DateTimeUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time-expiring deduplication cache for client-supplied idempotency keys.
+ *
+ * Keys are spread over lock-striped segments, each an insertion-ordered map with a fixed
+ * share of the capacity, so memory stays bounded and expiry only ever inspects the oldest
+ * entries. A live key is never evicted to make room: when a segment is full of unexpired
+ * keys, new keys are refused (putIfAbsent returns FULL) and the caller must not run the
+ * request, since a retry of an evicted key would run it twice. Size the capacity for the
+ * peak key rate times the TTL.
+ *
+ * A retry that arrives while the original is still running receives the same Future.
+ * Completed outcomes are appended to a journal that stays open, is compacted down to the
+ * live keys whenever it has grown by a capacity's worth of records, and is reloaded on
+ * startup.
+ */
+public class IdempotencyCache {
+    /** Returned by putIfAbsent when the key could not be registered because the cache is full */
+    public static final Future<TransactionResult> FULL = new CompletableFuture<>();
+    private static final int SEGMENT_COUNT = 16;
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final long ttlMillis;
+    private final String journalFile;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong refused;
+    private PrintWriter journalWriter; // guarded by this; opened on first use
+    private long recordsSinceCompaction; // guarded by this
+
+    public IdempotencyCache(int capacity, long ttlMillis, String journalFile) {
+        if (capacity < SEGMENT_COUNT) {
+            throw new IllegalArgumentException("Capacity must be at least " + SEGMENT_COUNT);
+        }
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(capacity / SEGMENT_COUNT);
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.journalFile = journalFile;
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.refused = new AtomicLong(0);
+        if (journalFile != null) {
+            loadJournal();
+        }
+    }
+
+    /**
+     * Return the recorded or in-flight outcome for a key, or null if the key is new or expired
+     */
+    public Future<TransactionResult> get(String key) {
+        Entry entry = segmentFor(key).get(key, System.currentTimeMillis());
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.future;
+    }
+
+    /**
+     * Register a new in-flight request under its key. Returns the existing outcome
+     * if another request claimed the key first, FULL if every slot holds a live key
+     * (the request must then be refused), otherwise null.
+     */
+    public Future<TransactionResult> putIfAbsent(String key, Future<TransactionResult> future) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(future, now);
+        Entry existing = segmentFor(key).putIfAbsent(key, entry, now);
+        if (existing == entry) {
+            refused.incrementAndGet();
+            return FULL;
+        }
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.future;
+        }
+        return null;
+    }
+
+    /**
+     * Drop a key whose request never ran, so a retry is allowed to execute
+     */
+    public void remove(String key, Future<TransactionResult> future) {
+        segmentFor(key).remove(key, future);
+    }
+
+    /**
+     * Append a completed outcome to the journal so it survives restarts
+     */
+    public void journal(String key, TransactionResult result) {
+        if (journalFile == null) {
+            return;
+        }
+        String line = formatRecord(System.currentTimeMillis(), key, result);
+        synchronized (this) {
+            try {
+                if (journalWriter == null) {
+                    journalWriter = new PrintWriter(new BufferedWriter(new FileWriter(journalFile, true)));
+                }
+                journalWriter.println(line);
+                journalWriter.flush();
+                if (journalWriter.checkError()) {
+                    throw new IOException("write failed");
+                }
+            } catch (IOException e) {
+                System.err.println("Error journaling idempotency key: " + e.getMessage());
+                closeJournal();
+                return;
+            }
+            if (++recordsSinceCompaction >= capacity) {
+                compactJournal();
+            }
+        }
+    }
+
+    /**
+     * Close the journal; a later journal call reopens it
+     */
+    public synchronized void close() {
+        closeJournal();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * New keys turned away because the cache was full of live keys
+     */
+    public long getRefused() {
+        return refused.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static String formatRecord(long createdMillis, String key, TransactionResult result) {
+        return createdMillis + FIELD_SEPARATOR + key + FIELD_SEPARATOR + result.getAccountId()
+            + FIELD_SEPARATOR + result.getTransactionType() + FIELD_SEPARATOR + result.isSuccess()
+            + FIELD_SEPARATOR + result.getBalanceAfter() + FIELD_SEPARATOR + result.getMessage();
+    }
+
+    /**
+     * Rewrite the journal with only the completed, unexpired outcomes held in memory.
+     * Called with the cache monitor held, so no record is appended meanwhile.
+     */
+    private void compactJournal() {
+        long now = System.currentTimeMillis();
+        List<String> live = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.collectCompleted(now, live);
+        }
+        closeJournal();
+        String compacted = journalFile + ".compact";
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(compacted)))) {
+            for (String line : live) {
+                writer.println(line);
+            }
+            if (writer.checkError()) {
+                throw new IOException("write failed");
+            }
+        } catch (IOException e) {
+            System.err.println("Error compacting idempotency journal: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(Paths.get(compacted), Paths.get(journalFile), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            recordsSinceCompaction = 0;
+        } catch (IOException e) {
+            System.err.println("Error compacting idempotency journal: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+        }
+    }
+
+    /**
+     * Reload unexpired outcomes and compact the journal down to them
+     */
+    private void loadJournal() {
+        long now = System.currentTimeMillis();
+        List<String> live = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split(FIELD_SEPARATOR, 7);
+                if (f.length < 7) {
+                    continue;
+                }
+                try {
+                    long created = Long.parseLong(f[0]);
+                    if (now - created >= ttlMillis) {
+                        continue;
+                    }
+                    int accountId = Integer.parseInt(f[2]);
+                    TransactionResult result = new TransactionResult(Boolean.parseBoolean(f[4]), f[6],
+                        Double.parseDouble(f[5]), TransactionType.valueOf(f[3]), accountId);
+                    segmentFor(f[1]).putIfAbsent(f[1],
+                        new Entry(CompletableFuture.completedFuture(result), created), now);
+                    live.add(line);
+                } catch (IllegalArgumentException e) {
+                    // Skip malformed record
+                }
+            }
+        } catch (IOException e) {
+            return; // No journal yet
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(journalFile))) {
+            for (String line : live) {
+                writer.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Error compacting idempotency journal: " + e.getMessage());
+        }
+        System.out.println(DateTimeUtil.getCurrentTimestamp() + " | Restored " + size()
+            + " idempotency keys from " + journalFile);
+    }
+
+    private static class Entry {
+        final Future<TransactionResult> future;
+        final long createdMillis;
+
+        Entry(Future<TransactionResult> future, long createdMillis) {
+            this.future = future;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    /**
+     * Insertion-ordered map guarded by its own monitor; the eldest entry is always the
+     * next to expire, so expiry and capacity eviction both pop from the head
+     */
+    private class Segment {
+        private final int capacity;
+        private final LinkedHashMap<String, Entry> map;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<>();
+        }
+
+        synchronized Entry get(String key, long now) {
+            Entry entry = map.get(key);
+            if (entry != null && now - entry.createdMillis >= ttlMillis) {
+                map.remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * Null if the entry was added, the existing entry for the key, or the given entry
+         * itself if the segment is full of live keys
+         */
+        synchronized Entry putIfAbsent(String key, Entry entry, long now) {
+            Entry existing = get(key, now);
+            if (existing != null) {
+                return existing;
+            }
+            expire(now);
+            if (map.size() >= capacity) {
+                return entry;
+            }
+            map.put(key, entry);
+            return null;
+        }
+
+        synchronized void remove(String key, Future<TransactionResult> future) {
+            Entry entry = map.get(key);
+            if (entry != null && entry.future == future) {
+                map.remove(key);
+            }
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        /**
+         * Journal records of the completed, unexpired outcomes
+         */
+        synchronized void collectCompleted(long now, List<String> records) {
+            for (Map.Entry<String, Entry> e : map.entrySet()) {
+                Entry entry = e.getValue();
+                if (now - entry.createdMillis >= ttlMillis || !entry.future.isDone() || entry.future.isCancelled()) {
+                    continue;
+                }
+                try {
+                    TransactionResult result = entry.future.get();
+                    if (result.getStatus() != TransactionStatus.SYSTEM_BUSY) {
+                        records.add(formatRecord(entry.createdMillis, e.getKey(), result));
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    // Failed requests are not replayed
+                }
+            }
+        }
+
+        private void expire(long now) {
+            Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                if (now - eldest.createdMillis >= ttlMillis) {
+                    it.remove();
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+}
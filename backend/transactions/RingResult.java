@@ -0,0 +1,65 @@
+package transactions;
+
+/**
+ * Caller-owned, reusable result of a request sent through the SubmissionRing.
+ *
+ * A client thread keeps one instance and passes it to every call, so a request allocates
+ * no result object. The message is rendered on first use and cached until the holder is
+ * reused. Not thread-safe; each client thread needs its own.
+ */
+public class RingResult {
+    private TransactionStatus status;
+    private TransactionType transactionType;
+    private int accountId;
+    private int targetAccountId;
+    private double amount;
+    private double balanceAfter;
+    private String message;
+
+    /**
+     * Overwrite the holder with a new outcome
+     */
+    public void set(TransactionStatus status, TransactionType transactionType, int accountId, int targetAccountId,
+                    double amount, double balanceAfter) {
+        this.status = status;
+        this.transactionType = transactionType;
+        this.accountId = accountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.message = null;
+    }
+
+    public boolean isSuccess() {
+        return status == TransactionStatus.SUCCESS;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public TransactionType getTransactionType() {
+        return transactionType;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public double getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public String getMessage() {
+        if (message == null && status != null) {
+            message = status.describe(transactionType, accountId, targetAccountId, amount, balanceAfter);
+        }
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RingResult[Status=%s, Type=%s, AccountId=%d, Balance=%.2f, Message=%s]",
+            status, transactionType, accountId, balanceAfter, getMessage());
+    }
+}
@@ -0,0 +1,256 @@
+package transactions;
+
+import util.DateTimeUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+
+/**
+ * Per-worker scratch for recording a submission ring batch: renders the journal lines of
+ * the batch into one reusable byte buffer, byte for byte as the regular path writes them
+ * ("timestamp | Transaction[...] | TransactionResult[...]"), straight from the slots'
+ * primitives. Amounts that are not whole cents, and locales whose decimals are not plain
+ * digits and '.', fall back to String.format so the text never differs.
+ */
+final class SlotRecordWriter {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final int TIMESTAMP_SECOND_LENGTH = 20; // "yyyy-MM-dd HH:mm:ss."
+    private static final boolean PLAIN_DECIMALS;
+
+    static {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+        PLAIN_DECIMALS = symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+    }
+
+    private byte[] bytes;
+    private int size;
+    private final int[] lineStarts;
+    private int lineCount;
+    private final byte[] timestamp; // current second, then milliseconds written per line
+    private long timestampSecond;
+    private final int[] sourceOnly;
+    private final int[] sourceAndTarget;
+
+    SlotRecordWriter(int maxLines) {
+        this.bytes = new byte[maxLines * 256];
+        this.lineStarts = new int[maxLines];
+        this.timestamp = new byte[TIMESTAMP_SECOND_LENGTH + 3];
+        this.timestampSecond = Long.MIN_VALUE;
+        this.sourceOnly = new int[1];
+        this.sourceAndTarget = new int[2];
+    }
+
+    void reset() {
+        size = 0;
+        lineCount = 0;
+    }
+
+    /**
+     * Render the journal line of a processed slot, completed at nowMillis
+     */
+    void write(SubmissionRing.Slot slot, long nowMillis) {
+        lineStarts[lineCount++] = size;
+        renderTimestamp(nowMillis);
+        writeBytes(timestamp);
+        writeAscii(" | Transaction[Type=");
+        writeAscii(slot.type.name());
+        if (slot.type == TransactionType.TRANSFER) {
+            writeAscii(", From=");
+            writeDecimal(slot.accountId);
+            writeAscii(", To=");
+            writeDecimal(slot.targetAccountId);
+        } else {
+            writeAscii(", Account=");
+            writeDecimal(slot.accountId);
+        }
+        writeAscii(", Amount=");
+        writeAmount(slot.amount);
+        writeAscii(", Time=");
+        writeBytes(timestamp);
+        if (slot.channelId != null) {
+            writeAscii(", Channel=");
+            writeText(slot.channelId);
+        }
+        writeAscii("] | TransactionResult[Success=");
+        writeAscii(slot.status.isSuccess() ? "true" : "false");
+        writeAscii(", Type=");
+        writeAscii(slot.type.name());
+        writeAscii(", AccountId=");
+        writeDecimal(slot.accountId);
+        writeAscii(", Balance=");
+        writeAmount(slot.balanceAfter);
+        writeAscii(", Message=");
+        writeMessage(slot);
+        writeAscii(", Time=");
+        writeBytes(timestamp);
+        writeAscii("]");
+        writeBytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * TransactionStatus.describe for the outcomes the ring logs, without formatting
+     */
+    private void writeMessage(SubmissionRing.Slot slot) {
+        if (slot.status != TransactionStatus.SUCCESS) {
+            // The failures that reach the log describe themselves with constant text
+            writeText(slot.status.describe(slot.type, slot.accountId, slot.targetAccountId, slot.amount,
+                slot.balanceAfter));
+            return;
+        }
+        switch (slot.type) {
+            case WITHDRAW:
+                writeAscii("Withdrawal successful: $");
+                writeAmount(slot.amount);
+                break;
+            case DEPOSIT:
+                writeAscii("Deposit successful: $");
+                writeAmount(slot.amount);
+                break;
+            case TRANSFER:
+                writeAscii("Transfer successful: $");
+                writeAmount(slot.amount);
+                writeAscii(" from Account ");
+                writeDecimal(slot.accountId);
+                writeAscii(" to Account ");
+                writeDecimal(slot.targetAccountId);
+                break;
+            case BALANCE_INQUIRY:
+                writeAscii("Balance inquiry: $");
+                writeAmount(slot.balanceAfter);
+                break;
+            default:
+                writeText(slot.status.describe(slot.type, slot.accountId, slot.targetAccountId, slot.amount,
+                    slot.balanceAfter));
+                break;
+        }
+    }
+
+    /**
+     * Accounts whose statement shows the slot's record, in a reused array
+     */
+    int[] statementAccounts(SubmissionRing.Slot slot) {
+        if (slot.type == TransactionType.TRANSFER && slot.status.isSuccess()) {
+            sourceAndTarget[0] = slot.accountId;
+            sourceAndTarget[1] = slot.targetAccountId;
+            return sourceAndTarget;
+        }
+        sourceOnly[0] = slot.accountId;
+        return sourceOnly;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Journal offset of line i once the buffer was appended at firstOffset
+     */
+    long offsetOf(int line, long firstOffset) {
+        return firstOffset + lineStarts[line];
+    }
+
+    private void renderTimestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != timestampSecond) {
+            String text = DateTimeUtil.format(second * 1000);
+            for (int i = 0; i < TIMESTAMP_SECOND_LENGTH; i++) {
+                timestamp[i] = (byte) text.charAt(i);
+            }
+            timestampSecond = second;
+        }
+        int milli = (int) Math.floorMod(millis, 1000);
+        timestamp[TIMESTAMP_SECOND_LENGTH] = (byte) ('0' + milli / 100);
+        timestamp[TIMESTAMP_SECOND_LENGTH + 1] = (byte) ('0' + milli / 10 % 10);
+        timestamp[TIMESTAMP_SECOND_LENGTH + 2] = (byte) ('0' + milli % 10);
+    }
+
+    /**
+     * Same text as String.format("%.2f", value)
+     */
+    private void writeAmount(double value) {
+        long cents = Math.round(value * 100);
+        if (!PLAIN_DECIMALS || Math.abs(value * 100 - cents) >= 1e-6
+            || (cents == 0 && Double.doubleToRawLongBits(value) != 0)) {
+            writeText(String.format("%.2f", value)); // fractions of a cent, or -0.0
+            return;
+        }
+        if (cents < 0) {
+            writeByte('-');
+            cents = -cents;
+        }
+        writeDecimal(cents / 100);
+        ensure(3);
+        bytes[size++] = '.';
+        bytes[size++] = (byte) ('0' + cents % 100 / 10);
+        bytes[size++] = (byte) ('0' + cents % 10);
+    }
+
+    private void writeDecimal(long value) {
+        ensure(20);
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // digits went in backwards
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte digit = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = digit;
+        }
+    }
+
+    /**
+     * Write a string known to be ASCII (keywords, enum names) without encoding it
+     */
+    private void writeAscii(String text) {
+        int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Write a string that is usually ASCII (channel ids, messages), encoding it only if not
+     */
+    private void writeText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                writeBytes(text.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        writeAscii(text);
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, size, data.length);
+        size += data.length;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package transactions;
+
+import java.util.List;
+
+/**
+ * One page of an account statement, newest record first
+ */
+public class StatementPage {
+    private final int accountId;
+    private final int page;
+    private final int pageSize;
+    private final int totalRecords;
+    private final List<String> records;
+    
+    public StatementPage(int accountId, int page, int pageSize, int totalRecords, List<String> records) {
+        this.accountId = accountId;
+        this.page = page;
+        this.pageSize = pageSize;
+        this.totalRecords = totalRecords;
+        this.records = records;
+    }
+    
+    public int getAccountId() {
+        return accountId;
+    }
+    
+    public int getPage() {
+        return page;
+    }
+    
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    public int getTotalRecords() {
+        return totalRecords;
+    }
+    
+    public int getTotalPages() {
+        return (totalRecords + pageSize - 1) / pageSize;
+    }
+    
+    public List<String> getRecords() {
+        return records;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("StatementPage[AccountId=%d, Page=%d/%d, Records=%d of %d]",
+            accountId, page + 1, Math.max(1, getTotalPages()), records.size(), totalRecords);
+    }
+}
@@ -0,0 +1,265 @@
+package transactions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Low-allocation submission path for authenticated single-account requests and transfers.
+ *
+ * Requests are written as primitives into preallocated slots of a ring instead of being
+ * wrapped in Transaction, Callable, Future and result objects. A client claims a sequence,
+ * fills the slot, publishes it and parks until a worker has processed it; the result is
+ * copied into a caller-owned RingResult. A full ring makes clients wait for a free slot,
+ * which bounds the intake like the admission permits of the regular path.
+ *
+ * Workers take published slots in batches. Before releasing any result of a batch they
+ * hand it to the processor, which renders its lines from the slots into the worker's
+ * reusable buffer and writes them to the transaction log in one write, indexes them for
+ * statements, runs the fraud rules on transfers and, if the event bus has subscribers,
+ * publishes one TransactionEvent per request, so ring requests look like any other to the
+ * log, the history index and event bus subscribers. With replication enabled the accounts a batch
+ * changed are replicated as one commit before release, too.
+ */
+public class SubmissionRing {
+    private static final int MAX_BATCH = 64;
+    private static final int SPIN_TRIES = 200;
+    private static final long MAX_IDLE_PARK_NANOS = 1_000_000L;
+
+    private final TransactionProcessor processor;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimCursor;
+    private final AtomicLong consumeCursor;
+    private final Worker[] workers;
+    private final AtomicLong completed;
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    SubmissionRing(TransactionProcessor processor, int capacity, int workerCount) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.processor = processor;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = capacity - 1;
+        this.claimCursor = new AtomicLong(0);
+        this.consumeCursor = new AtomicLong(0);
+        this.completed = new AtomicLong(0);
+        this.running = true;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker("submission-ring-" + (i + 1));
+            workers[i].thread.start();
+        }
+    }
+
+    /**
+     * Run one request and copy its outcome into result; returns result.isSuccess().
+     * Blocks while the ring is full and until a worker has processed the request.
+     * Pass 0 as the target for anything but a transfer.
+     */
+    public boolean execute(TransactionType type, int accountId, int targetAccountId, double amount,
+                           String channelId, RingResult result) {
+        if (!running) {
+            result.set(TransactionStatus.SHUT_DOWN, type, accountId, targetAccountId, amount, 0);
+            return false;
+        }
+        long sequence = claimCursor.getAndIncrement();
+        Slot slot = slots[(int) sequence & mask];
+        int tries = 0;
+        while (slot.freeFor != sequence) {
+            tries = backOff(tries);
+        }
+
+        slot.type = type;
+        slot.accountId = accountId;
+        slot.targetAccountId = targetAccountId;
+        slot.amount = amount;
+        slot.channelId = channelId;
+        slot.waiter = Thread.currentThread();
+        slot.published = sequence;
+        wakeIdleWorker();
+
+        tries = 0;
+        while (slot.completed != sequence) {
+            if (stopped && slot.completed != sequence) {
+                // Claimed after the workers drained the ring: nobody else will touch this slot
+                slot.status = TransactionStatus.SHUT_DOWN;
+                slot.balanceAfter = 0;
+                break;
+            }
+            tries = backOff(tries);
+        }
+
+        result.set(slot.status, type, accountId, targetAccountId, amount, slot.balanceAfter);
+        slot.channelId = null;
+        slot.waiter = null;
+        slot.freeFor = sequence + slots.length;
+        return result.isSuccess();
+    }
+
+    /**
+     * Spin briefly, then park; a worker unparks the client as soon as its slot completes
+     */
+    private int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(this, MAX_IDLE_PARK_NANOS);
+        }
+        return tries + 1;
+    }
+
+    private void wakeIdleWorker() {
+        for (Worker worker : workers) {
+            if (worker.idle) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Requests completed since the ring was created
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Stop accepting requests and let the workers drain what was published
+     */
+    void shutdown() {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        stopped = true;
+    }
+
+    /**
+     * One preallocated request; fields are written by the client before it publishes and
+     * by a worker before it completes, so the volatile sequences order every access
+     */
+    static class Slot {
+        TransactionType type;
+        int accountId;
+        int targetAccountId;
+        double amount;
+        String channelId;
+        TransactionStatus status;
+        double balanceAfter;
+        Thread waiter;
+        volatile long freeFor;
+        volatile long published = -1;
+        volatile long completed = -1;
+
+        Slot(long firstSequence) {
+            this.freeFor = firstSequence;
+        }
+
+        void complete(TransactionStatus status, double balanceAfter) {
+            this.status = status;
+            this.balanceAfter = balanceAfter;
+        }
+    }
+
+    private class Worker {
+        private final Thread thread;
+        private final long[] batch;
+        private final Slot[] done;
+        private final int[] touched; // accounts changed by the current batch, for replication
+        private final SlotRecordWriter records;
+        private int touchedCount;
+        private volatile boolean idle;
+
+        Worker(String name) {
+            this.batch = new long[MAX_BATCH];
+            this.done = new Slot[MAX_BATCH];
+            this.touched = new int[MAX_BATCH * 2];
+            this.records = new SlotRecordWriter(MAX_BATCH);
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            long parkNanos = 1_000;
+            while (true) {
+                int count = takeBatch();
+                if (count > 0) {
+                    processor.recordSlots(done, count, records);
+                    processor.replicate(touched, touchedCount);
+                    touchedCount = 0;
+                    for (int i = 0; i < count; i++) {
+                        Slot slot = done[i];
+                        done[i] = null;
+                        Thread waiter = slot.waiter;
+                        slot.completed = batch[i];
+                        LockSupport.unpark(waiter);
+                    }
+                    completed.addAndGet(count);
+                    parkNanos = 1_000;
+                    continue;
+                }
+                if (!running && consumeCursor.get() == claimCursor.get()) {
+                    break;
+                }
+                idle = true;
+                long next = consumeCursor.get();
+                if (slots[(int) next & mask].published != next) {
+                    LockSupport.parkNanos(this, parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+
+        /**
+         * Claim and process up to MAX_BATCH published slots, in sequence order
+         */
+        private int takeBatch() {
+            int count = 0;
+            while (count < MAX_BATCH) {
+                long sequence = consumeCursor.get();
+                Slot slot = slots[(int) sequence & mask];
+                if (slot.published != sequence) {
+                    break;
+                }
+                if (!consumeCursor.compareAndSet(sequence, sequence + 1)) {
+                    continue; // another worker took it
+                }
+                try {
+                    processor.processSlot(slot);
+                } catch (RuntimeException e) {
+                    System.err.println("Ring request failed: " + e.getMessage());
+                    slot.complete(TransactionStatus.FAILED, 0);
+                }
+                if (slot.status == TransactionStatus.SUCCESS && slot.type != TransactionType.BALANCE_INQUIRY) {
+                    processor.audit(slot.type, slot.accountId, slot.targetAccountId, slot.amount);
+                    touched[touchedCount++] = slot.accountId;
+                    if (slot.type == TransactionType.TRANSFER) {
+                        touched[touchedCount++] = slot.targetAccountId;
+                    }
+                }
+                done[count] = slot;
+                batch[count++] = sequence;
+            }
+            return count;
+        }
+    }
+}
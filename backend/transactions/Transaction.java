@@ -3,6 +3,9 @@ package transactions;
 import accounts.Account;
 import util.DateTimeUtil;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Represents a single transaction
  */
@@ -10,9 +13,12 @@ public class Transaction {
     private final TransactionType type;
     private final int accountId;
     private final Integer targetAccountId; // null for non-transfer transactions
+    private final List<TransferLeg> legs; // empty unless MULTI_TRANSFER
     private final double amount;
     private final int pin;
     private final String timestamp;
+    private final String idempotencyKey; // client-supplied, null if retries are not deduplicated
+    private final String channelId; // originating terminal (ATM id), null if unknown
     
     public Transaction(TransactionType type, int accountId, double amount, int pin) {
         this.type = type;
@@ -20,7 +26,10 @@ public class Transaction {
         this.amount = amount;
         this.pin = pin;
         this.targetAccountId = null;
+        this.legs = Collections.emptyList();
         this.timestamp = DateTimeUtil.getCurrentTimestamp();
+        this.idempotencyKey = null;
+        this.channelId = null;
     }
     
     public Transaction(TransactionType type, int accountId, int targetAccountId, double amount, int pin) {
@@ -29,7 +38,68 @@ public class Transaction {
         this.targetAccountId = targetAccountId;
         this.amount = amount;
         this.pin = pin;
+        this.legs = Collections.emptyList();
+        this.timestamp = DateTimeUtil.getCurrentTimestamp();
+        this.idempotencyKey = null;
+        this.channelId = null;
+    }
+    
+    /**
+     * Multi-leg transfer: one debit from accountId fanned out to every leg.
+     * The amount is the sum of the leg amounts.
+     */
+    public Transaction(int accountId, List<TransferLeg> legs, int pin) {
+        this.type = TransactionType.MULTI_TRANSFER;
+        this.accountId = accountId;
+        this.targetAccountId = null;
+        this.legs = Collections.unmodifiableList(legs);
+        double total = 0;
+        for (TransferLeg leg : legs) {
+            total += leg.getAmount();
+        }
+        this.amount = total;
+        this.pin = pin;
         this.timestamp = DateTimeUtil.getCurrentTimestamp();
+        this.idempotencyKey = null;
+        this.channelId = null;
+    }
+    
+    private Transaction(Transaction original, String idempotencyKey, String channelId) {
+        this.type = original.type;
+        this.accountId = original.accountId;
+        this.targetAccountId = original.targetAccountId;
+        this.legs = original.legs;
+        this.amount = original.amount;
+        this.pin = original.pin;
+        this.timestamp = original.timestamp;
+        this.idempotencyKey = idempotencyKey;
+        this.channelId = channelId;
+    }
+    
+    /**
+     * Copy of this transaction carrying a client-supplied idempotency key.
+     * Retries that reuse the key receive the original result instead of executing again.
+     */
+    public Transaction withIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("Idempotency key must not be empty");
+        }
+        for (int i = 0; i < idempotencyKey.length(); i++) {
+            if (Character.isISOControl(idempotencyKey.charAt(i))) {
+                throw new IllegalArgumentException("Idempotency key must not contain control characters");
+            }
+        }
+        return new Transaction(this, idempotencyKey, channelId);
+    }
+    
+    /**
+     * Copy of this transaction tagged with the terminal it came from
+     */
+    public Transaction withChannelId(String channelId) {
+        if (channelId == null ? this.channelId == null : channelId.equals(this.channelId)) {
+            return this;
+        }
+        return new Transaction(this, idempotencyKey, channelId);
     }
     
     public TransactionType getType() {
@@ -44,6 +114,10 @@ public class Transaction {
         return targetAccountId;
     }
     
+    public List<TransferLeg> getLegs() {
+        return legs;
+    }
+    
     public double getAmount() {
         return amount;
     }
@@ -56,14 +130,41 @@ public class Transaction {
         return timestamp;
     }
     
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    
+    public String getChannelId() {
+        return channelId;
+    }
+    
+    /**
+     * The transaction log format; TransactionRollups parses it back, Channel last. A
+     * multi-leg transfer lists its legs as Legs=[target:amount;...].
+     */
     @Override
     public String toString() {
+        String channel = channelId == null ? "" : ", Channel=" + channelId;
         if (type == TransactionType.TRANSFER) {
-            return String.format("Transaction[Type=%s, From=%d, To=%d, Amount=%.2f, Time=%s]",
-                type, accountId, targetAccountId, amount, timestamp);
+            return String.format("Transaction[Type=%s, From=%d, To=%d, Amount=%.2f, Time=%s%s]",
+                type, accountId, targetAccountId, amount, timestamp, channel);
+        }
+        if (type == TransactionType.MULTI_TRANSFER) {
+            // Legs as [target:amount;...], without commas so field parsing stops at the next field
+            StringBuilder legList = new StringBuilder("[");
+            for (int i = 0; i < legs.size(); i++) {
+                TransferLeg leg = legs.get(i);
+                if (i > 0) {
+                    legList.append(';');
+                }
+                legList.append(leg.getTargetAccountId()).append(':').append(String.format("%.2f", leg.getAmount()));
+            }
+            legList.append(']');
+            return String.format("Transaction[Type=%s, From=%d, Legs=%s, Amount=%.2f, Time=%s%s]",
+                type, accountId, legList, amount, timestamp, channel);
         }
-        return String.format("Transaction[Type=%s, Account=%d, Amount=%.2f, Time=%s]",
-            type, accountId, amount, timestamp);
+        return String.format("Transaction[Type=%s, Account=%d, Amount=%.2f, Time=%s%s]",
+            type, accountId, amount, timestamp, channel);
     }
 }
 
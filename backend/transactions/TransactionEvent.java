@@ -0,0 +1,50 @@
+package transactions;
+
+/**
+ * A completed transaction as published on the transaction event bus
+ */
+public class TransactionEvent {
+    private final Transaction transaction;
+    private final TransactionResult result;
+    private final long completedAtMillis;
+    
+    public TransactionEvent(Transaction transaction, TransactionResult result) {
+        this.transaction = transaction;
+        this.result = result;
+        this.completedAtMillis = System.currentTimeMillis();
+    }
+    
+    public Transaction getTransaction() {
+        return transaction;
+    }
+    
+    public TransactionResult getResult() {
+        return result;
+    }
+    
+    public long getCompletedAtMillis() {
+        return completedAtMillis;
+    }
+    
+    /**
+     * Accounts whose balance or state this transaction may have changed.
+     * Successful inquiries change nothing; failed requests may have bumped the PIN counter.
+     */
+    public int[] getAffectedAccountIds() {
+        if (transaction.getType() == TransactionType.BALANCE_INQUIRY && result.isSuccess()) {
+            return new int[0];
+        }
+        if (!result.isSuccess()) {
+            return new int[]{transaction.getAccountId()};
+        }
+        if (transaction.getTargetAccountId() != null) {
+            return new int[]{transaction.getAccountId(), transaction.getTargetAccountId()};
+        }
+        int[] ids = new int[transaction.getLegs().size() + 1];
+        ids[0] = transaction.getAccountId();
+        for (int i = 0; i < transaction.getLegs().size(); i++) {
+            ids[i + 1] = transaction.getLegs().get(i).getTargetAccountId();
+        }
+        return ids;
+    }
+}
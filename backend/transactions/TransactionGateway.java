@@ -0,0 +1,26 @@
+package transactions;
+
+import java.util.concurrent.Future;
+
+/**
+ * Entry point for customer-facing channels such as ATMs. Implemented by a single
+ * TransactionProcessor, or by a router that forwards each request to the node owning
+ * the account.
+ */
+public interface TransactionGateway {
+
+    /**
+     * Submit a transaction; the PIN on the transaction is verified
+     */
+    Future<TransactionResult> submitTransaction(Transaction transaction);
+
+    /**
+     * Submit a transaction whose customer the caller has already authenticated
+     */
+    Future<TransactionResult> submitAuthenticatedTransaction(Transaction transaction);
+
+    /**
+     * Verify a customer's PIN once, applying the usual lockouts and throttling
+     */
+    boolean authenticate(int accountId, int pin, String channelId);
+}
@@ -0,0 +1,123 @@
+package transactions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only transaction log that reports the byte offset of every record it writes,
+ * so indexes can point straight at a record instead of scanning the file
+ */
+public class TransactionJournal {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final int READ_CHUNK = 512;
+    
+    private final String path;
+    private FileOutputStream out;
+    private long length;
+    
+    public TransactionJournal(String path) {
+        this.path = path;
+    }
+    
+    /**
+     * Append one line and return the offset it was written at, or -1 on I/O failure
+     */
+    public synchronized long append(String line) {
+        try {
+            if (out == null) {
+                out = new FileOutputStream(path, true);
+                length = out.getChannel().size();
+            }
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            long offset = length;
+            byte[] record = new byte[bytes.length + LINE_SEPARATOR.length];
+            System.arraycopy(bytes, 0, record, 0, bytes.length);
+            System.arraycopy(LINE_SEPARATOR, 0, record, bytes.length, LINE_SEPARATOR.length);
+            out.write(record);
+            length += record.length;
+            return offset;
+        } catch (IOException e) {
+            System.err.println("Error writing transaction journal: " + e.getMessage());
+            closeQuietly();
+            return -1;
+        }
+    }
+    
+    /**
+     * Append records[0, count), already rendered as whole lines, with a single write;
+     * returns the offset the first byte was written at, or -1 on I/O failure
+     */
+    public synchronized long appendRecords(byte[] records, int count) {
+        try {
+            if (out == null) {
+                out = new FileOutputStream(path, true);
+                length = out.getChannel().size();
+            }
+            long offset = length;
+            out.write(records, 0, count);
+            length += count;
+            return offset;
+        } catch (IOException e) {
+            System.err.println("Error writing transaction journal: " + e.getMessage());
+            closeQuietly();
+            return -1;
+        }
+    }
+    
+    /**
+     * Bytes written so far (file size)
+     */
+    public synchronized long length() {
+        if (out == null) {
+            return new File(path).length();
+        }
+        return length;
+    }
+    
+    /**
+     * Read the records at the given offsets, in order
+     */
+    public String[] readRecords(long[] offsets) throws IOException {
+        String[] records = new String[offsets.length];
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            byte[] chunk = new byte[READ_CHUNK];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int i = 0; i < offsets.length; i++) {
+                line.reset();
+                file.seek(offsets[i]);
+                int n;
+                readLine:
+                while ((n = file.read(chunk)) > 0) {
+                    for (int j = 0; j < n; j++) {
+                        if (chunk[j] == '\n') {
+                            line.write(chunk, 0, j);
+                            break readLine;
+                        }
+                    }
+                    line.write(chunk, 0, n);
+                }
+                String record = line.toString(StandardCharsets.UTF_8);
+                records[i] = record.endsWith("\r") ? record.substring(0, record.length() - 1) : record;
+            }
+        }
+        return records;
+    }
+    
+    public synchronized void close() {
+        closeQuietly();
+    }
+    
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+}
@@ -2,261 +2,1099 @@ package transactions;
 
 import accounts.Account;
 import accounts.AccountRepository;
+import accounts.PinVerifier;
+import audit.ConservationAuditor;
 import concurrency.LockManager;
+import events.EventSubscriber;
+import events.RingBufferEventBus;
 import fraud.FraudMonitor;
+import fraud.PinAttemptThrottle;
+import replication.ReplicationPrimary;
 import util.DateTimeUtil;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Core transaction processor with thread-safe operations
  */
-public class TransactionProcessor {
+public class TransactionProcessor implements TransactionGateway {
     private final AccountRepository accountRepository;
     private final LockManager lockManager;
     private final FraudMonitor fraudMonitor;
-    private final ExecutorService executorService;
-    private static final String TRANSACTION_LOG_FILE = "logs/transactions.log";
+    private final ThreadPoolExecutor executorService;
+    private final AdmissionPolicy admissionPolicy;
+    private final Semaphore admissionPermits;
+    private final int admissionCapacity;
+    private final long admissionTimeoutMs;
+    private final AtomicLong submissionSequence;
+    private final AtomicLong admittedCount;
+    private final AtomicLong rejectedCount;
+    private final AtomicLong unreplicatedCommits;
+    private final AtomicInteger peakPending;
+    private final IdempotencyCache idempotencyCache;
+    private final RingBufferEventBus<TransactionEvent> eventBus;
+    private final TransactionJournal journal;
+    private final AccountHistoryIndex historyIndex;
+    private final PinAttemptThrottle<Integer> accountPinThrottle;
+    private final PinAttemptThrottle<String> atmPinThrottle;
+    private final PinVerifier pinVerifier;
+    private volatile SubmissionRing submissionRing; // started on first use
+    private volatile ReplicationPrimary replication; // null unless a hot standby follows this processor
+    private volatile ConservationAuditor auditor; // null unless balance changes are audited
+    private final String logDirectory;
+    private static final String DEFAULT_LOG_DIRECTORY = "logs";
+    private static final String TRANSACTION_LOG_FILE = "transactions.log";
+    private static final String HISTORY_INDEX_FILE = "transactions.idx";
+    private static final int DEFAULT_STATEMENT_PAGE_SIZE = 10;
+    private static final String IDEMPOTENCY_JOURNAL_FILE = "idempotency.log";
+    private static final long IDEMPOTENCY_TTL_MS = 15 * 60 * 1000L;
+    // Peak keyed requests per hour the cache must hold without refusing; capacity covers one TTL of them
+    private static final long IDEMPOTENCY_KEYS_PER_HOUR = 4_000_000L;
+    private static final int IDEMPOTENCY_CAPACITY = (int) (IDEMPOTENCY_KEYS_PER_HOUR * IDEMPOTENCY_TTL_MS / 3_600_000L);
+    private static final int EVENT_BUS_CAPACITY = 8192;
     private static final int THREAD_POOL_SIZE = 10;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final long DEFAULT_ADMISSION_TIMEOUT_MS = 2000;
+    // Per account: 3 wrong PINs, one forgiven per minute, lockouts from 30 s doubling to 1 h
+    private static final int ACCOUNT_PIN_FAILURES = 3;
+    private static final long ACCOUNT_PIN_REFILL_MS = 60_000;
+    private static final long ACCOUNT_PIN_LOCKOUT_MS = 30_000;
+    private static final long ACCOUNT_PIN_MAX_LOCKOUT_MS = 60 * 60 * 1000L;
+    // Per ATM: tolerates customers mistyping, but not a spray across many accounts
+    private static final int ATM_PIN_FAILURES = 20;
+    private static final long ATM_PIN_REFILL_MS = 1_000;
+    private static final long ATM_PIN_LOCKOUT_MS = 10_000;
+    private static final long ATM_PIN_MAX_LOCKOUT_MS = 10 * 60 * 1000L;
+    private static final int PIN_VERIFIER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int PIN_SESSION_SLOTS = 4096;
+    private static final long PIN_SESSION_TTL_MS = 2 * 60 * 1000L;
+    private static final int RING_CAPACITY = 1024;
+    private static final int INQUIRY_PRIORITY = 0;
+    private static final int INTERACTIVE_PRIORITY = 1;
+    private static final int BULK_PRIORITY = 2;
+    // A transfer that cannot get its account locks within this long answers SYSTEM_BUSY
+    private static final long LOCK_TIMEOUT_MS = 500;
     
     public TransactionProcessor(AccountRepository accountRepository, FraudMonitor fraudMonitor) {
+        this(accountRepository, fraudMonitor, AdmissionPolicy.BLOCK, DEFAULT_QUEUE_CAPACITY, 
+            DEFAULT_ADMISSION_TIMEOUT_MS);
+    }
+    
+    /**
+     * Processor with a bounded intake: at most queueCapacity requests wait behind the
+     * worker threads, and the policy decides what happens to requests beyond that.
+     */
+    public TransactionProcessor(AccountRepository accountRepository, FraudMonitor fraudMonitor,
+                                AdmissionPolicy admissionPolicy, int queueCapacity, long admissionTimeoutMs) {
+        this(accountRepository, fraudMonitor, admissionPolicy, queueCapacity, admissionTimeoutMs,
+            DEFAULT_LOG_DIRECTORY);
+    }
+    
+    /**
+     * Processor that keeps its journals, history index and idempotency log in logDirectory,
+     * so several processors (e.g. partition nodes) can run in one JVM without sharing files
+     */
+    public TransactionProcessor(AccountRepository accountRepository, FraudMonitor fraudMonitor,
+                                AdmissionPolicy admissionPolicy, int queueCapacity, long admissionTimeoutMs,
+                                String logDirectory) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
         this.accountRepository = accountRepository;
+        this.logDirectory = logDirectory;
         this.lockManager = new LockManager();
         this.fraudMonitor = fraudMonitor;
-        this.executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        this.admissionPolicy = admissionPolicy;
+        this.admissionCapacity = queueCapacity + THREAD_POOL_SIZE;
+        this.admissionPermits = new Semaphore(admissionCapacity);
+        this.admissionTimeoutMs = admissionTimeoutMs;
+        this.submissionSequence = new AtomicLong(0);
+        this.admittedCount = new AtomicLong(0);
+        this.rejectedCount = new AtomicLong(0);
+        this.unreplicatedCommits = new AtomicLong(0);
+        this.peakPending = new AtomicInteger(0);
+        this.idempotencyCache = new IdempotencyCache(IDEMPOTENCY_CAPACITY, IDEMPOTENCY_TTL_MS, 
+            logFile(IDEMPOTENCY_JOURNAL_FILE));
+        // The admission permits bound the queue; the queue capacity is only a safety net
+        BlockingQueue<Runnable> queue = admissionPolicy == AdmissionPolicy.PRIORITY
+            ? new PriorityBlockingQueue<>(queueCapacity)
+            : new LinkedBlockingQueue<>(admissionCapacity);
+        this.executorService = new ThreadPoolExecutor(THREAD_POOL_SIZE, THREAD_POOL_SIZE,
+            0L, TimeUnit.MILLISECONDS, queue);
+        this.eventBus = new RingBufferEventBus<>("transactions", EVENT_BUS_CAPACITY);
+        this.journal = new TransactionJournal(logFile(TRANSACTION_LOG_FILE));
+        this.historyIndex = new AccountHistoryIndex(logFile(HISTORY_INDEX_FILE), journal.length());
+        this.accountPinThrottle = new PinAttemptThrottle<>("account", ACCOUNT_PIN_FAILURES, 
+            ACCOUNT_PIN_REFILL_MS, ACCOUNT_PIN_LOCKOUT_MS, ACCOUNT_PIN_MAX_LOCKOUT_MS);
+        this.atmPinThrottle = new PinAttemptThrottle<>("atm", ATM_PIN_FAILURES, 
+            ATM_PIN_REFILL_MS, ATM_PIN_LOCKOUT_MS, ATM_PIN_MAX_LOCKOUT_MS);
+        this.pinVerifier = new PinVerifier(PIN_VERIFIER_THREADS, admissionCapacity, 
+            PIN_SESSION_SLOTS, PIN_SESSION_TTL_MS);
         initializeTransactionLog();
     }
     
+    private String logFile(String name) {
+        return logDirectory + "/" + name;
+    }
+    
+    /**
+     * Path of the transaction log, for rebuilding state derived from it
+     */
+    public String getTransactionLogFile() {
+        return logFile(TRANSACTION_LOG_FILE);
+    }
+    
+    /**
+     * Subscribe to completed transactions; delivered in batches on a dedicated thread
+     */
+    public RingBufferEventBus<TransactionEvent>.Subscription subscribe(String name, 
+                                                                      EventSubscriber<TransactionEvent> subscriber) {
+        return eventBus.subscribe(name, subscriber);
+    }
+    
     /**
      * Initialize transaction log file
      */
     private void initializeTransactionLog() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(TRANSACTION_LOG_FILE, true))) {
-            writer.println("=".repeat(80));
-            writer.println("TRANSACTION LOG - Started at " + DateTimeUtil.getCurrentTimestamp());
-            writer.println("=".repeat(80));
-        } catch (IOException e) {
-            System.err.println("Error initializing transaction log: " + e.getMessage());
-        }
+        journal.append("=".repeat(80));
+        journal.append("TRANSACTION LOG - Started at " + DateTimeUtil.getCurrentTimestamp());
+        journal.append("=".repeat(80));
     }
     
     /**
      * Submit transaction for processing (returns Future)
      */
+    @Override
     public Future<TransactionResult> submitTransaction(Transaction transaction) {
-        return executorService.submit(new TransactionCallable(transaction));
+        return submit(transaction, false);
+    }
+    
+    /**
+     * Submit a transaction whose customer the caller has already authenticated, e.g. within
+     * an ATM session; the PIN is not checked again
+     */
+    @Override
+    public Future<TransactionResult> submitAuthenticatedTransaction(Transaction transaction) {
+        return submit(transaction, true);
+    }
+    
+    /**
+     * Verify a customer's PIN once, e.g. at the start of an ATM session. Applies the same
+     * lockouts and failure throttling as a PIN on a transaction.
+     */
+    @Override
+    public boolean authenticate(int accountId, int pin, String channelId) {
+        Account account = accountRepository.resolveAccount(accountId);
+        if (account == null || account.isFrozen() || pinLockout(accountId, channelId) != null) {
+            return false;
+        }
+        boolean verified = pinVerifier.verify(account, pin, channelId).join();
+        return recordPinOutcome(account, channelId, verified);
+    }
+
+    /**
+     * Low-allocation path for requests whose customer is already authenticated (e.g. an
+     * ATM session); the ring and its workers start on first use
+     */
+    public SubmissionRing getSubmissionRing() {
+        SubmissionRing ring = submissionRing;
+        if (ring == null) {
+            synchronized (this) {
+                ring = submissionRing;
+                if (ring == null) {
+                    ring = new SubmissionRing(this, RING_CAPACITY, THREAD_POOL_SIZE);
+                    submissionRing = ring;
+                }
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Replicate every committed balance change to a backup from now on. In SYNC mode a
+     * request's result is released once the backup has acknowledged it or the ack timeout
+     * has expired; results released without the backup's ack (or with no backup attached)
+     * are counted by getUnreplicatedCommits rather than failed, as the change is committed.
+     * Accounts added, PINs changed and accounts frozen through the repository are
+     * replicated too; batch postings need BatchEngine.enableReplication.
+     */
+    public void enableReplication(ReplicationPrimary replication) {
+        this.replication = replication;
+        accountRepository.setRepositoryChangeListener(replication);
+    }
+    
+    /**
+     * Hand the accounts a commit touched to the replication primary, if any
+     */
+    void replicate(int[] accountIds, int count) {
+        ReplicationPrimary primary = replication;
+        if (primary != null && count > 0 && !primary.commit(accountIds, count)) {
+            unreplicatedCommits.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Journal every committed balance change to a conservation auditor from now on
+     */
+    public void enableAudit(ConservationAuditor auditor) {
+        this.auditor = auditor;
+    }
+    
+    /**
+     * Journal a committed single-target change to the auditor, if any
+     */
+    void audit(TransactionType type, int accountId, int targetAccountId, double amount) {
+        ConservationAuditor current = auditor;
+        if (current == null) {
+            return;
+        }
+        switch (type) {
+            case DEPOSIT:
+                current.recordDeposit(accountId, amount);
+                break;
+            case WITHDRAW:
+                current.recordWithdrawal(accountId, amount);
+                break;
+            case TRANSFER:
+                current.recordTransfer(accountId, targetAccountId, amount);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void audit(Transaction transaction) {
+        ConservationAuditor current = auditor;
+        if (current == null) {
+            return;
+        }
+        if (transaction.getType() != TransactionType.MULTI_TRANSFER) {
+            audit(transaction.getType(), transaction.getAccountId(), 
+                transaction.getTargetAccountId() == null ? 0 : transaction.getTargetAccountId(), 
+                transaction.getAmount());
+            return;
+        }
+        List<TransferLeg> legs = transaction.getLegs();
+        int[] targets = new int[legs.size()];
+        double[] amounts = new double[legs.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = legs.get(i).getTargetAccountId();
+            amounts[i] = legs.get(i).getAmount();
+        }
+        current.recordMultiTransfer(transaction.getAccountId(), transaction.getAmount(), targets, amounts);
+    }
+    
+    private Future<TransactionResult> submit(Transaction transaction, boolean preAuthenticated) {
+        // Ids recently seen to be missing are refused before any queueing, locking or PIN work
+        TransactionResult missing = knownMissingResult(transaction);
+        if (missing != null) {
+            return CompletableFuture.completedFuture(missing);
+        }
+        // Locked-out accounts and ATMs are turned away before they cost a hash or a worker
+        TransactionStatus lockout = pinLockout(transaction.getAccountId(), transaction.getChannelId());
+        if (lockout != null) {
+            int secondsLeft = lockout == TransactionStatus.ACCOUNT_LOCKED_OUT
+                ? (int) ((accountPinThrottle.getLockoutRemainingMs(transaction.getAccountId()) + 999) / 1000) : 0;
+            return CompletableFuture.completedFuture(new TransactionResult(lockout, transaction, 0, secondsLeft));
+        }
+        
+        // Keys are scoped per account so two customers can never collide
+        String dedupKey = transaction.getIdempotencyKey() == null ? null
+            : transaction.getAccountId() + ":" + transaction.getIdempotencyKey();
+        if (dedupKey != null) {
+            Future<TransactionResult> original = idempotencyCache.get(dedupKey);
+            if (original != null) {
+                return original;
+            }
+        }
+        
+        if (!admit(transaction)) {
+            rejectedCount.incrementAndGet();
+            return CompletableFuture.completedFuture(new TransactionResult(
+                TransactionStatus.SYSTEM_BUSY, transaction, 0));
+        }
+        admittedCount.incrementAndGet();
+        peakPending.accumulateAndGet(getPendingCount(), Math::max);
+        
+        TransactionCallable callable = new TransactionCallable(transaction, dedupKey);
+        AdmittedTask task = new AdmittedTask(callable, 
+            priorityOf(transaction.getType()), submissionSequence.getAndIncrement());
+        callable.task = task;
+        if (dedupKey != null) {
+            Future<TransactionResult> original = idempotencyCache.putIfAbsent(dedupKey, task);
+            if (original == IdempotencyCache.FULL) {
+                // Every slot holds a live key; running unregistered could let a retry run twice
+                task.cancel(false);
+                rejectedCount.incrementAndGet();
+                return CompletableFuture.completedFuture(new TransactionResult(
+                    TransactionStatus.SYSTEM_BUSY, transaction, 0));
+            }
+            if (original != null) {
+                task.cancel(false); // a concurrent retry won the key; releases our permit
+                return original;
+            }
+        }
+        
+        // The source is looked up once here and the handle travels with the task; the key
+        // derivation runs on the verifier pool, the worker only sees its outcome
+        Account account = accountRepository.resolveAccount(transaction.getAccountId());
+        callable.account = account;
+        if (account == null) {
+            dispatch(task, transaction, dedupKey);
+        } else if (preAuthenticated) {
+            callable.pinVerified = true;
+            dispatch(task, transaction, dedupKey);
+        } else {
+            pinVerifier.verify(account, transaction.getPin(), transaction.getChannelId())
+                .whenComplete((verified, error) -> {
+                    callable.pinVerified = Boolean.TRUE.equals(verified);
+                    dispatch(task, transaction, dedupKey);
+                });
+        }
+        return task;
+    }
+    
+    /**
+     * Hand an admitted task to the worker pool, failing it if the pool is shut down
+     */
+    private void dispatch(AdmittedTask task, Transaction transaction, String dedupKey) {
+        try {
+            executorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (dedupKey != null) {
+                idempotencyCache.remove(dedupKey, task);
+            }
+            task.fail(new TransactionResult(TransactionStatus.SHUT_DOWN, transaction, 0)); // releases the permit
+        }
+    }
+    
+    /**
+     * ACCOUNT_LOCKED_OUT or ATM_LOCKED_OUT if PIN throttling currently refuses this request, else null
+     */
+    private TransactionStatus pinLockout(int accountId, String channelId) {
+        if (accountPinThrottle.isLockedOut(accountId)) {
+            return TransactionStatus.ACCOUNT_LOCKED_OUT;
+        }
+        if (atmPinThrottle.isLockedOut(channelId)) {
+            return TransactionStatus.ATM_LOCKED_OUT;
+        }
+        return null;
+    }
+    
+    /**
+     * Apply the verifier's outcome, feeding failures into the per-account and per-ATM throttles
+     */
+    private boolean verifyPin(Transaction transaction, Account account, boolean pinVerified) {
+        if (pinLockout(transaction.getAccountId(), transaction.getChannelId()) != null) {
+            return false; // locked out while the request was queued
+        }
+        return recordPinOutcome(account, transaction.getChannelId(), pinVerified);
+    }
+    
+    private boolean recordPinOutcome(Account account, String channelId, boolean verified) {
+        if (verified) {
+            accountPinThrottle.recordSuccess(account.getAccountId());
+            return true;
+        }
+        long lockoutMs = accountPinThrottle.recordFailure(account.getAccountId());
+        if (lockoutMs > 0) {
+            fraudMonitor.reportPinLockout(account.getAccountId(), lockoutMs);
+        }
+        atmPinThrottle.recordFailure(channelId);
+        return false;
+    }
+    
+    /**
+     * The refusal for a request naming an id recently seen to be missing, with the status
+     * the full pipeline would give it, or null. Requests the pipeline refuses for another
+     * reason first (a transfer without a target, a multi-transfer without legs) go through.
+     */
+    private TransactionResult knownMissingResult(Transaction transaction) {
+        switch (transaction.getType()) {
+            case TRANSFER:
+                Integer target = transaction.getTargetAccountId();
+                if (target == null) {
+                    return null;
+                }
+                // The transfer path answers a missing source or target alike
+                return accountRepository.isKnownMissing(transaction.getAccountId())
+                    || accountRepository.isKnownMissing(target)
+                    ? new TransactionResult(TransactionStatus.TARGET_NOT_FOUND, transaction, 0) : null;
+            case MULTI_TRANSFER:
+                List<TransferLeg> legs = transaction.getLegs();
+                if (legs.isEmpty()) {
+                    return null;
+                }
+                if (accountRepository.isKnownMissing(transaction.getAccountId())) {
+                    return new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0);
+                }
+                for (int i = 0; i < legs.size(); i++) {
+                    if (accountRepository.isKnownMissing(legs.get(i).getTargetAccountId())) {
+                        return new TransactionResult(TransactionStatus.TARGET_NOT_FOUND, transaction.getType(),
+                            transaction.getAccountId(), legs.get(i).getTargetAccountId(), transaction.getAmount(), 0,
+                            i + 1);
+                    }
+                }
+                return null;
+            default:
+                return accountRepository.isKnownMissing(transaction.getAccountId())
+                    ? new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0) : null;
+        }
+    }
+    
+    /**
+     * Acquire an intake permit according to the admission policy
+     */
+    private boolean admit(Transaction transaction) {
+        switch (admissionPolicy) {
+            case BLOCK:
+                try {
+                    return admissionPermits.tryAcquire(admissionTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case PRIORITY:
+                // Bulk work may only use the lower half of the intake, so it is shed first
+                if (priorityOf(transaction.getType()) == BULK_PRIORITY 
+                        && admissionPermits.availablePermits() <= admissionCapacity / 2) {
+                    return false;
+                }
+                return admissionPermits.tryAcquire();
+            case REJECT:
+            default:
+                return admissionPermits.tryAcquire();
+        }
+    }
+    
+    private static int priorityOf(TransactionType type) {
+        switch (type) {
+            case BALANCE_INQUIRY:
+                return INQUIRY_PRIORITY;
+            case MULTI_TRANSFER:
+                return BULK_PRIORITY;
+            default:
+                return INTERACTIVE_PRIORITY;
+        }
+    }
+    
+    /**
+     * Requests waiting in the queue (not yet picked up by a worker)
+     */
+    public int getQueueDepth() {
+        return executorService.getQueue().size();
+    }
+    
+    /**
+     * Requests admitted but not yet completed (queued plus running)
+     */
+    public int getPendingCount() {
+        return admissionCapacity - admissionPermits.availablePermits();
+    }
+    
+    /**
+     * Highest pending count observed since startup
+     */
+    public int getPeakPendingCount() {
+        return peakPending.get();
+    }
+    
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+    
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * Replicated commits (a request, or a batch on the submission ring) whose result was
+     * released before a backup was known to have them
+     */
+    public long getUnreplicatedCommits() {
+        return unreplicatedCommits.get();
+    }
+    
+    public int getAdmissionCapacity() {
+        return admissionCapacity;
+    }
+    
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+    
+    public PinAttemptThrottle<Integer> getAccountPinThrottle() {
+        return accountPinThrottle;
+    }
+    
+    public PinAttemptThrottle<String> getAtmPinThrottle() {
+        return atmPinThrottle;
+    }
+    
+    public PinVerifier getPinVerifier() {
+        return pinVerifier;
+    }
+    
+    /**
+     * Per-account lock contention, e.g. getLockManager().getMostContended(10) to find hot accounts
+     */
+    public LockManager getLockManager() {
+        return lockManager;
+    }
+    
+    public IdempotencyCache getIdempotencyCache() {
+        return idempotencyCache;
     }
     
     /**
      * Process withdraw transaction (synchronized)
      */
-    private TransactionResult processWithdraw(Transaction transaction) {
-        Account account = accountRepository.getAccount(transaction.getAccountId());
+    private TransactionResult processWithdraw(Transaction transaction, Account account, boolean pinVerified) {
         if (account == null) {
-            return new TransactionResult(false, "Account not found", 0, 
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0);
         }
         if (account.isFrozen()) {
-            return new TransactionResult(false, "Account is frozen due to security reasons", account.getBalance(),
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_FROZEN, transaction, account.getBalance());
         }
         
         // Validate PIN
-        if (!account.validatePin(transaction.getPin())) {
-            fraudMonitor.monitorTransaction(transaction);
-            return new TransactionResult(false, "Invalid PIN", account.getBalance(), 
-                transaction.getType(), transaction.getAccountId());
+        if (!verifyPin(transaction, account, pinVerified)) {
+            fraudMonitor.monitorTransaction(transaction, account);
+            return new TransactionResult(TransactionStatus.INVALID_PIN, transaction, account.getBalance());
         }
         
-        // Use synchronized block for single account operation
+        // Use synchronized block for single account operation; only the balance change is inside
+        TransactionResult result;
         synchronized (account) {
             boolean success = account.withdraw(transaction.getAmount());
-            double balance = account.getBalance();
-            
-            String message = success ? 
-                String.format("Withdrawal successful: $%.2f", transaction.getAmount()) :
-                "Withdrawal failed: Insufficient funds or invalid amount";
-            
-            TransactionResult result = new TransactionResult(success, message, balance, 
-                transaction.getType(), transaction.getAccountId());
-            
-            logTransaction(transaction, result);
-            if (success) {
-                fraudMonitor.monitorTransaction(transaction);
-            }
-            
-            return result;
+            result = new TransactionResult(success ? TransactionStatus.SUCCESS 
+                : transaction.getAmount() <= 0 ? TransactionStatus.INVALID_AMOUNT : TransactionStatus.INSUFFICIENT_FUNDS,
+                transaction, account.getBalance());
+        }
+        
+        logTransaction(transaction, result);
+        if (result.isSuccess()) {
+            fraudMonitor.monitorTransaction(transaction, account);
         }
+        return result;
     }
     
     /**
      * Process deposit transaction (synchronized)
      */
-    private TransactionResult processDeposit(Transaction transaction) {
-        Account account = accountRepository.getAccount(transaction.getAccountId());
+    private TransactionResult processDeposit(Transaction transaction, Account account, boolean pinVerified) {
         if (account == null) {
-            return new TransactionResult(false, "Account not found", 0, 
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0);
         }
         if (account.isFrozen()) {
-            return new TransactionResult(false, "Account is frozen due to security reasons", account.getBalance(),
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_FROZEN, transaction, account.getBalance());
         }
         
         // Validate PIN
-        if (!account.validatePin(transaction.getPin())) {
-            fraudMonitor.monitorTransaction(transaction);
-            return new TransactionResult(false, "Invalid PIN", account.getBalance(), 
-                transaction.getType(), transaction.getAccountId());
+        if (!verifyPin(transaction, account, pinVerified)) {
+            fraudMonitor.monitorTransaction(transaction, account);
+            return new TransactionResult(TransactionStatus.INVALID_PIN, transaction, account.getBalance());
         }
         
-        // Use synchronized block for single account operation
-        synchronized (account) {
+        // Use synchronized block for single account operation; only the balance change is inside.
+        // A split account takes deposits into a sub-balance without the monitor.
+        TransactionResult result;
+        if (account.isSplitBalance()) {
             boolean success = account.deposit(transaction.getAmount());
-            double balance = account.getBalance();
-            
-            String message = success ? 
-                String.format("Deposit successful: $%.2f", transaction.getAmount()) :
-                "Deposit failed: Invalid amount";
-            
-            TransactionResult result = new TransactionResult(success, message, balance, 
-                transaction.getType(), transaction.getAccountId());
-            
-            logTransaction(transaction, result);
-            return result;
+            result = new TransactionResult(success ? TransactionStatus.SUCCESS : TransactionStatus.INVALID_AMOUNT,
+                transaction, account.getBalance());
+        } else {
+            synchronized (account) {
+                boolean success = account.deposit(transaction.getAmount());
+                result = new TransactionResult(success ? TransactionStatus.SUCCESS : TransactionStatus.INVALID_AMOUNT,
+                    transaction, account.getBalance());
+            }
         }
+        
+        logTransaction(transaction, result);
+        return result;
     }
     
     /**
      * Process transfer transaction (ReentrantLock with deadlock prevention)
      */
-    private TransactionResult processTransfer(Transaction transaction) {
+    private TransactionResult processTransfer(Transaction transaction, Account fromAccount, boolean pinVerified) {
         if (transaction.getTargetAccountId() == null) {
-            return new TransactionResult(false, "Target account not specified", 0, 
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.TARGET_NOT_SPECIFIED, transaction, 0);
         }
         
-        Account fromAccount = accountRepository.getAccount(transaction.getAccountId());
-        Account toAccount = accountRepository.getAccount(transaction.getTargetAccountId());
+        Account toAccount = accountRepository.resolveAccount(transaction.getTargetAccountId());
         
         if (fromAccount == null || toAccount == null) {
-            return new TransactionResult(false, "One or both accounts not found", 0, 
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.TARGET_NOT_FOUND, transaction, 0);
         }
         if (fromAccount.isFrozen()) {
-            return new TransactionResult(false, "Source account is frozen due to security reasons", fromAccount.getBalance(),
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_FROZEN, transaction, fromAccount.getBalance());
         }
         if (toAccount.isFrozen()) {
-            return new TransactionResult(false, "Target account is frozen due to security reasons", toAccount.getBalance(),
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.TARGET_FROZEN, transaction, toAccount.getBalance());
         }
         
         // Validate PIN
-        if (!fromAccount.validatePin(transaction.getPin())) {
-            fraudMonitor.monitorTransaction(transaction);
-            return new TransactionResult(false, "Invalid PIN", fromAccount.getBalance(), 
-                transaction.getType(), transaction.getAccountId());
+        if (!verifyPin(transaction, fromAccount, pinVerified)) {
+            fraudMonitor.monitorTransaction(transaction, fromAccount);
+            return new TransactionResult(TransactionStatus.INVALID_PIN, transaction, fromAccount.getBalance());
         }
         
-        // Lock both accounts in sorted order to prevent deadlocks
-        ReentrantLock[] locks = lockManager.lockAccounts(
-            transaction.getAccountId(), 
-            transaction.getTargetAccountId()
-        );
+        // A split target keeps deposits in cents; refuse what it could not take before debiting
+        if (toAccount.isSplitBalance() && !Account.isWholeCents(transaction.getAmount())) {
+            return new TransactionResult(TransactionStatus.INVALID_AMOUNT, transaction, fromAccount.getBalance());
+        }
+        
+        // Lock both accounts in sorted order to prevent deadlocks; a split target takes
+        // the credit without a lock, so only the source is locked
+        ReentrantLock[] locks = toAccount.isSplitBalance()
+            ? lockManager.tryLockAccounts(new int[]{transaction.getAccountId()}, LOCK_TIMEOUT_MS)
+            : lockManager.tryLockAccounts(transaction.getAccountId(), transaction.getTargetAccountId(), 
+                LOCK_TIMEOUT_MS);
+        if (locks == null) {
+            return new TransactionResult(TransactionStatus.SYSTEM_BUSY, transaction, fromAccount.getBalance());
+        }
         
+        TransactionStatus status;
+        double balance;
         try {
-            // Check sufficient balance
-            if (fromAccount.getBalance() < transaction.getAmount()) {
-                return new TransactionResult(false, "Insufficient funds for transfer", 
-                    fromAccount.getBalance(), transaction.getType(), transaction.getAccountId());
+            // Check, debit and read back under the source monitor, so a concurrent deposit
+            // (which takes only the monitor) cannot slip in between
+            synchronized (fromAccount) {
+                if (fromAccount.getBalance() < transaction.getAmount()) {
+                    status = TransactionStatus.INSUFFICIENT_FUNDS;
+                } else if (!fromAccount.withdraw(transaction.getAmount())) {
+                    status = TransactionStatus.DEBIT_REFUSED;
+                } else {
+                    status = TransactionStatus.SUCCESS;
+                }
+                balance = fromAccount.getBalance();
             }
-            
-            // Perform transfer
-            boolean withdrawSuccess = fromAccount.withdraw(transaction.getAmount());
-            if (!withdrawSuccess) {
-                return new TransactionResult(false, "Transfer failed: Could not withdraw from source", 
-                    fromAccount.getBalance(), transaction.getType(), transaction.getAccountId());
+            if (status == TransactionStatus.SUCCESS && !toAccount.deposit(transaction.getAmount())) {
+                // Rollback if deposit fails; a reversal, not a second transaction
+                fromAccount.reverseWithdrawal(transaction.getAmount());
+                status = TransactionStatus.CREDIT_REFUSED;
+                balance = fromAccount.getBalance();
             }
-            
-            boolean depositSuccess = toAccount.deposit(transaction.getAmount());
-            if (!depositSuccess) {
-                // Rollback if deposit fails
-                fromAccount.deposit(transaction.getAmount());
-                return new TransactionResult(false, "Transfer failed: Could not deposit to target", 
-                    fromAccount.getBalance(), transaction.getType(), transaction.getAccountId());
-            }
-            
-            String message = String.format("Transfer successful: $%.2f from Account %d to Account %d", 
-                transaction.getAmount(), transaction.getAccountId(), transaction.getTargetAccountId());
-            
-            TransactionResult result = new TransactionResult(true, message, 
-                fromAccount.getBalance(), transaction.getType(), transaction.getAccountId());
-            
-            logTransaction(transaction, result);
-            fraudMonitor.monitorTransaction(transaction);
-            
-            return result;
-            
         } finally {
             // Always unlock
             lockManager.unlockAccounts(locks);
         }
+        
+        TransactionResult result = new TransactionResult(status, transaction, balance);
+        if (result.isSuccess()) {
+            logTransaction(transaction, result);
+            fraudMonitor.monitorTransaction(transaction, fromAccount);
+        }
+        return result;
+    }
+    
+    /**
+     * Process multi-leg transfer: one debit fanned out to N credits.
+     * All legs are validated before any is applied, locks are taken in ascending
+     * account order and the whole transfer is journaled as a single record.
+     */
+    private TransactionResult processMultiTransfer(Transaction transaction, Account fromAccount, boolean pinVerified) {
+        List<TransferLeg> legs = transaction.getLegs();
+        if (legs.isEmpty()) {
+            return new TransactionResult(TransactionStatus.NO_LEGS, transaction, 0);
+        }
+        
+        if (fromAccount == null) {
+            return new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0);
+        }
+        if (fromAccount.isFrozen()) {
+            return new TransactionResult(TransactionStatus.ACCOUNT_FROZEN, transaction, fromAccount.getBalance());
+        }
+        
+        // Resolve and validate every leg before touching any balance
+        Account[] targets = new Account[legs.size()];
+        int[] lockIds = new int[legs.size() + 1];
+        int lockCount = 0;
+        lockIds[lockCount++] = transaction.getAccountId();
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            if (leg.getAmount() <= 0) {
+                return new TransactionResult(TransactionStatus.INVALID_LEG_AMOUNT, transaction, 
+                    fromAccount.getBalance(), i + 1);
+            }
+            if (leg.getTargetAccountId() == transaction.getAccountId()) {
+                return new TransactionResult(TransactionStatus.LEG_TARGETS_SOURCE, transaction, 
+                    fromAccount.getBalance(), i + 1);
+            }
+            Account target = accountRepository.resolveAccount(leg.getTargetAccountId());
+            if (target == null || target.isFrozen()) {
+                return new TransactionResult(target == null ? TransactionStatus.TARGET_NOT_FOUND 
+                    : TransactionStatus.TARGET_FROZEN, transaction.getType(), transaction.getAccountId(), 
+                    leg.getTargetAccountId(), transaction.getAmount(), fromAccount.getBalance(), i + 1);
+            }
+            if (target.isSplitBalance() && !Account.isWholeCents(leg.getAmount())) {
+                return new TransactionResult(TransactionStatus.INVALID_LEG_AMOUNT, transaction, 
+                    fromAccount.getBalance(), i + 1);
+            }
+            targets[i] = target;
+            if (!target.isSplitBalance()) {
+                lockIds[lockCount++] = leg.getTargetAccountId(); // split targets are credited lock-free
+            }
+        }
+        
+        // Validate PIN once for the whole batch
+        if (!verifyPin(transaction, fromAccount, pinVerified)) {
+            fraudMonitor.monitorTransaction(transaction, fromAccount);
+            return new TransactionResult(TransactionStatus.INVALID_PIN, transaction, fromAccount.getBalance());
+        }
+        
+        ReentrantLock[] locks = lockManager.tryLockAccounts(Arrays.copyOf(lockIds, lockCount), LOCK_TIMEOUT_MS);
+        if (locks == null) {
+            return new TransactionResult(TransactionStatus.SYSTEM_BUSY, transaction, fromAccount.getBalance());
+        }
+        TransactionStatus status;
+        double balance;
+        try {
+            // Single debit for the total; enforces overdraft and minimum-balance rules
+            boolean debited;
+            synchronized (fromAccount) {
+                debited = fromAccount.withdraw(transaction.getAmount());
+                balance = fromAccount.getBalance();
+            }
+            if (!debited) {
+                status = TransactionStatus.INSUFFICIENT_FUNDS;
+            } else {
+                // Credits cannot fail: every leg was checked for a positive amount (whole cents
+                // for split targets) above
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i].deposit(legs.get(i).getAmount());
+                }
+                status = TransactionStatus.SUCCESS;
+            }
+        } finally {
+            lockManager.unlockAccounts(locks);
+        }
+        
+        TransactionResult result = new TransactionResult(status, transaction, balance, legs.size());
+        if (result.isSuccess()) {
+            logTransaction(transaction, result);
+            fraudMonitor.monitorTransaction(transaction, fromAccount);
+        }
+        return result;
     }
     
     /**
-     * Process balance inquiry (synchronized)
+     * Process balance inquiry (lock-free optimistic read)
      */
-    private TransactionResult processBalanceInquiry(Transaction transaction) {
-        Account account = accountRepository.getAccount(transaction.getAccountId());
+    private TransactionResult processBalanceInquiry(Transaction transaction, Account account, boolean pinVerified) {
         if (account == null) {
-            return new TransactionResult(false, "Account not found", 0, 
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_NOT_FOUND, transaction, 0);
         }
         if (account.isFrozen()) {
-            return new TransactionResult(false, "Account is frozen due to security reasons", account.getBalance(),
-                transaction.getType(), transaction.getAccountId());
+            return new TransactionResult(TransactionStatus.ACCOUNT_FROZEN, transaction, account.getBalance());
         }
         
         // Validate PIN
-        if (!account.validatePin(transaction.getPin())) {
-            fraudMonitor.monitorTransaction(transaction);
-            return new TransactionResult(false, "Invalid PIN", 0, 
-                transaction.getType(), transaction.getAccountId());
+        if (!verifyPin(transaction, account, pinVerified)) {
+            fraudMonitor.monitorTransaction(transaction, account);
+            return new TransactionResult(TransactionStatus.INVALID_PIN, transaction, 0);
         }
         
-        synchronized (account) {
-            double balance = account.getBalance();
-            TransactionResult result = new TransactionResult(true, 
-                String.format("Balance inquiry: $%.2f", balance), balance, 
-                transaction.getType(), transaction.getAccountId());
-            
+        // Optimistic read: inquiries never wait on the account monitor
+        TransactionResult result = new TransactionResult(TransactionStatus.SUCCESS, transaction, account.getBalance());
+        
+        logTransaction(transaction, result);
+        return result;
+    }
+    
+    /**
+     * Process a pre-authenticated ring request in place: same rules as the methods above,
+     * but primitives in and a status code out; logging and events follow per batch in
+     * recordSlots
+     */
+    void processSlot(SubmissionRing.Slot slot) {
+        if (accountPinThrottle.isLockedOut(slot.accountId)) {
+            slot.complete(TransactionStatus.ACCOUNT_LOCKED_OUT, 0);
+            return;
+        }
+        if (atmPinThrottle.isLockedOut(slot.channelId)) {
+            slot.complete(TransactionStatus.ATM_LOCKED_OUT, 0);
+            return;
+        }
+        Account account = accountRepository.resolveAccount(slot.accountId);
+        if (account == null) {
+            slot.complete(TransactionStatus.ACCOUNT_NOT_FOUND, 0);
+            return;
+        }
+        if (account.isFrozen()) {
+            slot.complete(TransactionStatus.ACCOUNT_FROZEN, account.getBalance());
+            return;
+        }
+
+        switch (slot.type) {
+            case BALANCE_INQUIRY:
+                slot.complete(TransactionStatus.SUCCESS, account.getBalance());
+                return;
+            case DEPOSIT:
+                if (account.isSplitBalance()) {
+                    boolean success = account.deposit(slot.amount);
+                    slot.complete(success ? TransactionStatus.SUCCESS : TransactionStatus.INVALID_AMOUNT,
+                        account.getBalance());
+                    return;
+                }
+                synchronized (account) {
+                    boolean success = account.deposit(slot.amount);
+                    slot.complete(success ? TransactionStatus.SUCCESS : TransactionStatus.INVALID_AMOUNT,
+                        account.getBalance());
+                }
+                return;
+            case WITHDRAW:
+                boolean withdrawn;
+                synchronized (account) {
+                    withdrawn = account.withdraw(slot.amount);
+                    slot.complete(withdrawn ? TransactionStatus.SUCCESS
+                        : slot.amount <= 0 ? TransactionStatus.INVALID_AMOUNT : TransactionStatus.INSUFFICIENT_FUNDS,
+                        account.getBalance());
+                }
+                if (withdrawn) {
+                    fraudMonitor.monitorWithdrawal(slot.accountId, slot.amount);
+                }
+                return;
+            case TRANSFER:
+                processSlotTransfer(slot, account);
+                return;
+            default:
+                slot.complete(TransactionStatus.UNSUPPORTED, account.getBalance());
+        }
+    }
+
+    private void processSlotTransfer(SubmissionRing.Slot slot, Account fromAccount) {
+        if (slot.amount <= 0 || slot.targetAccountId == slot.accountId) {
+            slot.complete(TransactionStatus.INVALID_AMOUNT, fromAccount.getBalance());
+            return;
+        }
+        Account toAccount = accountRepository.resolveAccount(slot.targetAccountId);
+        if (toAccount == null) {
+            slot.complete(TransactionStatus.TARGET_NOT_FOUND, 0);
+            return;
+        }
+        if (toAccount.isFrozen()) {
+            slot.complete(TransactionStatus.TARGET_FROZEN, toAccount.getBalance());
+            return;
+        }
+        if (toAccount.isSplitBalance() && !Account.isWholeCents(slot.amount)) {
+            slot.complete(TransactionStatus.INVALID_AMOUNT, fromAccount.getBalance());
+            return;
+        }
+        if (toAccount.isSplitBalance()) {
+            // The credit needs no lock on a split target
+            ReentrantLock lock = lockManager.tryLockAccount(slot.accountId, LOCK_TIMEOUT_MS);
+            if (lock == null) {
+                slot.complete(TransactionStatus.SYSTEM_BUSY, fromAccount.getBalance());
+                return;
+            }
+            try {
+                completeSlotTransfer(slot, fromAccount, toAccount);
+            } finally {
+                lockManager.unlockAccount(lock);
+            }
+            return;
+        }
+        if (!lockManager.tryLockPair(slot.accountId, slot.targetAccountId, LOCK_TIMEOUT_MS)) {
+            slot.complete(TransactionStatus.SYSTEM_BUSY, fromAccount.getBalance());
+            return;
+        }
+        try {
+            completeSlotTransfer(slot, fromAccount, toAccount);
+        } finally {
+            lockManager.unlockPair(slot.accountId, slot.targetAccountId);
+        }
+    }
+
+    private static void completeSlotTransfer(SubmissionRing.Slot slot, Account fromAccount, Account toAccount) {
+        boolean withdrawn;
+        double balance;
+        synchronized (fromAccount) {
+            withdrawn = fromAccount.withdraw(slot.amount);
+            balance = fromAccount.getBalance();
+        }
+        if (!withdrawn) {
+            slot.complete(TransactionStatus.INSUFFICIENT_FUNDS, balance);
+            return;
+        }
+        if (!toAccount.deposit(slot.amount)) {
+            // Only if the target went split after the caller's whole-cents check
+            fromAccount.reverseWithdrawal(slot.amount);
+            slot.complete(TransactionStatus.CREDIT_REFUSED, fromAccount.getBalance());
+            return;
+        }
+        slot.complete(TransactionStatus.SUCCESS, balance);
+    }
+
+    /**
+     * Log, index and publish a batch of completed ring requests the way the regular path
+     * does each of its requests, and run the fraud rules on its transfers. The batch's
+     * lines are rendered from the slots into the worker's buffer and go to the transaction
+     * log in one write; events are only built when the bus has subscribers. Called by a
+     * ring worker before it releases the batch.
+     */
+    void recordSlots(SubmissionRing.Slot[] slots, int count, SlotRecordWriter records) {
+        long now = System.currentTimeMillis();
+        records.reset();
+        for (int i = 0; i < count; i++) {
+            if (isLoggedSlot(slots[i])) {
+                records.write(slots[i], now);
+            }
+        }
+        if (records.getLineCount() > 0) {
+            long first = journal.appendRecords(records.getBytes(), records.getSize());
+            if (first >= 0) {
+                int line = 0;
+                for (int i = 0; i < count; i++) {
+                    if (isLoggedSlot(slots[i])) {
+                        historyIndex.record(records.statementAccounts(slots[i]), now, records.offsetOf(line++, first));
+                    }
+                }
+            }
+        }
+        boolean publish = eventBus.hasSubscribers();
+        for (int i = 0; i < count; i++) {
+            SubmissionRing.Slot slot = slots[i];
+            if (isRefusedSlot(slot)) {
+                continue;
+            }
+            if (slot.status.isSuccess() && slot.type == TransactionType.TRANSFER) {
+                // Transfers only trip the failed-PIN rule; the withdrawal rules never apply
+                Account fromAccount = accountRepository.getAccount(slot.accountId);
+                if (fromAccount != null) {
+                    fraudMonitor.monitorPinFailures(fromAccount);
+                }
+            }
+            if (publish) {
+                Transaction transaction = (slot.type == TransactionType.TRANSFER
+                    ? new Transaction(slot.type, slot.accountId, slot.targetAccountId, slot.amount, 0)
+                    : new Transaction(slot.type, slot.accountId, slot.amount, 0)).withChannelId(slot.channelId);
+                eventBus.publish(new TransactionEvent(transaction,
+                    new TransactionResult(slot.status, transaction, slot.balanceAfter)));
+            }
+        }
+    }
+
+    /**
+     * Refused before processing, as the regular path refuses before queueing
+     */
+    private static boolean isRefusedSlot(SubmissionRing.Slot slot) {
+        return slot.status == TransactionStatus.ACCOUNT_LOCKED_OUT || slot.status == TransactionStatus.ATM_LOCKED_OUT
+            || slot.status == TransactionStatus.SHUT_DOWN;
+    }
+
+    /**
+     * Like the regular path: failed transfers and refusals before the balance change are not logged
+     */
+    private static boolean isLoggedSlot(SubmissionRing.Slot slot) {
+        if (slot.status.isSuccess()) {
+            return true;
+        }
+        boolean reachedBalance = slot.status == TransactionStatus.INSUFFICIENT_FUNDS
+            || slot.status == TransactionStatus.INVALID_AMOUNT;
+        return slot.type != TransactionType.TRANSFER && reachedBalance;
+    }
+    
+    /**
+     * Record a balance change applied outside the processor (a cluster saga step) the way
+     * processed requests are recorded: logged and indexed once it reached the balance,
+     * fraud-checked, replicated and audited on success, and published either way
+     */
+    public void recordApplied(Transaction transaction, TransactionResult result, Account account) {
+        TransactionStatus status = result.getStatus();
+        if (result.isSuccess() || status == TransactionStatus.INSUFFICIENT_FUNDS
+            || status == TransactionStatus.INVALID_AMOUNT) {
             logTransaction(transaction, result);
-            return result;
         }
+        if (account != null && (result.isSuccess() || status == TransactionStatus.INVALID_PIN)) {
+            fraudMonitor.monitorTransaction(transaction, account);
+        }
+        if (result.isSuccess()) {
+            int[] touched = statementAccounts(transaction, result);
+            replicate(touched, touched.length);
+            audit(transaction);
+        }
+        eventBus.publish(new TransactionEvent(transaction, result));
     }
     
     /**
      * Log transaction to file
      */
     private void logTransaction(Transaction transaction, TransactionResult result) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(TRANSACTION_LOG_FILE, true))) {
-            writer.println(String.format("%s | %s | %s", 
-                result.getTimestamp(), transaction, result));
-            writer.flush();
+        long offset = journal.append(String.format("%s | %s | %s", 
+            result.getTimestamp(), transaction, result));
+        if (offset >= 0) {
+            historyIndex.record(statementAccounts(transaction, result), result.getCompletedAtMillis(), offset);
+        }
+    }
+    
+    /**
+     * Accounts whose statement shows this record: the source always, targets once money moved
+     */
+    private static int[] statementAccounts(Transaction transaction, TransactionResult result) {
+        if (!result.isSuccess()) {
+            return new int[]{transaction.getAccountId()};
+        }
+        if (transaction.getTargetAccountId() != null) {
+            return new int[]{transaction.getAccountId(), transaction.getTargetAccountId()};
+        }
+        List<TransferLeg> legs = transaction.getLegs();
+        int[] ids = new int[legs.size() + 1];
+        ids[0] = transaction.getAccountId();
+        for (int i = 0; i < legs.size(); i++) {
+            ids[i + 1] = legs.get(i).getTargetAccountId();
+        }
+        return ids;
+    }
+    
+    /**
+     * Mini statement: the most recent page of an account's journal records
+     */
+    public StatementPage getStatement(int accountId, LocalDateTime from, LocalDateTime to, int page) {
+        return getStatement(accountId, from, to, page, DEFAULT_STATEMENT_PAGE_SIZE);
+    }
+    
+    /**
+     * One page (newest first) of the account's records between from and to (null = unbounded).
+     * Cost is proportional to the page size, not to the size of the journal.
+     */
+    public StatementPage getStatement(int accountId, LocalDateTime from, LocalDateTime to, 
+                                      int page, int pageSize) {
+        long fromMillis = from == null ? Long.MIN_VALUE 
+            : from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE 
+            : to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        int total = historyIndex.count(accountId, fromMillis, toMillis);
+        long[] offsets = historyIndex.findOffsets(accountId, fromMillis, toMillis, page, pageSize);
+        List<String> records = new ArrayList<>(offsets.length);
+        try {
+            records.addAll(Arrays.asList(journal.readRecords(offsets)));
         } catch (IOException e) {
-            System.err.println("Error logging transaction: " + e.getMessage());
+            System.err.println("Error reading statement records: " + e.getMessage());
         }
+        return new StatementPage(accountId, page, pageSize, total, records);
     }
     
     /**
      * Shutdown executor service
      */
     public void shutdown() {
+        SubmissionRing ring = submissionRing;
+        if (ring != null) {
+            ring.shutdown(); // drains published requests before its journal closes
+        }
+        pinVerifier.shutdown(); // requests still being verified are handed to the workers first
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
@@ -266,6 +1104,45 @@ public class TransactionProcessor {
             executorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        eventBus.shutdown(); // subscribers drain what was already published
+        journal.close();
+        historyIndex.close();
+        idempotencyCache.close();
+    }
+    
+    /**
+     * Future for an admitted request; orders by priority lane then arrival and
+     * returns its intake permit when it completes or is cancelled
+     */
+    private class AdmittedTask extends FutureTask<TransactionResult> implements Comparable<AdmittedTask> {
+        private final int priority;
+        private final long sequence;
+        
+        AdmittedTask(Callable<TransactionResult> callable, int priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+        
+        /**
+         * Complete without running
+         */
+        void fail(TransactionResult result) {
+            set(result);
+        }
+        
+        @Override
+        protected void done() {
+            admissionPermits.release();
+        }
+        
+        @Override
+        public int compareTo(AdmittedTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
     }
     
     /**
@@ -273,25 +1150,48 @@ public class TransactionProcessor {
      */
     private class TransactionCallable implements Callable<TransactionResult> {
         private final Transaction transaction;
+        private final String dedupKey;
+        private Account account; // resolved by submit before dispatch, so visible to the worker
+        private boolean pinVerified; // likewise
+        private Future<TransactionResult> task; // likewise
         
-        public TransactionCallable(Transaction transaction) {
+        public TransactionCallable(Transaction transaction, String dedupKey) {
             this.transaction = transaction;
+            this.dedupKey = dedupKey;
         }
         
         @Override
         public TransactionResult call() {
+            TransactionResult result = process();
+            if (result.isSuccess() && transaction.getType() != TransactionType.BALANCE_INQUIRY) {
+                int[] touched = statementAccounts(transaction, result);
+                replicate(touched, touched.length);
+                audit(transaction);
+            }
+            eventBus.publish(new TransactionEvent(transaction, result));
+            if (dedupKey != null && result.getStatus() == TransactionStatus.SYSTEM_BUSY) {
+                idempotencyCache.remove(dedupKey, task); // nothing happened, so a retry must run again
+            } else if (dedupKey != null) {
+                idempotencyCache.journal(dedupKey, result);
+            }
+            return result;
+        }
+        
+        private TransactionResult process() {
+            // The source was resolved once at submission; its handle goes down the pipeline
             switch (transaction.getType()) {
                 case WITHDRAW:
-                    return processWithdraw(transaction);
+                    return processWithdraw(transaction, account, pinVerified);
                 case DEPOSIT:
-                    return processDeposit(transaction);
+                    return processDeposit(transaction, account, pinVerified);
                 case TRANSFER:
-                    return processTransfer(transaction);
+                    return processTransfer(transaction, account, pinVerified);
                 case BALANCE_INQUIRY:
-                    return processBalanceInquiry(transaction);
+                    return processBalanceInquiry(transaction, account, pinVerified);
+                case MULTI_TRANSFER:
+                    return processMultiTransfer(transaction, account, pinVerified);
                 default:
-                    return new TransactionResult(false, "Unknown transaction type", 0, 
-                        transaction.getType(), transaction.getAccountId());
+                    return new TransactionResult(TransactionStatus.UNSUPPORTED, transaction, 0);
             }
         }
     }
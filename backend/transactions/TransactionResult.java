@@ -3,54 +3,126 @@ package transactions;
 import util.DateTimeUtil;
 
 /**
- * Result of a transaction operation
+ * Result of a transaction operation.
+ *
+ * Holds a status code and the primitive fields of the request; the message, timestamp and
+ * toString text are rendered on first use and cached, so building a result never formats
+ * anything. Most callers only look at isSuccess() and the balance.
  */
 public class TransactionResult {
-    private final boolean success;
-    private final String message;
+    private final TransactionStatus status;
     private final double balanceAfter;
-    private final String timestamp;
+    private final long completedAtMillis;
     private final TransactionType transactionType;
     private final int accountId;
-    
-    public TransactionResult(boolean success, String message, double balanceAfter, 
+    private final int targetAccountId;
+    private final double amount;
+    private final int detail;
+    // Rendered lazily; a racing second render produces an equal string, so no locking is needed
+    private String message;
+    private String timestamp;
+    private String text;
+
+    /**
+     * Result with a ready-made message, e.g. reloaded from a journal
+     */
+    public TransactionResult(boolean success, String message, double balanceAfter,
                             TransactionType transactionType, int accountId) {
-        this.success = success;
+        this(success ? TransactionStatus.SUCCESS : TransactionStatus.FAILED, transactionType, accountId, 0, 0,
+            balanceAfter, 0);
         this.message = message;
-        this.balanceAfter = balanceAfter;
+    }
+
+    public TransactionResult(TransactionStatus status, Transaction transaction, double balanceAfter) {
+        this(status, transaction, balanceAfter, 0);
+    }
+
+    /**
+     * @param detail see TransactionStatus.describe
+     */
+    public TransactionResult(TransactionStatus status, Transaction transaction, double balanceAfter, int detail) {
+        this(status, transaction.getType(), transaction.getAccountId(),
+            transaction.getTargetAccountId() == null ? 0 : transaction.getTargetAccountId(),
+            transaction.getAmount(), balanceAfter, detail);
+    }
+
+    public TransactionResult(TransactionStatus status, TransactionType transactionType, int accountId,
+                             int targetAccountId, double amount, double balanceAfter, int detail) {
+        this.status = status;
         this.transactionType = transactionType;
         this.accountId = accountId;
-        this.timestamp = DateTimeUtil.getCurrentTimestamp();
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.detail = detail;
+        this.completedAtMillis = System.currentTimeMillis();
     }
-    
+
     public boolean isSuccess() {
-        return success;
+        return status.isSuccess();
     }
-    
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
     public String getMessage() {
-        return message;
+        String rendered = message;
+        if (rendered == null) {
+            rendered = status.describe(transactionType, accountId, targetAccountId, amount, balanceAfter, detail);
+            message = rendered;
+        }
+        return rendered;
     }
-    
+
     public double getBalanceAfter() {
         return balanceAfter;
     }
-    
+
     public String getTimestamp() {
-        return timestamp;
+        String rendered = timestamp;
+        if (rendered == null) {
+            rendered = DateTimeUtil.format(completedAtMillis);
+            timestamp = rendered;
+        }
+        return rendered;
+    }
+
+    public long getCompletedAtMillis() {
+        return completedAtMillis;
     }
-    
+
     public TransactionType getTransactionType() {
         return transactionType;
     }
-    
+
     public int getAccountId() {
         return accountId;
     }
-    
+
+    public int getTargetAccountId() {
+        return targetAccountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Status specific detail, see TransactionStatus.describe
+     */
+    public int getDetail() {
+        return detail;
+    }
+
     @Override
     public String toString() {
-        return String.format("TransactionResult[Success=%s, Type=%s, AccountId=%d, Balance=%.2f, Message=%s, Time=%s]",
-            success, transactionType, accountId, balanceAfter, message, timestamp);
+        String rendered = text;
+        if (rendered == null) {
+            rendered = String.format("TransactionResult[Success=%s, Type=%s, AccountId=%d, Balance=%.2f, Message=%s, Time=%s]",
+                isSuccess(), transactionType, accountId, balanceAfter, getMessage(), getTimestamp());
+            text = rendered;
+        }
+        return rendered;
     }
 }
-
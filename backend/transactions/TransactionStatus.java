@@ -0,0 +1,146 @@
+package transactions;
+
+/**
+ * Outcome of a transaction as a compact code.
+ *
+ * The human-readable message is only rendered when somebody asks for it, from the
+ * primitive fields of the request, so the processing path never formats strings.
+ * Codes are persisted in binary journals: append new statuses at the end.
+ */
+public enum TransactionStatus {
+    SUCCESS(0),
+    ACCOUNT_NOT_FOUND(1),
+    TARGET_NOT_FOUND(2),
+    ACCOUNT_FROZEN(3),
+    TARGET_FROZEN(4),
+    INSUFFICIENT_FUNDS(5),
+    INVALID_AMOUNT(6),
+    ACCOUNT_LOCKED_OUT(7),
+    ATM_LOCKED_OUT(8),
+    SESSION_INVALID(9),
+    SHUT_DOWN(10),
+    UNSUPPORTED(11),
+    FAILED(12),
+    INVALID_PIN(13),
+    SYSTEM_BUSY(14),
+    TARGET_NOT_SPECIFIED(15),
+    NO_LEGS(16),
+    INVALID_LEG_AMOUNT(17),
+    LEG_TARGETS_SOURCE(18),
+    DEBIT_REFUSED(19),
+    CREDIT_REFUSED(20),
+    IN_DOUBT(21);
+
+    private static final TransactionStatus[] BY_CODE = values();
+
+    private final int code;
+
+    TransactionStatus(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Stable numeric code, e.g. for binary journals
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    public static TransactionStatus fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    public String describe(TransactionType type, int accountId, int targetAccountId, double amount, double balance) {
+        return describe(type, accountId, targetAccountId, amount, balance, 0);
+    }
+
+    /**
+     * Render the message a customer would see for this outcome. The detail is status
+     * specific: the leg count of a successful multi-leg transfer, the 1-based leg number
+     * of an invalid leg, or the seconds left on an account lockout (0 if unknown).
+     */
+    public String describe(TransactionType type, int accountId, int targetAccountId, double amount,
+                           double balance, int detail) {
+        boolean multi = type == TransactionType.MULTI_TRANSFER;
+        switch (this) {
+            case SUCCESS:
+                switch (type) {
+                    case WITHDRAW:
+                        return String.format("Withdrawal successful: $%.2f", amount);
+                    case DEPOSIT:
+                        return String.format("Deposit successful: $%.2f", amount);
+                    case TRANSFER:
+                        return String.format("Transfer successful: $%.2f from Account %d to Account %d",
+                            amount, accountId, targetAccountId);
+                    case MULTI_TRANSFER:
+                        return String.format("Multi-leg transfer successful: $%.2f from Account %d to %d legs",
+                            amount, accountId, detail);
+                    case BALANCE_INQUIRY:
+                        return String.format("Balance inquiry: $%.2f", balance);
+                    default:
+                        return String.format("%s successful: $%.2f", type, amount);
+                }
+            case ACCOUNT_NOT_FOUND:
+                return multi ? "Source account not found" : "Account not found";
+            case TARGET_NOT_FOUND:
+                return multi ? "Target account " + targetAccountId + " not found" : "One or both accounts not found";
+            case ACCOUNT_FROZEN:
+                return type == TransactionType.TRANSFER || multi
+                    ? "Source account is frozen due to security reasons"
+                    : "Account is frozen due to security reasons";
+            case TARGET_FROZEN:
+                return multi ? "Target account " + targetAccountId + " is frozen due to security reasons"
+                    : "Target account is frozen due to security reasons";
+            case INSUFFICIENT_FUNDS:
+                if (type == TransactionType.WITHDRAW) {
+                    return "Withdrawal failed: Insufficient funds or invalid amount";
+                }
+                return multi ? "Insufficient funds for multi-leg transfer" : "Insufficient funds for transfer";
+            case INVALID_AMOUNT:
+                if (type == TransactionType.WITHDRAW) {
+                    return "Withdrawal failed: Insufficient funds or invalid amount";
+                }
+                return type == TransactionType.DEPOSIT ? "Deposit failed: Invalid amount" : "Invalid amount";
+            case ACCOUNT_LOCKED_OUT:
+                return detail > 0
+                    ? "Too many invalid PIN attempts, try again in " + detail + " s"
+                    : "Too many invalid PIN attempts, try again later";
+            case ATM_LOCKED_OUT:
+                return "ATM temporarily unavailable after repeated invalid PIN attempts";
+            case SESSION_INVALID:
+                return "Session expired or invalid, please log in again";
+            case SHUT_DOWN:
+                return "Transaction processor is shut down";
+            case UNSUPPORTED:
+                return type + " is not supported on this path";
+            case INVALID_PIN:
+                return "Invalid PIN";
+            case SYSTEM_BUSY:
+                return "System busy, please retry";
+            case TARGET_NOT_SPECIFIED:
+                return "Target account not specified";
+            case NO_LEGS:
+                return "No transfer legs specified";
+            case INVALID_LEG_AMOUNT:
+                return "Invalid amount in leg " + detail;
+            case LEG_TARGETS_SOURCE:
+                return "Leg " + detail + " targets the source account";
+            case DEBIT_REFUSED:
+                return "Transfer failed: Could not withdraw from source";
+            case CREDIT_REFUSED:
+                return "Transfer failed: Could not deposit to target";
+            case IN_DOUBT:
+                return "Outcome not yet known, check your balance before retrying";
+            case FAILED:
+            default:
+                return "Transaction failed";
+        }
+    }
+}
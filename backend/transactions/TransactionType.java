@@ -7,6 +7,7 @@ public enum TransactionType {
     WITHDRAW,
     DEPOSIT,
     TRANSFER,
-    BALANCE_INQUIRY
+    BALANCE_INQUIRY,
+    MULTI_TRANSFER
 }
 
@@ -0,0 +1,27 @@
+package transactions;
+
+/**
+ * One credit leg of a multi-leg transfer
+ */
+public class TransferLeg {
+    private final int targetAccountId;
+    private final double amount;
+    
+    public TransferLeg(int targetAccountId, double amount) {
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+    }
+    
+    public int getTargetAccountId() {
+        return targetAccountId;
+    }
+    
+    public double getAmount() {
+        return amount;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("TransferLeg[To=%d, Amount=%.2f]", targetAccountId, amount);
+    }
+}
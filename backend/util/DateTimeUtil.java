@@ -1,6 +1,8 @@
 package util;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -29,5 +31,11 @@ public class DateTimeUtil {
     public static String format(LocalDateTime dateTime) {
         return dateTime.format(FORMATTER);
     }
+    
+    /**
+     * Format epoch milliseconds (system time zone) to string
+     */
+    public static String format(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(FORMATTER);
+    }
 }
-
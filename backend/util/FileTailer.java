@@ -0,0 +1,97 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows a growing text file, returning only lines appended since the last call.
+ * The first read starts at most initialWindowBytes before the end of the file, so
+ * opening a very large log costs the same as opening a small one.
+ */
+public class FileTailer {
+    private static final int MAX_BYTES_PER_READ = 1 << 20;
+    
+    private final String path;
+    private final long initialWindowBytes;
+    private final ByteArrayOutputStream partialLine;
+    private long position;
+    private boolean started;
+    private boolean skippingPartialLine;
+    
+    public FileTailer(String path, long initialWindowBytes) {
+        this.path = path;
+        this.initialWindowBytes = initialWindowBytes;
+        this.partialLine = new ByteArrayOutputStream();
+        this.position = 0;
+        this.started = false;
+        this.skippingPartialLine = false;
+    }
+    
+    /**
+     * Read complete lines appended since the previous call (at most 1 MB per call)
+     */
+    public synchronized List<String> readNewLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            long length = file.length();
+            if (!started) {
+                position = Math.max(0, length - initialWindowBytes);
+                skippingPartialLine = position > 0; // landed mid-line
+                started = true;
+            } else if (length < position) {
+                // File was truncated or rotated: start over
+                position = 0;
+                partialLine.reset();
+                skippingPartialLine = false;
+            }
+            if (length == position) {
+                return lines;
+            }
+            
+            int toRead = (int) Math.min(MAX_BYTES_PER_READ, length - position);
+            byte[] buffer = new byte[toRead];
+            file.seek(position);
+            file.readFully(buffer);
+            position += toRead;
+            
+            int lineStart = 0;
+            for (int i = 0; i < toRead; i++) {
+                if (buffer[i] == '\n') {
+                    partialLine.write(buffer, lineStart, i - lineStart);
+                    if (skippingPartialLine) {
+                        skippingPartialLine = false;
+                    } else {
+                        lines.add(stripCarriageReturn(partialLine.toString(StandardCharsets.UTF_8)));
+                    }
+                    partialLine.reset();
+                    lineStart = i + 1;
+                }
+            }
+            if (skippingPartialLine) {
+                partialLine.reset(); // still inside the first partial line
+                return lines;
+            }
+            partialLine.write(buffer, lineStart, toRead - lineStart);
+        }
+        return lines;
+    }
+    
+    /**
+     * Whether the last read stopped before the end of the file
+     */
+    public synchronized boolean hasMore() {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            return file.length() > position;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
@@ -1,13 +1,29 @@
 package util;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
 
 /**
  * Simple security utilities for hashing.
+ *
+ * PINs are hashed with PBKDF2-HMAC-SHA256 and a random per-hash salt. The encoded form
+ * records the iteration count, so raising the cost only affects hashes created afterwards.
  */
 public class SecurityUtil {
+    public static final int DEFAULT_PIN_HASH_ITERATIONS = 10_000;
+    private static final String PIN_HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PIN_HASH_SCHEME = "pbkdf2-sha256";
+    private static final int PIN_SALT_BYTES = 16;
+    private static final int PIN_HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static volatile int pinHashIterations = 
+        Integer.getInteger("banking.pin.iterations", DEFAULT_PIN_HASH_ITERATIONS);
 
     /**
      * Hash plain text with SHA-256 and return hex string.
@@ -27,10 +43,67 @@ public class SecurityUtil {
     }
 
     /**
-     * Convenience to hash numeric PINs.
+     * Hash a numeric PIN with a fresh random salt at the configured cost.
      */
     public static String hashPin(int pin) {
-        return sha256(Integer.toString(pin));
+        byte[] salt = new byte[PIN_SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return hashPin(pin, salt, pinHashIterations);
+    }
+
+    /**
+     * Hash a numeric PIN as "pbkdf2-sha256$iterations$salt$hash" (Base64 fields).
+     */
+    public static String hashPin(int pin, byte[] salt, int iterations) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PIN_HASH_SCHEME + "$" + iterations + "$" + encoder.encodeToString(salt) 
+            + "$" + encoder.encodeToString(pbkdf2(pin, salt, iterations));
+    }
+
+    /**
+     * Check a PIN against a hash produced by hashPin, in constant time.
+     */
+    public static boolean verifyPin(int pin, String encodedHash) {
+        String[] parts = encodedHash == null ? new String[0] : encodedHash.split("\\$");
+        if (parts.length != 4 || !PIN_HASH_SCHEME.equals(parts[0])) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[3]);
+            byte[] actual = pbkdf2(pin, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false; // Malformed hash
+        }
+    }
+
+    /**
+     * Iteration count used for new PIN hashes.
+     */
+    public static int getPinHashIterations() {
+        return pinHashIterations;
+    }
+
+    /**
+     * Change the cost of new PIN hashes (existing hashes keep their own count).
+     */
+    public static void setPinHashIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        pinHashIterations = iterations;
+    }
+
+    private static byte[] pbkdf2(int pin, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(Integer.toString(pin).toCharArray(), salt, iterations, PIN_HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(PIN_HASH_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new RuntimeException(PIN_HASH_ALGORITHM + " not available", e);
+        } finally {
+            spec.clearPassword();
+        }
     }
 }
 
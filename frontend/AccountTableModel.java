@@ -0,0 +1,175 @@
+package frontend;
+
+import accounts.Account;
+import accounts.AccountChangeListener;
+import accounts.AccountRepository;
+import accounts.AccountSnapshot;
+import reporting.AccountReplica;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Virtualized account table model for the admin panel.
+ *
+ * Rows are read by position only when the JTable paints them, so the cost of a refresh
+ * is proportional to the visible rows, not the account base. With an AccountReplica the
+ * rows come from its current view and never touch the live accounts. Change
+ * notifications are collected in a set and drained on the EDT by a timer, which fires
+ * one row-update event per changed account.
+ */
+public class AccountTableModel extends AbstractTableModel implements AccountChangeListener {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"ID", "Name", "Type", "Balance", "Frozen", "FailedPINs", "TxnCount"};
+    private static final int COALESCE_INTERVAL_MS = 250;
+    private static final int FULL_REFRESH_THRESHOLD = 512; // beyond this, one table-changed event is cheaper
+
+    private final AccountRepository accountRepository;
+    private final AccountReplica accountReplica;
+    private final Set<Integer> dirtyAccounts;
+    private final Timer coalesceTimer;
+    private int rowCount;
+    // EDT-only cache of the last painted row; JTable asks for every column of a row in turn
+    private int cachedRow = -1;
+    private AccountSnapshot cachedSnapshot;
+
+    public AccountTableModel(AccountRepository accountRepository) {
+        this(accountRepository, null);
+    }
+
+    /**
+     * Table backed by a read replica; register the model as a replica listener so rows
+     * repaint when the replica publishes them
+     */
+    public AccountTableModel(AccountRepository accountRepository, AccountReplica accountReplica) {
+        this.accountRepository = accountRepository;
+        this.accountReplica = accountReplica;
+        this.dirtyAccounts = ConcurrentHashMap.newKeySet();
+        this.rowCount = accountRepository.getAccountCount();
+        this.coalesceTimer = new Timer(COALESCE_INTERVAL_MS, e -> flushChanges());
+        this.coalesceTimer.start();
+    }
+
+    /**
+     * Called from transaction threads; only records the id
+     */
+    @Override
+    public void accountChanged(int accountId) {
+        dirtyAccounts.add(accountId);
+    }
+
+    /**
+     * Full refresh: picks up new accounts and repaints visible rows
+     */
+    public void refresh() {
+        dirtyAccounts.clear();
+        cachedRow = -1;
+        rowCount = accountRepository.getAccountCount();
+        fireTableDataChanged();
+    }
+
+    public void stop() {
+        coalesceTimer.stop();
+    }
+
+    /**
+     * Drain pending changes on the EDT as fine-grained row events
+     */
+    private void flushChanges() {
+        int currentCount = accountRepository.getAccountCount();
+        if (currentCount > rowCount) {
+            int first = rowCount;
+            rowCount = currentCount;
+            fireTableRowsInserted(first, currentCount - 1);
+        }
+        if (dirtyAccounts.isEmpty()) {
+            return;
+        }
+        if (dirtyAccounts.size() > FULL_REFRESH_THRESHOLD) {
+            dirtyAccounts.clear();
+            cachedRow = -1;
+            fireTableRowsUpdated(0, rowCount - 1);
+            return;
+        }
+        Iterator<Integer> it = dirtyAccounts.iterator();
+        while (it.hasNext()) {
+            int accountId = it.next();
+            it.remove();
+            int row = accountRepository.positionOf(accountId);
+            if (row >= 0 && row < rowCount) {
+                if (row == cachedRow) {
+                    cachedRow = -1;
+                }
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0:
+            case 5:
+            case 6:
+                return Integer.class;
+            case 4:
+                return Boolean.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        AccountSnapshot snap = snapshotAt(row);
+        if (snap == null) {
+            return null;
+        }
+        switch (column) {
+            case 0: return snap.getAccountId();
+            case 1: return snap.getName();
+            case 2: return snap.getAccountType();
+            case 3: return String.format("%.2f", snap.getBalance());
+            case 4: return snap.isFrozen();
+            case 5: return snap.getFailedPinAttempts();
+            case 6: return snap.getTransactionCount();
+            default: return null;
+        }
+    }
+
+    private AccountSnapshot snapshotAt(int row) {
+        if (row != cachedRow) {
+            cachedSnapshot = accountReplica == null ? null : accountReplica.getView().get(row);
+            if (cachedSnapshot == null) {
+                // Not replicated yet (or no replica): read the live account once
+                Account account = accountRepository.getAccountAt(row);
+                cachedSnapshot = account == null ? null : account.snapshot();
+            }
+            cachedRow = row;
+        }
+        return cachedSnapshot;
+    }
+}
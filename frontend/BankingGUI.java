@@ -2,28 +2,39 @@ package frontend;
 
 import accounts.Account;
 import accounts.AccountRepository;
+import accounts.AccountSnapshot;
 import accounts.SavingsAccount;
 import accounts.SalaryAccount;
 import atm.ATMService;
+import atm.ATMSession;
 import atm.ATMRequest;
+import batch.BatchEngine;
+import batch.BatchJournal;
+import fraud.FraudAlert;
 import fraud.FraudMonitor;
 import notification.EmailNotifier;
+import reporting.AccountReplica;
 import reporting.ReportGenerator;
+import reporting.ReportScheduler;
+import reporting.TransactionRollups;
 import reporting.LogPdfExporter;
+import transactions.TransactionEvent;
 import transactions.TransactionProcessor;
 import transactions.TransactionResult;
 import transactions.TransactionType;
+import util.FileTailer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.UIManager;
 
 /**
@@ -35,8 +46,13 @@ public class BankingGUI extends JFrame {
     private ATMService atmService;
     private FraudMonitor fraudMonitor;
     private ReportGenerator reportGenerator;
+    private TransactionRollups transactionRollups;
+    private AccountReplica accountReplica;
+    private ReportScheduler reportScheduler;
+    private static final LocalTime DAILY_REPORT_TIME = LocalTime.of(0, 5);
+    private static final long REPLICA_SWEEP_MS = 5000;
     
-    private Account currentAccount;
+    private volatile Account currentAccount; // also read by event-bus subscriber threads
     private JPanel mainPanel;
     private CardLayout cardLayout;
     
@@ -48,7 +64,14 @@ public class BankingGUI extends JFrame {
     private JTextArea transactionLogArea;
     private JTextArea fraudAlertsArea;
     private JTable accountTable;
-    private JTextArea adminFraudArea;
+    private AccountTableModel accountTableModel;
+    private JList<String> adminFraudList;
+    private PagedLineListModel fraudLineModel;
+    private Timer fraudTailTimer;
+    private final FileTailer fraudReportTailer = new FileTailer("logs/fraud_report.txt", 256 * 1024);
+    private final AtomicBoolean fraudTailInProgress = new AtomicBoolean(false);
+    private static final int FRAUD_VIEW_MAX_LINES = 50_000;
+    private static final int FRAUD_TAIL_INTERVAL_MS = 2000;
     private static final String ADMIN_USER = "admin";
     private static final String ADMIN_PASS = "admin123";
     private final LogPdfExporter logPdfExporter = new LogPdfExporter();
@@ -72,7 +95,15 @@ public class BankingGUI extends JFrame {
         fraudMonitor = new FraudMonitor(accountRepository, notifier);
         transactionProcessor = new TransactionProcessor(accountRepository, fraudMonitor);
         atmService = new ATMService(transactionProcessor);
-        reportGenerator = new ReportGenerator(accountRepository);
+        accountReplica = new AccountReplica(accountRepository, REPLICA_SWEEP_MS);
+        transactionProcessor.subscribe("replica", accountReplica);
+        reportGenerator = new ReportGenerator(accountRepository, accountReplica);
+        transactionRollups = new TransactionRollups(accountRepository);
+        transactionRollups.rebuild(transactionProcessor.getTransactionLogFile(),
+            new BatchJournal(BatchEngine.BATCH_JOURNAL_FILE));
+        transactionRollups.attach(transactionProcessor.subscribe("rollups", transactionRollups));
+        reportScheduler = new ReportScheduler(reportGenerator, transactionRollups, DAILY_REPORT_TIME);
+        reportScheduler.start();
     }
     
     private void initializeGUI() {
@@ -96,6 +127,7 @@ public class BankingGUI extends JFrame {
         mainPanel.add(adminDashboardPanel, "DASHBOARD_ADMIN");
         
         add(mainPanel);
+        subscribeToEvents();
         
         // Show login panel first
         cardLayout.show(mainPanel, "LOGIN_USER");
@@ -390,11 +422,9 @@ public class BankingGUI extends JFrame {
         JPanel center = new JPanel(new GridLayout(1,2,10,10));
 
         // Accounts table
-        String[] cols = {"ID","Name","Type","Balance","Frozen","FailedPINs","TxnCount"};
-        DefaultTableModel model = new DefaultTableModel(cols,0) {
-            @Override public boolean isCellEditable(int row, int column) { return false; }
-        };
-        accountTable = new JTable(model);
+        accountTableModel = new AccountTableModel(accountRepository, accountReplica);
+        accountReplica.addListener(accountTableModel);
+        accountTable = new JTable(accountTableModel);
         JScrollPane tableScroll = new JScrollPane(accountTable);
         JPanel accountsPanel = new JPanel(new BorderLayout());
         accountsPanel.setBorder(new TitledBorder("Accounts"));
@@ -424,10 +454,15 @@ public class BankingGUI extends JFrame {
         // Fraud alerts area
         JPanel fraudPanel = new JPanel(new BorderLayout());
         fraudPanel.setBorder(new TitledBorder("Fraud Alerts (Log View)"));
-        adminFraudArea = new JTextArea(20,40);
-        adminFraudArea.setEditable(false);
-        adminFraudArea.setFont(new Font("Courier New", Font.PLAIN, 11));
-        JScrollPane fraudScroll = new JScrollPane(adminFraudArea);
+        fraudLineModel = new PagedLineListModel(FRAUD_VIEW_MAX_LINES);
+        adminFraudList = new JList<>(fraudLineModel);
+        Font fraudFont = new Font("Courier New", Font.PLAIN, 11);
+        adminFraudList.setFont(fraudFont);
+        // Fixed row height lets JList skip measuring every line
+        adminFraudList.setFixedCellHeight(adminFraudList.getFontMetrics(fraudFont).getHeight() + 2);
+        JScrollPane fraudScroll = new JScrollPane(adminFraudList);
+        fraudTailTimer = new Timer(FRAUD_TAIL_INTERVAL_MS, e -> refreshAdminFraud());
+        fraudTailTimer.start();
         JButton refreshFraudBtn = new JButton("Refresh Alerts");
         refreshFraudBtn.addActionListener(e -> refreshAdminFraud());
         fraudPanel.add(fraudScroll, BorderLayout.CENTER);
@@ -440,6 +475,27 @@ public class BankingGUI extends JFrame {
         return panel;
     }
     
+    /**
+     * Push updates from every ATM into the dashboards instead of polling
+     */
+    private void subscribeToEvents() {
+        transactionProcessor.subscribe("gui", batch -> {
+            Account current = currentAccount;
+            boolean currentChanged = false;
+            for (TransactionEvent event : batch) {
+                for (int accountId : event.getAffectedAccountIds()) {
+                    if (current != null && accountId == current.getAccountId()) {
+                        currentChanged = true;
+                    }
+                }
+            }
+            if (currentChanged) {
+                SwingUtilities.invokeLater(this::refreshBalance);
+            }
+        });
+        fraudMonitor.subscribe("gui", batch -> updateFraudAlerts());
+    }
+    
     private JButton createStyledButton(String text, Color color) {
         JButton button = new JButton(text);
         button.setFont(new Font("Arial", Font.BOLD, 16));
@@ -688,18 +744,20 @@ public class BankingGUI extends JFrame {
         Integer pin = promptForPin();
         if (pin == null) return;
         logMessage("Running parallel test (5 concurrent transactions)...");
+        Account account = currentAccount;
         new Thread(() -> {
+            // One login for the whole test; the five operations ride on the session token
+            ATMSession session = atmService.login("GUI-PT", account.getName(), account.getAccountId(), pin);
+            if (session == null) {
+                SwingUtilities.invokeLater(() -> logMessage("✗ Parallel test login failed (invalid PIN or account locked)"));
+                return;
+            }
             try {
-                Future<TransactionResult> f1 = atmService.processRequest(
-                    atmService.createDepositRequest("GUI-PT", currentAccount.getName(), currentAccount.getAccountId(), 100, pin));
-                Future<TransactionResult> f2 = atmService.processRequest(
-                    atmService.createWithdrawRequest("GUI-PT", currentAccount.getName(), currentAccount.getAccountId(), 80, pin));
-                Future<TransactionResult> f3 = atmService.processRequest(
-                    atmService.createBalanceInquiryRequest("GUI-PT", currentAccount.getName(), currentAccount.getAccountId(), pin));
-                Future<TransactionResult> f4 = atmService.processRequest(
-                    atmService.createDepositRequest("GUI-PT", currentAccount.getName(), currentAccount.getAccountId(), 60, pin));
-                Future<TransactionResult> f5 = atmService.processRequest(
-                    atmService.createWithdrawRequest("GUI-PT", currentAccount.getName(), currentAccount.getAccountId(), 40, pin));
+                Future<TransactionResult> f1 = atmService.processRequest(atmService.createDepositRequest(session, 100));
+                Future<TransactionResult> f2 = atmService.processRequest(atmService.createWithdrawRequest(session, 80));
+                Future<TransactionResult> f3 = atmService.processRequest(atmService.createBalanceInquiryRequest(session));
+                Future<TransactionResult> f4 = atmService.processRequest(atmService.createDepositRequest(session, 60));
+                Future<TransactionResult> f5 = atmService.processRequest(atmService.createWithdrawRequest(session, 40));
 
                 List<Future<TransactionResult>> list = Arrays.asList(f1, f2, f3, f4, f5);
                 for (Future<TransactionResult> f : list) {
@@ -712,6 +770,8 @@ public class BankingGUI extends JFrame {
             } catch (Exception ex) {
                 SwingUtilities.invokeLater(() ->
                     JOptionPane.showMessageDialog(this, "Parallel test error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                atmService.logout(session);
             }
         }).start();
     }
@@ -791,7 +851,7 @@ public class BankingGUI extends JFrame {
                 JOptionPane.showMessageDialog(this, "New PINs do not match", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            boolean ok = currentAccount.changePin(o, n);
+            boolean ok = accountRepository.changePin(currentAccount.getAccountId(), o, n);
             if (ok) {
                 JOptionPane.showMessageDialog(this, "PIN changed successfully");
             } else {
@@ -816,19 +876,8 @@ public class BankingGUI extends JFrame {
     }
 
     private void refreshAccountTable() {
-        DefaultTableModel model = (DefaultTableModel) accountTable.getModel();
-        model.setRowCount(0);
-        for (Account acc : accountRepository.getAllAccounts().values()) {
-            model.addRow(new Object[]{
-                acc.getAccountId(),
-                acc.getName(),
-                acc instanceof SavingsAccount ? "Savings" : "Salary",
-                String.format("%.2f", acc.getBalance()),
-                acc.isFrozen(),
-                acc.getFailedPinAttempts(),
-                acc.getTransactionCount()
-            });
-        }
+        accountReplica.resync();
+        accountTableModel.refresh();
     }
 
     private void adminFreeze(boolean freeze) {
@@ -839,7 +888,7 @@ public class BankingGUI extends JFrame {
         }
         accountRepository.setAccountFrozen(id, freeze);
         JOptionPane.showMessageDialog(this, "Account " + id + (freeze ? " frozen" : " unfrozen"));
-        refreshAccountTable();
+        accountReplica.refresh(id);
     }
 
     private void adminResetPinAttempts() {
@@ -852,7 +901,7 @@ public class BankingGUI extends JFrame {
         if (acc != null) {
             acc.resetFailedPinAttempts();
             JOptionPane.showMessageDialog(this, "PIN attempts reset for " + id);
-            refreshAccountTable();
+            accountReplica.refresh(id);
         }
     }
 
@@ -868,7 +917,7 @@ public class BankingGUI extends JFrame {
         if (pinStr == null) return;
         try {
             int newPin = Integer.parseInt(pinStr.trim());
-            acc.adminSetPin(newPin);
+            accountRepository.adminSetPin(id, newPin);
             JOptionPane.showMessageDialog(this, "Temporary PIN set for " + id);
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "PIN must be numeric", "Error", JOptionPane.ERROR_MESSAGE);
@@ -876,15 +925,32 @@ public class BankingGUI extends JFrame {
     }
 
     private void refreshAdminFraud() {
-        StringBuilder sb = new StringBuilder();
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader("logs/fraud_report.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) sb.append(line).append("\n");
-        } catch (Exception e) {
-            sb.append("Unable to read fraud_report.txt: ").append(e.getMessage());
+        // Only newly appended bytes are read, off the EDT; one poll at a time
+        if (!fraudTailInProgress.compareAndSet(false, true)) {
+            return;
         }
-        adminFraudArea.setText(sb.toString());
-        adminFraudArea.setCaretPosition(0);
+        new Thread(() -> {
+            try {
+                List<String> lines = fraudReportTailer.readNewLines();
+                if (!lines.isEmpty()) {
+                    SwingUtilities.invokeLater(() -> {
+                        boolean following = fraudLineModel.getSize() == 0
+                            || adminFraudList.getLastVisibleIndex() >= fraudLineModel.getSize() - 1;
+                        fraudLineModel.appendLines(lines);
+                        if (following) {
+                            adminFraudList.ensureIndexIsVisible(fraudLineModel.getSize() - 1);
+                        }
+                    });
+                }
+                if (fraudReportTailer.hasMore()) {
+                    SwingUtilities.invokeLater(this::refreshAdminFraud);
+                }
+            } catch (java.io.IOException e) {
+                // Report not created yet; next poll will retry
+            } finally {
+                fraudTailInProgress.set(false);
+            }
+        }).start();
     }
 
     private void exportAdminReport() {
@@ -894,15 +960,15 @@ public class BankingGUI extends JFrame {
             pw.println("ADMIN REPORT");
             pw.println("Generated at: " + java.time.LocalDateTime.now());
             pw.println("\nACCOUNTS:");
-            for (Account acc : accountRepository.getAllAccounts().values()) {
+            for (AccountSnapshot snap : accountReplica.getView().getAccounts()) {
                 pw.println(String.format("ID:%d | %s | Type:%s | Bal:%.2f | Frozen:%s | FailedPINs:%d | Txn:%d",
-                    acc.getAccountId(),
-                    acc.getName(),
-                    acc instanceof SavingsAccount ? "Savings" : "Salary",
-                    acc.getBalance(),
-                    acc.isFrozen(),
-                    acc.getFailedPinAttempts(),
-                    acc.getTransactionCount()));
+                    snap.getAccountId(),
+                    snap.getName(),
+                    snap.getAccountType(),
+                    snap.getBalance(),
+                    snap.isFrozen(),
+                    snap.getFailedPinAttempts(),
+                    snap.getTransactionCount()));
             }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Failed to build admin report: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -927,6 +993,15 @@ public class BankingGUI extends JFrame {
             int alerts = fraudMonitor.getTotalFraudAlerts();
             if (alerts > 0) {
                 fraudAlertsArea.setText("Total Fraud Alerts: " + alerts + "\n\n");
+                if (currentAccount != null) {
+                    for (FraudAlert alert : fraudMonitor.getRecentAlerts()) {
+                        if (alert.getAccountId() == currentAccount.getAccountId()) {
+                            fraudAlertsArea.append("[" + alert.getSeverity() + "] " + alert.getTimestamp() 
+                                + " " + alert.getReason() + "\n");
+                        }
+                    }
+                    fraudAlertsArea.append("\n");
+                }
                 fraudAlertsArea.append("⚠️ Monitor fraud_report.txt for details.\n");
                 fraudAlertsArea.append("Check for:\n");
                 fraudAlertsArea.append("- Rapid withdrawals\n");
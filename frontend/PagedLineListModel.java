@@ -0,0 +1,75 @@
+package frontend;
+
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only list model that stores lines in fixed-size pages and drops whole
+ * pages from the front once the cap is reached. Appends and evictions cost
+ * O(lines added) regardless of how much has been shown. EDT-only.
+ */
+public class PagedLineListModel extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE_SIZE = 1024;
+
+    private final int maxPages;
+    private final List<String[]> pages;
+    private int lastPageFill;
+    private int size;
+
+    public PagedLineListModel(int maxLines) {
+        this.maxPages = Math.max(2, (maxLines + PAGE_SIZE - 1) / PAGE_SIZE);
+        this.pages = new ArrayList<>();
+        this.lastPageFill = PAGE_SIZE;
+        this.size = 0;
+    }
+
+    /**
+     * Append lines at the end, evicting the oldest pages if over capacity
+     */
+    public void appendLines(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        int firstNew = size;
+        for (String line : lines) {
+            if (lastPageFill == PAGE_SIZE) {
+                pages.add(new String[PAGE_SIZE]);
+                lastPageFill = 0;
+            }
+            pages.get(pages.size() - 1)[lastPageFill++] = line;
+            size++;
+        }
+        fireIntervalAdded(this, firstNew, size - 1);
+
+        int excessPages = pages.size() - maxPages;
+        if (excessPages > 0) {
+            pages.subList(0, excessPages).clear();
+            int removed = excessPages * PAGE_SIZE;
+            size -= removed;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        int oldSize = size;
+        pages.clear();
+        lastPageFill = PAGE_SIZE;
+        size = 0;
+        fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return pages.get(index / PAGE_SIZE)[index % PAGE_SIZE];
+    }
+}
@@ -7,7 +7,7 @@ echo.
 REM Check if classes are compiled
 if not exist "frontend\BankingGUI.class" (
     echo Compiling project...
-    javac -d . backend\util\*.java backend\accounts\*.java backend\transactions\*.java backend\concurrency\*.java backend\fraud\*.java backend\atm\*.java backend\reporting\*.java frontend\BankingGUI.java
+    javac -d . backend\util\*.java backend\accounts\*.java backend\transactions\*.java backend\replication\*.java backend\audit\*.java backend\batch\*.java backend\bulk\*.java backend\concurrency\*.java backend\events\*.java backend\fraud\*.java backend\atm\*.java backend\reporting\*.java backend\notification\*.java frontend\*.java
     if errorlevel 1 (
         echo Compilation failed!
         pause
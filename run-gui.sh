@@ -8,7 +8,7 @@ echo ""
 # Check if classes are compiled
 if [ ! -f "frontend/BankingGUI.class" ]; then
     echo "Compiling project..."
-    javac -d . backend/util/*.java backend/accounts/*.java backend/transactions/*.java backend/concurrency/*.java backend/fraud/*.java backend/atm/*.java backend/reporting/*.java frontend/BankingGUI.java
+    javac -d . backend/util/*.java backend/accounts/*.java backend/transactions/*.java backend/replication/*.java backend/audit/*.java backend/batch/*.java backend/bulk/*.java backend/concurrency/*.java backend/events/*.java backend/fraud/*.java backend/atm/*.java backend/reporting/*.java backend/notification/*.java frontend/*.java
     if [ $? -ne 0 ]; then
         echo "Compilation failed!"
         exit 1